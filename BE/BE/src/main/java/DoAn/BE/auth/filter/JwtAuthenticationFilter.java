@@ -1,20 +1,20 @@
 package DoAn.BE.auth.filter;
 
 import java.io.IOException;
-import java.util.Collections;
 
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import DoAn.BE.auth.service.JwtService;
+import DoAn.BE.auth.service.PrincipalCache;
 import DoAn.BE.auth.service.SessionService;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.service.UserService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -27,11 +27,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserService userService;
     private final SessionService sessionService;
+    private final PrincipalCache principalCache;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserService userService, SessionService sessionService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserService userService, SessionService sessionService,
+            PrincipalCache principalCache) {
         this.jwtService = jwtService;
         this.userService = userService;
         this.sessionService = sessionService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -43,7 +46,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
 
         // Kiểm tra Authorization header
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -55,30 +57,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
 
         try {
-            // Extract username từ JWT
-            username = jwtService.extractUsername(jwt);
-
-            // Kiểm tra username và SecurityContext
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-                // Tìm user trong database
-                User user = userService.findByUsername(username)
-                        .orElse(null);
-
-                if (user != null && jwtService.validateToken(jwt)) {
-
-                    // Kiểm tra user có active không
-                    if (!user.getIsActive()) {
-                        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                        response.getWriter().write("{\"error\":\"Tài khoản đã bị vô hiệu hóa\"}");
-                        return;
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+
+                // Hot path: token đã xác thực gần đây -> không verify lại, không query DB
+                PrincipalCache.CachedPrincipal principal = principalCache.get(jwt);
+
+                if (principal == null) {
+                    // Parse + verify token đúng 1 lần
+                    Claims claims = jwtService.parseClaims(jwt);
+                    String username = claims.getSubject();
+
+                    // Tìm user trong database
+                    User user = username != null ? userService.findByUsername(username).orElse(null) : null;
+
+                    if (user != null) {
+                        // Kiểm tra user có active không
+                        if (!user.getIsActive()) {
+                            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                            response.getWriter().write("{\"error\":\"Tài khoản đã bị vô hiệu hóa\"}");
+                            return;
+                        }
+                        principal = principalCache.put(jwt, user, claims.getExpiration());
                     }
+                }
 
+                if (principal != null) {
                     // Tạo authentication token với User object làm principal
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            user, // Set User object làm principal
+                            principal.user(), // Set User object làm principal
                             null,
-                            Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
+                            principal.authorities()
                     );
 
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,6 +35,18 @@ public interface UserSessionRepository extends JpaRepository<UserSession, Long>
     @Query("UPDATE UserSession us SET us.lastActivity = :now WHERE us.sessionId = :sessionId")
     void updateLastActivity(@Param("sessionId") String sessionId, @Param("now") LocalDateTime now);
     
+    // Flush last-activity theo lô (các session cùng mốc thời gian)
+    @Modifying
+    @Query("UPDATE UserSession us SET us.lastActivity = :lastActivity " +
+           "WHERE us.sessionId IN :sessionIds AND us.isActive = true " +
+           "AND (us.lastActivity IS NULL OR us.lastActivity < :lastActivity)")
+    int updateLastActivityBatch(@Param("sessionIds") Collection<String> sessionIds,
+                                @Param("lastActivity") LocalDateTime lastActivity);
+    
+    @Modifying
+    @Query("UPDATE UserSession us SET us.isActive = false WHERE us.isActive = true AND us.lastActivity < :cutoffTime")
+    int deactivateExpiredSessions(@Param("cutoffTime") LocalDateTime cutoffTime);
+    
     @Modifying
     @Query("DELETE FROM UserSession us WHERE us.lastActivity < :cutoffTime")
     void deleteExpiredSessions(@Param("cutoffTime") LocalDateTime cutoffTime);
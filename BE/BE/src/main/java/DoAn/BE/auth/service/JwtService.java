@@ -7,12 +7,15 @@ import java.util.function.Function;
 
 import javax.crypto.SecretKey;
 
+import jakarta.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import DoAn.BE.user.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 
@@ -29,8 +32,26 @@ public class JwtService {
     @Value("${jwt.refresh-expiration:604800000}") // 7 ngày
     private long refreshExpiration;
 
+    // Key và parser dựng 1 lần (thread-safe), không tạo lại mỗi request
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secretKey.getBytes());
+        return signingKey;
+    }
+
+    /**
+     * Verify chữ ký + hạn dùng và trả về toàn bộ claims trong 1 lần parse
+     * Ném ExpiredJwtException / JwtException / IllegalArgumentException nếu token không hợp lệ
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     // Lấy username từ token
@@ -50,11 +71,7 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parseClaims(token);
     }
 
     private Boolean isTokenExpired(String token) {
@@ -0,0 +1,98 @@
+package DoAn.BE.auth.service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import DoAn.BE.user.entity.User;
+
+// Cache principal đã xác thực theo access token (LRU theo số token + TTL)
+// Hit: không verify chữ ký, không SELECT users; UserService gọi invalidateUser khi đổi role/mật khẩu/trạng thái
+@Component
+public class PrincipalCache {
+
+    public record CachedPrincipal(User user, List<GrantedAuthority> authorities, long expiresAtMillis) {
+    }
+
+    // access-order: get() đẩy token lên cuối, đầy thì bỏ token lâu nhất không dùng
+    private final Map<String, CachedPrincipal> cache;
+    private final long ttlMillis;
+
+    public PrincipalCache(@Value("${jwt.principal-cache.max-size:10000}") int maxSize,
+            @Value("${jwt.principal-cache.ttl-seconds:120}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    // Lấy principal còn hạn theo token, null nếu chưa có/hết hạn
+    public CachedPrincipal get(String token) {
+        synchronized (cache) {
+            CachedPrincipal entry = cache.get(token);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= entry.expiresAtMillis()) {
+                cache.remove(token);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    // Lưu principal; hết hạn theo TTL nhưng không quá hạn của token
+    public CachedPrincipal put(String token, User user, Date tokenExpiration) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        CachedPrincipal entry = new CachedPrincipal(user,
+                List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole().name())), expiresAt);
+        synchronized (cache) {
+            cache.put(token, entry);
+        }
+        return entry;
+    }
+
+    // Xóa mọi token của user; nếu đang trong transaction thì xóa thêm lần nữa sau commit
+    // (tránh request song song nạp lại bản ghi cũ trước khi commit)
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        removeUser(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUser(userId);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void removeUser(Long userId) {
+        synchronized (cache) {
+            cache.values().removeIf(entry -> userId.equals(entry.user().getUserId()));
+        }
+    }
+}
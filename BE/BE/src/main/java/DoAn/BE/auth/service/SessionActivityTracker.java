@@ -0,0 +1,174 @@
+package DoAn.BE.auth.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+// Theo dõi last-activity của session trong bộ nhớ (write-behind)
+// - touch() chỉ cập nhật RAM, nhiều lần touch giữa 2 lần flush gộp thành 1 giá trị
+// - Chia 16 stripe, mỗi stripe 1 lock -> request song song ít tranh chấp
+// - SessionService định kỳ drainDirty() và ghi xuống DB theo lô
+// Lưu ý: trạng thái chỉ nằm trong 1 instance, phù hợp triển khai 1 node
+@Component
+public class SessionActivityTracker {
+
+    private static final int STRIPES = 16;
+
+    // Trạng thái 1 session; exists=false là tombstone cho sessionId không có trong DB
+    private static final class SessionState {
+        final boolean exists;
+        final String ipAddress;
+        boolean active;
+        long lastActivity;
+        boolean dirty;
+
+        SessionState(boolean exists, boolean active, String ipAddress, long lastActivity) {
+            this.exists = exists;
+            this.active = active;
+            this.ipAddress = ipAddress;
+            this.lastActivity = lastActivity;
+        }
+    }
+
+    public record SessionSnapshot(boolean exists, boolean active, String ipAddress, LocalDateTime lastActivity) {
+    }
+
+    public record ActivityTouch(String sessionId, long lastActivityMillis) {
+    }
+
+    private final List<Map<String, SessionState>> stripes = new ArrayList<>(STRIPES);
+
+    public SessionActivityTracker() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new HashMap<>());
+        }
+    }
+
+    private Map<String, SessionState> stripeOf(String sessionId) {
+        int h = sessionId.hashCode();
+        return stripes.get((h ^ (h >>> 16)) & (STRIPES - 1));
+    }
+
+    /**
+     * Nạp trạng thái session (từ DB hoặc vừa tạo); không ghi đè nếu đã có
+     */
+    public void register(String sessionId, boolean exists, boolean active, String ipAddress,
+            LocalDateTime lastActivity) {
+        Map<String, SessionState> stripe = stripeOf(sessionId);
+        long millis = lastActivity != null ? toMillis(lastActivity) : System.currentTimeMillis();
+        synchronized (stripe) {
+            stripe.putIfAbsent(sessionId, new SessionState(exists, active, ipAddress, millis));
+        }
+    }
+
+    /**
+     * Ghi nhận hoạt động; trả về false nếu session chưa được nạp (caller cần register trước)
+     */
+    public boolean touch(String sessionId) {
+        Map<String, SessionState> stripe = stripeOf(sessionId);
+        long now = System.currentTimeMillis();
+        synchronized (stripe) {
+            SessionState state = stripe.get(sessionId);
+            if (state == null) {
+                return false;
+            }
+            if (state.exists && state.active && now > state.lastActivity) {
+                state.lastActivity = now;
+                state.dirty = true;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Trạng thái hiện tại (đã gộp hoạt động chưa flush), null nếu chưa nạp
+     */
+    public SessionSnapshot get(String sessionId) {
+        Map<String, SessionState> stripe = stripeOf(sessionId);
+        synchronized (stripe) {
+            SessionState state = stripe.get(sessionId);
+            if (state == null) {
+                return null;
+            }
+            return new SessionSnapshot(state.exists, state.active, state.ipAddress, toLocalDateTime(state.lastActivity));
+        }
+    }
+
+    public void deactivate(String sessionId) {
+        Map<String, SessionState> stripe = stripeOf(sessionId);
+        synchronized (stripe) {
+            SessionState state = stripe.get(sessionId);
+            if (state != null) {
+                state.active = false;
+                state.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Lấy và xóa cờ dirty của mọi session có hoạt động mới
+     */
+    public List<ActivityTouch> drainDirty() {
+        List<ActivityTouch> touches = new ArrayList<>();
+        for (Map<String, SessionState> stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<String, SessionState> e : stripe.entrySet()) {
+                    SessionState state = e.getValue();
+                    if (state.dirty) {
+                        state.dirty = false;
+                        touches.add(new ActivityTouch(e.getKey(), state.lastActivity));
+                    }
+                }
+            }
+        }
+        return touches;
+    }
+
+    /**
+     * Đánh dấu dirty lại khi flush lỗi (để lần sau ghi tiếp)
+     */
+    public void requeue(List<ActivityTouch> touches) {
+        for (ActivityTouch touch : touches) {
+            Map<String, SessionState> stripe = stripeOf(touch.sessionId());
+            synchronized (stripe) {
+                SessionState state = stripe.get(touch.sessionId());
+                if (state != null && state.active) {
+                    state.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bỏ các session không hoạt động từ trước cutoff (không bỏ entry còn dirty)
+     */
+    public void evictIdleBefore(LocalDateTime cutoff) {
+        long cutoffMillis = toMillis(cutoff);
+        for (Map<String, SessionState> stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<SessionState> it = stripe.values().iterator();
+                while (it.hasNext()) {
+                    SessionState state = it.next();
+                    if (!state.dirty && state.lastActivity < cutoffMillis) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    public static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -3,21 +3,32 @@ package DoAn.BE.auth.service;
 import DoAn.BE.auth.entity.UserSession;
 import DoAn.BE.auth.repository.UserSessionRepository;
 import DoAn.BE.user.entity.User;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 
 // Service quản lý session của user (đa phiên đăng nhập, timeout, concurrent sessions)
 @Service
 @Transactional
+@Slf4j
 public class SessionService {
 
+    private static final int FLUSH_BATCH_SIZE = 1000; // Dưới giới hạn 2100 tham số của SQL Server
+
     private final UserSessionRepository userSessionRepository;
+    private final SessionActivityTracker activityTracker;
 
     @Value("${session.timeout:30}") // 30 phút
     private int sessionTimeoutMinutes;
@@ -25,8 +36,9 @@ public class SessionService {
     @Value("${session.max-concurrent:5}") // Tối đa 5 phiên cùng lúc
     private int maxConcurrentSessions;
 
-    public SessionService(UserSessionRepository userSessionRepository) {
+    public SessionService(UserSessionRepository userSessionRepository, SessionActivityTracker activityTracker) {
         this.userSessionRepository = userSessionRepository;
+        this.activityTracker = activityTracker;
     }
 
     /**
@@ -54,18 +66,57 @@ public class SessionService {
         session.setUserAgent(userAgent);
         session.setIsActive(true);
 
-        return userSessionRepository.save(session);
+        UserSession saved = userSessionRepository.save(session);
+        activityTracker.register(saved.getSessionId(), true, true, saved.getIpAddress(), saved.getLastActivity());
+        return saved;
     }
 
     /**
-     * Cập nhật hoạt động của session
+     * Cập nhật hoạt động của session (chỉ ghi RAM, flushSessionActivity ghi xuống DB theo lô)
+     * Chỉ query DB lần đầu gặp sessionId
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public void updateSessionActivity(String sessionId) {
-        Optional<UserSession> sessionOpt = userSessionRepository.findBySessionId(sessionId);
-        if (sessionOpt.isPresent()) {
-            UserSession session = sessionOpt.get();
-            session.updateActivity();
-            userSessionRepository.save(session);
+        if (!activityTracker.touch(sessionId)) {
+            loadIntoTracker(sessionId);
+            activityTracker.touch(sessionId);
+        }
+    }
+
+    /**
+     * Ghi last-activity đã gộp xuống DB
+     * Nhóm theo mốc phút (làm tròn xuống) -> mỗi lô 1 câu UPDATE ... WHERE session_id IN (...)
+     */
+    @Scheduled(fixedDelayString = "${session.activity.flush-interval-ms:30000}")
+    public void flushSessionActivity() {
+        // Bỏ khỏi RAM các session đã idle quá timeout (lần sau cần sẽ nạp lại từ DB)
+        activityTracker.evictIdleBefore(LocalDateTime.now().minusMinutes(sessionTimeoutMinutes));
+
+        List<SessionActivityTracker.ActivityTouch> touches = activityTracker.drainDirty();
+        if (touches.isEmpty()) {
+            return;
+        }
+
+        Map<LocalDateTime, List<String>> theoMoc = new TreeMap<>();
+        for (SessionActivityTracker.ActivityTouch touch : touches) {
+            LocalDateTime moc = SessionActivityTracker.toLocalDateTime(touch.lastActivityMillis())
+                    .truncatedTo(ChronoUnit.MINUTES);
+            theoMoc.computeIfAbsent(moc, k -> new ArrayList<>()).add(touch.sessionId());
+        }
+
+        try {
+            int updated = 0;
+            for (Map.Entry<LocalDateTime, List<String>> e : theoMoc.entrySet()) {
+                List<String> ids = e.getValue();
+                for (int i = 0; i < ids.size(); i += FLUSH_BATCH_SIZE) {
+                    updated += userSessionRepository.updateLastActivityBatch(
+                            ids.subList(i, Math.min(i + FLUSH_BATCH_SIZE, ids.size())), e.getKey());
+                }
+            }
+            log.debug("Flushed activity of {} sessions ({} rows)", touches.size(), updated);
+        } catch (RuntimeException e) {
+            activityTracker.requeue(touches);
+            throw e;
         }
     }
 
@@ -79,6 +130,7 @@ public class SessionService {
             session.setIsActive(false);
             userSessionRepository.save(session);
         }
+        activityTracker.deactivate(sessionId);
     }
 
     /**
@@ -89,20 +141,22 @@ public class SessionService {
         sessions.forEach(session -> {
             session.setIsActive(false);
             userSessionRepository.save(session);
+            activityTracker.deactivate(session.getSessionId());
         });
     }
 
     /**
      * Kiểm tra session có hợp lệ không
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public boolean isValidSession(String sessionId) {
-        Optional<UserSession> sessionOpt = userSessionRepository.findBySessionId(sessionId);
-        if (sessionOpt.isEmpty()) {
+        SessionActivityTracker.SessionSnapshot session = snapshot(sessionId);
+        if (!session.exists()) {
             return false;
         }
 
-        UserSession session = sessionOpt.get();
-        return session.getIsActive() && !session.isExpired(sessionTimeoutMinutes);
+        return session.active() && session.lastActivity() != null
+                && !LocalDateTime.now().isAfter(session.lastActivity().plusMinutes(sessionTimeoutMinutes));
     }
 
     /**
@@ -124,15 +178,13 @@ public class SessionService {
      */
     @Transactional
     public void cleanupExpiredSessions() {
-        List<UserSession> allSessions = userSessionRepository.findAll();
+        // Ghi hoạt động đang chờ trước, tránh khóa nhầm session vừa dùng
+        flushSessionActivity();
+
         LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(sessionTimeoutMinutes);
-        
-        allSessions.stream()
-                .filter(session -> session.getLastActivity() != null && session.getLastActivity().isBefore(cutoffTime))
-                .forEach(session -> {
-                    session.setIsActive(false);
-                    userSessionRepository.save(session);
-                });
+        int deactivated = userSessionRepository.deactivateExpiredSessions(cutoffTime);
+        activityTracker.evictIdleBefore(cutoffTime);
+        log.info("Deactivated {} expired sessions", deactivated);
     }
 
     /**
@@ -145,13 +197,35 @@ public class SessionService {
     /**
      * Kiểm tra IP address có khác với session hiện tại không
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public boolean isSuspiciousActivity(String sessionId, String currentIp) {
-        Optional<UserSession> sessionOpt = userSessionRepository.findBySessionId(sessionId);
-        if (sessionOpt.isEmpty()) {
+        SessionActivityTracker.SessionSnapshot session = snapshot(sessionId);
+        if (!session.exists()) {
             return false;
         }
 
-        UserSession session = sessionOpt.get();
-        return !currentIp.equals(session.getIpAddress());
+        return !currentIp.equals(session.ipAddress());
+    }
+
+    // Trạng thái session từ tracker, nạp từ DB nếu chưa có
+    private SessionActivityTracker.SessionSnapshot snapshot(String sessionId) {
+        SessionActivityTracker.SessionSnapshot session = activityTracker.get(sessionId);
+        if (session == null) {
+            loadIntoTracker(sessionId);
+            session = activityTracker.get(sessionId);
+        }
+        return session;
+    }
+
+    // sessionId không tồn tại vẫn được ghi nhận (tombstone) để header giả không gây query lặp lại
+    private void loadIntoTracker(String sessionId) {
+        Optional<UserSession> sessionOpt = userSessionRepository.findBySessionId(sessionId);
+        if (sessionOpt.isPresent()) {
+            UserSession session = sessionOpt.get();
+            activityTracker.register(sessionId, true, Boolean.TRUE.equals(session.getIsActive()),
+                    session.getIpAddress(), session.getLastActivity());
+        } else {
+            activityTracker.register(sessionId, false, false, null, null);
+        }
     }
 }
@@ -0,0 +1,54 @@
+package DoAn.BE.chat.config;
+
+import DoAn.BE.chat.service.InboxProjectionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Dựng projection inbox cho dữ liệu cũ:
+// - chat_rooms.member_count / last_message_*: phòng chưa có member_count
+// - chat_room_members.last_activity_at: membership chưa có, lấy tin nhắn cuối của phòng hoặc lúc tham gia
+// Chỉ xử lý dòng còn NULL nên chạy lại không ảnh hưởng
+@Component
+@Order(4) // Sau ReadPointerMigration (@Order(3))
+@Slf4j
+public class InboxProjectionMigration implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InboxProjectionMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) {
+        int rooms = jdbcTemplate.update(
+                "UPDATE r SET r.member_count = (SELECT COUNT(*) FROM chat_room_members cm WHERE cm.room_id = r.room_id), " +
+                        "r.last_message_id = last.message_id, " +
+                        "r.last_message_preview = CASE WHEN last.is_deleted = 1 THEN ? " +
+                        "  WHEN LEN(last.content) > ? THEN LEFT(last.content, ?) + '...' ELSE last.content END, " +
+                        "r.last_message_type = last.message_type, " +
+                        "r.last_message_sender_id = last.sender_id, " +
+                        "r.last_message_sender_name = last.username, " +
+                        "r.last_message_at = last.sent_at " +
+                        "FROM chat_rooms r " +
+                        "OUTER APPLY (SELECT TOP 1 m.message_id, m.content, m.is_deleted, m.message_type, m.sender_id, " +
+                        "  u.username, m.sent_at FROM messages m LEFT JOIN users u ON u.user_id = m.sender_id " +
+                        "  WHERE m.room_id = r.room_id ORDER BY m.sent_at DESC, m.message_id DESC) last " +
+                        "WHERE r.member_count IS NULL",
+                InboxProjectionService.DELETED_PREVIEW,
+                InboxProjectionService.PREVIEW_LENGTH,
+                InboxProjectionService.PREVIEW_LENGTH - 3);
+
+        int members = jdbcTemplate.update(
+                "UPDATE cm SET cm.last_activity_at = COALESCE(r.last_message_at, cm.joined_at) " +
+                        "FROM chat_room_members cm JOIN chat_rooms r ON r.room_id = cm.room_id " +
+                        "WHERE cm.last_activity_at IS NULL");
+
+        if (rooms > 0 || members > 0) {
+            log.info("✅ Built inbox projection: {} rooms, {} memberships", rooms, members);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package DoAn.BE.chat.config;
+
+import DoAn.BE.chat.service.MessageSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+// Dựng index tìm kiếm (message_search_terms) cho tin nhắn cũ chưa có postings
+// Duyệt theo message_id tăng dần từng lô; tin nhắn đã có postings bị bỏ qua nên chạy lại không ảnh hưởng
+@Component
+@Order(5) // Sau InboxProjectionMigration (@Order(4))
+@Slf4j
+public class MessageSearchIndexMigration implements CommandLineRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageSearchService messageSearchService;
+
+    public MessageSearchIndexMigration(JdbcTemplate jdbcTemplate, MessageSearchService messageSearchService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageSearchService = messageSearchService;
+    }
+
+    @Override
+    public void run(String... args) {
+        long cursor = 0;
+        int indexed = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT TOP (?) m.message_id, m.room_id, m.sent_at, m.content, u.username " +
+                            "FROM messages m LEFT JOIN users u ON u.user_id = m.sender_id " +
+                            "WHERE m.message_id > ? AND m.is_deleted = 0 " +
+                            "AND NOT EXISTS (SELECT 1 FROM message_search_terms t WHERE t.message_id = m.message_id) " +
+                            "ORDER BY m.message_id",
+                    BATCH_SIZE, cursor);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            for (Map<String, Object> row : rows) {
+                Long messageId = ((Number) row.get("message_id")).longValue();
+                Timestamp sentAt = (Timestamp) row.get("sent_at");
+                messageSearchService.index(messageId, ((Number) row.get("room_id")).longValue(),
+                        sentAt != null ? sentAt.toLocalDateTime() : null,
+                        (String) row.get("content"), (String) row.get("username"));
+                cursor = messageId;
+            }
+            indexed += rows.size();
+        }
+
+        if (indexed > 0) {
+            log.info("✅ Built message search index for {} messages", indexed);
+        }
+    }
+}
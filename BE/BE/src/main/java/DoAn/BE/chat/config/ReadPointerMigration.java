@@ -0,0 +1,52 @@
+package DoAn.BE.chat.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Chuyển trạng thái đã đọc từ message_status (1 dòng / tin nhắn x thành viên) sang con trỏ trên chat_room_members
+// - last_read_*: tin nhắn SEEN mới nhất của user trong phòng
+// - unread_count: số tin nhắn (chưa xóa) của người khác sau con trỏ
+// Chỉ xử lý membership chưa có unread_count (cột mới thêm bởi ddl-auto), chạy lại không ảnh hưởng
+@Component
+@Order(3) // Sau DataSeed (@Order(2))
+@Slf4j
+public class ReadPointerMigration implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReadPointerMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) {
+        Integer pending = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM chat_room_members WHERE unread_count IS NULL", Integer.class);
+        if (pending == null || pending == 0) {
+            return;
+        }
+
+        int pointers = jdbcTemplate.update(
+                "UPDATE cm SET cm.last_read_message_id = seen.message_id, cm.last_read_at = seen.sent_at " +
+                        "FROM chat_room_members cm " +
+                        "CROSS APPLY (SELECT TOP 1 m.message_id, m.sent_at FROM message_status ms " +
+                        "  JOIN messages m ON m.message_id = ms.message_id " +
+                        "  WHERE ms.user_id = cm.user_id AND m.room_id = cm.room_id AND ms.status = 'SEEN' " +
+                        "  ORDER BY m.sent_at DESC, m.message_id DESC) seen " +
+                        "WHERE cm.unread_count IS NULL");
+
+        int counters = jdbcTemplate.update(
+                "UPDATE cm SET cm.unread_count = (SELECT COUNT(*) FROM messages m " +
+                        "  WHERE m.room_id = cm.room_id AND m.sender_id <> cm.user_id AND m.is_deleted = 0 " +
+                        "  AND (cm.last_read_at IS NULL OR m.sent_at > cm.last_read_at " +
+                        "    OR (m.sent_at = cm.last_read_at AND m.message_id > cm.last_read_message_id))) " +
+                        "FROM chat_room_members cm " +
+                        "WHERE cm.unread_count IS NULL");
+
+        log.info("✅ Migrated read pointers: {} memberships from message_status, {} unread counters", pointers,
+                counters);
+    }
+}
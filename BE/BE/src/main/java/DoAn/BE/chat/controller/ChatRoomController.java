@@ -59,11 +59,13 @@ public class ChatRoomController {
         return ResponseEntity.status(HttpStatus.CREATED).body(chatRoom);
     }
 
-    // Lấy danh sách phòng chat của user hiện tại
+    // Lấy danh sách phòng chat của user hiện tại (mới hoạt động trước), phân trang tùy chọn qua page/size
     @GetMapping
-    public ResponseEntity<List<ChatRoomDTO>> getMyChatRooms() {
+    public ResponseEntity<List<ChatRoomDTO>> getMyChatRooms(
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
         User currentUser = getCurrentUser();
-        List<ChatRoomDTO> chatRooms = chatRoomService.getChatRoomsByUserId(currentUser);
+        List<ChatRoomDTO> chatRooms = chatRoomService.getChatRoomsByUserId(currentUser, page, size);
         return ResponseEntity.ok(chatRooms);
     }
 
@@ -1,7 +1,10 @@
 package DoAn.BE.chat.controller;
 
+import DoAn.BE.chat.service.ChatSideEffectPipeline;
+import DoAn.BE.chat.service.RoomMembershipCache;
 import DoAn.BE.common.exception.EntityNotFoundException;
 import DoAn.BE.common.exception.UnauthorizedException;
+import DoAn.BE.common.util.PermissionUtil;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
 
@@ -22,6 +25,12 @@ public class ChatUtilityController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RoomMembershipCache roomMembershipCache;
+
+    @Autowired
+    private ChatSideEffectPipeline chatSideEffectPipeline;
+
     /**
      * Lấy thông tin user hiện tại từ Security Context
      */
@@ -64,4 +73,22 @@ public class ChatUtilityController {
         response.put("timestamp", java.time.LocalDateTime.now().toString());
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Thống kê cache thành viên phòng (hit ratio, số phòng, eviction) - Chỉ Admin
+     */
+    @GetMapping("/membership-cache/stats")
+    public ResponseEntity<Map<String, Object>> getMembershipCacheStats() {
+        PermissionUtil.checkAdminPermission(getCurrentUser());
+        return ResponseEntity.ok(roomMembershipCache.getStats());
+    }
+
+    /**
+     * Thống kê pipeline side effect của chat (độ sâu hàng đợi, độ trễ, caller-runs) - Chỉ Admin
+     */
+    @GetMapping("/side-effects/stats")
+    public ResponseEntity<Map<String, Object>> getSideEffectStats() {
+        PermissionUtil.checkAdminPermission(getCurrentUser());
+        return ResponseEntity.ok(chatSideEffectPipeline.getStats());
+    }
 }
@@ -1,6 +1,7 @@
 package DoAn.BE.chat.controller;
 
 import DoAn.BE.chat.dto.MessDTO;
+import DoAn.BE.chat.dto.MessagePageDTO;
 import DoAn.BE.chat.dto.SendMessageRequest;
 import DoAn.BE.chat.entity.Message;
 import DoAn.BE.chat.service.MessageService;
@@ -10,8 +11,6 @@ import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
@@ -73,11 +72,15 @@ public class MessageController {
         return ResponseEntity.status(HttpStatus.CREATED).body(message);
     }
 
-    // Lấy danh sách tin nhắn trong phòng chat (có phân trang)
+    // Lấy danh sách tin nhắn trong phòng chat (keyset pagination)
+    // GET /api/chat/rooms/{roomId}/messages?size=50            -> trang mới nhất
+    // GET /api/chat/rooms/{roomId}/messages?before={prevCursor} -> tin cũ hơn (cuộn lên)
+    // GET /api/chat/rooms/{roomId}/messages?after={nextCursor}  -> tin mới hơn
     @GetMapping("/rooms/{roomId}/messages")
-    public ResponseEntity<Page<MessDTO>> getMessages(
+    public ResponseEntity<MessagePageDTO> getMessages(
             @PathVariable Long roomId,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "50") int size) {
         if (roomId == null) {
             throw new IllegalArgumentException("Room ID không được null");
@@ -86,11 +89,9 @@ public class MessageController {
         if (currentUser.getUserId() == null) {
             throw new IllegalStateException("User ID không hợp lệ");
         }
-        Pageable pageable = PageRequest.of(page, size);
-        List<MessDTO> messages = messageService.getMessagesByRoomId(roomId, currentUser.getUserId(), page, size);
-        // Convert to Page manually for now
-        Page<MessDTO> pageMessages = new PageImpl<>(messages, pageable, messages.size());
-        return ResponseEntity.ok(pageMessages);
+        MessagePageDTO messages = messageService.getMessagesByRoomId(roomId, currentUser.getUserId(),
+                before, after, size);
+        return ResponseEntity.ok(messages);
     }
 
     // Đánh dấu tin nhắn đã xem
@@ -144,16 +145,19 @@ public class MessageController {
         return ResponseEntity.ok(response);
     }
 
-    // Tìm kiếm tin nhắn trong phòng chat
+    // Tìm kiếm tin nhắn trong phòng chat (không phân biệt dấu, xếp hạng theo độ khớp)
     @GetMapping("/rooms/{roomId}/search")
     public ResponseEntity<List<MessDTO>> searchMessages(
             @PathVariable Long roomId,
             @RequestParam String keyword,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         User currentUser = getCurrentUser();
         Pageable pageable = PageRequest.of(page, size);
-        List<MessDTO> messages = messageService.searchMessages(roomId, keyword, currentUser.getUserId(), pageable);
+        List<MessDTO> messages = messageService.searchMessages(roomId, keyword, currentUser.getUserId(),
+                parseDate(startDate), parseDate(endDate), pageable);
         return ResponseEntity.ok(messages);
     }
 
@@ -161,12 +165,35 @@ public class MessageController {
     @GetMapping("/rooms/{roomId}/search/sender")
     public ResponseEntity<List<MessDTO>> searchMessagesBySender(
             @PathVariable Long roomId,
-            @RequestParam String senderKeyword) {
+            @RequestParam String senderKeyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        User currentUser = getCurrentUser();
+        Pageable pageable = PageRequest.of(page, size);
+        List<MessDTO> messages = messageService.searchMessagesBySender(roomId, senderKeyword,
+                currentUser.getUserId(), pageable);
+        return ResponseEntity.ok(messages);
+    }
+
+    // Tìm kiếm tin nhắn trong mọi phòng chat của user
+    @GetMapping("/search")
+    public ResponseEntity<List<MessDTO>> searchAllRooms(
+            @RequestParam String keyword,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
         User currentUser = getCurrentUser();
-        List<MessDTO> messages = messageService.searchMessagesBySender(roomId, senderKeyword, currentUser.getUserId());
+        Pageable pageable = PageRequest.of(page, size);
+        List<MessDTO> messages = messageService.searchAllRooms(keyword, currentUser.getUserId(),
+                parseDate(startDate), parseDate(endDate), pageable);
         return ResponseEntity.ok(messages);
     }
 
+    private static LocalDateTime parseDate(String value) {
+        return value == null || value.isBlank() ? null : LocalDateTime.parse(value);
+    }
+
     // Tìm kiếm tin nhắn theo khoảng thời gian
     @GetMapping("/rooms/{roomId}/search/date")
     public ResponseEntity<List<MessDTO>> searchMessagesByDateRange(
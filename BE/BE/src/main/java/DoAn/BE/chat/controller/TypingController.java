@@ -1,7 +1,7 @@
 package DoAn.BE.chat.controller;
 
-import DoAn.BE.chat.repository.ChatRoomMemberRepository;
-import DoAn.BE.chat.service.TypingIndicatorService;
+import DoAn.BE.chat.service.PresenceService;
+import DoAn.BE.chat.service.RoomMembershipCache;
 import DoAn.BE.common.exception.UnauthorizedException;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
@@ -22,13 +22,13 @@ import java.util.Map;
 public class TypingController {
 
     @Autowired
-    private TypingIndicatorService typingIndicatorService;
+    private PresenceService presenceService;
     
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
-    private ChatRoomMemberRepository chatRoomMemberRepository;
+    private RoomMembershipCache roomMembershipCache;
 
     /**
      * Lấy thông tin user hiện tại từ Security Context
@@ -56,7 +56,7 @@ public class TypingController {
         if (currentUser.getUserId() == null) {
             throw new IllegalStateException("User ID không hợp lệ");
         }
-        typingIndicatorService.startTyping(roomId, currentUser.getUserId());
+        presenceService.startTyping(roomId, currentUser.getUserId(), currentUser.getUsername());
         
         Map<String, String> response = new HashMap<>();
         response.put("message", "Started typing");
@@ -75,7 +75,7 @@ public class TypingController {
         if (currentUser.getUserId() == null) {
             throw new IllegalStateException("User ID không hợp lệ");
         }
-        typingIndicatorService.stopTyping(roomId, currentUser.getUserId());
+        presenceService.stopTyping(roomId, currentUser.getUserId());
         
         Map<String, String> response = new HashMap<>();
         response.put("message", "Stopped typing");
@@ -96,18 +96,18 @@ public class TypingController {
         }
         
         // Validate user có trong phòng không
-        boolean isMember = chatRoomMemberRepository.existsByChatRoom_RoomIdAndUser_UserId(roomId, currentUser.getUserId());
+        boolean isMember = roomMembershipCache.isMember(roomId, currentUser.getUserId());
         if (!isMember) {
             throw new UnauthorizedException("Bạn không có quyền xem thông tin phòng chat này");
         }
         
-        List<String> typingUsers = typingIndicatorService.getTypingUsers(roomId);
-        int typingCount = typingIndicatorService.getTypingUserCount(roomId);
+        List<String> typingUsers = presenceService.getTypingUsers(roomId);
+        int typingCount = presenceService.getTypingUserCount(roomId);
         
         Map<String, Object> response = new HashMap<>();
         response.put("typingUsers", typingUsers);
         response.put("typingCount", typingCount);
-        response.put("isCurrentUserTyping", typingIndicatorService.isUserTyping(roomId, currentUser.getUserId()));
+        response.put("isCurrentUserTyping", presenceService.isUserTyping(roomId, currentUser.getUserId()));
         
         return ResponseEntity.ok(response);
     }
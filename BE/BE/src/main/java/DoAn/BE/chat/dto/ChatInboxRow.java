@@ -0,0 +1,25 @@
+package DoAn.BE.chat.dto;
+
+import java.time.LocalDateTime;
+
+import DoAn.BE.chat.entity.ChatRoom;
+import DoAn.BE.chat.entity.Message;
+
+// 1 dòng inbox của user: cột projection của phòng + unread của membership (đọc bằng 1 query, không nạp entity)
+public record ChatInboxRow(
+        Long roomId,
+        String name,
+        ChatRoom.RoomType roomType,
+        String avatarUrl,
+        LocalDateTime createdAt,
+        Long projectId,
+        String projectName,
+        Integer memberCount,
+        Long lastMessageId,
+        String lastMessagePreview,
+        Message.MessageType lastMessageType,
+        Long lastMessageSenderId,
+        String lastMessageSenderName,
+        LocalDateTime lastMessageAt,
+        Integer unreadCount) {
+}
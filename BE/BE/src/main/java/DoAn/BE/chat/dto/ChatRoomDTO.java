@@ -7,7 +7,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import DoAn.BE.chat.entity.ChatRoom;
-import DoAn.BE.chat.entity.Message;
 import DoAn.BE.user.entity.User;
 
 @Data
@@ -25,7 +24,7 @@ public class ChatRoomDTO {
     private String projectName;
     private List<User> members;
     private Integer memberCount;
-    private Message lastMessage;
+    private MessDTO lastMessage;
     private LocalDateTime lastMessageAt;
     private Integer unreadCount;
 }
@@ -0,0 +1,21 @@
+package DoAn.BE.chat.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Một trang lịch sử tin nhắn (keyset pagination)
+// content luôn theo thứ tự thời gian tăng dần
+// prevCursor: truyền vào before= để lấy tin cũ hơn; nextCursor: truyền vào after= để lấy tin mới hơn
+// hasMore: còn tin theo chiều đang đọc (cũ hơn với trang mặc định/before, mới hơn với after)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageDTO {
+    private List<MessDTO> content;
+    private String prevCursor;
+    private String nextCursor;
+    private Boolean hasMore;
+    private Integer size;
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import lombok.*;
 
 import DoAn.BE.user.entity.User;
@@ -13,6 +14,7 @@ import DoAn.BE.project.entity.Project;
 
 // Entity phòng chat (hỗ trợ 3 loại: DIRECT 1-1, GROUP, PROJECT)
 @Entity
+@DynamicUpdate // Chỉ ghi cột thay đổi, tránh đè các cột projection được cập nhật bằng bulk UPDATE
 @Table(name = "chat_rooms")
 @Data
 @NoArgsConstructor
@@ -45,6 +47,30 @@ public class ChatRoom {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Projection cho danh sách phòng (inbox): cập nhật khi gửi/sửa/xóa tin nhắn và khi đổi thành viên
+    // để room list không phải đếm thành viên + tìm tin nhắn cuối cho từng phòng
+    @Column(name = "member_count")
+    private Integer memberCount;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_preview", length = 200, columnDefinition = "NVARCHAR(200)")
+    private String lastMessagePreview;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_message_type", length = 20)
+    private Message.MessageType lastMessageType;
+
+    @Column(name = "last_message_sender_id")
+    private Long lastMessageSenderId;
+
+    @Column(name = "last_message_sender_name", length = 50, columnDefinition = "NVARCHAR(50)")
+    private String lastMessageSenderName;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
     // Relationships
     @OneToMany(mappedBy = "chatRoom", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
@@ -1,13 +1,17 @@
 package DoAn.BE.chat.entity;
 
 import DoAn.BE.user.entity.User;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_room_members")
+@Table(name = "chat_room_members", indexes = {
+    // Inbox: phòng của user sắp theo hoạt động gần nhất
+    @Index(name = "idx_chat_room_members_user_activity", columnList = "user_id, last_activity_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,9 +37,31 @@ public class ChatRoomMember {
     @Column(name = "joined_at")
     private LocalDateTime joinedAt;
 
+    // Con trỏ đã đọc (tin nhắn mới nhất user đã xem trong phòng) + số chưa đọc cache sẵn
+    // Thay cho 1 dòng message_status / (tin nhắn x thành viên)
+    @JsonIgnore
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
+
+    @JsonIgnore
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+
+    @JsonIgnore
+    @Column(name = "unread_count")
+    private Integer unreadCount = 0;
+
+    // Thời điểm tin nhắn mới nhất của phòng (hoặc lúc tham gia), dùng để sắp inbox
+    @JsonIgnore
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
     @PrePersist
     protected void onCreate() {
         this.joinedAt = LocalDateTime.now();
+        if (this.lastActivityAt == null) {
+            this.lastActivityAt = this.joinedAt;
+        }
     }
 
     public enum MemberRole {
@@ -10,7 +10,10 @@ import DoAn.BE.storage.entity.File;
 
 // Entity tin nhắn chat (TEXT, FILE, IMAGE) với soft delete và reply support
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    // Keyset pagination lịch sử chat theo (sent_at, message_id) trong từng phòng
+    @Index(name = "idx_messages_room_sent", columnList = "room_id, sent_at, message_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +23,7 @@ public class Message {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long messageId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "room_id", nullable = false)  
     private ChatRoom chatRoom;
 
@@ -48,7 +51,7 @@ public class Message {
     @Column(name = "edited_at")
     private LocalDateTime editedAt;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reply_to_message_id")
     private Message replyToMessage;
 
@@ -0,0 +1,38 @@
+package DoAn.BE.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Inverted index tìm kiếm tin nhắn: 1 dòng / (từ đã bỏ dấu, tin nhắn, trường)
+// room_id, sent_at chép từ messages để lọc theo phòng/ngày ngay trên index, không join messages
+@Entity
+@Table(name = "message_search_terms", indexes = {
+    // Tra từ (khớp chính xác hoặc tiền tố) trong các phòng, lọc theo ngày
+    @Index(name = "idx_message_search_terms_term_room", columnList = "term, room_id, sent_at"),
+    // Xóa/ghi lại postings khi sửa, xóa tin nhắn
+    @Index(name = "idx_message_search_terms_message", columnList = "message_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchTerm {
+
+    @EmbeddedId
+    private MessageSearchTermId id;
+
+    @Column(name = "room_id", nullable = false)
+    private Long roomId;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    // Số lần từ xuất hiện trong trường
+    @Column(name = "tf", nullable = false)
+    private Integer tf;
+
+    public enum Field {
+        CONTENT, SENDER
+    }
+}
@@ -0,0 +1,29 @@
+package DoAn.BE.chat.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchTermId implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "term", length = 64)
+    private String term;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "field", length = 10)
+    private MessageSearchTerm.Field field;
+}
@@ -1,15 +1,72 @@
 package DoAn.BE.chat.repository;
 
+import DoAn.BE.chat.dto.ChatInboxRow;
 import DoAn.BE.chat.entity.ChatRoomMember;
 import DoAn.BE.chat.entity.ChatRoomMemberId;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ChatRoomMemberRepository extends JpaRepository<ChatRoomMember, ChatRoomMemberId> {
     List<ChatRoomMember> findByChatRoom_RoomId(Long roomId);
+
+    // Thành viên kèm user trong 1 query (tránh N+1 khi fan-out tin nhắn)
+    @Query("SELECT m FROM ChatRoomMember m JOIN FETCH m.user WHERE m.chatRoom.roomId = :roomId")
+    List<ChatRoomMember> findMembersWithUser(@Param("roomId") Long roomId);
+
+    // Chỉ userId của thành viên (nạp RoomMembershipCache)
+    @Query("SELECT m.id.userId FROM ChatRoomMember m WHERE m.id.roomId = :roomId")
+    List<Long> findUserIdsByRoomId(@Param("roomId") Long roomId);
+
+    // Tin nhắn mới: dời last_activity_at của cả phòng, +1 chưa đọc cho mọi thành viên trừ người gửi (1 câu UPDATE)
+    @Modifying
+    @Query("UPDATE ChatRoomMember m SET m.lastActivityAt = :sentAt, " +
+           "m.unreadCount = CASE WHEN m.id.userId = :senderId THEN COALESCE(m.unreadCount, 0) " +
+           "ELSE COALESCE(m.unreadCount, 0) + 1 END " +
+           "WHERE m.id.roomId = :roomId")
+    int recordNewMessage(@Param("roomId") Long roomId, @Param("senderId") Long senderId,
+                         @Param("sentAt") LocalDateTime sentAt);
+
+    // Dời con trỏ đã đọc tới (sentAt, messageId); chỉ tiến, không lùi.
+    // unreadCount đếm lại phần sau con trỏ (thường rất ít, đi theo index room_id, sent_at, message_id)
+    @Modifying
+    @Query("UPDATE ChatRoomMember m SET m.lastReadMessageId = :messageId, m.lastReadAt = :sentAt, " +
+           "m.unreadCount = (SELECT COUNT(msg) FROM Message msg WHERE msg.chatRoom.roomId = :roomId " +
+           "AND msg.sender.userId <> :userId AND msg.isDeleted = false " +
+           "AND (msg.sentAt > :sentAt OR (msg.sentAt = :sentAt AND msg.messageId > :messageId))) " +
+           "WHERE m.id.roomId = :roomId AND m.id.userId = :userId " +
+           "AND (m.lastReadAt IS NULL OR m.lastReadAt < :sentAt " +
+           "OR (m.lastReadAt = :sentAt AND m.lastReadMessageId < :messageId))")
+    int advanceReadPointer(@Param("roomId") Long roomId, @Param("userId") Long userId,
+                           @Param("messageId") Long messageId, @Param("sentAt") LocalDateTime sentAt);
+
+    // Xóa tin nhắn: -1 chưa đọc cho thành viên khác người gửi mà con trỏ còn trước tin nhắn (chưa đọc tới nó)
+    @Modifying
+    @Query("UPDATE ChatRoomMember m SET m.unreadCount = m.unreadCount - 1 " +
+           "WHERE m.id.roomId = :roomId AND m.id.userId <> :senderId AND m.unreadCount > 0 " +
+           "AND (m.lastReadAt IS NULL OR m.lastReadAt < :sentAt " +
+           "OR (m.lastReadAt = :sentAt AND m.lastReadMessageId < :messageId))")
+    int recordMessageDeleted(@Param("roomId") Long roomId, @Param("senderId") Long senderId,
+                             @Param("messageId") Long messageId, @Param("sentAt") LocalDateTime sentAt);
+
+    // Inbox của user, sắp theo hoạt động gần nhất (index user_id, last_activity_at)
+    @Query("SELECT new DoAn.BE.chat.dto.ChatInboxRow(r.roomId, r.name, r.type, r.avatarUrl, r.createdAt, " +
+           "p.projectId, p.name, r.memberCount, r.lastMessageId, r.lastMessagePreview, r.lastMessageType, " +
+           "r.lastMessageSenderId, r.lastMessageSenderName, r.lastMessageAt, m.unreadCount) " +
+           "FROM ChatRoomMember m JOIN m.chatRoom r LEFT JOIN r.project p " +
+           "WHERE m.id.userId = :userId " +
+           "ORDER BY m.lastActivityAt DESC, m.id.roomId DESC")
+    List<ChatInboxRow> findInbox(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT COALESCE(m.unreadCount, 0) FROM ChatRoomMember m WHERE m.id.roomId = :roomId AND m.id.userId = :userId")
+    Optional<Integer> findUnreadCount(@Param("roomId") Long roomId, @Param("userId") Long userId);
     List<ChatRoomMember> findByUser_UserId(Long userId);
     Long countByChatRoom_RoomId(Long roomId);
     boolean existsByChatRoom_RoomIdAndUser_UserId(Long roomId, Long userId);
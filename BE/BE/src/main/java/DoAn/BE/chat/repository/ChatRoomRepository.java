@@ -1,10 +1,13 @@
 package DoAn.BE.chat.repository;
 
 import DoAn.BE.chat.entity.ChatRoom;
+import DoAn.BE.chat.entity.Message;
 import DoAn.BE.project.entity.Project;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -31,6 +34,29 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
     List<ChatRoom> findChatRoomsByUserId(@Param("userId") Long userId);
 
     List<ChatRoom> findByType(ChatRoom.RoomType type);
+
+    // Inbox projection: ghi tin nhắn cuối của phòng, chỉ tiến theo (sentAt, messageId)
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.lastMessageId = :messageId, r.lastMessagePreview = :preview, " +
+           "r.lastMessageType = :messageType, r.lastMessageSenderId = :senderId, " +
+           "r.lastMessageSenderName = :senderName, r.lastMessageAt = :sentAt " +
+           "WHERE r.roomId = :roomId AND (r.lastMessageAt IS NULL OR r.lastMessageAt < :sentAt " +
+           "OR (r.lastMessageAt = :sentAt AND r.lastMessageId < :messageId))")
+    int updateLastMessage(@Param("roomId") Long roomId,
+                          @Param("messageId") Long messageId,
+                          @Param("preview") String preview,
+                          @Param("messageType") Message.MessageType messageType,
+                          @Param("senderId") Long senderId,
+                          @Param("senderName") String senderName,
+                          @Param("sentAt") LocalDateTime sentAt);
+
+    // Inbox projection: sửa/xóa tin nhắn chỉ ảnh hưởng preview nếu đó là tin nhắn cuối
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.lastMessagePreview = :preview " +
+           "WHERE r.roomId = :roomId AND r.lastMessageId = :messageId")
+    int updateLastMessagePreview(@Param("roomId") Long roomId,
+                                 @Param("messageId") Long messageId,
+                                 @Param("preview") String preview);
 }
 
 
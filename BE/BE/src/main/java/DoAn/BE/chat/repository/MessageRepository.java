@@ -1,8 +1,10 @@
 package DoAn.BE.chat.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,6 +16,35 @@ import DoAn.BE.chat.entity.Message;
 public interface MessageRepository extends JpaRepository<Message, Long> {
        List<Message> findByChatRoom_RoomIdOrderBySentAtAsc(Long roomId);
 
+       // ===== Keyset pagination theo (sentAt, messageId) - dùng index idx_messages_room_sent =====
+       // Fetch-join sender + file để convert sang DTO không phát sinh query theo từng tin nhắn
+
+       // Trang mới nhất
+       @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sender LEFT JOIN FETCH m.file " +
+                     "WHERE m.chatRoom.roomId = :roomId " +
+                     "ORDER BY m.sentAt DESC, m.messageId DESC")
+       List<Message> findLatestPage(@Param("roomId") Long roomId, Pageable pageable);
+
+       // Các tin nhắn cũ hơn cursor
+       @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sender LEFT JOIN FETCH m.file " +
+                     "WHERE m.chatRoom.roomId = :roomId " +
+                     "AND (m.sentAt < :sentAt OR (m.sentAt = :sentAt AND m.messageId < :messageId)) " +
+                     "ORDER BY m.sentAt DESC, m.messageId DESC")
+       List<Message> findPageBefore(@Param("roomId") Long roomId,
+                     @Param("sentAt") LocalDateTime sentAt,
+                     @Param("messageId") Long messageId,
+                     Pageable pageable);
+
+       // Các tin nhắn mới hơn cursor
+       @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sender LEFT JOIN FETCH m.file " +
+                     "WHERE m.chatRoom.roomId = :roomId " +
+                     "AND (m.sentAt > :sentAt OR (m.sentAt = :sentAt AND m.messageId > :messageId)) " +
+                     "ORDER BY m.sentAt ASC, m.messageId ASC")
+       List<Message> findPageAfter(@Param("roomId") Long roomId,
+                     @Param("sentAt") LocalDateTime sentAt,
+                     @Param("messageId") Long messageId,
+                     Pageable pageable);
+
        // Get the last message in a room
        Message findTopByChatRoom_RoomIdOrderBySentAtDesc(Long roomId);
 
@@ -27,17 +58,10 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
                      @Param("userId") Long userId,
                      @Param("lastReadAt") LocalDateTime lastReadAt);
 
-       // Search messages by content
-       @Query("SELECT m FROM Message m WHERE m.chatRoom.roomId = :roomId AND " +
-                     "LOWER(m.content) LIKE LOWER(CONCAT('%', :keyword, '%')) AND " +
-                     "m.isDeleted = false ORDER BY m.sentAt DESC")
-       List<Message> searchMessagesByContent(@Param("roomId") Long roomId, @Param("keyword") String keyword);
-
-       // Search messages by sender
-       @Query("SELECT m FROM Message m WHERE m.chatRoom.roomId = :roomId AND " +
-                     "LOWER(m.sender.username) LIKE LOWER(CONCAT('%', :keyword, '%')) AND " +
-                     "m.isDeleted = false ORDER BY m.sentAt DESC")
-       List<Message> searchMessagesBySender(@Param("roomId") Long roomId, @Param("keyword") String keyword);
+       // Nạp kết quả tìm kiếm (MessageSearchService trả id đã xếp hạng)
+       @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sender LEFT JOIN FETCH m.file " +
+                     "WHERE m.messageId IN :messageIds")
+       List<Message> findAllWithSenderByIdIn(@Param("messageIds") Collection<Long> messageIds);
 
        // Search messages by date range
        @Query("SELECT m FROM Message m WHERE m.chatRoom.roomId = :roomId AND " +
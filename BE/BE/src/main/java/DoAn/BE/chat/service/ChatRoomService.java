@@ -6,9 +6,11 @@ import DoAn.BE.chat.entity.ChatRoom;
 import DoAn.BE.chat.entity.ChatRoomMember;
 import DoAn.BE.chat.entity.ChatRoomMemberId;
 import DoAn.BE.chat.entity.Message;
+import DoAn.BE.chat.dto.ChatInboxRow;
+import DoAn.BE.chat.dto.MessDTO;
 import DoAn.BE.chat.repository.ChatRoomMemberRepository;
 import DoAn.BE.chat.repository.ChatRoomRepository;
-import DoAn.BE.chat.repository.MessageRepository;
+import DoAn.BE.user.dto.UserDTO;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
 import DoAn.BE.project.entity.Project;
@@ -23,6 +25,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,13 +38,15 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatRoomService {
 
+    private static final int MAX_INBOX_PAGE_SIZE = 100;
+
     private final ChatRoomRepository chatRoomRepository;
     private final ChatRoomMemberRepository chatRoomMemberRepository;
     private final UserRepository userRepository;
     private final WebSocketNotificationService webSocketNotificationService;
     private final ChatNotificationService chatNotificationService;
     private final ProjectRepository projectRepository;
-    private final MessageRepository messageRepository;
+    private final InboxProjectionService inboxProjectionService;
 
     public ChatRoomService(ChatRoomRepository chatRoomRepository,
             ChatRoomMemberRepository chatRoomMemberRepository,
@@ -48,14 +54,14 @@ public class ChatRoomService {
             WebSocketNotificationService webSocketNotificationService,
             ChatNotificationService chatNotificationService,
             ProjectRepository projectRepository,
-            MessageRepository messageRepository) {
+            InboxProjectionService inboxProjectionService) {
         this.chatRoomRepository = chatRoomRepository;
         this.chatRoomMemberRepository = chatRoomMemberRepository;
         this.userRepository = userRepository;
         this.webSocketNotificationService = webSocketNotificationService;
         this.chatNotificationService = chatNotificationService;
         this.projectRepository = projectRepository;
-        this.messageRepository = messageRepository;
+        this.inboxProjectionService = inboxProjectionService;
     }
 
     // Tạo phòng chat mới
@@ -119,6 +125,7 @@ public class ChatRoomService {
                     }
                 }
             }
+            inboxProjectionService.onMembershipChanged(chatRoom);
 
             return convertToChatRoomDTO(chatRoom);
 
@@ -135,13 +142,23 @@ public class ChatRoomService {
 
     // Lấy danh sách phòng chat của user
     public List<ChatRoomDTO> getChatRoomsByUserId(User currentUser) {
+        return getChatRoomsByUserId(currentUser, null, null);
+    }
+
+    // Inbox: 1 query trên projection, sắp theo hoạt động gần nhất; size == null -> lấy hết
+    public List<ChatRoomDTO> getChatRoomsByUserId(User currentUser, Integer page, Integer size) {
         if (!PermissionUtil.canUseChat(currentUser)) {
             throw new ForbiddenException("Admin không có quyền sử dụng chat");
         }
 
-        List<ChatRoomMember> memberships = chatRoomMemberRepository.findByUser_UserId(currentUser.getUserId());
-        return memberships.stream()
-                .map(membership -> convertToChatRoomDTO(membership.getChatRoom()))
+        Pageable pageable = Pageable.unpaged();
+        if (size != null) {
+            int pageSize = Math.min(Math.max(size, 1), MAX_INBOX_PAGE_SIZE);
+            pageable = PageRequest.of(page != null ? Math.max(page, 0) : 0, pageSize);
+        }
+
+        return chatRoomMemberRepository.findInbox(currentUser.getUserId(), pageable).stream()
+                .map(this::convertToChatRoomDTO)
                 .collect(Collectors.toList());
     }
 
@@ -206,6 +223,7 @@ public class ChatRoomService {
         member2.setRole(ChatRoomMember.MemberRole.MEMBER);
         member2.setJoinedAt(LocalDateTime.now());
         chatRoomMemberRepository.save(member2);
+        inboxProjectionService.onMembershipChanged(directRoom);
 
         return convertToChatRoomDTO(directRoom);
     }
@@ -243,6 +261,7 @@ public class ChatRoomService {
         member.setRole(ChatRoomMember.MemberRole.MEMBER);
         member.setJoinedAt(LocalDateTime.now());
         chatRoomMemberRepository.save(member);
+        inboxProjectionService.onMembershipChanged(chatRoom);
 
         webSocketNotificationService.notifyUserJoined(roomId, user);
 
@@ -279,6 +298,7 @@ public class ChatRoomService {
 
         User removedUser = member.getUser();
         chatRoomMemberRepository.delete(member);
+        inboxProjectionService.onMembershipChanged(chatRoom);
 
         webSocketNotificationService.notifyUserLeft(roomId, removedUser);
 
@@ -299,7 +319,7 @@ public class ChatRoomService {
         if (roomId == null || userId == null) {
             throw new BadRequestException("Room ID và User ID không được để trống");
         }
-        chatRoomRepository.findById(roomId)
+        ChatRoom chatRoom = chatRoomRepository.findById(roomId)
                 .orElseThrow(() -> new EntityNotFoundException("Phòng chat với ID " + roomId + " không tồn tại"));
 
         ChatRoomMember member = chatRoomMemberRepository.findByChatRoom_RoomIdAndUser_UserId(roomId, userId)
@@ -307,6 +327,7 @@ public class ChatRoomService {
 
         User leavingUser = member.getUser();
         chatRoomMemberRepository.delete(member);
+        inboxProjectionService.onMembershipChanged(chatRoom);
 
         webSocketNotificationService.notifyUserLeft(roomId, leavingUser);
 
@@ -442,16 +463,59 @@ public class ChatRoomService {
             dto.setProjectName(chatRoom.getProject().getName());
         }
 
-        long memberCount = chatRoomMemberRepository.countByChatRoom_RoomId(chatRoom.getRoomId());
-        dto.setMemberCount((int) memberCount);
-
-        // Fetch and set last message
-        Message lastMessage = messageRepository.findTopByChatRoom_RoomIdOrderBySentAtDesc(chatRoom.getRoomId());
-        if (lastMessage != null) {
-            dto.setLastMessage(lastMessage);
-            dto.setLastMessageAt(lastMessage.getSentAt());
+        Integer memberCount = chatRoom.getMemberCount();
+        if (memberCount == null) {
+            // Phòng chưa có projection (tạo ngoài ChatRoomService), đếm trực tiếp
+            memberCount = chatRoomMemberRepository.countByChatRoom_RoomId(chatRoom.getRoomId()).intValue();
         }
+        dto.setMemberCount(memberCount);
+
+        dto.setLastMessage(toLastMessageDTO(chatRoom.getRoomId(), chatRoom.getLastMessageId(),
+                chatRoom.getLastMessagePreview(), chatRoom.getLastMessageType(), chatRoom.getLastMessageSenderId(),
+                chatRoom.getLastMessageSenderName(), chatRoom.getLastMessageAt()));
+        dto.setLastMessageAt(chatRoom.getLastMessageAt());
 
         return dto;
     }
-}
\ No newline at end of file
+
+    private ChatRoomDTO convertToChatRoomDTO(ChatInboxRow row) {
+        ChatRoomDTO dto = new ChatRoomDTO();
+        dto.setRoomId(row.roomId());
+        dto.setName(row.name());
+        dto.setRoomType(row.roomType());
+        dto.setAvatarUrl(row.avatarUrl());
+        dto.setCreatedAt(row.createdAt());
+        dto.setProjectID(row.projectId());
+        dto.setProjectName(row.projectName());
+        dto.setMemberCount(row.memberCount());
+        dto.setLastMessage(toLastMessageDTO(row.roomId(), row.lastMessageId(), row.lastMessagePreview(),
+                row.lastMessageType(), row.lastMessageSenderId(), row.lastMessageSenderName(), row.lastMessageAt()));
+        dto.setLastMessageAt(row.lastMessageAt());
+        dto.setUnreadCount(row.unreadCount() != null ? row.unreadCount() : 0);
+        return dto;
+    }
+
+    // Tin nhắn cuối dựng từ projection (preview, không nạp entity Message)
+    private MessDTO toLastMessageDTO(Long roomId, Long messageId, String preview, Message.MessageType type,
+            Long senderId, String senderName, LocalDateTime sentAt) {
+        if (messageId == null) {
+            return null;
+        }
+        MessDTO last = new MessDTO();
+        last.setMessageId(messageId);
+        last.setRoomId(roomId);
+        last.setContent(preview);
+        if (type != null) {
+            last.setMessageType(type);
+        }
+        last.setSentAt(sentAt);
+        last.setIsDeleted(InboxProjectionService.DELETED_PREVIEW.equals(preview));
+        if (senderId != null) {
+            UserDTO sender = new UserDTO();
+            sender.setUserId(senderId);
+            sender.setUsername(senderName);
+            last.setSender(sender);
+        }
+        return last;
+    }
+}
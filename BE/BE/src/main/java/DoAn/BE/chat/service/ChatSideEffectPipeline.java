@@ -0,0 +1,254 @@
+package DoAn.BE.chat.service;
+
+import DoAn.BE.notification.service.ChatNotificationService;
+import DoAn.BE.notification.service.NotificationService;
+import DoAn.BE.notification.service.NotificationService.NotificationDraft;
+import DoAn.BE.user.entity.User;
+import DoAn.BE.user.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Side effect của tin nhắn chat (notification tin nhắn mới, reply, mention) chạy ngoài request
+ * - sendMessage chỉ lưu tin nhắn + broadcast, sau commit publish MessageSentEvent vào hàng đợi giới hạn
+ * - Worker (virtual thread) gom tối đa batch-size event: 1 query user cho mọi mention, 1 batch insert notification
+ * - Hàng đợi đầy quá offer-timeout-ms: xử lý luôn trên thread gọi (backpressure, không bỏ event)
+ * - Lô lỗi thì rollback cả lô rồi thử lại từng event trong transaction riêng
+ */
+@Service
+@Slf4j
+public class ChatSideEffectPipeline {
+
+    // @username; bỏ @TASK-123 / @ISSUE-456 (possessive + lookahead để không khớp lùi thành "TAS")
+    private static final Pattern MENTION_PATTERN = Pattern.compile("@(\\w++)(?!-)");
+    private static final Pattern TASK_MENTION_PATTERN = Pattern.compile("@(TASK|ISSUE)-(\\w+)");
+
+    public record MessageSentEvent(Long messageId, Long roomId, Long senderId, String senderName, String content,
+            Long repliedUserId, List<Long> recipientIds, long publishedAtNanos) {
+    }
+
+    private final ChatNotificationService chatNotificationService;
+    private final NotificationService notificationService;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<MessageSentEvent> queue;
+    private final int capacity;
+    private final int workerCount;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+    private volatile long lastLagMillis;
+
+    public ChatSideEffectPipeline(ChatNotificationService chatNotificationService,
+            NotificationService notificationService,
+            UserRepository userRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${chat.side-effects.queue-capacity:10000}") int capacity,
+            @Value("${chat.side-effects.workers:2}") int workerCount,
+            @Value("${chat.side-effects.batch-size:200}") int batchSize,
+            @Value("${chat.side-effects.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.chatNotificationService = chatNotificationService;
+        this.notificationService = notificationService;
+        this.userRepository = userRepository;
+        // REQUIRES_NEW: publish() chạy trong afterCommit của request, không được nhập vào transaction đã commit
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("chat-side-effects-" + i).start(this::runWorker));
+        }
+    }
+
+    // Dừng worker rồi xử lý nốt event còn trong hàng đợi
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        List<MessageSentEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            process(remaining);
+        }
+    }
+
+    public void publish(MessageSentEvent event) {
+        published.increment();
+        try {
+            if (queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Backpressure: worker không theo kịp -> thread gọi tự xử lý
+        callerRuns.increment();
+        process(List.of(event));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", capacity);
+        stats.put("workers", workerCount);
+        stats.put("published", published.sum());
+        stats.put("processed", processed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("callerRuns", callerRuns.sum());
+        stats.put("failed", failed.sum());
+        stats.put("lastLagMs", lastLagMillis);
+        stats.put("maxLagMs", maxLagMillis.get());
+        return stats;
+    }
+
+    private void runWorker() {
+        List<MessageSentEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<MessageSentEvent> events) {
+        long now = System.nanoTime();
+        for (MessageSentEvent event : events) {
+            long lag = TimeUnit.NANOSECONDS.toMillis(now - event.publishedAtNanos());
+            lastLagMillis = lag;
+            maxLagMillis.accumulate(lag);
+        }
+
+        try {
+            persist(events);
+            processed.add(events.size());
+        } catch (RuntimeException e) {
+            if (events.size() == 1) {
+                failed.increment();
+                log.error("Lỗi xử lý side effect của tin nhắn {}: {}", events.get(0).messageId(), e.getMessage(), e);
+            } else {
+                // Cả lô đã rollback: thử lại từng tin nhắn để 1 event lỗi không làm mất notification của cả lô
+                log.warn("Lỗi xử lý lô {} tin nhắn, thử lại từng tin nhắn: {}", events.size(), e.getMessage());
+                for (MessageSentEvent event : events) {
+                    try {
+                        persist(List.of(event));
+                        processed.increment();
+                    } catch (RuntimeException ex) {
+                        failed.increment();
+                        log.error("Lỗi xử lý side effect của tin nhắn {}: {}", event.messageId(), ex.getMessage(), ex);
+                    }
+                }
+            }
+        }
+        batches.increment();
+    }
+
+    // Mỗi lần gọi là 1 transaction riêng (REQUIRES_NEW)
+    private void persist(List<MessageSentEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> notificationService.createNotificationsBatch(
+                buildNotifications(events)));
+    }
+
+    private List<NotificationDraft> buildNotifications(List<MessageSentEvent> events) {
+        // Mọi @username trong lô -> 1 query
+        Set<String> mentionedUsernames = new HashSet<>();
+        for (MessageSentEvent event : events) {
+            mentionedUsernames.addAll(mentions(event));
+        }
+        Map<String, Long> userIdByUsername = new HashMap<>();
+        if (!mentionedUsernames.isEmpty()) {
+            for (User user : userRepository.findByUsernameIn(mentionedUsernames)) {
+                userIdByUsername.put(user.getUsername(), user.getUserId());
+            }
+        }
+
+        List<NotificationDraft> drafts = new ArrayList<>();
+        for (MessageSentEvent event : events) {
+            if (event.repliedUserId() != null) {
+                drafts.add(chatNotificationService.messageRepliedDraft(event.repliedUserId(), event.senderName(),
+                        event.content(), event.roomId()));
+            }
+
+            List<Long> notifyUserIds = event.recipientIds().stream()
+                    .filter(userId -> !userId.equals(event.repliedUserId()))
+                    .toList();
+            drafts.addAll(chatNotificationService.newMessageDrafts(notifyUserIds, event.senderName(),
+                    event.content(), event.roomId()));
+
+            // Chỉ nhắc người đang trong phòng (recipientIds = thành viên trừ người gửi)
+            Set<Long> mentioned = new HashSet<>();
+            for (String username : mentions(event)) {
+                Long userId = userIdByUsername.get(username);
+                if (userId != null && event.recipientIds().contains(userId) && mentioned.add(userId)) {
+                    drafts.add(chatNotificationService.mentionDraft(userId, event.senderName(), event.content(),
+                            event.roomId()));
+                }
+            }
+
+            Matcher taskMatcher = TASK_MENTION_PATTERN.matcher(event.content() != null ? event.content() : "");
+            while (taskMatcher.find()) {
+                log.debug("🔗 Detected {} mention: {}-{} in message {}", taskMatcher.group(1), taskMatcher.group(1),
+                        taskMatcher.group(2), event.messageId());
+            }
+        }
+        return drafts;
+    }
+
+    private static Set<String> mentions(MessageSentEvent event) {
+        if (event.content() == null || event.content().isEmpty()) {
+            return Set.of();
+        }
+        Set<String> usernames = new HashSet<>();
+        Matcher matcher = MENTION_PATTERN.matcher(event.content());
+        while (matcher.find()) {
+            usernames.add(matcher.group(1));
+        }
+        return usernames;
+    }
+}
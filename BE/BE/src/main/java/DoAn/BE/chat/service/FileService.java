@@ -3,23 +3,24 @@ package DoAn.BE.chat.service;
 import DoAn.BE.chat.dto.MessDTO;
 import DoAn.BE.chat.dto.SendMessageRequest;
 import DoAn.BE.chat.entity.ChatRoom;
-import DoAn.BE.chat.entity.ChatRoomMember;
 import DoAn.BE.chat.entity.Message;
-import DoAn.BE.chat.entity.MessageStatus;
 import DoAn.BE.chat.repository.ChatRoomRepository;
 import DoAn.BE.chat.repository.ChatRoomMemberRepository;
 import DoAn.BE.chat.repository.MessageRepository;
-import DoAn.BE.chat.repository.MessageStatusRepository;
 import DoAn.BE.storage.repository.FileRepository;
+import DoAn.BE.storage.service.BlobStore;
+import DoAn.BE.storage.service.FileStorageService;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.dto.UserDTO;
 import DoAn.BE.user.repository.UserRepository;
 import DoAn.BE.common.exception.BadRequestException;
 import DoAn.BE.common.exception.EntityNotFoundException;
+import DoAn.BE.common.exception.FileStorageException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -32,21 +33,30 @@ public class FileService {
     private final ChatRoomRepository chatRoomRepository;
     private final ChatRoomMemberRepository chatRoomMemberRepository;
     private final MessageRepository messageRepository;
-    private final MessageStatusRepository messageStatusRepository;
     private final UserRepository userRepository;
+    private final InboxProjectionService inboxProjectionService;
+    private final MessageSearchService messageSearchService;
+    private final BlobStore blobStore;
+    private final FileStorageService fileStorageService;
 
     public FileService(FileRepository fileRepository,
             ChatRoomRepository chatRoomRepository,
             ChatRoomMemberRepository chatRoomMemberRepository,
             MessageRepository messageRepository,
-            MessageStatusRepository messageStatusRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            InboxProjectionService inboxProjectionService,
+            MessageSearchService messageSearchService,
+            BlobStore blobStore,
+            FileStorageService fileStorageService) {
         this.fileRepository = fileRepository;
         this.chatRoomRepository = chatRoomRepository;
         this.chatRoomMemberRepository = chatRoomMemberRepository;
         this.messageRepository = messageRepository;
-        this.messageStatusRepository = messageStatusRepository;
         this.userRepository = userRepository;
+        this.inboxProjectionService = inboxProjectionService;
+        this.messageSearchService = messageSearchService;
+        this.blobStore = blobStore;
+        this.fileStorageService = fileStorageService;
     }
 
     // Gửi tin nhắn có file đính kèm
@@ -69,6 +79,10 @@ public class FileService {
 
         DoAn.BE.storage.entity.File file = fileRepository.findById(request.getFileId())
                 .orElseThrow(() -> new EntityNotFoundException("File không tồn tại"));
+        // Thành viên phòng được tải file đính kèm -> chỉ cho gửi file của chính mình
+        if (!file.getOwner().getUserId().equals(senderId) || file.getIsDeleted()) {
+            throw new BadRequestException("Bạn không có quyền gửi file này");
+        }
 
         Message message = new Message();
         message.setChatRoom(chatRoom);
@@ -81,17 +95,8 @@ public class FileService {
 
         message = messageRepository.save(message);
 
-        List<ChatRoomMember> members = chatRoomMemberRepository.findByChatRoom_RoomId(request.getRoomId());
-        for (ChatRoomMember member : members) {
-            if (member.getUser() != null && !member.getUser().getUserId().equals(senderId)) {
-                MessageStatus status = new MessageStatus();
-                status.setMessage(message);
-                status.setUser(member.getUser());
-                status.setStatus(MessageStatus.MessageStatusType.DELIVERED);
-                status.setTimestamp(LocalDateTime.now());
-                messageStatusRepository.save(status);
-            }
-        }
+        inboxProjectionService.onMessageSent(message);
+        messageSearchService.index(message);
 
         return convertToMessageDTO(message);
     }
@@ -111,21 +116,15 @@ public class FileService {
             throw new BadRequestException("Loại file không được hỗ trợ");
         }
 
-        DoAn.BE.storage.entity.File fileEntity = new DoAn.BE.storage.entity.File();
-        fileEntity.setOriginalFilename(file.getOriginalFilename());
-        fileEntity.setFilename(file.getOriginalFilename());
-        fileEntity.setFileSize(file.getSize());
-        fileEntity.setMimeType(contentType);
-        // NOTE: Path tạm thời - cần tích hợp với FileStorageService để lưu file thực tế
-        fileEntity.setFilePath("/uploads/" + file.getOriginalFilename());
-        fileEntity = fileRepository.save(fileEntity);
+        DoAn.BE.storage.entity.File fileEntity = storeFile(file, file.getOriginalFilename(), contentType,
+                10 * 1024 * 1024, senderId);
 
         SendMessageRequest request = new SendMessageRequest();
         request.setRoomId(roomId);
         request.setContent(content);
         request.setFileId(fileEntity.getFileId());
         request.setFileName(fileEntity.getOriginalFilename());
-        request.setFileUrl(fileEntity.getFilePath());
+        request.setFileUrl(FileStorageService.downloadUrl(fileEntity.getFileId()));
         request.setFileSize(fileEntity.getFileSize());
         request.setFileType(fileEntity.getMimeType());
 
@@ -152,21 +151,15 @@ public class FileService {
             throw new BadRequestException("Định dạng ảnh không được hỗ trợ. Chỉ hỗ trợ: JPG, JPEG, PNG, GIF, WEBP");
         }
 
-        DoAn.BE.storage.entity.File imageEntity = new DoAn.BE.storage.entity.File();
-        imageEntity.setOriginalFilename(fileName);
-        imageEntity.setFilename(fileName);
-        imageEntity.setFileSize(imageFile.getSize());
-        imageEntity.setMimeType(contentType);
-        // NOTE: Path tạm thời - cần tích hợp với FileStorageService để lưu ảnh thực tế
-        imageEntity.setFilePath("/uploads/images/" + fileName);
-        imageEntity = fileRepository.save(imageEntity);
+        DoAn.BE.storage.entity.File imageEntity = storeFile(imageFile, fileName, contentType, 5 * 1024 * 1024,
+                senderId);
 
         SendMessageRequest request = new SendMessageRequest();
         request.setRoomId(roomId);
         request.setContent(caption);
         request.setFileId(imageEntity.getFileId());
         request.setFileName(imageEntity.getOriginalFilename());
-        request.setFileUrl(imageEntity.getFilePath());
+        request.setFileUrl(FileStorageService.downloadUrl(imageEntity.getFileId()));
         request.setFileSize(imageEntity.getFileSize());
         request.setFileType(imageEntity.getMimeType());
         request.setMessageType(Message.MessageType.IMAGE);
@@ -174,6 +167,32 @@ public class FileService {
         return sendMessageWithFile(request, senderId);
     }
 
+    // Lưu nội dung vào kho blob (file đã gửi ở phòng/thư mục khác thì dùng lại, không ghi thêm)
+    private DoAn.BE.storage.entity.File storeFile(MultipartFile file, String fileName, String contentType,
+            long maxBytes, Long senderId) {
+        User owner = userRepository.findById(senderId)
+                .orElseThrow(() -> new EntityNotFoundException("Người gửi không tồn tại"));
+        // File chat thuộc drive của người gửi (nằm trong danh sách file cá nhân) -> tính vào quota
+        fileStorageService.checkUploadAllowed(senderId, null, file.getSize());
+
+        BlobStore.Blob blob;
+        try {
+            blob = blobStore.store(file.getInputStream(), fileName, maxBytes);
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể đọc file: " + fileName, ex);
+        }
+
+        DoAn.BE.storage.entity.File fileEntity = new DoAn.BE.storage.entity.File();
+        fileEntity.setOriginalFilename(fileName);
+        fileEntity.setFilename(blob.path().getFileName().toString());
+        fileEntity.setFileSize(blob.size());
+        fileEntity.setSha256(blob.sha256());
+        fileEntity.setMimeType(contentType);
+        fileEntity.setFilePath(blob.path().toString());
+        fileEntity.setOwner(owner);
+        return fileRepository.save(fileEntity);
+    }
+
     // Lấy danh sách file trong phòng chat
     public List<MessDTO> getFilesByRoomId(Long roomId, Long userId) {
         chatRoomRepository.findById(roomId)
@@ -246,7 +265,9 @@ public class FileService {
         dto.setMessageType(message.getMessageType());
         dto.setFileId(message.getFile() != null ? message.getFile().getFileId() : null);
         dto.setFileName(message.getFile() != null ? message.getFile().getOriginalFilename() : null);
-        dto.setFileUrl(message.getFile() != null ? message.getFile().getFilePath() : null);
+        dto.setFileUrl(message.getFile() != null
+                ? FileStorageService.downloadUrl(message.getFile().getFileId())
+                : null);
         dto.setSentAt(message.getSentAt());
         dto.setIsDeleted(message.getIsDeleted());
         dto.setEditedAt(message.getEditedAt());
@@ -0,0 +1,155 @@
+package DoAn.BE.chat.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// PresenceStore trong bộ nhớ (mặc định): chỉ đúng khi chạy 1 node, hoặc làm fake cho shared store khi dev/test
+@Component
+@ConditionalOnProperty(name = "presence.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPresenceStore implements PresenceStore {
+
+    // Trạng thái online của 1 user; sửa trong compute() của ConcurrentHashMap nên không cần lock riêng
+    private static final class Presence {
+        long lastHeartbeat;
+        final Set<String> sessions = new HashSet<>();
+    }
+
+    private static final class Typing {
+        final String username;
+        final long lastTyping;
+
+        Typing(String username, long lastTyping) {
+            this.username = username;
+            this.lastTyping = lastTyping;
+        }
+    }
+
+    private final Map<Long, Presence> online = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, Typing>> typing = new ConcurrentHashMap<>(); // roomId -> userId -> typing
+
+    @Override
+    public boolean heartbeat(Long userId, String sessionId, long nowMillis) {
+        boolean[] cameOnline = { false };
+        online.compute(userId, (id, presence) -> {
+            if (presence == null) {
+                presence = new Presence();
+                cameOnline[0] = true;
+            }
+            presence.lastHeartbeat = Math.max(presence.lastHeartbeat, nowMillis);
+            if (sessionId != null) {
+                presence.sessions.add(sessionId);
+            }
+            return presence;
+        });
+        return cameOnline[0];
+    }
+
+    @Override
+    public boolean disconnect(Long userId, String sessionId) {
+        boolean[] wentOffline = { false };
+        online.computeIfPresent(userId, (id, presence) -> {
+            presence.sessions.remove(sessionId);
+            if (presence.sessions.isEmpty()) {
+                wentOffline[0] = true;
+                return null;
+            }
+            return presence;
+        });
+        return wentOffline[0];
+    }
+
+    @Override
+    public boolean remove(Long userId) {
+        return online.remove(userId) != null;
+    }
+
+    @Override
+    public List<Long> expireOnline(long cutoffMillis) {
+        List<Long> expired = new ArrayList<>();
+        for (Long userId : online.keySet()) {
+            online.computeIfPresent(userId, (id, presence) -> {
+                if (presence.lastHeartbeat < cutoffMillis) {
+                    expired.add(id);
+                    return null;
+                }
+                return presence;
+            });
+        }
+        return expired;
+    }
+
+    @Override
+    public boolean isOnline(Long userId) {
+        return online.containsKey(userId);
+    }
+
+    @Override
+    public Set<Long> onlineUsers() {
+        return Set.copyOf(online.keySet());
+    }
+
+    @Override
+    public boolean startTyping(Long roomId, Long userId, String username, long nowMillis) {
+        boolean[] started = { false };
+        // compute() để không ghi vào map phòng vừa bị dọn (computeIfPresent bên dưới)
+        typing.compute(roomId, (k, room) -> {
+            if (room == null) {
+                room = new ConcurrentHashMap<>();
+            }
+            started[0] = room.put(userId, new Typing(username, nowMillis)) == null;
+            return room;
+        });
+        return started[0];
+    }
+
+    @Override
+    public TypingEntry stopTyping(Long roomId, Long userId) {
+        Map<Long, Typing> room = typing.get(roomId);
+        if (room == null) {
+            return null;
+        }
+        Typing removed = room.remove(userId);
+        typing.computeIfPresent(roomId, (k, r) -> r.isEmpty() ? null : r);
+        return removed != null ? new TypingEntry(roomId, userId, removed.username) : null;
+    }
+
+    @Override
+    public List<TypingEntry> expireTyping(long cutoffMillis) {
+        List<TypingEntry> expired = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, Typing>> roomEntry : typing.entrySet()) {
+            Map<Long, Typing> room = roomEntry.getValue();
+            Iterator<Map.Entry<Long, Typing>> it = room.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Typing> entry = it.next();
+                if (entry.getValue().lastTyping < cutoffMillis && room.remove(entry.getKey(), entry.getValue())) {
+                    expired.add(new TypingEntry(roomEntry.getKey(), entry.getKey(), entry.getValue().username));
+                }
+            }
+            typing.computeIfPresent(roomEntry.getKey(), (k, r) -> r.isEmpty() ? null : r);
+        }
+        return expired;
+    }
+
+    @Override
+    public List<String> typingUsernames(Long roomId) {
+        Map<Long, Typing> room = typing.get(roomId);
+        if (room == null) {
+            return List.of();
+        }
+        return room.values().stream().map(t -> t.username).toList();
+    }
+
+    @Override
+    public boolean isTyping(Long roomId, Long userId) {
+        Map<Long, Typing> room = typing.get(roomId);
+        return room != null && room.containsKey(userId);
+    }
+}
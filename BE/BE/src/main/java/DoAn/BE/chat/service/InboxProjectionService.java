@@ -0,0 +1,69 @@
+package DoAn.BE.chat.service;
+
+import DoAn.BE.chat.entity.ChatRoom;
+import DoAn.BE.chat.entity.Message;
+import DoAn.BE.chat.repository.ChatRoomMemberRepository;
+import DoAn.BE.chat.repository.ChatRoomRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Giữ projection inbox (cột last_message_* / member_count trên chat_rooms, last_activity_at / unread_count
+// trên chat_room_members) đồng bộ với tin nhắn và thành viên.
+// Mọi thay đổi ghi bằng UPDATE có điều kiện, chạy trong transaction của caller
+@Service
+@Transactional
+public class InboxProjectionService {
+
+    public static final int PREVIEW_LENGTH = 200;
+    public static final String DELETED_PREVIEW = "Tin nhắn đã bị xóa";
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final RoomMembershipCache roomMembershipCache;
+
+    public InboxProjectionService(ChatRoomRepository chatRoomRepository,
+            ChatRoomMemberRepository chatRoomMemberRepository,
+            RoomMembershipCache roomMembershipCache) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.roomMembershipCache = roomMembershipCache;
+    }
+
+    // Tin nhắn mới: tin nhắn cuối của phòng + last activity / unread của các thành viên
+    public void onMessageSent(Message message) {
+        Long roomId = message.getChatRoom().getRoomId();
+        Long senderId = message.getSender() != null ? message.getSender().getUserId() : null;
+        String senderName = message.getSender() != null ? message.getSender().getUsername() : null;
+
+        chatRoomRepository.updateLastMessage(roomId, message.getMessageId(), preview(message.getContent()),
+                message.getMessageType(), senderId, senderName, message.getSentAt());
+        chatRoomMemberRepository.recordNewMessage(roomId, senderId, message.getSentAt());
+    }
+
+    public void onMessageEdited(Message message) {
+        chatRoomRepository.updateLastMessagePreview(message.getChatRoom().getRoomId(), message.getMessageId(),
+                preview(message.getContent()));
+    }
+
+    // Tin nhắn bị xóa: đổi preview nếu là tin cuối, bớt 1 chưa đọc cho ai chưa đọc tới nó
+    public void onMessageDeleted(Message message) {
+        Long roomId = message.getChatRoom().getRoomId();
+        chatRoomRepository.updateLastMessagePreview(roomId, message.getMessageId(), DELETED_PREVIEW);
+        chatRoomMemberRepository.recordMessageDeleted(roomId, message.getSender().getUserId(),
+                message.getMessageId(), message.getSentAt());
+    }
+
+    // Thêm/xóa thành viên: đếm lại member_count (entity đang managed, @DynamicUpdate chỉ ghi cột này)
+    // và bỏ cache thành viên của phòng
+    public void onMembershipChanged(ChatRoom chatRoom) {
+        roomMembershipCache.invalidate(chatRoom.getRoomId());
+        chatRoom.setMemberCount(chatRoomMemberRepository.countByChatRoom_RoomId(chatRoom.getRoomId()).intValue());
+    }
+
+    public static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH - 3) + "...";
+    }
+}
@@ -0,0 +1,197 @@
+package DoAn.BE.chat.service;
+
+import DoAn.BE.chat.entity.Message;
+import DoAn.BE.chat.entity.MessageSearchTerm;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index tìm kiếm tin nhắn trên bảng message_search_terms
+ * - Analyzer tiếng Việt: bỏ dấu (NFD + bỏ dấu kết hợp, đ -> d), chữ thường, tách theo ký tự không phải chữ/số
+ * - Cập nhật cùng transaction khi gửi / sửa / xóa tin nhắn
+ * - Truy vấn: mọi từ phải khớp (chính xác hoặc tiền tố), xếp hạng theo tần suất, khớp chính xác và trường SENDER
+ */
+@Service
+@Transactional
+public class MessageSearchService {
+
+    public static final int MAX_TERM_LENGTH = 64;
+    public static final int MAX_TERMS_PER_MESSAGE = 256;
+    public static final int MAX_QUERY_TERMS = 8;
+    // Từ ngắn hơn chỉ khớp chính xác (tiền tố 1 ký tự quét quá nhiều postings)
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_TERM_CHARS = Pattern.compile("[^a-z0-9]+");
+
+    private static final String INSERT_SQL = "INSERT INTO message_search_terms " +
+            "(term, message_id, field, room_id, sent_at, tf) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageSearchService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // ==================== Ghi index ====================
+
+    public void index(Message message) {
+        if (Boolean.TRUE.equals(message.getIsDeleted())) {
+            return;
+        }
+        index(message.getMessageId(), message.getChatRoom().getRoomId(), message.getSentAt(),
+                message.getContent(), message.getSender() != null ? message.getSender().getUsername() : null);
+    }
+
+    public void index(Long messageId, Long roomId, LocalDateTime sentAt, String content, String senderName) {
+        Timestamp sentAtTs = sentAt != null ? Timestamp.valueOf(sentAt) : null;
+        List<Object[]> rows = new ArrayList<>();
+        termFrequencies(content).forEach((term, tf) -> rows.add(new Object[] {
+                term, messageId, MessageSearchTerm.Field.CONTENT.name(), roomId, sentAtTs, tf }));
+        termFrequencies(senderName).forEach((term, tf) -> rows.add(new Object[] {
+                term, messageId, MessageSearchTerm.Field.SENDER.name(), roomId, sentAtTs, tf }));
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    // Sửa tin nhắn: ghi lại toàn bộ postings của tin nhắn
+    public void reindex(Message message) {
+        remove(message.getMessageId());
+        index(message);
+    }
+
+    public void remove(Long messageId) {
+        jdbcTemplate.update("DELETE FROM message_search_terms WHERE message_id = ?", messageId);
+    }
+
+    // ==================== Truy vấn ====================
+
+    /**
+     * Tìm id tin nhắn đã xếp hạng
+     *
+     * @param roomId lọc 1 phòng; null thì tìm trong mọi phòng userId là thành viên
+     * @param field  chỉ tìm trong 1 trường; null thì cả nội dung và người gửi
+     * @param from   sent_at >= from (null: bỏ qua)
+     * @param to     sent_at < to (null: bỏ qua)
+     */
+    @Transactional(readOnly = true)
+    public List<Long> search(String keyword, Long roomId, Long userId, MessageSearchTerm.Field field,
+            LocalDateTime from, LocalDateTime to, int offset, int limit) {
+        List<String> terms = queryTerms(keyword);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT t.message_id FROM message_search_terms t WHERE (");
+        List<Object> args = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            sql.append(i > 0 ? " OR " : "").append(termCondition(terms.get(i), args));
+        }
+        sql.append(")");
+
+        if (field != null) {
+            sql.append(" AND t.field = ?");
+            args.add(field.name());
+        }
+        if (roomId != null) {
+            sql.append(" AND t.room_id = ?");
+            args.add(roomId);
+        } else {
+            sql.append(" AND t.room_id IN (SELECT cm.room_id FROM chat_room_members cm WHERE cm.user_id = ?)");
+            args.add(userId);
+        }
+        if (from != null) {
+            sql.append(" AND t.sent_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND t.sent_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+
+        sql.append(" GROUP BY t.message_id");
+        // AND: tin nhắn phải khớp đủ mọi từ trong câu tìm kiếm
+        if (terms.size() > 1) {
+            sql.append(" HAVING ");
+            for (int i = 0; i < terms.size(); i++) {
+                sql.append(i > 0 ? " AND " : "")
+                        .append("MAX(CASE WHEN ").append(termCondition(terms.get(i), args)).append(" THEN 1 ELSE 0 END) = 1");
+            }
+        }
+
+        // Điểm: tf x2 nếu khớp chính xác, x2 nếu ở tên người gửi; hòa điểm thì tin mới hơn trước
+        sql.append(" ORDER BY SUM(t.tf * CASE WHEN t.field = 'SENDER' THEN 2 ELSE 1 END * CASE WHEN t.term IN (");
+        for (int i = 0; i < terms.size(); i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+            args.add(terms.get(i));
+        }
+        sql.append(") THEN 2 ELSE 1 END) DESC, MAX(t.sent_at) DESC, t.message_id DESC");
+        sql.append(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        args.add(offset);
+        args.add(limit);
+
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    private static String termCondition(String term, List<Object> args) {
+        if (term.length() < MIN_PREFIX_LENGTH) {
+            args.add(term);
+            return "t.term = ?";
+        }
+        // Từ chỉ gồm [a-z0-9] nên không cần escape ký tự đại diện của LIKE
+        args.add(term + "%");
+        return "t.term LIKE ?";
+    }
+
+    // ==================== Analyzer ====================
+
+    // "Đà Nẵng, HỌP lúc 9h!" -> [da, nang, hop, luc, 9h]
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = COMBINING_MARKS.matcher(folded).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_TERM_CHARS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token.length() > MAX_TERM_LENGTH ? token.substring(0, MAX_TERM_LENGTH) : token);
+            }
+        }
+        return tokens;
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String token : tokenize(text)) {
+            if (frequencies.size() >= MAX_TERMS_PER_MESSAGE && !frequencies.containsKey(token)) {
+                continue;
+            }
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private static List<String> queryTerms(String keyword) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(keyword));
+        return terms.stream().limit(MAX_QUERY_TERMS).toList();
+    }
+}
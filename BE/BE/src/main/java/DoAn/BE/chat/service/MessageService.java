@@ -1,16 +1,15 @@
 package DoAn.BE.chat.service;
 
 import DoAn.BE.chat.dto.MessDTO;
+import DoAn.BE.chat.dto.MessagePageDTO;
 import DoAn.BE.chat.dto.SendMessageRequest;
 import DoAn.BE.chat.entity.ChatRoom;
 import DoAn.BE.chat.entity.ChatRoomMember;
 import DoAn.BE.chat.entity.Message;
-import DoAn.BE.chat.entity.MessageStatus;
-import DoAn.BE.chat.entity.MessageStatusId;
+import DoAn.BE.chat.entity.MessageSearchTerm;
 import DoAn.BE.chat.repository.ChatRoomRepository;
 import DoAn.BE.chat.repository.ChatRoomMemberRepository;
 import DoAn.BE.chat.repository.MessageRepository;
-import DoAn.BE.chat.repository.MessageStatusRepository;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.dto.UserDTO;
 import DoAn.BE.user.repository.UserRepository;
@@ -18,47 +17,61 @@ import DoAn.BE.common.exception.BadRequestException;
 import DoAn.BE.common.exception.EntityNotFoundException;
 import DoAn.BE.chat.websocket.service.WebSocketNotificationService;
 import DoAn.BE.notification.service.ChatNotificationService;
+import DoAn.BE.storage.service.FileStorageService;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 @Service
 @Transactional
 public class MessageService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final MessageRepository messageRepository;
     private final ChatRoomRepository chatRoomRepository;
     private final ChatRoomMemberRepository chatRoomMemberRepository;
-    private final MessageStatusRepository messageStatusRepository;
     private final UserRepository userRepository;
     private final WebSocketNotificationService webSocketNotificationService;
     private final ChatNotificationService chatNotificationService;
-    private final TypingIndicatorService typingIndicatorService;
+    private final PresenceService presenceService;
+    private final InboxProjectionService inboxProjectionService;
+    private final MessageSearchService messageSearchService;
+    private final ChatSideEffectPipeline chatSideEffectPipeline;
 
     public MessageService(MessageRepository messageRepository,
             ChatRoomRepository chatRoomRepository,
             ChatRoomMemberRepository chatRoomMemberRepository,
-            MessageStatusRepository messageStatusRepository,
             UserRepository userRepository,
             WebSocketNotificationService webSocketNotificationService,
             ChatNotificationService chatNotificationService,
-            TypingIndicatorService typingIndicatorService) {
+            PresenceService presenceService,
+            InboxProjectionService inboxProjectionService,
+            MessageSearchService messageSearchService,
+            ChatSideEffectPipeline chatSideEffectPipeline) {
         this.messageRepository = messageRepository;
         this.chatRoomRepository = chatRoomRepository;
         this.chatRoomMemberRepository = chatRoomMemberRepository;
-        this.messageStatusRepository = messageStatusRepository;
         this.userRepository = userRepository;
         this.webSocketNotificationService = webSocketNotificationService;
         this.chatNotificationService = chatNotificationService;
-        this.typingIndicatorService = typingIndicatorService;
+        this.presenceService = presenceService;
+        this.inboxProjectionService = inboxProjectionService;
+        this.messageSearchService = messageSearchService;
+        this.chatSideEffectPipeline = chatSideEffectPipeline;
     }
 
     // Gửi tin nhắn
@@ -100,169 +113,139 @@ public class MessageService {
 
         message = messageRepository.save(message);
 
-        List<ChatRoomMember> members = chatRoomMemberRepository.findByChatRoom_RoomId(request.getRoomId());
-        for (ChatRoomMember member : members) {
-            if (member.getUser() != null && member.getUser().getUserId() != null
-                    && !member.getUser().getUserId().equals(senderId)) {
-                MessageStatus status = new MessageStatus();
-                status.setId(new MessageStatusId(message.getMessageId(), member.getUser().getUserId()));
-                status.setMessage(message);
-                status.setUser(member.getUser());
-                status.setStatus(MessageStatus.MessageStatusType.DELIVERED);
-                status.setTimestamp(LocalDateTime.now());
-                messageStatusRepository.save(status);
-            }
-        }
-
-        MessDTO messageDTO = convertToMessageDTO(message);
-
-        webSocketNotificationService.notifyNewMessage(request.getRoomId(), messageDTO);
-
-        List<ChatRoomMember> otherMembers = chatRoomMemberRepository.findByChatRoom_RoomId(request.getRoomId())
+        // Fan-out: nạp thành viên (kèm user) 1 lần, dùng chung cho notification và WebSocket
+        List<User> recipients = chatRoomMemberRepository.findMembersWithUser(request.getRoomId())
                 .stream()
-                .filter(member -> member.getUser() != null && member.getUser().getUserId() != null
-                        && !member.getUser().getUserId().equals(senderId))
+                .map(ChatRoomMember::getUser)
+                .filter(user -> user != null && user.getUserId() != null && !user.getUserId().equals(senderId))
                 .toList();
 
-        // Nếu là reply, gửi notification đặc biệt cho người được reply
-        if (replyToMessage != null && replyToMessage.getSender() != null
-                && !replyToMessage.getSender().getUserId().equals(senderId)) {
-            chatNotificationService.createMessageRepliedNotification(
-                    replyToMessage.getSender().getUserId(),
-                    sender.getUsername(),
-                    request.getContent(),
-                    request.getRoomId());
-        }
+        // Inbox projection + counter chưa đọc: vài câu UPDATE cho cả phòng thay vì 1 dòng message_status / người nhận
+        inboxProjectionService.onMessageSent(message);
+        messageSearchService.index(message);
 
-        // Gửi notification tin nhắn mới cho các members khác (trừ người gửi và người
-        // được reply)
-        for (ChatRoomMember member : otherMembers) {
-            // Bỏ qua nếu đã gửi reply notification cho user này
-            if (replyToMessage != null && replyToMessage.getSender() != null
-                    && member.getUser().getUserId().equals(replyToMessage.getSender().getUserId())) {
-                continue;
-            }
+        MessDTO messageDTO = convertToMessageDTO(message);
 
-            chatNotificationService.createNewMessageNotification(
-                    member.getUser().getUserId(),
-                    sender.getUsername(),
-                    request.getContent(),
-                    request.getRoomId());
+        Long repliedUserId = null;
+        if (replyToMessage != null && replyToMessage.getSender() != null
+                && !replyToMessage.getSender().getUserId().equals(senderId)) {
+            repliedUserId = replyToMessage.getSender().getUserId();
         }
 
-        typingIndicatorService.forceStopTyping(request.getRoomId(), senderId);
+        // Sau commit: đẩy WebSocket (taskExecutor) và publish side effect (notification tin mới / reply / mention)
+        // cho ChatSideEffectPipeline, không chạy trong request transaction
+        List<String> recipientUsernames = recipients.stream().map(User::getUsername).toList();
+        ChatSideEffectPipeline.MessageSentEvent event = new ChatSideEffectPipeline.MessageSentEvent(
+                message.getMessageId(), request.getRoomId(), senderId, sender.getUsername(), request.getContent(),
+                repliedUserId, recipients.stream().map(User::getUserId).toList(), System.nanoTime());
+        Long roomId = request.getRoomId();
+        runAfterCommit(() -> {
+            webSocketNotificationService.notifyNewMessage(roomId, messageDTO, recipientUsernames);
+            chatSideEffectPipeline.publish(event);
+        });
 
-        // Detect and process mentions in message content
-        processMentions(message, sender, chatRoom);
+        presenceService.forceStopTyping(request.getRoomId(), senderId);
 
         return messageDTO;
     }
 
-    /**
-     * Phát hiện và xử lý mentions trong message
-     * Hỗ trợ: @username, @TASK-123, @ISSUE-456
-     */
-    private void processMentions(Message message, User sender, ChatRoom chatRoom) {
-        String content = message.getContent();
-        if (content == null || content.isEmpty()) {
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
             return;
         }
-
-        // Pattern 1: @username - mention user
-        Pattern userPattern = Pattern.compile("@(\\w+)");
-        Matcher userMatcher = userPattern.matcher(content);
-        while (userMatcher.find()) {
-            String username = userMatcher.group(1);
-
-            // Skip if it's a task/issue pattern
-            if (content.contains("@TASK-") || content.contains("@ISSUE-")) {
-                continue;
-            }
-
-            // Find user and send notification
-            Optional<User> mentionedUserOpt = userRepository.findByUsername(username);
-            if (mentionedUserOpt.isPresent()) {
-                User mentionedUser = mentionedUserOpt.get();
-
-                // Check if mentioned user is in the chat room
-                boolean isMember = chatRoomMemberRepository.existsByChatRoom_RoomIdAndUser_UserId(
-                        chatRoom.getRoomId(), mentionedUser.getUserId());
-
-                if (isMember && !mentionedUser.getUserId().equals(sender.getUserId())) {
-                    // Send special mention notification
-                    chatNotificationService.createChatNotification(
-                            mentionedUser.getUserId(),
-                            "MENTION",
-                            sender.getUsername() + " đã nhắc đến bạn",
-                            message.getContent().length() > 100
-                                    ? message.getContent().substring(0, 97) + "..."
-                                    : message.getContent(),
-                            "/chat/rooms/" + chatRoom.getRoomId());
-                }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
             }
-        }
-
-        // Pattern 2: @TASK-123 hoặc @ISSUE-456
-        Pattern taskPattern = Pattern.compile("@(TASK|ISSUE)-(\\w+)");
-        Matcher taskMatcher = taskPattern.matcher(content);
-        while (taskMatcher.find()) {
-            String type = taskMatcher.group(1);
-            String key = taskMatcher.group(2);
-            String fullKey = type + "-" + key;
-
-            // Log mention for potential future processing
-            // Could send notification to task/issue assignee here
-            // For now, just log it
-            System.out
-                    .println("🔗 Detected " + type + " mention: " + fullKey + " in message " + message.getMessageId());
-
-            // TODO: Query task/issue and notify assignee if needed
-            // Task task = taskRepository.findByKey(fullKey);
-            // if (task != null && task.getAssignee() != null) {
-            // // Send notification to assignee
-            // }
-        }
+        });
     }
 
-    // Lấy tin nhắn trong phòng chat
-    public List<MessDTO> getMessagesByRoomId(@NonNull Long roomId, @NonNull Long userId, int page, int size) {
+    // Lấy tin nhắn trong phòng chat theo cursor (keyset trên sentAt, messageId)
+    // Không có cursor: trang mới nhất; before: cũ hơn cursor; after: mới hơn cursor
+    @Transactional(readOnly = true)
+    public MessagePageDTO getMessagesByRoomId(@NonNull Long roomId, @NonNull Long userId,
+            String before, String after, int size) {
         // Validate phòng chat tồn tại
-        chatRoomRepository.findById(roomId)
-                .orElseThrow(() -> new EntityNotFoundException("Phòng chat không tồn tại"));
+        if (!chatRoomRepository.existsById(roomId)) {
+            throw new EntityNotFoundException("Phòng chat không tồn tại");
+        }
 
         // Kiểm tra user có trong phòng không
         boolean isMember = chatRoomMemberRepository.existsByChatRoom_RoomIdAndUser_UserId(roomId, userId);
         if (!isMember) {
             throw new BadRequestException("Bạn không có quyền xem tin nhắn trong phòng này");
         }
+        if (before != null && after != null) {
+            throw new BadRequestException("Chỉ dùng một trong hai tham số before hoặc after");
+        }
 
-        // Lấy tin nhắn với phân trang
-        List<Message> messages = messageRepository.findByChatRoom_RoomIdOrderBySentAtAsc(roomId);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Lấy dư 1 dòng để biết còn trang tiếp theo không
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<Message> messages;
+        boolean ascending = after != null;
+        if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            messages = messageRepository.findPageBefore(roomId, cursor.sentAt(), cursor.messageId(), limit);
+        } else if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            messages = messageRepository.findPageAfter(roomId, cursor.sentAt(), cursor.messageId(), limit);
+        } else {
+            messages = messageRepository.findLatestPage(roomId, limit);
+        }
 
-        // Convert sang DTO
-        return messages.stream()
+        boolean hasMore = messages.size() > pageSize;
+        List<Message> page = new ArrayList<>(hasMore ? messages.subList(0, pageSize) : messages);
+        if (!ascending) {
+            Collections.reverse(page);
+        }
+
+        List<MessDTO> content = page.stream()
                 .map(this::convertToMessageDTO)
                 .collect(Collectors.toList());
+        // Trang rỗng (vd. poll after khi chưa có tin mới): trả lại cursor đầu vào để client poll tiếp từ đó
+        String inputCursor = before != null ? before : after;
+        String prevCursor = page.isEmpty() ? inputCursor : MessageCursor.of(page.get(0)).encode();
+        String nextCursor = page.isEmpty() ? inputCursor : MessageCursor.of(page.get(page.size() - 1)).encode();
+        return new MessagePageDTO(content, prevCursor, nextCursor, hasMore, pageSize);
     }
 
-    // Đánh dấu tin nhắn đã đọc
-    public void markMessageAsSeen(@NonNull Long messageId, @NonNull Long userId) {
-        // Validate message tồn tại
-        messageRepository.findById(messageId)
-                .orElseThrow(() -> new EntityNotFoundException("Tin nhắn không tồn tại"));
+    // Cursor mờ (opaque) = base64url("sentAt|messageId")
+    private record MessageCursor(LocalDateTime sentAt, Long messageId) {
 
-        // Tìm MessageStatus
-        Optional<MessageStatus> statusOpt = messageStatusRepository.findById(
-                new MessageStatusId(messageId, userId));
+        static MessageCursor of(Message message) {
+            return new MessageCursor(message.getSentAt(), message.getMessageId());
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((sentAt + "|" + messageId).getBytes(StandardCharsets.UTF_8));
+        }
 
-        if (statusOpt.isPresent()) {
-            MessageStatus status = statusOpt.get();
-            status.setStatus(MessageStatus.MessageStatusType.SEEN);
-            status.setTimestamp(LocalDateTime.now());
-            messageStatusRepository.save(status);
+        static MessageCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                return new MessageCursor(LocalDateTime.parse(raw.substring(0, sep)),
+                        Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
         }
     }
 
+    // Đánh dấu tin nhắn đã đọc: dời con trỏ đã đọc của (phòng, user), chỉ tiến không lùi
+    public void markMessageAsSeen(@NonNull Long messageId, @NonNull Long userId) {
+        Message message = messageRepository.findById(messageId)
+                .orElseThrow(() -> new EntityNotFoundException("Tin nhắn không tồn tại"));
+
+        chatRoomMemberRepository.advanceReadPointer(message.getChatRoom().getRoomId(), userId,
+                message.getMessageId(), message.getSentAt());
+    }
+
     // Tự động xác định loại tin nhắn
     private Message.MessageType detectMessageType(SendMessageRequest request) {
         if (request.getFileId() != null) {
@@ -295,7 +278,9 @@ public class MessageService {
         dto.setMessageType(message.getMessageType());
         dto.setFileId(message.getFile() != null ? message.getFile().getFileId() : null);
         dto.setFileName(message.getFile() != null ? message.getFile().getOriginalFilename() : null);
-        dto.setFileUrl(message.getFile() != null ? message.getFile().getFilePath() : null);
+        dto.setFileUrl(message.getFile() != null
+                ? FileStorageService.downloadUrl(message.getFile().getFileId())
+                : null);
         dto.setSentAt(message.getSentAt());
         dto.setIsDeleted(message.getIsDeleted());
         dto.setEditedAt(message.getEditedAt());
@@ -306,8 +291,9 @@ public class MessageService {
         return dto;
     }
 
-    // Tìm kiếm tin nhắn theo nội dung
-    public List<MessDTO> searchMessages(@NonNull Long roomId, String keyword, @NonNull Long userId, Pageable pageable) {
+    // Tìm kiếm tin nhắn theo nội dung / người gửi trong phòng (search index, xếp hạng, lọc ngày)
+    public List<MessDTO> searchMessages(@NonNull Long roomId, String keyword, @NonNull Long userId,
+            LocalDateTime from, LocalDateTime to, Pageable pageable) {
         // Validate phòng chat tồn tại
         chatRoomRepository.findById(roomId)
                 .orElseThrow(() -> new EntityNotFoundException("Phòng chat không tồn tại"));
@@ -318,27 +304,38 @@ public class MessageService {
             throw new BadRequestException("Bạn không có quyền tìm kiếm trong phòng này");
         }
 
-        // Tìm kiếm tin nhắn
-        List<Message> messages = messageRepository.searchMessagesByContent(roomId, keyword);
-
-        // Apply pagination manually
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), messages.size());
-        List<Message> pagedMessages = messages.subList(start, end);
-
-        return pagedMessages.stream()
-                .map(this::convertToMessageDTO)
-                .collect(Collectors.toList());
+        return findSearchResults(messageSearchService.search(keyword, roomId, userId, null, from, to,
+                (int) pageable.getOffset(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE)));
     }
 
     // Tìm kiếm tin nhắn theo người gửi
-    public List<MessDTO> searchMessagesBySender(@NonNull Long roomId, String senderKeyword, @NonNull Long userId) {
+    public List<MessDTO> searchMessagesBySender(@NonNull Long roomId, String senderKeyword, @NonNull Long userId,
+            Pageable pageable) {
         // Validate permissions
         validateRoomAccess(roomId, userId);
 
-        List<Message> messages = messageRepository.searchMessagesBySender(roomId, senderKeyword);
+        return findSearchResults(messageSearchService.search(senderKeyword, roomId, userId,
+                MessageSearchTerm.Field.SENDER, null, null,
+                (int) pageable.getOffset(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE)));
+    }
 
-        return messages.stream()
+    // Tìm kiếm trong mọi phòng user là thành viên
+    public List<MessDTO> searchAllRooms(String keyword, @NonNull Long userId, LocalDateTime from, LocalDateTime to,
+            Pageable pageable) {
+        return findSearchResults(messageSearchService.search(keyword, null, userId, null, from, to,
+                (int) pageable.getOffset(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE)));
+    }
+
+    // Nạp tin nhắn theo id đã xếp hạng, giữ nguyên thứ tự
+    private List<MessDTO> findSearchResults(List<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Message> byId = messageRepository.findAllWithSenderByIdIn(messageIds).stream()
+                .collect(Collectors.toMap(Message::getMessageId, m -> m));
+        return messageIds.stream()
+                .map(byId::get)
+                .filter(m -> m != null && !Boolean.TRUE.equals(m.getIsDeleted()))
                 .map(this::convertToMessageDTO)
                 .collect(Collectors.toList());
     }
@@ -390,6 +387,8 @@ public class MessageService {
         message.markAsEdited();
 
         message = messageRepository.save(message);
+        inboxProjectionService.onMessageEdited(message);
+        messageSearchService.reindex(message);
 
         MessDTO messageDTO = convertToMessageDTO(message);
 
@@ -427,9 +426,14 @@ public class MessageService {
             throw new BadRequestException("Bạn chỉ có thể xóa tin nhắn của mình");
         }
 
-        // Soft delete
+        // Soft delete (xóa lại tin đã xóa không trừ chưa đọc lần nữa)
+        boolean daXoa = Boolean.TRUE.equals(message.getIsDeleted());
         message.setIsDeleted(true);
         messageRepository.save(message);
+        if (!daXoa) {
+            inboxProjectionService.onMessageDeleted(message);
+        }
+        messageSearchService.remove(messageId);
 
         // Gửi WebSocket notification
         webSocketNotificationService.notifyMessageDeleted(message.getChatRoom().getRoomId(), messageId, userId);
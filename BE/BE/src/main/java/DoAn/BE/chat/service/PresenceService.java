@@ -0,0 +1,235 @@
+package DoAn.BE.chat.service;
+
+import DoAn.BE.chat.websocket.service.WebSocketNotificationService;
+import DoAn.BE.user.entity.User;
+import DoAn.BE.user.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presence + typing (thay UserPresenceService, TypingIndicatorService và map typing trong ChatWebSocketHandler)
+ * - Trạng thái nằm trong PresenceStore (memory hoặc shared store khi chạy nhiều node)
+ * - Online theo heartbeat: CONNECT, mọi frame STOMP inbound (PresenceChannelInterceptor, kể cả heartbeat frame)
+ *   và REST typing gia hạn; quá presence.heartbeat-timeout-ms không có frame nào thì offline
+ * - Broadcast online/offline gộp: mỗi user tối đa 1 event / chu kỳ lên /topic/presence (không lặp theo từng phòng)
+ * - users.is_online / last_seen ghi write-behind theo lô, không SELECT + UPDATE mỗi lần join
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private record LastSeen(boolean online, long millis) {
+    }
+
+    private final PresenceStore presenceStore;
+    private final WebSocketNotificationService webSocketNotificationService;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final long heartbeatTimeoutMillis;
+    private final long typingTimeoutMillis;
+
+    // Trạng thái chờ broadcast, gộp theo user (chỉ giữ trạng thái cuối trong chu kỳ)
+    private final Map<Long, Boolean> pendingStatus = new ConcurrentHashMap<>();
+    // Trạng thái chờ ghi xuống users, gộp theo user
+    private final Map<Long, LastSeen> pendingLastSeen = new ConcurrentHashMap<>();
+
+    public PresenceService(PresenceStore presenceStore,
+            WebSocketNotificationService webSocketNotificationService,
+            UserRepository userRepository,
+            JdbcTemplate jdbcTemplate,
+            @Value("${presence.heartbeat-timeout-ms:90000}") long heartbeatTimeoutMillis,
+            @Value("${presence.typing-timeout-ms:5000}") long typingTimeoutMillis) {
+        this.presenceStore = presenceStore;
+        this.webSocketNotificationService = webSocketNotificationService;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.heartbeatTimeoutMillis = heartbeatTimeoutMillis;
+        this.typingTimeoutMillis = typingTimeoutMillis;
+    }
+
+    // ==================== Presence ====================
+
+    public void heartbeat(@NonNull Long userId) {
+        heartbeat(userId, null);
+    }
+
+    public void heartbeat(@NonNull Long userId, String sessionId) {
+        long now = System.currentTimeMillis();
+        if (presenceStore.heartbeat(userId, sessionId, now)) {
+            pendingStatus.put(userId, true);
+        }
+        pendingLastSeen.put(userId, new LastSeen(true, now));
+    }
+
+    // Đánh dấu user online
+    public void markUserOnline(@NonNull Long userId) {
+        heartbeat(userId, null);
+    }
+
+    // Đánh dấu user offline (bỏ mọi session)
+    public void markUserOffline(@NonNull Long userId) {
+        if (presenceStore.remove(userId)) {
+            pendingStatus.put(userId, false);
+        }
+        pendingLastSeen.put(userId, new LastSeen(false, System.currentTimeMillis()));
+    }
+
+    public boolean isUserOnline(@NonNull Long userId) {
+        return presenceStore.isOnline(userId);
+    }
+
+    public List<Long> getOnlineUsers() {
+        return List.copyOf(presenceStore.onlineUsers());
+    }
+
+    public int getOnlineUserCount() {
+        return presenceStore.onlineUsers().size();
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Long userId = userIdOf(event.getUser());
+        String sessionId = (String) event.getMessage().getHeaders().get("simpSessionId");
+        if (userId != null) {
+            heartbeat(userId, sessionId);
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnected(SessionDisconnectEvent event) {
+        Long userId = userIdOf(event.getUser());
+        if (userId == null) {
+            return;
+        }
+        if (presenceStore.disconnect(userId, event.getSessionId())) {
+            pendingStatus.put(userId, false);
+            pendingLastSeen.put(userId, new LastSeen(false, System.currentTimeMillis()));
+        }
+    }
+
+    // ==================== Typing ====================
+
+    // Bắt đầu typing; chỉ broadcast khi user chuyển sang typing, các lần gọi sau chỉ gia hạn
+    public void startTyping(@NonNull Long roomId, @NonNull Long userId, String username) {
+        heartbeat(userId);
+        if (presenceStore.startTyping(roomId, userId, username, System.currentTimeMillis())) {
+            webSocketNotificationService.notifyTyping(roomId, userId, username, true);
+        }
+    }
+
+    public void stopTyping(@NonNull Long roomId, @NonNull Long userId) {
+        PresenceStore.TypingEntry entry = presenceStore.stopTyping(roomId, userId);
+        if (entry != null) {
+            webSocketNotificationService.notifyTyping(roomId, userId, entry.username(), false);
+        }
+    }
+
+    // Bắt buộc dừng typing khi user gửi tin nhắn
+    public void forceStopTyping(@NonNull Long roomId, @NonNull Long userId) {
+        stopTyping(roomId, userId);
+    }
+
+    public List<String> getTypingUsers(@NonNull Long roomId) {
+        return presenceStore.typingUsernames(roomId);
+    }
+
+    public int getTypingUserCount(@NonNull Long roomId) {
+        return presenceStore.typingUsernames(roomId).size();
+    }
+
+    public boolean isUserTyping(@NonNull Long roomId, @NonNull Long userId) {
+        return presenceStore.isTyping(roomId, userId);
+    }
+
+    // ==================== Jobs ====================
+
+    // Typing không gia hạn quá typing-timeout -> TYPING_STOP
+    @Scheduled(fixedDelayString = "${presence.typing-sweep-interval-ms:1000}")
+    public void expireTyping() {
+        long cutoff = System.currentTimeMillis() - typingTimeoutMillis;
+        for (PresenceStore.TypingEntry entry : presenceStore.expireTyping(cutoff)) {
+            webSocketNotificationService.notifyTyping(entry.roomId(), entry.userId(), entry.username(), false);
+        }
+    }
+
+    // Hết hạn heartbeat + broadcast các thay đổi online/offline đã gộp trong chu kỳ
+    @Scheduled(fixedDelayString = "${presence.broadcast-interval-ms:2000}")
+    public void broadcastStatusChanges() {
+        long now = System.currentTimeMillis();
+        for (Long userId : presenceStore.expireOnline(now - heartbeatTimeoutMillis)) {
+            pendingStatus.put(userId, false);
+            pendingLastSeen.put(userId, new LastSeen(false, now));
+        }
+
+        if (pendingStatus.isEmpty()) {
+            return;
+        }
+        Map<Long, Boolean> changes = new HashMap<>();
+        for (Long userId : new ArrayList<>(pendingStatus.keySet())) {
+            Boolean online = pendingStatus.remove(userId);
+            if (online != null) {
+                changes.put(userId, online);
+            }
+        }
+
+        Map<Long, String> usernames = new HashMap<>();
+        for (User user : userRepository.findAllById(changes.keySet())) {
+            usernames.put(user.getUserId(), user.getUsername());
+        }
+        changes.forEach((userId, online) -> {
+            String username = usernames.get(userId);
+            if (username != null) {
+                webSocketNotificationService.notifyPresence(userId, username, online);
+            }
+        });
+    }
+
+    // Write-behind users.is_online / last_seen
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:30000}")
+    public void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+        Map<Long, LastSeen> batch = new HashMap<>();
+        for (Long userId : new ArrayList<>(pendingLastSeen.keySet())) {
+            LastSeen lastSeen = pendingLastSeen.remove(userId);
+            if (lastSeen != null) {
+                batch.put(userId, lastSeen);
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        batch.forEach((userId, lastSeen) -> rows.add(new Object[] {
+                lastSeen.online(), new Timestamp(lastSeen.millis()), userId }));
+        try {
+            jdbcTemplate.batchUpdate("UPDATE users SET is_online = ?, last_seen = ? WHERE user_id = ?", rows);
+        } catch (RuntimeException e) {
+            // Ghi lại lần sau, không đè giá trị mới hơn đã đến trong lúc flush
+            batch.forEach(pendingLastSeen::putIfAbsent);
+            log.warn("Không flush được presence của {} user: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static Long userIdOf(Principal principal) {
+        if (principal instanceof Authentication auth && auth.getPrincipal() instanceof User user) {
+            return user.getUserId();
+        }
+        return null;
+    }
+}
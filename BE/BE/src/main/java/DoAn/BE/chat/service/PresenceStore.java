@@ -0,0 +1,45 @@
+package DoAn.BE.chat.service;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Backend lưu trạng thái online + typing cho PresenceService.
+ * - memory (InMemoryPresenceStore): 1 node, cũng dùng làm bản fake khi chạy local
+ * - shared store (Redis...): cài đặt interface này + presence.store=<tên> để các node dùng chung trạng thái
+ * Mọi thời gian là epoch millis do PresenceService truyền vào
+ */
+public interface PresenceStore {
+
+    record TypingEntry(Long roomId, Long userId, String username) {
+    }
+
+    // Ghi nhận heartbeat (sessionId có thể null); trả về true nếu user vừa chuyển offline -> online
+    boolean heartbeat(Long userId, String sessionId, long nowMillis);
+
+    // Đóng 1 session; trả về true nếu đó là session cuối (user chuyển sang offline)
+    boolean disconnect(Long userId, String sessionId);
+
+    // Buộc offline; trả về true nếu user đang online
+    boolean remove(Long userId);
+
+    // Bỏ các user không có heartbeat từ trước cutoff, trả về danh sách user vừa offline
+    List<Long> expireOnline(long cutoffMillis);
+
+    boolean isOnline(Long userId);
+
+    Set<Long> onlineUsers();
+
+    // Bắt đầu/gia hạn typing; trả về true nếu user chưa typing trước đó
+    boolean startTyping(Long roomId, Long userId, String username, long nowMillis);
+
+    // Dừng typing; trả về entry nếu user đang typing, null nếu không
+    TypingEntry stopTyping(Long roomId, Long userId);
+
+    // Bỏ typing không gia hạn từ trước cutoff, trả về các entry đã hết hạn
+    List<TypingEntry> expireTyping(long cutoffMillis);
+
+    List<String> typingUsernames(Long roomId);
+
+    boolean isTyping(Long roomId, Long userId);
+}
@@ -0,0 +1,117 @@
+package DoAn.BE.chat.service;
+
+import DoAn.BE.chat.repository.ChatRoomMemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache thành viên phòng chat cho các kiểm tra quyền trên hot path (STOMP frame, typing REST)
+ * - Mỗi phòng giữ mảng userId đã sắp xếp (8 byte / thành viên), tra bằng binary search
+ * - LRU theo số phòng (chat.membership-cache.max-rooms), nạp cả phòng bằng 1 query khi miss
+ * - Invalidate khi thành viên thay đổi (InboxProjectionService.onMembershipChanged) và lần nữa sau commit
+ */
+@Service
+public class RoomMembershipCache {
+
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final Map<Long, long[]> members;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    // Tăng mỗi lần invalidate; lần nạp bắt đầu trước đó không được ghi kết quả cũ vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    public RoomMembershipCache(ChatRoomMemberRepository chatRoomMemberRepository,
+            @Value("${chat.membership-cache.max-rooms:10000}") int maxRooms) {
+        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.members = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                if (size() > maxRooms) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isMember(@NonNull Long roomId, @NonNull Long userId) {
+        long[] userIds;
+        synchronized (members) {
+            userIds = members.get(roomId);
+        }
+        if (userIds != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            userIds = load(roomId);
+        }
+        return Arrays.binarySearch(userIds, userId) >= 0;
+    }
+
+    // Bỏ cache của phòng; nếu đang trong transaction thì bỏ thêm lần nữa sau commit
+    // để lần nạp chen giữa (đọc dữ liệu chưa commit) không ở lại trong cache
+    public void invalidate(@NonNull Long roomId) {
+        evict(roomId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(roomId);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (members) {
+            size = members.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rooms", size);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private long[] load(Long roomId) {
+        long startGeneration = generation.get();
+        List<Long> ids = chatRoomMemberRepository.findUserIdsByRoomId(roomId);
+        long[] userIds = ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        synchronized (members) {
+            if (generation.get() == startGeneration) {
+                members.put(roomId, userIds);
+            }
+        }
+        return userIds;
+    }
+
+    private void evict(Long roomId) {
+        synchronized (members) {
+            generation.incrementAndGet();
+            members.remove(roomId);
+        }
+        invalidations.increment();
+    }
+}
@@ -1,25 +1,89 @@
 package DoAn.BE.chat.websocket.config;
 
 import DoAn.BE.chat.websocket.interceptor.AuthChannelInterceptor;
+import DoAn.BE.chat.websocket.interceptor.PresenceChannelInterceptor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Destination dùng để các node chia sẻ user registry và chuyển tin nhắn /user/** cho node giữ session
+    private static final String USER_REGISTRY_BROADCAST = "/topic/simp-user-registry";
+    private static final String USER_DESTINATION_BROADCAST = "/topic/unresolved-user-destination";
+
     @Autowired
     private AuthChannelInterceptor authChannelInterceptor;
 
+    @Autowired
+    private PresenceChannelInterceptor presenceChannelInterceptor;
+
+    // Scheduler heartbeat của simple broker (bean messageBrokerTaskScheduler do @EnableWebSocketMessageBroker tạo)
+    @Autowired
+    @Lazy
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    // Heartbeat STOMP server<->client (ms); server không khai báo thì client không gửi heartbeat frame,
+    // user ngồi yên sẽ bị PresenceService coi là mất heartbeat
+    @Value("${websocket.heartbeat-ms:10000}")
+    private long heartbeatMillis;
+
+    // simple: broker trong JVM (1 node); relay: chuyển tiếp STOMP tới broker ngoài (RabbitMQ/ActiveMQ), chạy nhiều node
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue"); // Broker cho các topic và queue
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // convertAndSendToUser chạy được trên mọi node: registry session được broadcast,
+                    // tin nhắn cho user không có session ở node này được chuyển qua broker tới node khác
+                    .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST)
+                    .setUserDestinationBroadcast(USER_DESTINATION_BROADCAST);
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            log.info("WebSocket broker: STOMP relay {}:{}", relayHost, relayPort);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue") // Broker cho các topic và queue
+                    .setHeartbeatValue(new long[] { heartbeatMillis, heartbeatMillis })
+                    .setTaskScheduler(messageBrokerTaskScheduler);
+            log.info("WebSocket broker: simple (in-memory, 1 node)");
+        }
         config.setApplicationDestinationPrefixes("/app"); // Prefix cho destination
         config.setUserDestinationPrefix("/user"); // Prefix cho tin nhắn cá nhân
     }
@@ -29,10 +93,15 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws/chat") // Đăng ký WebSocket endpoint
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // Cùng path, WebSocket thuần (không SockJS) cho app di động: SockJS map /ws/chat/**, endpoint này map /ws/chat.
+        // Tomcat tự thương lượng permessage-deflate khi client đề nghị (Sec-WebSocket-Extensions)
+        registry.addEndpoint("/ws/chat")
+                .setAllowedOriginPatterns("*");
     }
 
     @Override
     public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
-        registration.interceptors(authChannelInterceptor); // Thêm interceptor xác thực
+        // Xác thực trước, sau đó mọi frame inbound gia hạn presence
+        registration.interceptors(authChannelInterceptor, presenceChannelInterceptor);
     }
 }
@@ -0,0 +1,75 @@
+package DoAn.BE.chat.websocket.dto;
+
+import DoAn.BE.chat.dto.MessDTO;
+import DoAn.BE.chat.entity.Message;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Event WebSocket dạng gọn cho client di động (/topic/room.{id}.compact, /user/queue/chat.events)
+ * - Khóa 1-2 ký tự, bỏ field null, thời gian là epoch millis
+ * - Người dùng chỉ tham chiếu bằng userId (client tra tên/avatar từ danh sách thành viên đã tải)
+ *
+ * t: msg | edit | del | typ | join | left | room
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChatEvent(
+        @JsonProperty("t") String type,
+        @JsonProperty("r") Long roomId,
+        @JsonProperty("id") Long messageId,
+        @JsonProperty("u") Long userId,
+        @JsonProperty("c") String content,
+        @JsonProperty("k") String messageType, // chỉ khi khác TEXT
+        @JsonProperty("ts") Long sentAt,
+        @JsonProperty("rp") Long replyToMessageId,
+        @JsonProperty("f") FileRef file,
+        @JsonProperty("on") Boolean active) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record FileRef(
+            @JsonProperty("id") Long fileId,
+            @JsonProperty("n") String name,
+            @JsonProperty("s") Long size,
+            @JsonProperty("m") String type) {
+    }
+
+    public static ChatEvent message(MessDTO message) {
+        FileRef file = message.getFileId() != null
+                ? new FileRef(message.getFileId(), message.getFileName(), message.getFileSize(), message.getFileType())
+                : null;
+        String messageType = message.getMessageType() != null && message.getMessageType() != Message.MessageType.TEXT
+                ? message.getMessageType().name()
+                : null;
+        return new ChatEvent("msg", message.getRoomId(), message.getMessageId(),
+                message.getSender() != null ? message.getSender().getUserId() : null,
+                message.getContent(), messageType, epochMillis(message.getSentAt()),
+                message.getReplyToMessageId(), file, null);
+    }
+
+    public static ChatEvent edited(Long roomId, Long messageId, Long userId, String content) {
+        return new ChatEvent("edit", roomId, messageId, userId, content, null, null, null, null, null);
+    }
+
+    public static ChatEvent deleted(Long roomId, Long messageId, Long userId) {
+        return new ChatEvent("del", roomId, messageId, userId, null, null, null, null, null, null);
+    }
+
+    public static ChatEvent typing(Long roomId, Long userId, boolean isTyping) {
+        return new ChatEvent("typ", roomId, null, userId, null, null, null, null, null, isTyping);
+    }
+
+    public static ChatEvent member(String type, Long roomId, Long userId) {
+        return new ChatEvent(type, roomId, null, userId, null, null, null, null, null, null);
+    }
+
+    public static ChatEvent roomUpdated(Long roomId, String content) {
+        return new ChatEvent("room", roomId, null, null, content, null, null, null, null, null);
+    }
+
+    private static Long epochMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null;
+    }
+}
@@ -1,66 +1,56 @@
 package DoAn.BE.chat.websocket.handler;
 
 import DoAn.BE.chat.dto.MessDTO;
-import DoAn.BE.chat.repository.ChatRoomMemberRepository;
 import DoAn.BE.chat.websocket.dto.WebSocketMessage;
 import DoAn.BE.user.entity.User;
-import DoAn.BE.user.repository.UserRepository;
-import DoAn.BE.chat.service.UserPresenceService;
+import DoAn.BE.chat.service.PresenceService;
+import DoAn.BE.chat.service.RoomMembershipCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 // WebSocket handler xử lý real-time chat messages, typing indicators, user presence
 @Controller
 @Slf4j
 public class ChatWebSocketHandler {
 
     private final SimpMessagingTemplate messagingTemplate;
-    private final ChatRoomMemberRepository chatRoomMemberRepository;
-    private final UserRepository userRepository;
-    private final UserPresenceService userPresenceService;
+    private final RoomMembershipCache roomMembershipCache;
+    private final PresenceService presenceService;
 
     public ChatWebSocketHandler(SimpMessagingTemplate messagingTemplate,
-            ChatRoomMemberRepository chatRoomMemberRepository,
-            UserRepository userRepository,
-            UserPresenceService userPresenceService) {
+            RoomMembershipCache roomMembershipCache,
+            PresenceService presenceService) {
         this.messagingTemplate = messagingTemplate;
-        this.chatRoomMemberRepository = chatRoomMemberRepository;
-        this.userRepository = userRepository;
-        this.userPresenceService = userPresenceService;
+        this.roomMembershipCache = roomMembershipCache;
+        this.presenceService = presenceService;
     }
 
-    // Store typing users for each room
-    private final Map<Long, Map<Long, Long>> typingUsers = new ConcurrentHashMap<>();
-
     // Handle incoming chat messages
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(@Payload WebSocketMessage message, SimpMessageHeaderAccessor headerAccessor) {
         try {
-            Object principal = headerAccessor.getUser();
-            if (principal == null || !(principal instanceof User)) {
+            User user = currentUser(headerAccessor);
+            if (user == null) {
                 return; // User not authenticated
             }
-
-            User user = (User) principal;
             Long roomId = message.getRoomId();
             if (roomId == null || user.getUserId() == null) {
                 return; // Invalid data
             }
 
             // Check if user is member of the room
-            boolean isMember = chatRoomMemberRepository.existsByChatRoom_RoomIdAndUser_UserId(roomId, user.getUserId());
+            boolean isMember = roomMembershipCache.isMember(roomId, user.getUserId());
             if (!isMember) {
                 return; // User not authorized
             }
 
+            presenceService.heartbeat(user.getUserId(), headerAccessor.getSessionId());
+
             // Create message DTO
             MessDTO messageDTO = new MessDTO();
             messageDTO.setRoomId(roomId);
@@ -95,34 +85,21 @@ public class ChatWebSocketHandler {
     @MessageMapping("/chat.typing.start")
     public void handleTypingStart(@Payload WebSocketMessage message, SimpMessageHeaderAccessor headerAccessor) {
         try {
-            Object principal = headerAccessor.getUser();
-            if (principal == null || !(principal instanceof User))
+            User user = currentUser(headerAccessor);
+            if (user == null)
                 return;
-
-            User user = (User) principal;
             Long roomId = message.getRoomId();
             if (roomId == null || user.getUserId() == null) {
                 return; // Invalid data
             }
 
             // Check if user is member of the room
-            boolean isMember = chatRoomMemberRepository.existsByChatRoom_RoomIdAndUser_UserId(roomId, user.getUserId());
+            boolean isMember = roomMembershipCache.isMember(roomId, user.getUserId());
             if (!isMember)
                 return;
 
-            // Add user to typing list
-            typingUsers.computeIfAbsent(roomId, k -> new ConcurrentHashMap<>())
-                    .put(user.getUserId(), System.currentTimeMillis());
-
-            // Notify other users
-            WebSocketMessage wsMessage = new WebSocketMessage(
-                    WebSocketMessage.MessageType.TYPING_START,
-                    roomId,
-                    user.getUserId(),
-                    user.getUsername());
-
-            messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
-
+            // Gia hạn typing; chỉ broadcast TYPING_START khi user mới bắt đầu gõ
+            presenceService.startTyping(roomId, user.getUserId(), user.getUsername());
         } catch (Exception e) {
             log.error("Lỗi khi xử lý typing indicator: {}", e.getMessage(), e);
         }
@@ -134,34 +111,16 @@ public class ChatWebSocketHandler {
     @MessageMapping("/chat.typing.stop")
     public void handleTypingStop(@Payload WebSocketMessage message, SimpMessageHeaderAccessor headerAccessor) {
         try {
-            Object principal = headerAccessor.getUser();
-            if (principal == null || !(principal instanceof User))
+            User user = currentUser(headerAccessor);
+            if (user == null)
                 return;
-
-            User user = (User) principal;
             Long roomId = message.getRoomId();
             if (roomId == null || user.getUserId() == null) {
                 return; // Invalid data
             }
 
-            // Remove user from typing list
-            Map<Long, Long> roomTypingUsers = typingUsers.get(roomId);
-            if (roomTypingUsers != null) {
-                roomTypingUsers.remove(user.getUserId());
-                if (roomTypingUsers.isEmpty()) {
-                    typingUsers.remove(roomId);
-                }
-            }
-
-            // Notify other users
-            WebSocketMessage wsMessage = new WebSocketMessage(
-                    WebSocketMessage.MessageType.TYPING_STOP,
-                    roomId,
-                    user.getUserId(),
-                    user.getUsername());
-
-            messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
-
+            // Broadcast TYPING_STOP nếu user đang typing
+            presenceService.stopTyping(roomId, user.getUserId());
         } catch (Exception e) {
             log.error("Lỗi khi xử lý typing indicator: {}", e.getMessage(), e);
         }
@@ -173,23 +132,21 @@ public class ChatWebSocketHandler {
     @MessageMapping("/chat.join")
     public void handleUserJoin(@Payload WebSocketMessage message, SimpMessageHeaderAccessor headerAccessor) {
         try {
-            Object principal = headerAccessor.getUser();
-            if (principal == null || !(principal instanceof User))
+            User user = currentUser(headerAccessor);
+            if (user == null)
                 return;
-
-            User user = (User) principal;
             Long roomId = message.getRoomId();
             if (roomId == null || user.getUserId() == null) {
                 return; // Invalid data
             }
 
             // Check if user is member of the room
-            boolean isMember = chatRoomMemberRepository.existsByChatRoom_RoomIdAndUser_UserId(roomId, user.getUserId());
+            boolean isMember = roomMembershipCache.isMember(roomId, user.getUserId());
             if (!isMember)
                 return;
 
-            // Mark user as online
-            userPresenceService.markUserOnline(user.getUserId());
+            // Gia hạn online cho session này (broadcast presence gộp theo chu kỳ)
+            presenceService.heartbeat(user.getUserId(), headerAccessor.getSessionId());
 
             // Notify other users
             WebSocketMessage wsMessage = new WebSocketMessage(
@@ -211,27 +168,16 @@ public class ChatWebSocketHandler {
     @MessageMapping("/chat.leave")
     public void handleUserLeave(@Payload WebSocketMessage message, SimpMessageHeaderAccessor headerAccessor) {
         try {
-            Object principal = headerAccessor.getUser();
-            if (principal == null || !(principal instanceof User))
+            User user = currentUser(headerAccessor);
+            if (user == null)
                 return;
-
-            User user = (User) principal;
             Long roomId = message.getRoomId();
             if (roomId == null || user.getUserId() == null) {
                 return; // Invalid data
             }
 
-            // Remove user from typing list
-            Map<Long, Long> roomTypingUsers = typingUsers.get(roomId);
-            if (roomTypingUsers != null) {
-                roomTypingUsers.remove(user.getUserId());
-                if (roomTypingUsers.isEmpty()) {
-                    typingUsers.remove(roomId);
-                }
-            }
-
-            // Mark user as offline
-            userPresenceService.markUserOffline(user.getUserId());
+            // Rời phòng chỉ dừng typing; offline khi hết session hoặc hết heartbeat
+            presenceService.stopTyping(roomId, user.getUserId());
 
             // Notify other users
             WebSocketMessage wsMessage = new WebSocketMessage(
@@ -248,25 +194,21 @@ public class ChatWebSocketHandler {
     }
 
     /**
-     * Get typing users for a room
+     * Heartbeat tường minh (tùy chọn): mọi frame inbound đã gia hạn presence qua PresenceChannelInterceptor
      */
-    public List<String> getTypingUsers(Long roomId) {
-        if (roomId == null) {
-            return List.of();
+    @MessageMapping("/chat.heartbeat")
+    public void handleHeartbeat(SimpMessageHeaderAccessor headerAccessor) {
+        User user = currentUser(headerAccessor);
+        if (user != null && user.getUserId() != null) {
+            presenceService.heartbeat(user.getUserId(), headerAccessor.getSessionId());
         }
-        Map<Long, Long> roomTypingUsers = typingUsers.get(roomId);
-        if (roomTypingUsers == null || roomTypingUsers.isEmpty()) {
-            return List.of();
-        }
-
-        // Clean up old typing indicators (older than 5 seconds)
-        long currentTime = System.currentTimeMillis();
-        roomTypingUsers.entrySet().removeIf(entry -> currentTime - entry.getValue() > 5000);
+    }
 
-        return roomTypingUsers.keySet().stream()
-                .map(userId -> userRepository.findById(userId)
-                        .map(User::getUsername)
-                        .orElse("Unknown"))
-                .toList();
+    // Principal do AuthChannelInterceptor gắn là Authentication chứa User
+    private static User currentUser(SimpMessageHeaderAccessor headerAccessor) {
+        if (headerAccessor.getUser() instanceof Authentication auth && auth.getPrincipal() instanceof User user) {
+            return user;
+        }
+        return null;
     }
 }
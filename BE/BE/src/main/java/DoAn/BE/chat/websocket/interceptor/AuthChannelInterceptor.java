@@ -3,6 +3,7 @@ package DoAn.BE.chat.websocket.interceptor;
 import DoAn.BE.auth.service.JwtService;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.Message;
@@ -42,23 +43,22 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
                     String token = authHeader.substring(7);
                     
                     try {
-                        // Validate JWT token
-                        if (jwtService.validateToken(token)) {
-                            String username = jwtService.extractUsername(token);
+                        // Validate JWT token (verify + lấy claims trong 1 lần parse)
+                        Claims claims = jwtService.parseClaims(token);
+                        String username = claims.getSubject();
+                        
+                        // Load user from database
+                        User user = userRepository.findByUsername(username)
+                            .orElse(null);
+                        
+                        if (user != null) {
+                            // Create authentication object
+                            Authentication auth = new UsernamePasswordAuthenticationToken(
+                                user, null, List.of());
                             
-                            // Load user from database
-                            User user = userRepository.findByUsername(username)
-                                .orElse(null);
-                            
-                            if (user != null) {
-                                // Create authentication object
-                                Authentication auth = new UsernamePasswordAuthenticationToken(
-                                    user, null, List.of());
-                                
-                                // Set user in the accessor
-                                accessor.setUser(auth);
-                                SecurityContextHolder.getContext().setAuthentication(auth);
-                            }
+                            // Set user in the accessor
+                            accessor.setUser(auth);
+                            SecurityContextHolder.getContext().setAuthentication(auth);
                         }
                     } catch (Exception e) {
                         // Token is invalid, connection will be rejected
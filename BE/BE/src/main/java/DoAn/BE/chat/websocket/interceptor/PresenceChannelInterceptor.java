@@ -0,0 +1,43 @@
+package DoAn.BE.chat.websocket.interceptor;
+
+import DoAn.BE.chat.service.PresenceService;
+import DoAn.BE.user.entity.User;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gia hạn presence theo mọi frame STOMP client gửi lên (SEND, SUBSCRIBE, heartbeat frame...)
+ * - Client chỉ bật heartbeat của STOMP, frame heartbeat không tới @MessageMapping nên phải bắt ở clientInbound
+ * - CONNECT do PresenceService.onSessionConnected xử lý, DISCONNECT không gia hạn
+ */
+@Component
+public class PresenceChannelInterceptor implements ChannelInterceptor {
+
+    // Lấy lười: PresenceService -> SimpMessagingTemplate -> cấu hình broker -> WebSocketConfig -> interceptor
+    private final ObjectProvider<PresenceService> presenceService;
+
+    public PresenceChannelInterceptor(ObjectProvider<PresenceService> presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == SimpMessageType.MESSAGE || type == SimpMessageType.SUBSCRIBE
+                || type == SimpMessageType.UNSUBSCRIBE || type == SimpMessageType.HEARTBEAT) {
+            if (SimpMessageHeaderAccessor.getUser(message.getHeaders()) instanceof Authentication auth
+                    && auth.getPrincipal() instanceof User user) {
+                presenceService.getObject().heartbeat(user.getUserId(),
+                        SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            }
+        }
+        return message;
+    }
+}
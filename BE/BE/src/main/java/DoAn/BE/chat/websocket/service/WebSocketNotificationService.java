@@ -1,29 +1,48 @@
 package DoAn.BE.chat.websocket.service;
 
 import DoAn.BE.chat.dto.MessDTO;
-import DoAn.BE.chat.entity.ChatRoomMember;
-import DoAn.BE.chat.repository.ChatRoomMemberRepository;
+import DoAn.BE.chat.websocket.dto.ChatEvent;
 import DoAn.BE.chat.websocket.dto.WebSocketMessage;
 import DoAn.BE.user.entity.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+// Mỗi event phòng gửi 2 dạng:
+// - /topic/room.{id}: WebSocketMessage đầy đủ (web, app cũ)
+// - /topic/room.{id}.compact: ChatEvent gọn (client di động subscribe thay cho topic trên)
+// Tin nhắn mới còn gửi ChatEvent tới /user/{username}/queue/chat.events của từng thành viên
 @Service
+@Slf4j
 public class WebSocketNotificationService {
 
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final String USER_CHAT_EVENTS = "/queue/chat.events";
+
     private final SimpMessagingTemplate messagingTemplate;
-    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final ObjectMapper objectMapper;
 
-    public WebSocketNotificationService(SimpMessagingTemplate messagingTemplate,
-            ChatRoomMemberRepository chatRoomMemberRepository) {
+    public WebSocketNotificationService(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
         this.messagingTemplate = messagingTemplate;
-        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.objectMapper = objectMapper;
     }
 
     // Gửi thông báo tin nhắn mới
-    public void notifyNewMessage(Long roomId, MessDTO message) {
+    // Chạy async trên taskExecutor; danh sách người nhận do caller truyền vào (đã nạp khi lưu tin nhắn)
+    @Async
+    public void notifyNewMessage(Long roomId, MessDTO message, List<String> recipientUsernames) {
         WebSocketMessage wsMessage = new WebSocketMessage(
                 WebSocketMessage.MessageType.CHAT_MESSAGE,
                 roomId,
@@ -34,15 +53,18 @@ public class WebSocketNotificationService {
         wsMessage.setTimestamp(message.getSentAt().toString());
         wsMessage.setData(message); // Set full message object for frontend
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
-        List<ChatRoomMember> members = chatRoomMemberRepository.findByChatRoom_RoomId(roomId);
-        for (ChatRoomMember member : members) {
-            if (!member.getUser().getUserId().equals(message.getSender().getUserId())) {
-                messagingTemplate.convertAndSendToUser(
-                        member.getUser().getUsername(),
-                        "/queue/notifications",
-                        wsMessage);
+        try {
+            messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+
+            // ChatEvent serialize 1 lần, dùng chung payload cho topic compact và queue của từng thành viên
+            Message<byte[]> compact = encode(ChatEvent.message(message));
+            messagingTemplate.send("/topic/room." + roomId + COMPACT_SUFFIX, compact);
+            for (String username : recipientUsernames) {
+                messagingTemplate.send(userDestination(username, USER_CHAT_EVENTS), compact);
             }
+        } catch (MessagingException e) {
+            log.warn("Không gửi được WebSocket cho tin nhắn {} phòng {}: {}", message.getMessageId(), roomId,
+                    e.getMessage());
         }
     }
 
@@ -56,7 +78,8 @@ public class WebSocketNotificationService {
                 message.getContent());
         wsMessage.setMessageId(message.getMessageId());
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        sendToRoom(roomId, wsMessage, ChatEvent.edited(roomId, message.getMessageId(),
+                message.getSender().getUserId(), message.getContent()));
     }
 
     // Thông báo tin nhắn đã được xóa
@@ -69,7 +92,7 @@ public class WebSocketNotificationService {
                 null);
         wsMessage.setMessageId(messageId);
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        sendToRoom(roomId, wsMessage, ChatEvent.deleted(roomId, messageId, userId));
     }
 
     // Thông báo thành viên mới tham gia
@@ -81,7 +104,7 @@ public class WebSocketNotificationService {
                 user.getUsername(),
                 user.getUsername() + " đã tham gia phòng chat");
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        sendToRoom(roomId, wsMessage, ChatEvent.member("join", roomId, user.getUserId()));
     }
 
     // Thông báo thành viên rời khỏi phòng
@@ -93,7 +116,7 @@ public class WebSocketNotificationService {
                 user.getUsername(),
                 user.getUsername() + " đã rời khỏi phòng chat");
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        sendToRoom(roomId, wsMessage, ChatEvent.member("left", roomId, user.getUserId()));
     }
 
     // Thông báo cập nhật thông tin phòng
@@ -105,7 +128,7 @@ public class WebSocketNotificationService {
                 null,
                 updateMessage);
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        sendToRoom(roomId, wsMessage, ChatEvent.roomUpdated(roomId, updateMessage));
     }
 
     // Gửi typing indicator
@@ -115,7 +138,25 @@ public class WebSocketNotificationService {
 
         WebSocketMessage wsMessage = new WebSocketMessage(type, roomId, userId, username);
 
-        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        sendToRoom(roomId, wsMessage, ChatEvent.typing(roomId, userId, isTyping));
+    }
+
+    // Thông báo user online/offline: 1 event / user lên topic chung (không lặp theo từng phòng)
+    public void notifyPresence(Long userId, String username, boolean isOnline) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("username", username);
+        data.put("isOnline", isOnline);
+
+        WebSocketMessage wsMessage = new WebSocketMessage(
+                WebSocketMessage.MessageType.NOTIFICATION,
+                null,
+                userId,
+                username,
+                username + (isOnline ? " đã online" : " đã offline"));
+        wsMessage.setData(data);
+
+        messagingTemplate.convertAndSend("/topic/presence", wsMessage);
     }
 
     // Gửi notification chung
@@ -140,4 +181,26 @@ public class WebSocketNotificationService {
 
         messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
     }
+
+    private void sendToRoom(Long roomId, WebSocketMessage wsMessage, ChatEvent compactEvent) {
+        messagingTemplate.convertAndSend("/topic/room." + roomId, wsMessage);
+        messagingTemplate.send("/topic/room." + roomId + COMPACT_SUFFIX, encode(compactEvent));
+    }
+
+    // Serialize sẵn thành JSON bytes: gửi nhiều đích không phải convert lại
+    private Message<byte[]> encode(ChatEvent event) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không serialize được ChatEvent", e);
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private String userDestination(String username, String destination) {
+        return messagingTemplate.getUserDestinationPrefix() + username.replace("/", "%2F") + destination;
+    }
 }
@@ -1,12 +1,46 @@
 package DoAn.BE.common.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 // Cấu hình async processing và scheduled tasks cho toàn hệ thống
 @Configuration
 @EnableAsync // Cho phép @Async methods
 @EnableScheduling // Cho phép @Scheduled methods
 public class AsyncSchedulingConfig {
+
+    /**
+     * Executor mặc định cho các @Async method
+     * Khai báo tường minh vì khi có executor riêng, Spring Boot không tự tạo applicationTaskExecutor nữa
+     */
+    @Bean(name = { "taskExecutor", "applicationTaskExecutor" })
+    public ThreadPoolTaskExecutor taskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setThreadNamePrefix("task-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor giới hạn cho tính lương hàng loạt
+     * Số luồng nhỏ hơn Hikari pool để các request khác vẫn lấy được connection
+     */
+    @Bean(name = "payrollBatchExecutor")
+    public ThreadPoolTaskExecutor payrollBatchExecutor(
+            @Value("${payroll.batch.threads:4}") int threads,
+            @Value("${payroll.batch.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("payroll-batch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
 }
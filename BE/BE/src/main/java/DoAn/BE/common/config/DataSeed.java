@@ -2,8 +2,11 @@ package DoAn.BE.common.config;
 
 import DoAn.BE.chat.entity.*;
 import DoAn.BE.chat.repository.*;
+import DoAn.BE.chat.service.InboxProjectionService;
+import DoAn.BE.chat.service.MessageStatusService;
 import DoAn.BE.hr.entity.*;
 import DoAn.BE.hr.repository.*;
+import DoAn.BE.hr.service.PayrollCalculator;
 import DoAn.BE.notification.entity.*;
 import DoAn.BE.notification.repository.*;
 import DoAn.BE.project.entity.*;
@@ -60,7 +63,9 @@ public class DataSeed {
     private final FileRepository fileRepository;
     private final NotificationRepository notificationRepository;
     private final ThongBaoRepository thongBaoRepository;
-    private final MessageStatusRepository messageStatusRepository;
+    private final InboxProjectionService inboxProjectionService;
+    private final MessageStatusService messageStatusService;
+    private final PayrollCalculator payrollCalculator;
 
     @Bean
     @Order(2) // Chạy SAU DefaultUsersInitializer (@Order(1))
@@ -358,8 +363,8 @@ public class DataSeed {
                 // Add overtime hours for some employees (0-10 hours)
                 bl.setGioLamThem(random.nextInt(11));
 
-                // @PrePersist will auto-calculate: bhxh, bhyt, bhtn, thueTNCN,
-                // tongLuong, tongKhauTru, luongThucNhan
+                // Tính bhxh, bhyt, bhtn, thueTNCN, tongLuong, tongKhauTru, luongThucNhan
+                payrollCalculator.tinhLuong(bl);
 
                 bangLuongRepository.save(bl);
                 payrollCount++;
@@ -825,14 +830,16 @@ public class DataSeed {
             message.setContent(messageContents[i % messageContents.length]);
             message.setMessageType(Message.MessageType.TEXT);
             message.setSentAt(LocalDateTime.now().minusHours(100 - i));
-            savedMessages.add(messageRepository.save(message));
+            Message saved = messageRepository.save(message);
+            // Giống lúc gửi thật: tin cuối của phòng + last activity / unread_count của thành viên
+            inboxProjectionService.onMessageSent(saved);
+            savedMessages.add(saved);
         }
         log.info("   ✅ Created 100 messages");
 
-        // 3.1 Message Status (DELIVERED/SEEN) - mark some messages as seen
-        log.info("👁️ Creating Message Status records...");
-        int statusCount = 0;
-        Random random = new Random();
+        // 3.1 Read pointers - mark some messages as seen (dời con trỏ đã đọc, unread_count đếm lại)
+        log.info("👁️ Marking messages as seen...");
+        int seenCount = 0;
         // Only process first 20 messages to avoid slow queries
         int messagesToProcess = Math.min(20, savedMessages.size());
         for (int i = 0; i < messagesToProcess; i++) {
@@ -841,24 +848,11 @@ public class DataSeed {
             int viewerIndex = (i + 1) % Math.min(5, allUsers.size());
             User viewer = allUsers.get(viewerIndex);
             if (!viewer.getUserId().equals(msg.getSender().getUserId())) {
-                try {
-                    MessageStatus status = new MessageStatus();
-                    MessageStatusId statusId = new MessageStatusId();
-                    statusId.setMessageId(msg.getMessageId());
-                    statusId.setUserId(viewer.getUserId());
-                    status.setId(statusId);
-                    status.setMessage(msg);
-                    status.setUser(viewer);
-                    status.setStatus(MessageStatus.MessageStatusType.SEEN);
-                    status.setTimestamp(msg.getSentAt().plusMinutes(random.nextInt(30) + 1));
-                    messageStatusRepository.save(status);
-                    statusCount++;
-                } catch (Exception e) {
-                    log.debug("Skipping duplicate message status");
-                }
+                messageStatusService.markMessageAsSeen(msg.getMessageId(), viewer.getUserId());
+                seenCount++;
             }
         }
-        log.info("   ✅ Created {} message status records", statusCount);
+        log.info("   ✅ Marked {} messages as seen", seenCount);
 
         log.info("💬 ========== CHAT MODULE COMPLETED ==========\n");
     }
@@ -0,0 +1,59 @@
+package DoAn.BE.common.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV (RFC 4180) ghi trực tiếp ra stream
+ * Có BOM UTF-8 để Excel mở đúng tiếng Việt
+ */
+public class CsvStreamWriter implements TabularStreamWriter {
+
+    private final Writer writer;
+
+    public CsvStreamWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write('\uFEFF');
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(TabularStreamWriter.formatText(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String text) throws IOException {
+        boolean needsQuote = false;
+        for (int i = 0; i < text.length() && !needsQuote; i++) {
+            char c = text.charAt(i);
+            needsQuote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
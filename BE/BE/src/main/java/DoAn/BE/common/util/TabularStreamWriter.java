@@ -0,0 +1,89 @@
+package DoAn.BE.common.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Ghi dữ liệu dạng bảng thẳng ra OutputStream theo từng dòng (không giữ dữ liệu trong bộ nhớ)
+ * Dùng cho export lớn: đọc 1 dòng từ cursor -> ghi 1 dòng ra response
+ */
+public interface TabularStreamWriter extends Closeable {
+
+    DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    /**
+     * Ghi 1 dòng; Number ghi dạng số, ngày giờ định dạng kiểu Việt Nam, null là ô trống
+     */
+    void writeRow(Object... values) throws IOException;
+
+    /**
+     * Kết thúc file (đóng sheet/zip) - không đóng OutputStream gốc
+     */
+    @Override
+    void close() throws IOException;
+
+    enum Format {
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", ".xlsx"),
+        CSV("text/csv; charset=UTF-8", ".csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format from(String value) {
+            return value != null && value.equalsIgnoreCase("csv") ? CSV : XLSX;
+        }
+    }
+
+    static TabularStreamWriter open(Format format, OutputStream out, String sheetName) throws IOException {
+        return format == Format.CSV ? new CsvStreamWriter(out) : new XlsxStreamWriter(out, sheetName);
+    }
+
+    static String formatText(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof BigDecimal bd) {
+            return bd.toPlainString();
+        }
+        if (value instanceof LocalDate date) {
+            return date.format(DATE_FORMATTER);
+        }
+        if (value instanceof LocalTime time) {
+            return time.format(TIME_FORMATTER);
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.format(DATE_TIME_FORMATTER);
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().format(DATE_FORMATTER);
+        }
+        if (value instanceof java.sql.Time time) {
+            return time.toLocalTime().format(TIME_FORMATTER);
+        }
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime().format(DATE_TIME_FORMATTER);
+        }
+        return value.toString();
+    }
+}
@@ -1,10 +1,15 @@
 package DoAn.BE.hr.controller;
 
+import DoAn.BE.hr.dto.BangLuongBatchStatusDTO;
 import DoAn.BE.hr.dto.BangLuongDTO;
 import DoAn.BE.hr.dto.CreateBangLuongRequest;
+import DoAn.BE.hr.dto.MoPhongLuongDTO;
+import DoAn.BE.hr.dto.MoPhongLuongRequest;
 import DoAn.BE.hr.dto.UpdateBangLuongRequest;
 import DoAn.BE.hr.entity.BangLuong;
 import DoAn.BE.hr.mapper.BangLuongMapper;
+import DoAn.BE.hr.service.BangLuongBatchService;
+import DoAn.BE.hr.service.BangLuongMoPhongService;
 import DoAn.BE.hr.service.BangLuongService;
 import DoAn.BE.user.entity.User;
 import jakarta.validation.Valid;
@@ -29,10 +34,15 @@ public class BangLuongController {
 
     private final BangLuongService bangLuongService;
     private final BangLuongMapper bangLuongMapper;
+    private final BangLuongBatchService bangLuongBatchService;
+    private final BangLuongMoPhongService bangLuongMoPhongService;
 
-    public BangLuongController(BangLuongService bangLuongService, BangLuongMapper bangLuongMapper) {
+    public BangLuongController(BangLuongService bangLuongService, BangLuongMapper bangLuongMapper,
+            BangLuongBatchService bangLuongBatchService, BangLuongMoPhongService bangLuongMoPhongService) {
         this.bangLuongService = bangLuongService;
         this.bangLuongMapper = bangLuongMapper;
+        this.bangLuongBatchService = bangLuongBatchService;
+        this.bangLuongMoPhongService = bangLuongMoPhongService;
     }
 
     private User getCurrentUser() {
@@ -191,21 +201,48 @@ public class BangLuongController {
         return ResponseEntity.status(HttpStatus.CREATED).body(bangLuongMapper.toDTO(bangLuong));
     }
 
-    // Tính lương tự động cho tất cả
+    // Tính lương tự động cho tất cả (chờ tới khi batch chạy xong)
     @PostMapping("/tinh-tu-dong-tat-ca")
     public ResponseEntity<Map<String, Object>> tinhLuongTuDongChoTatCa(
             @RequestParam Integer thang,
             @RequestParam Integer nam) {
         User currentUser = getCurrentUser();
-        List<BangLuong> bangLuongs = bangLuongService.tinhLuongTuDongChoTatCa(thang, nam, currentUser);
+        BangLuongBatchStatusDTO status = bangLuongBatchService.chayVaCho(thang, nam, currentUser);
         Map<String, Object> response = new HashMap<>();
         response.put("thang", thang);
         response.put("nam", nam);
-        response.put("soLuongBangLuong", bangLuongs.size());
-        response.put("danhSach", bangLuongMapper.toDTOList(bangLuongs));
+        response.put("soLuongBangLuong", status.getThanhCong());
+        response.put("jobId", status.getJobId());
+        response.put("trangThai", status.getTrangThai());
+        response.put("boQua", status.getBoQua());
+        response.put("loi", status.getLoi());
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // Bắt đầu tính lương hàng loạt (chạy nền), theo dõi tiến độ qua GET /batch/{jobId}
+    @PostMapping("/batch")
+    public ResponseEntity<BangLuongBatchStatusDTO> batDauTinhLuongHangLoat(
+            @RequestParam Integer thang,
+            @RequestParam Integer nam) {
+        User currentUser = getCurrentUser();
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(bangLuongBatchService.batDau(thang, nam, currentUser));
+    }
+
+    // Tiến độ job tính lương hàng loạt
+    @GetMapping("/batch/{jobId}")
+    public ResponseEntity<BangLuongBatchStatusDTO> getTrangThaiTinhLuongHangLoat(@PathVariable String jobId) {
+        User currentUser = getCurrentUser();
+        return ResponseEntity.ok(bangLuongBatchService.getTrangThai(jobId, currentUser));
+    }
+
+    // Mô phỏng lương (what-if) cho toàn bộ nhân viên - không lưu DB
+    @PostMapping("/mo-phong")
+    public ResponseEntity<MoPhongLuongDTO> moPhongLuong(@Valid @RequestBody MoPhongLuongRequest request) {
+        User currentUser = getCurrentUser();
+        return ResponseEntity.ok(bangLuongMoPhongService.moPhong(request, currentUser));
+    }
+
     // Lấy danh sách bảng lương có phân trang
     @GetMapping("/page")
     public ResponseEntity<Page<BangLuongDTO>> getBangLuongPage(
@@ -1,6 +1,7 @@
 package DoAn.BE.hr.controller;
 
 import DoAn.BE.common.util.PermissionUtil;
+import DoAn.BE.common.util.TabularStreamWriter;
 import DoAn.BE.hr.service.ExportService;
 import DoAn.BE.user.entity.User;
 import lombok.RequiredArgsConstructor;
@@ -11,8 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
@@ -29,92 +30,91 @@ public class ExportController {
     }
     
     /**
-     * Export danh sách nhân viên ra Excel
-     * GET /api/export/nhan-vien/excel
+     * Export danh sách nhân viên ra Excel/CSV (streaming)
+     * GET /api/export/nhan-vien/excel?format=xlsx|csv
      */
     @GetMapping("/nhan-vien/excel")
-    public ResponseEntity<byte[]> exportNhanVienToExcel() throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportNhanVienToExcel(
+            @RequestParam(defaultValue = "xlsx") String format) {
         User currentUser = getCurrentUser();
         PermissionUtil.checkHRPermission(currentUser);
         
-        byte[] excelData = exportService.exportNhanVienToExcel();
+        TabularStreamWriter.Format fmt = TabularStreamWriter.Format.from(format);
+        String filename = "DanhSachNhanVien_" + LocalDate.now().format(DateTimeFormatter.ofPattern("ddMMyyyy"));
         
-        String filename = "DanhSachNhanVien_" + LocalDate.now().format(DateTimeFormatter.ofPattern("ddMMyyyy")) + ".xlsx";
-        
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-            .body(excelData);
+        return streaming(filename, fmt, out -> exportService.exportNhanVien(fmt, out));
     }
     
     /**
-     * Export chấm công theo tháng ra Excel
-     * GET /api/export/cham-cong/excel?thang=10&nam=2024
+     * Export chấm công theo tháng ra Excel/CSV (streaming)
+     * GET /api/export/cham-cong/excel?thang=10&nam=2024&format=xlsx|csv
      */
     @GetMapping("/cham-cong/excel")
-    public ResponseEntity<byte[]> exportChamCongToExcel(
+    public ResponseEntity<StreamingResponseBody> exportChamCongToExcel(
             @RequestParam int thang,
-            @RequestParam int nam) throws IOException {
+            @RequestParam int nam,
+            @RequestParam(defaultValue = "xlsx") String format) {
         User currentUser = getCurrentUser();
         if (!currentUser.isManagerHR() && !currentUser.isManagerAccounting() && !currentUser.isAdmin()) {
             throw new RuntimeException("Chỉ HR Manager, Accounting Manager và Admin mới có quyền export chấm công");
         }
         
-        byte[] excelData = exportService.exportChamCongToExcel(thang, nam);
-        
-        String filename = "ChamCong_" + String.format("%02d%d", thang, nam) + ".xlsx";
+        TabularStreamWriter.Format fmt = TabularStreamWriter.Format.from(format);
+        String filename = "ChamCong_" + String.format("%02d%d", thang, nam);
         
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-            .body(excelData);
+        return streaming(filename, fmt, out -> exportService.exportChamCong(thang, nam, fmt, out));
     }
     
     /**
-     * Export bảng lương theo tháng ra Excel
-     * GET /api/export/bang-luong/excel?thang=10&nam=2024
+     * Export bảng lương theo tháng ra Excel/CSV (streaming)
+     * GET /api/export/bang-luong/excel?thang=10&nam=2024&format=xlsx|csv
      */
     @GetMapping("/bang-luong/excel")
-    public ResponseEntity<byte[]> exportBangLuongToExcel(
+    public ResponseEntity<StreamingResponseBody> exportBangLuongToExcel(
             @RequestParam int thang,
-            @RequestParam int nam) throws IOException {
+            @RequestParam int nam,
+            @RequestParam(defaultValue = "xlsx") String format) {
         User currentUser = getCurrentUser();
         if (!currentUser.isManagerHR() && !currentUser.isManagerAccounting() && !currentUser.isAdmin()) {
             throw new RuntimeException("Chỉ HR Manager, Accounting Manager và Admin mới có quyền export bảng lương");
         }
         
-        byte[] excelData = exportService.exportBangLuongToExcel(thang, nam);
-        
-        String filename = "BangLuong_" + String.format("%02d%d", thang, nam) + ".xlsx";
+        TabularStreamWriter.Format fmt = TabularStreamWriter.Format.from(format);
+        String filename = "BangLuong_" + String.format("%02d%d", thang, nam);
         
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-            .body(excelData);
+        return streaming(filename, fmt, out -> exportService.exportBangLuong(thang, nam, fmt, out));
     }
     
     /**
-     * Export danh sách nghỉ phép ra Excel
-     * GET /api/export/nghi-phep/excel?startDate=2024-01-01&endDate=2024-12-31
+     * Export danh sách nghỉ phép ra Excel/CSV (streaming)
+     * GET /api/export/nghi-phep/excel?startDate=2024-01-01&endDate=2024-12-31&format=xlsx|csv
      */
     @GetMapping("/nghi-phep/excel")
-    public ResponseEntity<byte[]> exportNghiPhepToExcel(
+    public ResponseEntity<StreamingResponseBody> exportNghiPhepToExcel(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) throws IOException {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "xlsx") String format) {
         User currentUser = getCurrentUser();
         if (!currentUser.isManagerHR() && !currentUser.isManagerAccounting() && 
             !currentUser.isManagerProject() && !currentUser.isAdmin()) {
             throw new RuntimeException("Chỉ Manager và Admin mới có quyền export nghỉ phép");
         }
         
-        byte[] excelData = exportService.exportNghiPhepToExcel(startDate, endDate);
-        
+        TabularStreamWriter.Format fmt = TabularStreamWriter.Format.from(format);
         String filename = "NghiPhep_" + startDate.format(DateTimeFormatter.ofPattern("ddMMyyyy")) + 
-                         "_" + endDate.format(DateTimeFormatter.ofPattern("ddMMyyyy")) + ".xlsx";
+                         "_" + endDate.format(DateTimeFormatter.ofPattern("ddMMyyyy"));
         
+        return streaming(filename, fmt, out -> exportService.exportNghiPhep(startDate, endDate, fmt, out));
+    }
+    
+    /**
+     * Response ghi thẳng ra output stream (chạy trên async thread của MVC, không buffer toàn bộ file)
+     */
+    private ResponseEntity<StreamingResponseBody> streaming(String filename, TabularStreamWriter.Format format,
+            StreamingResponseBody body) {
         return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-            .body(excelData);
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + format.getExtension() + "\"")
+            .contentType(MediaType.parseMediaType(format.getContentType()))
+            .body(body);
     }
 }
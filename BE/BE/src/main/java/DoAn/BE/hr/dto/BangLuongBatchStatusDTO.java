@@ -0,0 +1,33 @@
+package DoAn.BE.hr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Tiến độ của một lần tính lương hàng loạt
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BangLuongBatchStatusDTO {
+
+    private String jobId;
+    private Integer thang;
+    private Integer nam;
+    private String trangThai; // DANG_CHAY, HOAN_THANH, HOAN_THANH_CO_LOI
+
+    private Integer tongNhanVien;
+    private Integer tongChunk;
+    private Integer chunkHoanThanh;
+    private Integer thanhCong; // Số bảng lương đã ghi
+    private Integer boQua; // Đã có bảng lương trong kỳ hoặc chưa có hợp đồng hiệu lực
+    private Integer loi; // Số nhân viên thuộc chunk bị lỗi (chạy lại để tiếp tục)
+
+    private LocalDateTime batDau;
+    private LocalDateTime ketThuc;
+    private List<String> danhSachLoi;
+}
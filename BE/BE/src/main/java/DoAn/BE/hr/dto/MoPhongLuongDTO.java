@@ -0,0 +1,60 @@
+package DoAn.BE.hr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Kết quả mô phỏng lương: tổng theo phòng ban và chênh lệch từng nhân viên (không lưu DB)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MoPhongLuongDTO {
+
+    private Integer thang;
+    private Integer nam;
+    private int soNhanVien;
+    private int boQua; // Nhân viên chưa có hợp đồng hiệu lực
+
+    // Tổng chi phí lương (tổng thu nhập) và tổng thực nhận
+    private BigDecimal tongLuongHienTai;
+    private BigDecimal tongLuongMoPhong;
+    private BigDecimal tongThucNhanHienTai;
+    private BigDecimal tongThucNhanMoPhong;
+    private BigDecimal chenhLechTongLuong;
+
+    private List<PhongBanTong> theoPhongBan;
+    private List<NhanVienChenhLech> nhanViens;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PhongBanTong {
+        private Long phongbanId;
+        private String tenPhongBan;
+        private long soNhanVien;
+        private BigDecimal tongLuongHienTai;
+        private BigDecimal tongLuongMoPhong;
+        private BigDecimal tongThucNhanHienTai;
+        private BigDecimal tongThucNhanMoPhong;
+        private BigDecimal chenhLech; // Chênh lệch tổng lương
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NhanVienChenhLech {
+        private Long nhanvienId;
+        private String hoTen;
+        private Long phongbanId;
+        private BigDecimal tongLuongHienTai;
+        private BigDecimal tongLuongMoPhong;
+        private BigDecimal thueHienTai;
+        private BigDecimal thueMoPhong;
+        private BigDecimal thucNhanHienTai;
+        private BigDecimal thucNhanMoPhong;
+        private BigDecimal chenhLechThucNhan;
+    }
+}
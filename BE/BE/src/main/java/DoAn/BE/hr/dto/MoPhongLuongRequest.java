@@ -0,0 +1,65 @@
+package DoAn.BE.hr.dto;
+
+import java.math.BigDecimal;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Tham số mô phỏng lương (what-if) - các trường để trống giữ nguyên giá trị hiện tại
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MoPhongLuongRequest {
+
+    // Kỳ lấy dữ liệu chấm công
+    @NotNull(message = "Tháng không được để trống")
+    @Min(value = 1, message = "Tháng phải từ 1-12")
+    @Max(value = 12, message = "Tháng phải từ 1-12")
+    private Integer thang;
+
+    @NotNull(message = "Năm không được để trống")
+    @Min(value = 2020, message = "Năm phải từ 2020 trở đi")
+    private Integer nam;
+
+    // % thay đổi lương cơ bản / phụ cấp (10 = tăng 10%, -5 = giảm 5%)
+    @DecimalMin(value = "-100", message = "Phần trăm thay đổi phải >= -100")
+    @DecimalMax(value = "1000", message = "Phần trăm thay đổi phải <= 1000")
+    private BigDecimal phanTramLuongCoBan;
+
+    @DecimalMin(value = "-100", message = "Phần trăm thay đổi phải >= -100")
+    @DecimalMax(value = "1000", message = "Phần trăm thay đổi phải <= 1000")
+    private BigDecimal phanTramPhuCap;
+
+    // Thưởng cộng thêm cho mỗi nhân viên (VND)
+    @DecimalMin(value = "0", message = "Thưởng phải >= 0")
+    @DecimalMax(value = "1000000000", message = "Thưởng phải <= 1.000.000.000")
+    private BigDecimal thuongMoiNguoi;
+
+    // Giảm trừ gia cảnh bản thân (VND/tháng)
+    @Min(value = 0, message = "Giảm trừ bản thân phải >= 0")
+    @Max(value = 1_000_000_000L, message = "Giảm trừ bản thân phải <= 1.000.000.000")
+    private Long giamTruBanThan;
+
+    // Tỷ lệ bảo hiểm (0.08 = 8%), tối đa 3 chữ số thập phân (PayrollCalculator tính theo phần nghìn)
+    @DecimalMin(value = "0", message = "Tỷ lệ BHXH phải >= 0")
+    @DecimalMax(value = "1", message = "Tỷ lệ BHXH phải <= 1")
+    @Digits(integer = 1, fraction = 3, message = "Tỷ lệ BHXH tối đa 3 chữ số thập phân")
+    private BigDecimal bhxhRate;
+
+    @DecimalMin(value = "0", message = "Tỷ lệ BHYT phải >= 0")
+    @DecimalMax(value = "1", message = "Tỷ lệ BHYT phải <= 1")
+    @Digits(integer = 1, fraction = 3, message = "Tỷ lệ BHYT tối đa 3 chữ số thập phân")
+    private BigDecimal bhytRate;
+
+    @DecimalMin(value = "0", message = "Tỷ lệ BHTN phải >= 0")
+    @DecimalMax(value = "1", message = "Tỷ lệ BHTN phải <= 1")
+    @Digits(integer = 1, fraction = 3, message = "Tỷ lệ BHTN tối đa 3 chữ số thập phân")
+    private BigDecimal bhtnRate;
+}
@@ -0,0 +1,73 @@
+package DoAn.BE.hr.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bảng tổng hợp (rollup) theo tháng cho dashboard
+ * Khóa: (loai, nam, thang, phongbanId, trangThai)
+ * - CHAM_CONG: soLuong = số lượt chấm công, tongGio = tổng giờ làm
+ * - BANG_LUONG: soLuong = số bảng lương, tongTien = tổng lương thực nhận, tongNgay = tổng ngày công
+ * - NGHI_PHEP: soLuong = số đơn (theo tháng của ngày bắt đầu), tongNgay = tổng số ngày nghỉ
+ * Được cập nhật cộng dồn khi ghi dữ liệu và dựng lại toàn bộ bởi ThongKeThangService.rebuild()
+ */
+@Entity
+@Table(name = "thong_ke_thang", uniqueConstraints = @UniqueConstraint(
+        name = "uk_thong_ke_thang",
+        columnNames = { "loai", "nam", "thang", "phongban_id", "trang_thai" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThongKeThang {
+
+    // Giá trị phongbanId cho nhân viên chưa thuộc phòng ban nào
+    public static final long KHONG_PHONG_BAN = 0L;
+
+    // Giá trị trangThai khi bản ghi gốc chưa có trạng thái
+    public static final String KHONG_XAC_DINH = "KHONG_XAC_DINH";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "thongke_id")
+    private Long thongkeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "loai", nullable = false, length = 30)
+    private LoaiThongKe loai;
+
+    @Column(name = "nam", nullable = false)
+    private Integer nam;
+
+    @Column(name = "thang", nullable = false)
+    private Integer thang;
+
+    @Column(name = "phongban_id", nullable = false)
+    private Long phongbanId = KHONG_PHONG_BAN;
+
+    @Column(name = "trang_thai", nullable = false, length = 50)
+    private String trangThai = KHONG_XAC_DINH;
+
+    @Column(name = "so_luong", nullable = false)
+    private Long soLuong = 0L;
+
+    @Column(name = "tong_tien", nullable = false, precision = 19, scale = 2)
+    private BigDecimal tongTien = BigDecimal.ZERO;
+
+    @Column(name = "tong_gio", nullable = false, precision = 12, scale = 2)
+    private BigDecimal tongGio = BigDecimal.ZERO;
+
+    @Column(name = "tong_ngay", nullable = false)
+    private Long tongNgay = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum LoaiThongKe {
+        CHAM_CONG,
+        BANG_LUONG,
+        NGHI_PHEP
+    }
+}
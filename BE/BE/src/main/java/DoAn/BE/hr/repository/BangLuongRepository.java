@@ -20,6 +20,10 @@ public interface BangLuongRepository extends JpaRepository<BangLuong, Long> {
 
     // Tìm bảng lương theo nhân viên và tháng năm
     Optional<BangLuong> findByNhanVien_NhanvienIdAndThangAndNam(Long nhanvienId, Integer thang, Integer nam);
+
+    // Danh sách nhân viên đã có bảng lương trong kỳ (dùng để bỏ qua khi chạy lại batch)
+    @Query("SELECT bl.nhanVien.nhanvienId FROM BangLuong bl WHERE bl.thang = :thang AND bl.nam = :nam")
+    List<Long> findNhanvienIdsByThangAndNam(@Param("thang") Integer thang, @Param("nam") Integer nam);
     
     // Tìm bảng lương theo trạng thái
     List<BangLuong> findByTrangThai(String trangThai);
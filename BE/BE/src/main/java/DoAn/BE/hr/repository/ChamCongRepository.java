@@ -41,6 +41,17 @@ public interface ChamCongRepository extends JpaRepository<ChamCong, Long> {
                      @Param("startDate") LocalDate startDate,
                      @Param("endDate") LocalDate endDate);
 
+       // Tổng hợp chấm công trong kỳ cho tất cả nhân viên: [nhanvienId, soNgayCong, tongGioLam]
+       // Cùng điều kiện với countWorkingDaysByNhanVienAndMonth / sumWorkingHoursByNhanVienAndMonth
+       @Query(value = "SELECT cc.nhanvien_id, " +
+                     "SUM(CASE WHEN cc.trang_thai IN ('DU_GIO', 'DI_TRE', 'VE_SOM') THEN 1 ELSE 0 END), " +
+                     "COALESCE(SUM(cc.so_gio_lam), 0) " +
+                     "FROM cham_cong cc " +
+                     "WHERE cc.ngay_cham BETWEEN :startDate AND :endDate " +
+                     "GROUP BY cc.nhanvien_id", nativeQuery = true)
+       List<Object[]> sumCongTheoNhanVien(@Param("startDate") LocalDate startDate,
+                     @Param("endDate") LocalDate endDate);
+
        // Đếm số ngày đi trễ (dựa vào gioVao > 08:00) -> 8 * 60 = 480 minutes
        @Query(value = "SELECT COUNT(*) FROM cham_cong cc " +
                      "WHERE cc.nhanvien_id = :nhanvienId " +
@@ -66,4 +77,20 @@ public interface ChamCongRepository extends JpaRepository<ChamCong, Long> {
 
        // Tìm chấm công theo danh sách user ID (cho Project Manager)
        List<ChamCong> findByNhanVien_User_UserIdIn(List<Long> userIds);
+
+       // User ID của nhân viên đã check-in nhưng chưa check-out trong ngày (cho scheduled job)
+       @Query("SELECT DISTINCT u.userId FROM ChamCong cc JOIN cc.nhanVien nv JOIN nv.user u " +
+                     "WHERE cc.ngayCham = :ngay AND cc.gioVao IS NOT NULL AND cc.gioRa IS NULL")
+       List<Long> findUserIdsChuaCheckout(@Param("ngay") LocalDate ngay);
+
+       // Tổng hợp chấm công trong kỳ theo user: [userId, tổng số ngày, số ngày đi trễ]
+       // LEFT JOIN để nhân viên không có bản ghi nào vẫn có dòng (0, 0)
+       @Query("SELECT u.userId, COUNT(cc), " +
+                     "COALESCE(SUM(CASE WHEN cc.trangThai = :diTre THEN 1 ELSE 0 END), 0) " +
+                     "FROM NhanVien nv JOIN nv.user u " +
+                     "LEFT JOIN nv.chamCongs cc ON cc.ngayCham BETWEEN :startDate AND :endDate " +
+                     "GROUP BY u.userId")
+       List<Object[]> getTongKetTheoUser(@Param("startDate") LocalDate startDate,
+                     @Param("endDate") LocalDate endDate,
+                     @Param("diTre") ChamCong.TrangThaiChamCong diTre);
 }
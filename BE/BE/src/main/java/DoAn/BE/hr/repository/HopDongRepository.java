@@ -30,6 +30,12 @@ public interface HopDongRepository extends JpaRepository<HopDong, Long> {
     Optional<HopDong> findFirstByNhanVien_NhanvienIdAndTrangThaiOrderByNgayBatDauDesc(
         Long nhanvienId, TrangThaiHopDong trangThai);
     
+    // Lương cơ bản của mọi hợp đồng còn hiệu lực: [nhanvienId, luongCoBan]
+    // Sắp xếp theo ngày bắt đầu tăng dần để hợp đồng mới nhất ghi đè khi đưa vào Map
+    @Query("SELECT hd.nhanVien.nhanvienId, hd.luongCoBan FROM HopDong hd " +
+           "WHERE hd.trangThai = 'HIEU_LUC' ORDER BY hd.ngayBatDau ASC")
+    List<Object[]> findLuongCoBanHieuLuc();
+
     // Tìm hợp đồng sắp hết hạn
     @Query("SELECT hd FROM HopDong hd WHERE hd.trangThai = 'HIEU_LUC' " +
            "AND hd.ngayKetThuc IS NOT NULL " +
@@ -45,6 +51,17 @@ public interface HopDongRepository extends JpaRepository<HopDong, Long> {
     // Đếm theo trạng thái
     long countByTrangThai(TrangThaiHopDong trangThai);
     
+    // Đếm hợp đồng sắp hết hạn
+    @Query("SELECT COUNT(hd) FROM HopDong hd WHERE hd.trangThai = 'HIEU_LUC' " +
+           "AND hd.ngayKetThuc IS NOT NULL " +
+           "AND hd.ngayKetThuc BETWEEN :startDate AND :endDate")
+    long countExpiringContracts(@Param("startDate") LocalDate startDate,
+                                @Param("endDate") LocalDate endDate);
+
+    // Thống kê theo trạng thái hợp đồng (cần cho dashboard)
+    @Query("SELECT hd.trangThai, COUNT(hd) FROM HopDong hd GROUP BY hd.trangThai")
+    List<Object[]> getStatsByTrangThai();
+
     // Thống kê theo loại hợp đồng (cần cho dashboard)
     @Query("SELECT hd.loaiHopDong, COUNT(hd) FROM HopDong hd GROUP BY hd.loaiHopDong")
     List<Object[]> getStatsByLoaiHopDong();
@@ -48,6 +48,10 @@ public interface NghiPhepRepository extends JpaRepository<NghiPhep, Long> {
         @Query("SELECT np.loaiPhep, COUNT(np) FROM NghiPhep np GROUP BY np.loaiPhep")
         List<Object[]> getStatsByLoaiPhep();
 
+        // Thống kê theo loại phép và trạng thái trong một lần GROUP BY
+        @Query("SELECT np.loaiPhep, np.trangThai, COUNT(np) FROM NghiPhep np GROUP BY np.loaiPhep, np.trangThai")
+        List<Object[]> getStatsByLoaiPhepAndTrangThai();
+
         // Đếm theo loại phép và trạng thái
         long countByLoaiPhepAndTrangThai(DoAn.BE.hr.entity.NghiPhep.LoaiPhep loaiPhep, TrangThaiNghiPhep trangThai);
 
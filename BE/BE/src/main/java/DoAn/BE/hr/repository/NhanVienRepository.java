@@ -2,6 +2,7 @@ package DoAn.BE.hr.repository;
 
 import DoAn.BE.hr.entity.NhanVien;
 import DoAn.BE.hr.entity.NhanVien.TrangThaiNhanVien;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -16,6 +17,12 @@ public interface NhanVienRepository extends JpaRepository<NhanVien, Long> {
     boolean existsByCccd(String cccd);
     
     List<NhanVien> findByTrangThai(TrangThaiNhanVien trangThai);
+
+    // Dữ liệu tối thiểu để tính lương hàng loạt: [nhanvienId, userId, phuCap, phongbanId, hoTen, tenPhongBan]
+    @Query("SELECT nv.nhanvienId, u.userId, nv.phuCap, pb.phongbanId, nv.hoTen, pb.tenPhongBan FROM NhanVien nv " +
+           "LEFT JOIN nv.user u LEFT JOIN nv.phongBan pb " +
+           "WHERE nv.trangThai = :trangThai ORDER BY nv.nhanvienId")
+    List<Object[]> findThongTinTinhLuongByTrangThai(@Param("trangThai") TrangThaiNhanVien trangThai);
     List<NhanVien> findByPhongBan_PhongbanId(Long phongbanId);
     List<NhanVien> findByChucVu_ChucvuId(Long chucvuId);
     
@@ -30,9 +37,32 @@ public interface NhanVienRepository extends JpaRepository<NhanVien, Long> {
     // Tìm nhân viên theo phòng ban (cần cho dashboard)
     List<NhanVien> findByPhongBan(DoAn.BE.hr.entity.PhongBan phongBan);
     
+    // User ID của nhân viên không có bản ghi chấm công nào trong ngày (anti-join, cho scheduled job)
+    @Query("SELECT u.userId FROM NhanVien nv JOIN nv.user u WHERE NOT EXISTS " +
+           "(SELECT 1 FROM ChamCong cc WHERE cc.nhanVien = nv AND cc.ngayCham = :ngay)")
+    List<Long> findUserIdsKhongChamCong(@Param("ngay") LocalDate ngay);
+
     // Tìm nhân viên sinh nhật (cần cho WorkflowNotificationService)
     @Query("SELECT nv FROM NhanVien nv WHERE MONTH(nv.ngaySinh) = :month AND DAY(nv.ngaySinh) = :day AND nv.trangThai = 'DANG_LAM_VIEC'")
     List<NhanVien> findByBirthday(@Param("month") int month, @Param("day") int day);
+
+    // Thống kê số nhân viên theo trạng thái (cần cho dashboard)
+    @Query("SELECT nv.trangThai, COUNT(nv) FROM NhanVien nv GROUP BY nv.trangThai")
+    List<Object[]> getStatsByTrangThai();
+
+    // Thống kê số nhân viên theo phòng ban (kể cả phòng ban chưa có nhân viên)
+    // Trả về [phongbanId, tenPhongBan, soLuong]
+    @Query("SELECT pb.phongbanId, pb.tenPhongBan, COUNT(nv) FROM PhongBan pb LEFT JOIN pb.nhanViens nv " +
+           "GROUP BY pb.phongbanId, pb.tenPhongBan ORDER BY pb.phongbanId")
+    List<Object[]> getStatsByPhongBan();
+
+    // Thống kê số nhân viên theo ngày sinh (để chia nhóm tuổi)
+    @Query("SELECT nv.ngaySinh, COUNT(nv) FROM NhanVien nv WHERE nv.trangThai = :trangThai GROUP BY nv.ngaySinh")
+    List<Object[]> getStatsByNgaySinh(@Param("trangThai") TrangThaiNhanVien trangThai);
+
+    // Thống kê số nhân viên theo giới tính
+    @Query("SELECT nv.gioiTinh, COUNT(nv) FROM NhanVien nv WHERE nv.trangThai = :trangThai GROUP BY nv.gioiTinh")
+    List<Object[]> getStatsByGioiTinh(@Param("trangThai") TrangThaiNhanVien trangThai);
 }
 
 
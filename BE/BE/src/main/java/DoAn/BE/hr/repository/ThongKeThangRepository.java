@@ -0,0 +1,86 @@
+package DoAn.BE.hr.repository;
+
+import DoAn.BE.hr.entity.ThongKeThang;
+import DoAn.BE.hr.entity.ThongKeThang.LoaiThongKe;
+import java.math.BigDecimal;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ThongKeThangRepository extends JpaRepository<ThongKeThang, Long> {
+
+    // Lấy các dòng tổng hợp của một tháng
+    List<ThongKeThang> findByLoaiAndNamAndThang(LoaiThongKe loai, Integer nam, Integer thang);
+
+    // Lấy các dòng tổng hợp trong khoảng tháng (kyBatDau/kyKetThuc = nam * 100 + thang)
+    @Query("SELECT t FROM ThongKeThang t WHERE t.loai = :loai " +
+           "AND (t.nam * 100 + t.thang) BETWEEN :kyBatDau AND :kyKetThuc")
+    List<ThongKeThang> findByLoaiAndKyBetween(@Param("loai") LoaiThongKe loai,
+                                              @Param("kyBatDau") int kyBatDau,
+                                              @Param("kyKetThuc") int kyKetThuc);
+
+    // Cộng dồn (upsert) một ô tổng hợp - số âm để trừ
+    @Modifying
+    @Query(value = "MERGE thong_ke_thang WITH (HOLDLOCK) AS t " +
+           "USING (SELECT :loai AS loai, :nam AS nam, :thang AS thang, " +
+           ":phongbanId AS phongban_id, :trangThai AS trang_thai) AS s " +
+           "ON t.loai = s.loai AND t.nam = s.nam AND t.thang = s.thang " +
+           "AND t.phongban_id = s.phongban_id AND t.trang_thai = s.trang_thai " +
+           "WHEN MATCHED THEN UPDATE SET t.so_luong = t.so_luong + :soLuong, " +
+           "t.tong_tien = t.tong_tien + :tongTien, t.tong_gio = t.tong_gio + :tongGio, " +
+           "t.tong_ngay = t.tong_ngay + :tongNgay, t.updated_at = CURRENT_TIMESTAMP " +
+           "WHEN NOT MATCHED THEN INSERT (loai, nam, thang, phongban_id, trang_thai, " +
+           "so_luong, tong_tien, tong_gio, tong_ngay, updated_at) " +
+           "VALUES (s.loai, s.nam, s.thang, s.phongban_id, s.trang_thai, " +
+           ":soLuong, :tongTien, :tongGio, :tongNgay, CURRENT_TIMESTAMP);", nativeQuery = true)
+    int congDon(@Param("loai") String loai,
+                @Param("nam") int nam,
+                @Param("thang") int thang,
+                @Param("phongbanId") long phongbanId,
+                @Param("trangThai") String trangThai,
+                @Param("soLuong") long soLuong,
+                @Param("tongTien") BigDecimal tongTien,
+                @Param("tongGio") BigDecimal tongGio,
+                @Param("tongNgay") long tongNgay);
+
+    // ===== Backfill: dựng lại toàn bộ bảng tổng hợp từ dữ liệu gốc =====
+
+    @Modifying
+    @Query(value = "DELETE FROM thong_ke_thang", nativeQuery = true)
+    int xoaTatCa();
+
+    @Modifying
+    @Query(value = "INSERT INTO thong_ke_thang (loai, nam, thang, phongban_id, trang_thai, " +
+           "so_luong, tong_tien, tong_gio, tong_ngay, updated_at) " +
+           "SELECT 'CHAM_CONG', YEAR(cc.ngay_cham), MONTH(cc.ngay_cham), COALESCE(nv.phongban_id, 0), " +
+           "COALESCE(cc.trang_thai, 'KHONG_XAC_DINH'), COUNT(*), 0, COALESCE(SUM(cc.so_gio_lam), 0), 0, CURRENT_TIMESTAMP " +
+           "FROM cham_cong cc JOIN nhan_vien nv ON nv.nhanvien_id = cc.nhanvien_id " +
+           "GROUP BY YEAR(cc.ngay_cham), MONTH(cc.ngay_cham), COALESCE(nv.phongban_id, 0), " +
+           "COALESCE(cc.trang_thai, 'KHONG_XAC_DINH')", nativeQuery = true)
+    int dungLaiChamCong();
+
+    @Modifying
+    @Query(value = "INSERT INTO thong_ke_thang (loai, nam, thang, phongban_id, trang_thai, " +
+           "so_luong, tong_tien, tong_gio, tong_ngay, updated_at) " +
+           "SELECT 'BANG_LUONG', bl.nam, bl.thang, COALESCE(nv.phongban_id, 0), " +
+           "COALESCE(bl.trang_thai, 'KHONG_XAC_DINH'), COUNT(*), COALESCE(SUM(bl.luong_thuc_nhan), 0), 0, " +
+           "COALESCE(SUM(bl.ngay_cong), 0), CURRENT_TIMESTAMP " +
+           "FROM bang_luong bl JOIN nhan_vien nv ON nv.nhanvien_id = bl.nhanvien_id " +
+           "GROUP BY bl.nam, bl.thang, COALESCE(nv.phongban_id, 0), " +
+           "COALESCE(bl.trang_thai, 'KHONG_XAC_DINH')", nativeQuery = true)
+    int dungLaiBangLuong();
+
+    @Modifying
+    @Query(value = "INSERT INTO thong_ke_thang (loai, nam, thang, phongban_id, trang_thai, " +
+           "so_luong, tong_tien, tong_gio, tong_ngay, updated_at) " +
+           "SELECT 'NGHI_PHEP', YEAR(np.ngay_bat_dau), MONTH(np.ngay_bat_dau), COALESCE(nv.phongban_id, 0), " +
+           "COALESCE(np.trang_thai, 'KHONG_XAC_DINH'), COUNT(*), 0, 0, COALESCE(SUM(np.so_ngay), 0), CURRENT_TIMESTAMP " +
+           "FROM nghi_phep np JOIN nhan_vien nv ON nv.nhanvien_id = np.nhanvien_id " +
+           "GROUP BY YEAR(np.ngay_bat_dau), MONTH(np.ngay_bat_dau), COALESCE(nv.phongban_id, 0), " +
+           "COALESCE(np.trang_thai, 'KHONG_XAC_DINH')", nativeQuery = true)
+    int dungLaiNghiPhep();
+}
@@ -1,24 +1,27 @@
 package DoAn.BE.hr.service;
 
 import DoAn.BE.hr.entity.ChamCong;
-import DoAn.BE.hr.entity.NhanVien;
 import DoAn.BE.hr.repository.ChamCongRepository;
 import DoAn.BE.hr.repository.NhanVienRepository;
 import DoAn.BE.notification.service.AttendanceNotificationService;
+import DoAn.BE.notification.service.AttendanceNotificationService.TongKetChamCong;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
  * Service xử lý scheduled jobs cho Attendance
  * - Check missing attendance
  * - Send reminders
+ * Mỗi job dùng truy vấn theo tập (anti-join / GROUP BY) và batch insert notification,
+ * số truy vấn không phụ thuộc số nhân viên; mỗi đợt insert chạy trong transaction ngắn riêng
  */
 @Service
 @RequiredArgsConstructor
@@ -30,45 +33,18 @@ public class AttendanceScheduledService {
     private final AttendanceNotificationService attendanceNotificationService;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int NOTIFICATION_BATCH_SIZE = 1000;
     
     /**
      * Nhắc checkout cuối ngày (5:30 PM)
      */
     @Scheduled(cron = "0 30 17 * * MON-FRI")
-    @Transactional
     public void remindCheckout() {
         log.info("🔔 Bắt đầu nhắc checkout...");
         
-        LocalDate today = LocalDate.now();
-        
-        // Get all employees
-        List<NhanVien> allEmployees = nhanVienRepository.findAll();
-        
-        int reminderCount = 0;
-        for (NhanVien nhanVien : allEmployees) {
-            try {
-                // Check if employee has checked in but not checked out
-                List<ChamCong> todayAttendance = chamCongRepository
-                    .findByNhanVien_NhanvienIdAndNgayCham(nhanVien.getNhanvienId(), today);
-                
-                if (!todayAttendance.isEmpty()) {
-                    ChamCong chamCong = todayAttendance.get(0);
-                    
-                    // Has check-in but no check-out
-                    if (chamCong.getGioVao() != null && chamCong.getGioRa() == null) {
-                        if (nhanVien.getUser() != null) {
-                            attendanceNotificationService.createCheckoutReminderNotification(
-                                nhanVien.getUser().getUserId()
-                            );
-                            reminderCount++;
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error sending checkout reminder for employee {}: {}", 
-                    nhanVien.getHoTen(), e.getMessage());
-            }
-        }
+        // Đã check-in nhưng chưa check-out hôm nay
+        List<Long> userIds = chamCongRepository.findUserIdsChuaCheckout(LocalDate.now());
+        int reminderCount = guiTheoDot(userIds, attendanceNotificationService::createCheckoutReminderNotifications);
         
         log.info("✅ Hoàn tất nhắc checkout. Đã gửi {} reminders", reminderCount);
     }
@@ -77,52 +53,21 @@ public class AttendanceScheduledService {
      * Check missing attendance (chạy vào 8:00 PM mỗi ngày)
      */
     @Scheduled(cron = "0 0 20 * * MON-FRI")
-    @Transactional
     public void checkMissingAttendance() {
         log.info("🔍 Bắt đầu kiểm tra missing attendance...");
         
         LocalDate today = LocalDate.now();
         String dateStr = today.format(DATE_FORMATTER);
         
-        // Get all employees
-        List<NhanVien> allEmployees = nhanVienRepository.findAll();
+        // Không có bản ghi chấm công nào hôm nay
+        List<Long> khongChamCong = nhanVienRepository.findUserIdsKhongChamCong(today);
+        int missingCount = guiTheoDot(khongChamCong,
+            dot -> attendanceNotificationService.createMissingAttendanceNotifications(dot, dateStr));
         
-        int missingCount = 0;
-        for (NhanVien nhanVien : allEmployees) {
-            try {
-                // Check if employee has attendance record today
-                List<ChamCong> todayAttendance = chamCongRepository
-                    .findByNhanVien_NhanvienIdAndNgayCham(nhanVien.getNhanvienId(), today);
-                
-                if (todayAttendance.isEmpty()) {
-                    // No attendance record - send notification
-                    if (nhanVien.getUser() != null) {
-                        attendanceNotificationService.createMissingAttendanceNotification(
-                            nhanVien.getUser().getUserId(),
-                            dateStr
-                        );
-                        missingCount++;
-                        log.debug("⚠️ Sent missing attendance notification for: {}", nhanVien.getHoTen());
-                    }
-                } else {
-                    ChamCong chamCong = todayAttendance.get(0);
-                    
-                    // Has check-in but no check-out
-                    if (chamCong.getGioVao() != null && chamCong.getGioRa() == null) {
-                        if (nhanVien.getUser() != null) {
-                            attendanceNotificationService.createMissingAttendanceNotification(
-                                nhanVien.getUser().getUserId(),
-                                dateStr + " (Chưa checkout)"
-                            );
-                            missingCount++;
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error checking attendance for employee {}: {}", 
-                    nhanVien.getHoTen(), e.getMessage());
-            }
-        }
+        // Có check-in nhưng chưa check-out
+        List<Long> chuaCheckout = chamCongRepository.findUserIdsChuaCheckout(today);
+        missingCount += guiTheoDot(chuaCheckout,
+            dot -> attendanceNotificationService.createMissingAttendanceNotifications(dot, dateStr + " (Chưa checkout)"));
         
         log.info("✅ Hoàn tất kiểm tra missing attendance. Đã gửi {} notifications", missingCount);
     }
@@ -131,7 +76,6 @@ public class AttendanceScheduledService {
      * Monthly summary (ngày 1 hàng tháng lúc 9:00 AM)
      */
     @Scheduled(cron = "0 0 9 1 * *")
-    @Transactional
     public void sendMonthlySummary() {
         log.info("📊 Bắt đầu gửi monthly summary...");
         
@@ -140,45 +84,38 @@ public class AttendanceScheduledService {
         LocalDate lastDayOfLastMonth = lastMonth.withDayOfMonth(lastMonth.lengthOfMonth());
         
         String monthStr = lastMonth.format(DateTimeFormatter.ofPattern("MM/yyyy"));
+        int workingDays = lastMonth.lengthOfMonth(); // Simplified
+        
+        // 1 truy vấn GROUP BY cho cả công ty: [userId, tổng số ngày, số ngày đi trễ]
+        List<TongKetChamCong> tongKets = new ArrayList<>();
+        for (Object[] row : chamCongRepository.getTongKetTheoUser(
+                firstDayOfLastMonth, lastDayOfLastMonth, ChamCong.TrangThaiChamCong.DI_TRE)) {
+            int totalDays = ((Number) row[1]).intValue();
+            int lateDays = ((Number) row[2]).intValue();
+            int absentDays = Math.max(0, workingDays - totalDays);
+            tongKets.add(new TongKetChamCong(((Number) row[0]).longValue(), totalDays, lateDays, absentDays));
+        }
         
-        List<NhanVien> allEmployees = nhanVienRepository.findAll();
+        int summaryCount = guiTheoDot(tongKets,
+            dot -> attendanceNotificationService.createMonthlyAttendanceSummaryNotifications(monthStr, dot));
         
-        int summaryCount = 0;
-        for (NhanVien nhanVien : allEmployees) {
+        log.info("✅ Hoàn tất gửi monthly summary. Đã gửi {} summaries", summaryCount);
+    }
+    
+    /**
+     * Gửi notification theo từng đợt NOTIFICATION_BATCH_SIZE người
+     * Đợt lỗi chỉ được ghi log, các đợt còn lại vẫn được gửi
+     */
+    private <T> int guiTheoDot(List<T> danhSach, ToIntFunction<List<T>> gui) {
+        int count = 0;
+        for (int from = 0; from < danhSach.size(); from += NOTIFICATION_BATCH_SIZE) {
+            List<T> dot = danhSach.subList(from, Math.min(from + NOTIFICATION_BATCH_SIZE, danhSach.size()));
             try {
-                // Get attendance records for last month
-                List<ChamCong> monthAttendance = chamCongRepository
-                    .findByNhanVien_NhanvienIdAndNgayChamBetween(
-                        nhanVien.getNhanvienId(), 
-                        firstDayOfLastMonth, 
-                        lastDayOfLastMonth
-                    );
-                
-                int totalDays = monthAttendance.size();
-                int lateDays = (int) monthAttendance.stream()
-                    .filter(cc -> cc.getTrangThai() == ChamCong.TrangThaiChamCong.DI_TRE)
-                    .count();
-                
-                // Calculate absent days (working days - attendance days)
-                int workingDays = lastMonth.lengthOfMonth(); // Simplified
-                int absentDays = Math.max(0, workingDays - totalDays);
-                
-                if (nhanVien.getUser() != null) {
-                    attendanceNotificationService.createMonthlyAttendanceSummaryNotification(
-                        nhanVien.getUser().getUserId(),
-                        monthStr,
-                        totalDays,
-                        lateDays,
-                        absentDays
-                    );
-                    summaryCount++;
-                }
+                count += gui.applyAsInt(dot);
             } catch (Exception e) {
-                log.error("Error sending monthly summary for employee {}: {}", 
-                    nhanVien.getHoTen(), e.getMessage());
+                log.error("Error sending notifications for batch {}-{}: {}", from, from + dot.size(), e.getMessage());
             }
         }
-        
-        log.info("✅ Hoàn tất gửi monthly summary. Đã gửi {} summaries", summaryCount);
+        return count;
     }
 }
@@ -0,0 +1,394 @@
+package DoAn.BE.hr.service;
+
+import DoAn.BE.common.exception.BadRequestException;
+import DoAn.BE.common.exception.EntityNotFoundException;
+import DoAn.BE.common.util.PermissionUtil;
+import DoAn.BE.hr.dto.BangLuongBatchStatusDTO;
+import DoAn.BE.hr.entity.BangLuong;
+import DoAn.BE.hr.entity.NhanVien.TrangThaiNhanVien;
+import DoAn.BE.hr.entity.ThongKeThang;
+import DoAn.BE.hr.entity.ThongKeThang.LoaiThongKe;
+import DoAn.BE.hr.repository.BangLuongRepository;
+import DoAn.BE.hr.repository.ChamCongRepository;
+import DoAn.BE.hr.repository.HopDongRepository;
+import DoAn.BE.hr.repository.NhanVienRepository;
+import DoAn.BE.notification.service.HRNotificationService;
+import DoAn.BE.user.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Engine tính lương hàng loạt cho cả công ty
+ * - Prefetch 1 lần cho cả kỳ: nhân viên, hợp đồng hiệu lực, tổng hợp chấm công, bảng lương đã có
+ * - Chia nhân viên thành các chunk, tính song song trên payrollBatchExecutor (giới hạn số luồng)
+ * - Mỗi chunk ghi bằng JDBC batch insert + cộng dồn thống kê tháng trong 1 transaction riêng
+ * - Chunk lỗi chỉ rollback chính nó; chạy lại cùng kỳ sẽ bỏ qua nhân viên đã có bảng lương (resume)
+ * - Trùng unique (nhanvien_id, thang, nam) do job/node khác ghi sau prefetch: ghi lại từng dòng, dòng trùng tính là bỏ qua
+ * - Tiến độ giữ trong bộ nhớ, tra cứu qua getTrangThai(jobId)
+ */
+@Service
+@Slf4j
+public class BangLuongBatchService {
+
+    public static final String DANG_CHAY = "DANG_CHAY";
+    public static final String HOAN_THANH = "HOAN_THANH";
+    public static final String HOAN_THANH_CO_LOI = "HOAN_THANH_CO_LOI";
+
+    private static final int NGAY_CONG_CHUAN = 26;
+    private static final BigDecimal GIO_CHUAN = new BigDecimal("176"); // 22 ngày * 8 giờ
+    private static final String TRANG_THAI_MOI = "CHUA_THANH_TOAN";
+    private static final int SO_LOI_TOI_DA = 50;
+
+    private static final String INSERT_BANG_LUONG = "INSERT INTO bang_luong (nhanvien_id, thang, nam, " +
+            "luong_co_ban, ngay_cong, ngay_cong_chuan, luong_theo_ngay_cong, phu_cap, thuong, " +
+            "gio_lam_them, tien_lam_them, bhxh, bhyt, bhtn, thue_tncn, khau_tru_khac, " +
+            "tong_luong, tong_khau_tru, luong_thuc_nhan, trang_thai, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final NhanVienRepository nhanVienRepository;
+    private final HopDongRepository hopDongRepository;
+    private final ChamCongRepository chamCongRepository;
+    private final BangLuongRepository bangLuongRepository;
+    private final ThongKeThangService thongKeThangService;
+    private final HRNotificationService hrNotificationService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor payrollBatchExecutor;
+    private final PayrollCalculator payrollCalculator;
+    private final int chunkSize;
+
+    // jobId -> tiến độ; kỳ (nam-thang) -> jobId đang chạy
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, String> jobDangChayTheoKy = new ConcurrentHashMap<>();
+
+    public BangLuongBatchService(NhanVienRepository nhanVienRepository,
+            HopDongRepository hopDongRepository,
+            ChamCongRepository chamCongRepository,
+            BangLuongRepository bangLuongRepository,
+            ThongKeThangService thongKeThangService,
+            HRNotificationService hrNotificationService,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("payrollBatchExecutor") ThreadPoolTaskExecutor payrollBatchExecutor,
+            PayrollCalculator payrollCalculator,
+            @Value("${payroll.batch.chunk-size:500}") int chunkSize) {
+        this.nhanVienRepository = nhanVienRepository;
+        this.hopDongRepository = hopDongRepository;
+        this.chamCongRepository = chamCongRepository;
+        this.bangLuongRepository = bangLuongRepository;
+        this.thongKeThangService = thongKeThangService;
+        this.hrNotificationService = hrNotificationService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.payrollBatchExecutor = payrollBatchExecutor;
+        this.payrollCalculator = payrollCalculator;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Bắt đầu tính lương hàng loạt cho kỳ thang/nam - CHỈ Accounting
+     * Trả về ngay; nếu kỳ này đang có job chạy thì trả về job đó thay vì tạo job mới
+     */
+    public BangLuongBatchStatusDTO batDau(Integer thang, Integer nam, User currentUser) {
+        return toDTO(khoiChay(thang, nam, currentUser));
+    }
+
+    /**
+     * Tính lương hàng loạt và chờ tới khi xong (giữ hành vi đồng bộ của API cũ)
+     */
+    public BangLuongBatchStatusDTO chayVaCho(Integer thang, Integer nam, User currentUser) {
+        Job job = khoiChay(thang, nam, currentUser);
+        job.hoanTat.join();
+        return toDTO(job);
+    }
+
+    public BangLuongBatchStatusDTO getTrangThai(String jobId, User currentUser) {
+        PermissionUtil.checkAccountingViewPermission(currentUser);
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("Không tìm thấy job tính lương " + jobId);
+        }
+        return toDTO(job);
+    }
+
+    private synchronized Job khoiChay(Integer thang, Integer nam, User currentUser) {
+        PermissionUtil.checkAccountingViewPermission(currentUser);
+        if (thang == null || nam == null || thang < 1 || thang > 12 || nam < 2020) {
+            throw new BadRequestException("Kỳ lương không hợp lệ");
+        }
+        donJobCu();
+
+        String ky = nam + "-" + thang;
+        Job moi = new Job(UUID.randomUUID().toString(), thang, nam);
+        String jobDangChay = jobDangChayTheoKy.get(ky);
+        if (jobDangChay != null) {
+            log.info("Kỳ {}/{} đang được tính lương bởi job {}", thang, nam, jobDangChay);
+            return jobs.get(jobDangChay);
+        }
+        jobs.put(moi.jobId, moi);
+        jobDangChayTheoKy.put(ky, moi.jobId);
+        log.info("Accounting {} bắt đầu tính lương hàng loạt kỳ {}/{} - job {}",
+                currentUser.getUsername(), thang, nam, moi.jobId);
+
+        CompletableFuture.supplyAsync(() -> prefetch(moi), payrollBatchExecutor)
+                .thenCompose(duLieu -> chiaChunk(moi, duLieu))
+                .whenComplete((ignored, ex) -> ketThuc(moi, ky, ex));
+        return moi;
+    }
+
+    /**
+     * Đọc toàn bộ dữ liệu đầu vào của kỳ bằng 4 truy vấn, không phụ thuộc số nhân viên
+     */
+    private DuLieuKy prefetch(Job job) {
+        YearMonth yearMonth = YearMonth.of(job.nam, job.thang);
+        LocalDate startDate = yearMonth.atDay(1);
+        LocalDate endDate = yearMonth.atEndOfMonth();
+
+        List<Object[]> nhanViens = nhanVienRepository
+                .findThongTinTinhLuongByTrangThai(TrangThaiNhanVien.DANG_LAM_VIEC);
+        Set<Long> daCoBangLuong = new HashSet<>(
+                bangLuongRepository.findNhanvienIdsByThangAndNam(job.thang, job.nam));
+
+        // Hợp đồng mới nhất ghi đè (query đã sắp xếp theo ngày bắt đầu tăng dần)
+        Map<Long, BigDecimal> luongCoBan = new HashMap<>();
+        for (Object[] row : hopDongRepository.findLuongCoBanHieuLuc()) {
+            luongCoBan.put(((Number) row[0]).longValue(), (BigDecimal) row[1]);
+        }
+
+        Map<Long, Object[]> chamCong = new HashMap<>();
+        for (Object[] row : chamCongRepository.sumCongTheoNhanVien(startDate, endDate)) {
+            chamCong.put(((Number) row[0]).longValue(), row);
+        }
+
+        job.tongNhanVien = nhanViens.size();
+        log.debug("Prefetch kỳ {}/{}: {} nhân viên, {} hợp đồng, {} đã có bảng lương",
+                job.thang, job.nam, nhanViens.size(), luongCoBan.size(), daCoBangLuong.size());
+        return new DuLieuKy(nhanViens, daCoBangLuong, luongCoBan, chamCong);
+    }
+
+    private CompletableFuture<Void> chiaChunk(Job job, DuLieuKy duLieu) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < duLieu.nhanViens.size(); from += chunkSize) {
+            List<Object[]> chunk = duLieu.nhanViens.subList(from, Math.min(from + chunkSize, duLieu.nhanViens.size()));
+            int soThuTu = futures.size() + 1;
+            futures.add(CompletableFuture.runAsync(() -> xuLyChunk(job, soThuTu, chunk, duLieu), payrollBatchExecutor));
+        }
+        job.tongChunk = futures.size();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Tính và ghi 1 chunk trong transaction riêng
+     * Lỗi được ghi nhận vào job, không làm hỏng các chunk khác
+     */
+    private void xuLyChunk(Job job, int soThuTu, List<Object[]> chunk, DuLieuKy duLieu) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(chunk.size());
+        List<ThongKeThangService.DongGop> dongGops = new ArrayList<>(chunk.size());
+        List<Long> userIds = new ArrayList<>(chunk.size()); // Theo từng dòng, null nếu nhân viên chưa có tài khoản
+        List<Long> nguoiNhan = new ArrayList<>(chunk.size());
+        int boQua = 0;
+
+        try {
+            for (Object[] nv : chunk) {
+                Long nhanvienId = ((Number) nv[0]).longValue();
+                BigDecimal luongCoBan = duLieu.luongCoBan.get(nhanvienId);
+                if (duLieu.daCoBangLuong.contains(nhanvienId) || luongCoBan == null) {
+                    boQua++;
+                    continue;
+                }
+
+                BangLuong bangLuong = tinhBangLuong(job, luongCoBan, (BigDecimal) nv[2], duLieu.chamCong.get(nhanvienId));
+                rows.add(new Object[] { nhanvienId, bangLuong.getThang(), bangLuong.getNam(),
+                        bangLuong.getLuongCoBan(), bangLuong.getNgayCong(), bangLuong.getNgayCongChuan(),
+                        bangLuong.getLuongTheoNgayCong(), bangLuong.getPhuCap(), bangLuong.getThuong(),
+                        bangLuong.getGioLamThem(), bangLuong.getTienLamThem(), bangLuong.getBhxh(),
+                        bangLuong.getBhyt(), bangLuong.getBhtn(), bangLuong.getThueTNCN(),
+                        bangLuong.getKhauTruKhac(), bangLuong.getTongLuong(), bangLuong.getTongKhauTru(),
+                        bangLuong.getLuongThucNhan(), bangLuong.getTrangThai(), now });
+                dongGops.add(new ThongKeThangService.DongGop(LoaiThongKe.BANG_LUONG, job.nam, job.thang,
+                        nv[3] != null ? ((Number) nv[3]).longValue() : ThongKeThang.KHONG_PHONG_BAN,
+                        bangLuong.getTrangThai(), bangLuong.getLuongThucNhan(), BigDecimal.ZERO,
+                        bangLuong.getNgayCong()));
+                userIds.add(nv[1] != null ? ((Number) nv[1]).longValue() : null);
+            }
+
+            boolean[] daGhi = new boolean[rows.size()];
+            if (!rows.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.batchUpdate(INSERT_BANG_LUONG, rows);
+                        thongKeThangService.capNhatHangLoat(dongGops);
+                    });
+                    Arrays.fill(daGhi, true);
+                } catch (DuplicateKeyException e) {
+                    log.info("Chunk {} kỳ {}/{} có bảng lương đã được ghi bởi job khác, ghi lại từng dòng",
+                            soThuTu, job.thang, job.nam);
+                    daGhi = ghiTungDong(rows, dongGops);
+                }
+            }
+
+            int soDaGhi = 0;
+            for (int i = 0; i < daGhi.length; i++) {
+                if (!daGhi[i]) {
+                    boQua++;
+                    continue;
+                }
+                soDaGhi++;
+                if (userIds.get(i) != null) {
+                    nguoiNhan.add(userIds.get(i));
+                }
+            }
+            job.thanhCong.addAndGet(soDaGhi);
+            job.boQua.addAndGet(boQua);
+        } catch (Exception e) {
+            log.error("Lỗi chunk {} khi tính lương kỳ {}/{}: {}", soThuTu, job.thang, job.nam, e.getMessage());
+            job.loi.addAndGet(chunk.size());
+            if (job.danhSachLoi.size() < SO_LOI_TOI_DA) {
+                job.danhSachLoi.add("Chunk " + soThuTu + ": " + e.getMessage());
+            }
+            return;
+        } finally {
+            job.chunkHoanThanh.incrementAndGet();
+        }
+
+        // 🔔 Gửi notification sau khi chunk đã commit (lỗi notification không ảnh hưởng bảng lương)
+        try {
+            hrNotificationService.createSalaryNotifications(nguoiNhan, String.valueOf(job.thang), String.valueOf(job.nam));
+        } catch (Exception e) {
+            log.warn("Không thể gửi notification lương cho chunk {}: {}", soThuTu, e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi từng dòng trong transaction riêng; dòng vi phạm unique (nhanvien_id, thang, nam) là bảng lương
+     * đã được job/node khác ghi -> coi như đã xử lý, không ghi đè
+     */
+    private boolean[] ghiTungDong(List<Object[]> rows, List<ThongKeThangService.DongGop> dongGops) {
+        boolean[] daGhi = new boolean[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            ThongKeThangService.DongGop dongGop = dongGops.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update(INSERT_BANG_LUONG, row);
+                    thongKeThangService.capNhatHangLoat(List.of(dongGop));
+                });
+                daGhi[i] = true;
+            } catch (DuplicateKeyException e) {
+                daGhi[i] = false;
+            }
+        }
+        return daGhi;
+    }
+
+    // Cùng quy tắc với BangLuongService.tinhLuongTuDong, các khoản còn lại do PayrollCalculator tính
+    private BangLuong tinhBangLuong(Job job, BigDecimal luongCoBan, BigDecimal phuCap, Object[] chamCong) {
+        int ngayCong = chamCong != null ? ((Number) chamCong[1]).intValue() : 0;
+        BigDecimal tongGioLam = chamCong != null ? new BigDecimal(chamCong[2].toString()) : BigDecimal.ZERO;
+
+        BangLuong bangLuong = new BangLuong();
+        bangLuong.setThang(job.thang);
+        bangLuong.setNam(job.nam);
+        bangLuong.setLuongCoBan(luongCoBan);
+        bangLuong.setNgayCong(ngayCong);
+        bangLuong.setNgayCongChuan(NGAY_CONG_CHUAN);
+        bangLuong.setPhuCap(phuCap != null ? phuCap : BigDecimal.ZERO);
+        if (tongGioLam.compareTo(GIO_CHUAN) > 0) {
+            bangLuong.setGioLamThem(tongGioLam.subtract(GIO_CHUAN).intValue());
+        }
+        bangLuong.setThuong(BigDecimal.ZERO);
+        bangLuong.setKhauTruKhac(BigDecimal.ZERO);
+        bangLuong.setTrangThai(TRANG_THAI_MOI);
+        payrollCalculator.tinhLuong(bangLuong);
+        return bangLuong;
+    }
+
+    private void ketThuc(Job job, String ky, Throwable ex) {
+        if (ex != null) {
+            log.error("Job tính lương {} thất bại: {}", job.jobId, ex.getMessage());
+            job.danhSachLoi.add(ex.getMessage());
+        }
+        job.ketThuc = LocalDateTime.now();
+        job.trangThai = ex == null && job.loi.get() == 0 ? HOAN_THANH : HOAN_THANH_CO_LOI;
+        jobDangChayTheoKy.remove(ky, job.jobId);
+        job.hoanTat.complete(null);
+        log.info("✅ Job {} kỳ {}/{}: {} thành công, {} bỏ qua, {} lỗi / {} nhân viên",
+                job.jobId, job.thang, job.nam, job.thanhCong.get(), job.boQua.get(), job.loi.get(), job.tongNhanVien);
+    }
+
+    // Chỉ giữ tiến độ các job kết thúc trong 1 ngày gần nhất
+    private void donJobCu() {
+        LocalDateTime hetHan = LocalDateTime.now().minusDays(1);
+        jobs.values().removeIf(job -> job.ketThuc != null && job.ketThuc.isBefore(hetHan));
+    }
+
+    private BangLuongBatchStatusDTO toDTO(Job job) {
+        return BangLuongBatchStatusDTO.builder()
+                .jobId(job.jobId)
+                .thang(job.thang)
+                .nam(job.nam)
+                .trangThai(job.trangThai)
+                .tongNhanVien(job.tongNhanVien)
+                .tongChunk(job.tongChunk)
+                .chunkHoanThanh(job.chunkHoanThanh.get())
+                .thanhCong(job.thanhCong.get())
+                .boQua(job.boQua.get())
+                .loi(job.loi.get())
+                .batDau(job.batDau)
+                .ketThuc(job.ketThuc)
+                .danhSachLoi(List.copyOf(job.danhSachLoi))
+                .build();
+    }
+
+    private record DuLieuKy(List<Object[]> nhanViens, Set<Long> daCoBangLuong,
+            Map<Long, BigDecimal> luongCoBan, Map<Long, Object[]> chamCong) {
+    }
+
+    private static class Job {
+        final String jobId;
+        final int thang;
+        final int nam;
+        final LocalDateTime batDau = LocalDateTime.now();
+        final AtomicInteger chunkHoanThanh = new AtomicInteger();
+        final AtomicInteger thanhCong = new AtomicInteger();
+        final AtomicInteger boQua = new AtomicInteger();
+        final AtomicInteger loi = new AtomicInteger();
+        final List<String> danhSachLoi = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> hoanTat = new CompletableFuture<>();
+        volatile String trangThai = DANG_CHAY;
+        volatile int tongNhanVien;
+        volatile int tongChunk;
+        volatile LocalDateTime ketThuc;
+
+        Job(String jobId, int thang, int nam) {
+            this.jobId = jobId;
+            this.thang = thang;
+            this.nam = nam;
+        }
+    }
+}
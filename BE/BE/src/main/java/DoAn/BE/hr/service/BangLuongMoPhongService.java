@@ -0,0 +1,196 @@
+package DoAn.BE.hr.service;
+
+import DoAn.BE.common.exception.BadRequestException;
+import DoAn.BE.common.util.PermissionUtil;
+import DoAn.BE.hr.dto.MoPhongLuongDTO;
+import DoAn.BE.hr.dto.MoPhongLuongRequest;
+import DoAn.BE.hr.entity.NhanVien.TrangThaiNhanVien;
+import DoAn.BE.hr.repository.ChamCongRepository;
+import DoAn.BE.hr.repository.HopDongRepository;
+import DoAn.BE.hr.repository.NhanVienRepository;
+import DoAn.BE.user.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Mô phỏng lương (what-if) cho toàn bộ nhân viên đang làm việc - CHỈ ĐỌC, không ghi DB
+ * Dùng cùng dữ liệu đầu vào với tính lương tự động (hợp đồng hiệu lực + chấm công trong kỳ)
+ * và cùng PayrollCalculator với BangLuong; tính song song hai lần: tham số hiện tại và tham số mô phỏng
+ */
+@Service
+@Slf4j
+public class BangLuongMoPhongService {
+
+    private static final int NGAY_CONG_CHUAN = 26;
+    private static final BigDecimal GIO_CHUAN = new BigDecimal("176"); // 22 ngày * 8 giờ
+    private static final long HE_SO_GOC = 10_000L; // Hệ số nhân theo phần vạn (100% = 10000)
+    private static final String KHONG_PHONG_BAN = "Chưa có phòng ban";
+
+    private final NhanVienRepository nhanVienRepository;
+    private final HopDongRepository hopDongRepository;
+    private final ChamCongRepository chamCongRepository;
+    private final PayrollCalculator payrollCalculator;
+
+    public BangLuongMoPhongService(NhanVienRepository nhanVienRepository,
+            HopDongRepository hopDongRepository,
+            ChamCongRepository chamCongRepository,
+            PayrollCalculator payrollCalculator) {
+        this.nhanVienRepository = nhanVienRepository;
+        this.hopDongRepository = hopDongRepository;
+        this.chamCongRepository = chamCongRepository;
+        this.payrollCalculator = payrollCalculator;
+    }
+
+    @Transactional(readOnly = true)
+    public MoPhongLuongDTO moPhong(MoPhongLuongRequest request, User currentUser) {
+        PermissionUtil.checkAccountingViewPermission(currentUser);
+        log.info("Accounting {} mô phỏng lương kỳ {}/{}", currentUser.getUsername(),
+                request.getThang(), request.getNam());
+
+        YearMonth yearMonth = YearMonth.of(request.getNam(), request.getThang());
+        LocalDate startDate = yearMonth.atDay(1);
+        LocalDate endDate = yearMonth.atEndOfMonth();
+
+        // 1. Prefetch dữ liệu cả kỳ (3 truy vấn)
+        List<Object[]> nhanViens = nhanVienRepository
+                .findThongTinTinhLuongByTrangThai(TrangThaiNhanVien.DANG_LAM_VIEC);
+        Map<Long, Long> luongCoBan = new HashMap<>();
+        for (Object[] row : hopDongRepository.findLuongCoBanHieuLuc()) {
+            luongCoBan.put(((Number) row[0]).longValue(), PayrollCalculator.toXu((BigDecimal) row[1]));
+        }
+        Map<Long, Object[]> chamCong = new HashMap<>();
+        for (Object[] row : chamCongRepository.sumCongTheoNhanVien(startDate, endDate)) {
+            chamCong.put(((Number) row[0]).longValue(), row);
+        }
+
+        // 2-3. Tính lương hiện tại / mô phỏng; tham số quá lớn (tràn long) hoặc tỷ lệ quá 3 chữ số thập phân -> 400
+        List<KetQuaNhanVien> ketQuas;
+        try {
+            ketQuas = tinhKetQua(request, nhanViens, luongCoBan, chamCong);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            throw new BadRequestException("Tham số mô phỏng vượt giới hạn tính toán: " + e.getMessage());
+        }
+
+        // 4. Tổng hợp theo phòng ban
+        Map<Long, long[]> tongTheoPhongBan = new TreeMap<>();
+        Map<Long, String> tenPhongBan = new HashMap<>();
+        long[] tong = new long[4];
+        List<MoPhongLuongDTO.NhanVienChenhLech> chiTiet = new ArrayList<>(ketQuas.size());
+        for (KetQuaNhanVien kq : ketQuas) {
+            Long phongbanId = kq.nv[3] != null ? ((Number) kq.nv[3]).longValue() : 0L;
+            tenPhongBan.putIfAbsent(phongbanId, kq.nv[5] != null ? (String) kq.nv[5] : KHONG_PHONG_BAN);
+            long[] pb = tongTheoPhongBan.computeIfAbsent(phongbanId, k -> new long[5]);
+            pb[0]++;
+            congDon(pb, 1, kq);
+            congDon(tong, 0, kq);
+
+            chiTiet.add(new MoPhongLuongDTO.NhanVienChenhLech(
+                    ((Number) kq.nv[0]).longValue(),
+                    (String) kq.nv[4],
+                    kq.nv[3] != null ? phongbanId : null,
+                    PayrollCalculator.fromXu(kq.truoc.tongLuong()),
+                    PayrollCalculator.fromXu(kq.sau.tongLuong()),
+                    PayrollCalculator.fromXu(kq.truoc.thueTNCN()),
+                    PayrollCalculator.fromXu(kq.sau.thueTNCN()),
+                    PayrollCalculator.fromXu(kq.truoc.luongThucNhan()),
+                    PayrollCalculator.fromXu(kq.sau.luongThucNhan()),
+                    PayrollCalculator.fromXu(kq.sau.luongThucNhan() - kq.truoc.luongThucNhan())));
+        }
+
+        List<MoPhongLuongDTO.PhongBanTong> theoPhongBan = new ArrayList<>(tongTheoPhongBan.size());
+        tongTheoPhongBan.forEach((phongbanId, pb) -> theoPhongBan.add(new MoPhongLuongDTO.PhongBanTong(
+                phongbanId != 0L ? phongbanId : null,
+                tenPhongBan.get(phongbanId),
+                pb[0],
+                PayrollCalculator.fromXu(pb[1]),
+                PayrollCalculator.fromXu(pb[2]),
+                PayrollCalculator.fromXu(pb[3]),
+                PayrollCalculator.fromXu(pb[4]),
+                PayrollCalculator.fromXu(pb[2] - pb[1]))));
+
+        return new MoPhongLuongDTO(request.getThang(), request.getNam(), ketQuas.size(),
+                nhanViens.size() - ketQuas.size(),
+                PayrollCalculator.fromXu(tong[0]),
+                PayrollCalculator.fromXu(tong[1]),
+                PayrollCalculator.fromXu(tong[2]),
+                PayrollCalculator.fromXu(tong[3]),
+                PayrollCalculator.fromXu(tong[1] - tong[0]),
+                theoPhongBan,
+                chiTiet);
+    }
+
+    private List<KetQuaNhanVien> tinhKetQua(MoPhongLuongRequest request, List<Object[]> nhanViens,
+            Map<Long, Long> luongCoBan, Map<Long, Object[]> chamCong) {
+        // 2. Tham số mô phỏng
+        PayrollCalculator hienTai = payrollCalculator;
+        PayrollCalculator moPhong = hienTai.voiThamSo(request.getBhxhRate(), request.getBhytRate(),
+                request.getBhtnRate(), request.getGiamTruBanThan());
+        long heSoLuongCoBan = heSo(request.getPhanTramLuongCoBan());
+        long heSoPhuCap = heSo(request.getPhanTramPhuCap());
+        long thuongMoiNguoiXu = PayrollCalculator.toXu(request.getThuongMoiNguoi());
+
+        // 3. Tính song song cho từng nhân viên (chỉ dùng long, không đụng tới entity/DB)
+        return nhanViens.parallelStream()
+                .filter(nv -> luongCoBan.containsKey(((Number) nv[0]).longValue()))
+                .map(nv -> {
+                    long nhanvienId = ((Number) nv[0]).longValue();
+                    long luongXu = luongCoBan.get(nhanvienId);
+                    long phuCapXu = PayrollCalculator.toXu((BigDecimal) nv[2]);
+                    Object[] cong = chamCong.get(nhanvienId);
+                    int ngayCong = cong != null ? ((Number) cong[1]).intValue() : 0;
+                    int gioLamThem = gioLamThem(cong);
+
+                    PayrollCalculator.KetQua truoc = hienTai.tinh(luongXu, ngayCong, NGAY_CONG_CHUAN,
+                            gioLamThem, phuCapXu, 0, 0);
+                    PayrollCalculator.KetQua sau = moPhong.tinh(
+                            nhanHeSo(luongXu, heSoLuongCoBan), ngayCong, NGAY_CONG_CHUAN, gioLamThem,
+                            nhanHeSo(phuCapXu, heSoPhuCap), thuongMoiNguoiXu, 0);
+                    return new KetQuaNhanVien(nv, truoc, sau);
+                })
+                .collect(Collectors.toList());
+    }
+
+    // Cộng [tổng lương hiện tại, tổng lương mô phỏng, thực nhận hiện tại, thực nhận mô phỏng] từ vị trí from
+    private static void congDon(long[] tong, int from, KetQuaNhanVien kq) {
+        tong[from] += kq.truoc.tongLuong();
+        tong[from + 1] += kq.sau.tongLuong();
+        tong[from + 2] += kq.truoc.luongThucNhan();
+        tong[from + 3] += kq.sau.luongThucNhan();
+    }
+
+    // Cùng quy tắc làm thêm giờ với tính lương tự động (vượt 176 giờ/tháng)
+    private static int gioLamThem(Object[] chamCong) {
+        if (chamCong == null) {
+            return 0;
+        }
+        BigDecimal tongGioLam = new BigDecimal(chamCong[2].toString());
+        return tongGioLam.compareTo(GIO_CHUAN) > 0 ? tongGioLam.subtract(GIO_CHUAN).intValue() : 0;
+    }
+
+    // % thay đổi -> hệ số phần vạn (10% -> 11000)
+    private static long heSo(BigDecimal phanTram) {
+        if (phanTram == null) {
+            return HE_SO_GOC;
+        }
+        return phanTram.add(new BigDecimal("100")).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static long nhanHeSo(long xu, long heSo) {
+        return heSo == HE_SO_GOC ? xu : PayrollCalculator.chiaLamTron(Math.multiplyExact(xu, heSo), HE_SO_GOC);
+    }
+
+    private record KetQuaNhanVien(Object[] nv, PayrollCalculator.KetQua truoc, PayrollCalculator.KetQua sau) {
+    }
+}
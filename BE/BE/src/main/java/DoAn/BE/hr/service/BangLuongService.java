@@ -25,6 +25,7 @@ import jakarta.transaction.Transactional;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -39,17 +40,23 @@ public class BangLuongService {
     private final HopDongRepository hopDongRepository;
     private final ChamCongRepository chamCongRepository;
     private final HRNotificationService hrNotificationService;
+    private final ThongKeThangService thongKeThangService;
+    private final PayrollCalculator payrollCalculator;
 
     public BangLuongService(BangLuongRepository bangLuongRepository,
             NhanVienRepository nhanVienRepository,
             HopDongRepository hopDongRepository,
             ChamCongRepository chamCongRepository,
-            HRNotificationService hrNotificationService) {
+            HRNotificationService hrNotificationService,
+            ThongKeThangService thongKeThangService,
+            PayrollCalculator payrollCalculator) {
         this.bangLuongRepository = bangLuongRepository;
         this.nhanVienRepository = nhanVienRepository;
         this.hopDongRepository = hopDongRepository;
         this.chamCongRepository = chamCongRepository;
         this.hrNotificationService = hrNotificationService;
+        this.thongKeThangService = thongKeThangService;
+        this.payrollCalculator = payrollCalculator;
     }
 
     // Tạo bảng lương mới - CHỈ Accounting Manager
@@ -81,7 +88,28 @@ public class BangLuongService {
         bangLuong.setKhauTruKhac(request.getKhauTruKhac() != null ? request.getKhauTruKhac() : BigDecimal.ZERO);
         bangLuong.setGhiChu(request.getGhiChu());
 
-        return bangLuongRepository.save(bangLuong);
+        return luuBangLuong(bangLuong, null);
+    }
+
+    /**
+     * Lưu bảng lương và cập nhật bảng thống kê tháng
+     * Tính lại các khoản lương từ dữ liệu đầu vào trước khi lưu và cộng dồn
+     */
+    private BangLuong luuBangLuong(BangLuong bangLuong, ThongKeThangService.DongGop truoc) {
+        payrollCalculator.tinhLuong(bangLuong);
+        BangLuong saved;
+        try {
+            saved = bangLuongRepository.saveAndFlush(bangLuong);
+        } catch (DataIntegrityViolationException e) {
+            // Tạo mới trùng kỳ với request/job khác chạy song song (unique nhanvien_id, thang, nam)
+            if (bangLuong.getBangluongId() != null) {
+                throw e;
+            }
+            throw new DuplicateException("Bảng lương cho nhân viên này trong kỳ " +
+                    bangLuong.getThang() + "/" + bangLuong.getNam() + " đã tồn tại");
+        }
+        thongKeThangService.capNhat(truoc, thongKeThangService.dongGop(saved));
+        return saved;
     }
 
     /**
@@ -163,6 +191,7 @@ public class BangLuongService {
         log.info("Accounting {} cập nhật bảng lương ID: {}", currentUser.getUsername(), id);
 
         BangLuong bangLuong = getBangLuongById(id);
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(bangLuong);
 
         // Cập nhật các trường nếu có
         if (request.getThang() != null) {
@@ -199,7 +228,7 @@ public class BangLuongService {
             bangLuong.setGhiChu(request.getGhiChu());
         }
 
-        return bangLuongRepository.save(bangLuong);
+        return luuBangLuong(bangLuong, truoc);
     }
 
     /**
@@ -211,6 +240,7 @@ public class BangLuongService {
 
         BangLuong bangLuong = getBangLuongById(id);
         bangLuongRepository.delete(bangLuong);
+        thongKeThangService.capNhat(thongKeThangService.dongGop(bangLuong), null);
     }
 
     /**
@@ -312,8 +342,9 @@ public class BangLuongService {
         log.info("Accounting Manager {} đánh dấu thanh toán bảng lương ID: {}", currentUser.getUsername(), id);
 
         BangLuong bangLuong = getBangLuongById(id);
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(bangLuong);
         bangLuong.setTrangThai("DA_THANH_TOAN");
-        return bangLuongRepository.save(bangLuong);
+        return luuBangLuong(bangLuong, truoc);
     }
 
     /**
@@ -322,9 +353,10 @@ public class BangLuongService {
     public BangLuong cancelBangLuong(Long id, User currentUser) {
         PermissionUtil.checkAccountingViewPermission(currentUser);
         BangLuong bangLuong = getBangLuongById(id); // Version không check, OK vì đã check ở trên
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(bangLuong);
         bangLuong.setTrangThai("DA_HUY");
         log.warn("⚠️ Accounting {} hủy bảng lương ID: {}", currentUser.getUsername(), id);
-        return bangLuongRepository.save(bangLuong);
+        return luuBangLuong(bangLuong, truoc);
     }
 
     /**
@@ -431,7 +463,7 @@ public class BangLuongService {
         bangLuong.setKhauTruKhac(BigDecimal.ZERO);
 
         // Entity sẽ tự động tính các khoản còn lại trong @PrePersist
-        BangLuong saved = bangLuongRepository.save(bangLuong);
+        BangLuong saved = luuBangLuong(bangLuong, null);
 
         log.info("✅ Tính lương thành công cho nhân viên: {} - Thực nhận: {}",
                 nhanVien.getHoTen(), saved.getLuongThucNhan());
@@ -450,28 +482,4 @@ public class BangLuongService {
 
         return saved;
     }
-
-    /**
-     * Tính lương tự động cho tất cả nhân viên trong tháng - CHỈ Accounting
-     */
-    public List<BangLuong> tinhLuongTuDongChoTatCa(Integer thang, Integer nam, User currentUser) {
-        PermissionUtil.checkAccountingViewPermission(currentUser);
-        log.info("Accounting {} tính lương tự động cho tất cả nhân viên - Tháng {}/{}",
-                currentUser.getUsername(), thang, nam);
-
-        List<NhanVien> nhanViens = nhanVienRepository.findByTrangThai(NhanVien.TrangThaiNhanVien.DANG_LAM_VIEC);
-        List<BangLuong> results = new java.util.ArrayList<>();
-
-        for (NhanVien nv : nhanViens) {
-            try {
-                BangLuong bangLuong = tinhLuongTuDong(nv.getNhanvienId(), thang, nam, currentUser);
-                results.add(bangLuong);
-            } catch (Exception e) {
-                log.error("Lỗi khi tính lương cho nhân viên {}: {}", nv.getHoTen(), e.getMessage());
-            }
-        }
-
-        log.info("✅ Hoàn thành tính lương cho {}/{} nhân viên", results.size(), nhanViens.size());
-        return results;
-    }
 }
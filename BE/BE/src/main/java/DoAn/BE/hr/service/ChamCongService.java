@@ -51,15 +51,18 @@ public class ChamCongService {
     private final NhanVienRepository nhanVienRepository;
     private final ProjectMemberRepository projectMemberRepository;
     private final DoAn.BE.notification.service.AttendanceNotificationService attendanceNotificationService;
+    private final ThongKeThangService thongKeThangService;
 
     public ChamCongService(ChamCongRepository chamCongRepository,
             NhanVienRepository nhanVienRepository,
             ProjectMemberRepository projectMemberRepository,
-            DoAn.BE.notification.service.AttendanceNotificationService attendanceNotificationService) {
+            DoAn.BE.notification.service.AttendanceNotificationService attendanceNotificationService,
+            ThongKeThangService thongKeThangService) {
         this.chamCongRepository = chamCongRepository;
         this.nhanVienRepository = nhanVienRepository;
         this.projectMemberRepository = projectMemberRepository;
         this.attendanceNotificationService = attendanceNotificationService;
+        this.thongKeThangService = thongKeThangService;
     }
 
     /**
@@ -90,7 +93,7 @@ public class ChamCongService {
         chamCong.setTrangThai(request.getTrangThai());
         chamCong.setGhiChu(request.getGhiChu());
 
-        return chamCongRepository.save(chamCong);
+        return luuChamCong(chamCong, null);
     }
 
     /**
@@ -168,6 +171,7 @@ public class ChamCongService {
         log.info("User {} cập nhật chấm công ID: {}", currentUser.getUsername(), id);
 
         ChamCong chamCong = getChamCongById(id);
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(chamCong);
 
         // Không cho đổi nhân viên
         if (request.getNhanvienId() != null &&
@@ -192,7 +196,7 @@ public class ChamCongService {
             chamCong.setGhiChu(request.getGhiChu());
         }
 
-        return chamCongRepository.save(chamCong);
+        return luuChamCong(chamCong, truoc);
     }
 
     /**
@@ -206,6 +210,17 @@ public class ChamCongService {
 
         ChamCong chamCong = getChamCongById(id);
         chamCongRepository.delete(chamCong);
+        thongKeThangService.capNhat(thongKeThangService.dongGop(chamCong), null);
+    }
+
+    /**
+     * Lưu chấm công và cập nhật bảng thống kê tháng
+     * saveAndFlush để @PreUpdate tính lại số giờ/trạng thái trước khi cộng dồn
+     */
+    private ChamCong luuChamCong(ChamCong chamCong, ThongKeThangService.DongGop truoc) {
+        ChamCong saved = chamCongRepository.saveAndFlush(chamCong);
+        thongKeThangService.capNhat(truoc, thongKeThangService.dongGop(saved));
+        return saved;
     }
 
     /**
@@ -324,7 +339,7 @@ public class ChamCongService {
             chamCong.setTrangThai(TrangThaiChamCong.DU_GIO);
         }
 
-        return chamCongRepository.save(chamCong);
+        return luuChamCong(chamCong, null);
     }
 
     /**
@@ -332,6 +347,7 @@ public class ChamCongService {
      */
     public ChamCong checkOut(Long chamcongId) {
         ChamCong chamCong = getChamCongById(chamcongId);
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(chamCong);
         chamCong.setGioRa(java.time.LocalTime.now());
 
         // Cập nhật trạng thái
@@ -341,7 +357,7 @@ public class ChamCongService {
             chamCong.setTrangThai(TrangThaiChamCong.DU_GIO);
         }
 
-        return chamCongRepository.save(chamCong);
+        return luuChamCong(chamCong, truoc);
     }
 
     /**
@@ -399,6 +415,7 @@ public class ChamCongService {
                 .findFirst();
 
         ChamCong chamCong;
+        ThongKeThangService.DongGop truoc = null;
         boolean isCheckIn;
 
         if (existingOpt.isEmpty()) {
@@ -415,6 +432,7 @@ public class ChamCongService {
             if (chamCong.getGioRa() != null) {
                 throw new BadRequestException("Bạn đã chấm công ra hôm nay rồi");
             }
+            truoc = thongKeThangService.dongGop(chamCong);
             chamCong.setGioRa(LocalTime.now());
             isCheckIn = false;
         }
@@ -425,8 +443,8 @@ public class ChamCongService {
         chamCong.setDiaChiCheckin(request.getDiaChiCheckin());
         chamCong.setKhoangCach(distance);
 
-        // 6. Lưu vào database
-        chamCong = chamCongRepository.save(chamCong);
+        // 6. Lưu vào database (kèm cập nhật thống kê tháng)
+        chamCong = luuChamCong(chamCong, truoc);
 
         // 7. Send notifications
         if (nhanVien.getUser() != null) {
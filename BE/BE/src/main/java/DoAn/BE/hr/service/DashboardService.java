@@ -4,20 +4,18 @@ import DoAn.BE.common.exception.ForbiddenException;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.hr.dto.DashboardDTO;
 import DoAn.BE.hr.dto.DashboardStatsDTO;
-import DoAn.BE.hr.entity.BangLuong;
 import DoAn.BE.hr.entity.ChamCong;
 import DoAn.BE.hr.entity.HopDong;
 import DoAn.BE.hr.entity.HopDong.TrangThaiHopDong;
 import DoAn.BE.hr.entity.NghiPhep;
 import DoAn.BE.hr.entity.NhanVien;
 import DoAn.BE.hr.entity.NhanVien.TrangThaiNhanVien;
-import DoAn.BE.hr.entity.PhongBan;
-import DoAn.BE.hr.repository.BangLuongRepository;
-import DoAn.BE.hr.repository.ChamCongRepository;
+import DoAn.BE.hr.entity.ThongKeThang;
+import DoAn.BE.hr.entity.ThongKeThang.LoaiThongKe;
 import DoAn.BE.hr.repository.HopDongRepository;
 import DoAn.BE.hr.repository.NghiPhepRepository;
 import DoAn.BE.hr.repository.NhanVienRepository;
-import DoAn.BE.hr.repository.PhongBanRepository;
+import DoAn.BE.hr.repository.ThongKeThangRepository;
 import DoAn.BE.notification.repository.ThongBaoRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -42,29 +40,23 @@ public class DashboardService {
 
     private final NhanVienRepository nhanVienRepository;
     private final NghiPhepRepository nghiPhepRepository;
-    private final BangLuongRepository bangLuongRepository;
     private final HopDongRepository hopDongRepository;
-    private final ChamCongRepository chamCongRepository;
-    private final PhongBanRepository phongBanRepository;
     private final ThongBaoRepository thongBaoRepository;
     private final DoAn.BE.project.repository.ProjectRepository projectRepository;
+    private final ThongKeThangRepository thongKeThangRepository;
 
     public DashboardService(NhanVienRepository nhanVienRepository,
             NghiPhepRepository nghiPhepRepository,
-            BangLuongRepository bangLuongRepository,
             HopDongRepository hopDongRepository,
-            ChamCongRepository chamCongRepository,
-            PhongBanRepository phongBanRepository,
             ThongBaoRepository thongBaoRepository,
-            DoAn.BE.project.repository.ProjectRepository projectRepository) {
+            DoAn.BE.project.repository.ProjectRepository projectRepository,
+            ThongKeThangRepository thongKeThangRepository) {
         this.nhanVienRepository = nhanVienRepository;
         this.nghiPhepRepository = nghiPhepRepository;
-        this.bangLuongRepository = bangLuongRepository;
         this.hopDongRepository = hopDongRepository;
-        this.chamCongRepository = chamCongRepository;
-        this.phongBanRepository = phongBanRepository;
         this.thongBaoRepository = thongBaoRepository;
         this.projectRepository = projectRepository;
+        this.thongKeThangRepository = thongKeThangRepository;
     }
 
     /**
@@ -90,28 +82,16 @@ public class DashboardService {
         dashboard.setDonNghiPhepDaDuyet(nghiPhepRepository.countByTrangThai(NghiPhep.TrangThaiNghiPhep.DA_DUYET));
         dashboard.setDonNghiPhepTuChoi(nghiPhepRepository.countByTrangThai(NghiPhep.TrangThaiNghiPhep.TU_CHOI));
 
-        // 3. Thống kê bảng lương tháng hiện tại
+        // 3. Thống kê bảng lương tháng hiện tại (đọc từ bảng tổng hợp)
         YearMonth currentMonth = YearMonth.now();
-        List<BangLuong> bangLuongThangNay = bangLuongRepository.findByThangAndNam(
-                currentMonth.getMonthValue(), currentMonth.getYear());
-
-        long chuaThanhToan = bangLuongThangNay.stream()
-                .filter(bl -> "CHUA_THANH_TOAN".equals(bl.getTrangThai()))
-                .count();
-        long daThanhToan = bangLuongThangNay.stream()
-                .filter(bl -> "DA_THANH_TOAN".equals(bl.getTrangThai()))
-                .count();
-        // CHỈ Accounting mới thấy số tiền lương
-        BigDecimal tongLuong = BigDecimal.ZERO;
-        if (currentUser.isManagerAccounting()) {
-            tongLuong = bangLuongThangNay.stream()
-                    .map(BangLuong::getLuongThucNhan)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-        }
+        List<ThongKeThang> bangLuongThangNay = getThongKeThang(LoaiThongKe.BANG_LUONG, currentMonth);
 
-        dashboard.setBangLuongChuaThanhToan(chuaThanhToan);
-        dashboard.setBangLuongDaThanhToan(daThanhToan);
-        dashboard.setTongLuongThangNay(tongLuong); // HR sẽ thấy 0
+        dashboard.setBangLuongChuaThanhToan(demTheoTrangThai(bangLuongThangNay, "CHUA_THANH_TOAN"));
+        dashboard.setBangLuongDaThanhToan(demTheoTrangThai(bangLuongThangNay, "DA_THANH_TOAN"));
+        // CHỈ Accounting mới thấy số tiền lương
+        dashboard.setTongLuongThangNay(currentUser.isManagerAccounting()
+                ? tongTien(bangLuongThangNay)
+                : BigDecimal.ZERO); // HR sẽ thấy 0
 
         // 4. Thống kê hợp đồng
         dashboard.setHopDongHieuLuc(hopDongRepository.countByTrangThai(TrangThaiHopDong.HIEU_LUC));
@@ -124,10 +104,7 @@ public class DashboardService {
         dashboard.setHopDongSapHetHan(hopDongSapHetHan.size());
 
         // 5. Thống kê chấm công tháng hiện tại
-        LocalDate startOfMonth = currentMonth.atDay(1);
-        LocalDate endOfMonth = currentMonth.atEndOfMonth();
-        dashboard.setTongChamCongThangNay(
-                chamCongRepository.findByNgayChamBetween(startOfMonth, endOfMonth).size());
+        dashboard.setTongChamCongThangNay(tongSoLuong(getThongKeThang(LoaiThongKe.CHAM_CONG, currentMonth)));
 
         // 6. Danh sách hợp đồng sắp hết hạn
         List<DashboardDTO.HopDongExpiringDTO> hopDongList = hopDongSapHetHan.stream()
@@ -174,35 +151,19 @@ public class DashboardService {
 
         DashboardDTO dashboard = new DashboardDTO();
 
-        // Thống kê bảng lương theo tháng
-        List<BangLuong> bangLuongs = bangLuongRepository.findByThangAndNam(thang, nam);
-
-        long chuaThanhToan = bangLuongs.stream()
-                .filter(bl -> "CHUA_THANH_TOAN".equals(bl.getTrangThai()))
-                .count();
-        long daThanhToan = bangLuongs.stream()
-                .filter(bl -> "DA_THANH_TOAN".equals(bl.getTrangThai()))
-                .count();
+        // Thống kê bảng lương theo tháng (đọc từ bảng tổng hợp)
+        YearMonth yearMonth = YearMonth.of(nam, thang);
+        List<ThongKeThang> bangLuongs = getThongKeThang(LoaiThongKe.BANG_LUONG, yearMonth);
 
+        dashboard.setBangLuongChuaThanhToan(demTheoTrangThai(bangLuongs, "CHUA_THANH_TOAN"));
+        dashboard.setBangLuongDaThanhToan(demTheoTrangThai(bangLuongs, "DA_THANH_TOAN"));
         // CHỈ Accounting mới thấy số tiền lương
-        BigDecimal tongLuong = BigDecimal.ZERO;
-        if (currentUser.isManagerAccounting()) {
-            tongLuong = bangLuongs.stream()
-                    .map(BangLuong::getLuongThucNhan)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-        }
-
-        dashboard.setBangLuongChuaThanhToan(chuaThanhToan);
-        dashboard.setBangLuongDaThanhToan(daThanhToan);
-        dashboard.setTongLuongThangNay(tongLuong); // HR sẽ thấy 0
+        dashboard.setTongLuongThangNay(currentUser.isManagerAccounting()
+                ? tongTien(bangLuongs)
+                : BigDecimal.ZERO); // HR sẽ thấy 0
 
         // Thống kê chấm công theo tháng
-        YearMonth yearMonth = YearMonth.of(nam, thang);
-        LocalDate startDate = yearMonth.atDay(1);
-        LocalDate endDate = yearMonth.atEndOfMonth();
-
-        dashboard.setTongChamCongThangNay(
-                chamCongRepository.findByNgayChamBetween(startDate, endDate).size());
+        dashboard.setTongChamCongThangNay(tongSoLuong(getThongKeThang(LoaiThongKe.CHAM_CONG, yearMonth)));
 
         return dashboard;
     }
@@ -247,47 +208,41 @@ public class DashboardService {
     private DashboardStatsDTO.TongQuanStats getTongQuanStats(User currentUser) {
         DashboardStatsDTO.TongQuanStats tongQuan = new DashboardStatsDTO.TongQuanStats();
 
-        // Thống kê nhân viên
-        tongQuan.setTongNhanVien(nhanVienRepository.count());
-        tongQuan.setNhanVienDangLam(nhanVienRepository.countByTrangThai(TrangThaiNhanVien.DANG_LAM_VIEC));
-        tongQuan.setNhanVienNghiViec(nhanVienRepository.countByTrangThai(TrangThaiNhanVien.NGHI_VIEC));
+        // Thống kê nhân viên - 1 truy vấn GROUP BY trạng thái
+        Map<TrangThaiNhanVien, Long> nhanVienTheoTrangThai = new EnumMap<>(TrangThaiNhanVien.class);
+        for (Object[] row : nhanVienRepository.getStatsByTrangThai()) {
+            if (row[0] != null) {
+                nhanVienTheoTrangThai.put((TrangThaiNhanVien) row[0], (Long) row[1]);
+            }
+        }
+        tongQuan.setTongNhanVien(nhanVienTheoTrangThai.values().stream().mapToLong(Long::longValue).sum());
+        tongQuan.setNhanVienDangLam(nhanVienTheoTrangThai.getOrDefault(TrangThaiNhanVien.DANG_LAM_VIEC, 0L));
+        tongQuan.setNhanVienNghiViec(nhanVienTheoTrangThai.getOrDefault(TrangThaiNhanVien.NGHI_VIEC, 0L));
 
         // Thống kê nghỉ phép
         tongQuan.setDonNghiPhepChoDuyet(nghiPhepRepository.countByTrangThai(NghiPhep.TrangThaiNghiPhep.CHO_DUYET));
 
-        // Thống kê bảng lương
-        YearMonth currentMonth = YearMonth.now();
-        List<BangLuong> bangLuongThangNay = bangLuongRepository.findByThangAndNam(
-                currentMonth.getMonthValue(), currentMonth.getYear());
-        tongQuan.setBangLuongChoDuyet(bangLuongThangNay.stream()
-                .filter(bl -> "CHO_DUYET".equals(bl.getTrangThai()))
-                .count());
+        // Thống kê bảng lương tháng hiện tại (đọc từ bảng tổng hợp)
+        List<ThongKeThang> bangLuongThangNay = getThongKeThang(LoaiThongKe.BANG_LUONG, YearMonth.now());
+        tongQuan.setBangLuongChoDuyet(demTheoTrangThai(bangLuongThangNay, "CHO_DUYET"));
+        BigDecimal tongLuongThang = tongTien(bangLuongThangNay);
 
         // Thống kê hợp đồng hết hạn 30 ngày
         LocalDate today = LocalDate.now();
         LocalDate after30Days = today.plusDays(30);
-        tongQuan.setHopDongHetHan30Ngay(hopDongRepository.findExpiringContracts(today, after30Days).size());
+        tongQuan.setHopDongHetHan30Ngay(hopDongRepository.countExpiringContracts(today, after30Days));
 
         // Thống kê thông báo chưa đọc (tổng của tất cả user)
         tongQuan.setThongBaoChuaDoc(thongBaoRepository.count()); // Tạm thời lấy tổng
 
         // Tổng chi phí lương tháng hiện tại - CHỈ Accounting
-        BigDecimal tongChiPhi = BigDecimal.ZERO;
-        if (currentUser.isManagerAccounting()) {
-            tongChiPhi = bangLuongThangNay.stream()
-                    .map(BangLuong::getLuongThucNhan)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-        }
+        BigDecimal tongChiPhi = currentUser.isManagerAccounting() ? tongLuongThang : BigDecimal.ZERO;
         tongQuan.setTongChiPhiLuongThang(tongChiPhi); // HR sẽ thấy 0
 
         // Tính doanh thu từ dự án (Tổng budget của các dự án đang active)
         BigDecimal tongDoanhThu = BigDecimal.ZERO;
         if (currentUser.isManagerAccounting()) {
-            List<DoAn.BE.project.entity.Project> projects = projectRepository
-                    .findByStatus(DoAn.BE.project.entity.Project.ProjectStatus.ACTIVE);
-            tongDoanhThu = projects.stream()
-                    .map(p -> p.getBudget() != null ? p.getBudget() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            tongDoanhThu = projectRepository.sumBudgetByStatus(DoAn.BE.project.entity.Project.ProjectStatus.ACTIVE);
         }
         tongQuan.setTongDoanhThu(tongDoanhThu);
 
@@ -300,44 +255,43 @@ public class DashboardService {
 
     /**
      * Biểu đồ hiệu suất chấm công theo phòng ban
+     * Số nhân viên lấy bằng 1 truy vấn GROUP BY, số lượt chấm công đọc từ bảng tổng hợp tháng
+     * thay vì truy vấn từng phòng ban và từng nhân viên
      */
     private List<DashboardStatsDTO.ChamCongPhongBanStats> getChamCongPhongBanStats() {
-        List<PhongBan> phongBans = phongBanRepository.findAll();
-        LocalDate startOfMonth = YearMonth.now().atDay(1);
-        LocalDate endOfMonth = YearMonth.now().atEndOfMonth();
+        // phongbanId -> (trạng thái -> số lượt chấm công)
+        Map<Long, Map<String, Long>> chamCongTheoPhongBan = new HashMap<>();
+        for (ThongKeThang row : getThongKeThang(LoaiThongKe.CHAM_CONG, YearMonth.now())) {
+            chamCongTheoPhongBan
+                    .computeIfAbsent(row.getPhongbanId(), id -> new HashMap<>())
+                    .merge(row.getTrangThai(), row.getSoLuong(), Long::sum);
+        }
 
-        return phongBans.stream().map(pb -> {
-            List<NhanVien> nhanViens = nhanVienRepository.findByPhongBan(pb);
-            long tongNhanVien = nhanViens.size();
+        List<DashboardStatsDTO.ChamCongPhongBanStats> stats = new ArrayList<>();
+        for (Object[] row : nhanVienRepository.getStatsByPhongBan()) {
+            Long phongbanId = (Long) row[0];
+            String tenPhongBan = (String) row[1];
+            long tongNhanVien = (Long) row[2];
 
             if (tongNhanVien == 0) {
-                return new DashboardStatsDTO.ChamCongPhongBanStats(
-                        pb.getTenPhongBan(), 0, 0, 0, 0, 0.0);
+                stats.add(new DashboardStatsDTO.ChamCongPhongBanStats(tenPhongBan, 0, 0, 0, 0, 0.0));
+                continue;
             }
 
-            // Lấy chấm công của tất cả nhân viên trong phòng ban tháng này
-            List<ChamCong> chamCongs = new ArrayList<>();
-            for (NhanVien nv : nhanViens) {
-                chamCongs.addAll(chamCongRepository.findByNhanVienAndNgayChamBetween(
-                        nv, startOfMonth, endOfMonth));
-            }
+            Map<String, Long> counts = chamCongTheoPhongBan
+                    .getOrDefault(phongbanId, Collections.emptyMap());
+            long tongChamCong = counts.values().stream().mapToLong(Long::longValue).sum();
+            long diMuon = counts.getOrDefault(ChamCong.TrangThaiChamCong.DI_TRE.name(), 0L);
+            long veSom = counts.getOrDefault(ChamCong.TrangThaiChamCong.VE_SOM.name(), 0L);
+            long dungGio = counts.getOrDefault(ChamCong.TrangThaiChamCong.DU_GIO.name(), 0L);
+
+            double tiLeDungGio = tongChamCong > 0 ? (double) dungGio / tongChamCong * 100 : 0.0;
 
-            long diMuon = chamCongs.stream()
-                    .filter(cc -> ChamCong.TrangThaiChamCong.DI_TRE.equals(cc.getTrangThai()))
-                    .count();
-            long veSom = chamCongs.stream()
-                    .filter(cc -> ChamCong.TrangThaiChamCong.VE_SOM.equals(cc.getTrangThai()))
-                    .count();
-            long dungGio = chamCongs.stream()
-                    .filter(cc -> ChamCong.TrangThaiChamCong.DU_GIO.equals(cc.getTrangThai()))
-                    .count();
-
-            double tiLeDungGio = chamCongs.size() > 0 ? (double) dungGio / chamCongs.size() * 100 : 0.0;
-
-            return new DashboardStatsDTO.ChamCongPhongBanStats(
-                    pb.getTenPhongBan(), tongNhanVien, diMuon, veSom, dungGio,
-                    Math.round(tiLeDungGio * 100.0) / 100.0);
-        }).collect(Collectors.toList());
+            stats.add(new DashboardStatsDTO.ChamCongPhongBanStats(
+                    tenPhongBan, tongNhanVien, diMuon, veSom, dungGio,
+                    Math.round(tiLeDungGio * 100.0) / 100.0));
+        }
+        return stats;
     }
 
     /**
@@ -345,31 +299,37 @@ public class DashboardService {
      * thấy số tiền
      */
     private List<DashboardStatsDTO.LuongTheoThangStats> getLuongTheoThangStats(User currentUser) {
-        List<DashboardStatsDTO.LuongTheoThangStats> stats = new ArrayList<>();
+        YearMonth thangCuoi = YearMonth.now();
+        YearMonth thangDau = thangCuoi.minusMonths(5);
 
-        for (int i = 5; i >= 0; i--) {
-            YearMonth month = YearMonth.now().minusMonths(i);
-            List<BangLuong> bangLuongs = bangLuongRepository.findByThangAndNam(
-                    month.getMonthValue(), month.getYear());
+        // 1 truy vấn trên bảng tổng hợp cho cả 6 tháng
+        Map<YearMonth, List<ThongKeThang>> theoThang = thongKeThangRepository
+                .findByLoaiAndKyBetween(LoaiThongKe.BANG_LUONG,
+                        thangDau.getYear() * 100 + thangDau.getMonthValue(),
+                        thangCuoi.getYear() * 100 + thangCuoi.getMonthValue())
+                .stream()
+                .collect(Collectors.groupingBy(t -> YearMonth.of(t.getNam(), t.getThang())));
+
+        List<DashboardStatsDTO.LuongTheoThangStats> stats = new ArrayList<>();
+        for (YearMonth month = thangDau; !month.isAfter(thangCuoi); month = month.plusMonths(1)) {
+            List<ThongKeThang> rows = theoThang.getOrDefault(month, Collections.emptyList());
+            long soNhanVien = tongSoLuong(rows);
 
             // CHỈ Accounting mới thấy số tiền lương
             BigDecimal tongLuong = BigDecimal.ZERO;
             BigDecimal luongTrungBinh = BigDecimal.ZERO;
 
             if (currentUser.isManagerAccounting()) {
-                tongLuong = bangLuongs.stream()
-                        .map(BangLuong::getLuongThucNhan)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                luongTrungBinh = bangLuongs.size() > 0
-                        ? tongLuong.divide(BigDecimal.valueOf(bangLuongs.size()), 2, RoundingMode.HALF_UP)
+                tongLuong = tongTien(rows);
+                luongTrungBinh = soNhanVien > 0
+                        ? tongLuong.divide(BigDecimal.valueOf(soNhanVien), 2, RoundingMode.HALF_UP)
                         : BigDecimal.ZERO;
             }
 
             stats.add(new DashboardStatsDTO.LuongTheoThangStats(
                     month.format(DateTimeFormatter.ofPattern("MM/yyyy")),
                     tongLuong, // HR sẽ thấy 0
-                    bangLuongs.size(),
+                    soNhanVien,
                     luongTrungBinh // HR sẽ thấy 0
             ));
         }
@@ -378,41 +338,49 @@ public class DashboardService {
     }
 
     private List<DashboardStatsDTO.NghiPhepStats> getNghiPhepStats() {
-        List<DashboardStatsDTO.NghiPhepStats> stats = new ArrayList<>();
-
-        // Lấy tất cả loại nghỉ phép
-        List<Object[]> results = nghiPhepRepository.getStatsByLoaiPhep();
-
-        for (Object[] result : results) {
-            // result[0] là enum LoaiPhep, không phải String
-            NghiPhep.LoaiPhep loaiPhepEnum = (NghiPhep.LoaiPhep) result[0];
-            long soLuong = (Long) result[1];
-
-            long choDuyet = nghiPhepRepository.countByLoaiPhepAndTrangThai(
-                    loaiPhepEnum, NghiPhep.TrangThaiNghiPhep.CHO_DUYET);
-            long daDuyet = nghiPhepRepository.countByLoaiPhepAndTrangThai(
-                    loaiPhepEnum, NghiPhep.TrangThaiNghiPhep.DA_DUYET);
-            long tuChoi = nghiPhepRepository.countByLoaiPhepAndTrangThai(
-                    loaiPhepEnum, NghiPhep.TrangThaiNghiPhep.TU_CHOI);
-
-            stats.add(new DashboardStatsDTO.NghiPhepStats(
-                    loaiPhepEnum.name(), soLuong, choDuyet, daDuyet, tuChoi));
+        // 1 truy vấn GROUP BY (loại phép, trạng thái) thay vì 1 + 3 truy vấn cho mỗi loại phép
+        Map<NghiPhep.LoaiPhep, DashboardStatsDTO.NghiPhepStats> theoLoai = new LinkedHashMap<>();
+        for (Object[] row : nghiPhepRepository.getStatsByLoaiPhepAndTrangThai()) {
+            NghiPhep.LoaiPhep loaiPhepEnum = (NghiPhep.LoaiPhep) row[0];
+            NghiPhep.TrangThaiNghiPhep trangThai = (NghiPhep.TrangThaiNghiPhep) row[1];
+            long soLuong = (Long) row[2];
+
+            DashboardStatsDTO.NghiPhepStats stat = theoLoai.computeIfAbsent(loaiPhepEnum,
+                    loai -> new DashboardStatsDTO.NghiPhepStats(loai.name(), 0, 0, 0, 0));
+            stat.setSoLuong(stat.getSoLuong() + soLuong);
+            if (trangThai == NghiPhep.TrangThaiNghiPhep.CHO_DUYET) {
+                stat.setChoDuyet(stat.getChoDuyet() + soLuong);
+            } else if (trangThai == NghiPhep.TrangThaiNghiPhep.DA_DUYET) {
+                stat.setDaDuyet(stat.getDaDuyet() + soLuong);
+            } else if (trangThai == NghiPhep.TrangThaiNghiPhep.TU_CHOI) {
+                stat.setTuChoi(stat.getTuChoi() + soLuong);
+            }
         }
 
-        return stats;
+        return new ArrayList<>(theoLoai.values());
     }
 
     private DashboardStatsDTO.HopDongStats getHopDongStats() {
         DashboardStatsDTO.HopDongStats stats = new DashboardStatsDTO.HopDongStats();
 
-        stats.setTongHopDong(hopDongRepository.count());
-        stats.setHopDongConHieuLuc(hopDongRepository.countByTrangThai(TrangThaiHopDong.HIEU_LUC));
-        stats.setHopDongHetHan(hopDongRepository.countByTrangThai(TrangThaiHopDong.HET_HAN));
+        // 1 truy vấn GROUP BY trạng thái cho tổng / hiệu lực / hết hạn
+        Map<TrangThaiHopDong, Long> theoTrangThai = new EnumMap<>(TrangThaiHopDong.class);
+        long tongHopDong = 0;
+        for (Object[] row : hopDongRepository.getStatsByTrangThai()) {
+            long soLuong = (Long) row[1];
+            tongHopDong += soLuong;
+            if (row[0] != null) {
+                theoTrangThai.put((TrangThaiHopDong) row[0], soLuong);
+            }
+        }
+        stats.setTongHopDong(tongHopDong);
+        stats.setHopDongConHieuLuc(theoTrangThai.getOrDefault(TrangThaiHopDong.HIEU_LUC, 0L));
+        stats.setHopDongHetHan(theoTrangThai.getOrDefault(TrangThaiHopDong.HET_HAN, 0L));
 
         // Hợp đồng sắp hết hạn 30 ngày
         LocalDate today = LocalDate.now();
         LocalDate after30Days = today.plusDays(30);
-        stats.setHopDongSapHetHan(hopDongRepository.findExpiringContracts(today, after30Days).size());
+        stats.setHopDongSapHetHan(hopDongRepository.countExpiringContracts(today, after30Days));
 
         // Thống kê theo loại hợp đồng
         List<Object[]> hopDongTheoLoai = hopDongRepository.getStatsByLoaiHopDong();
@@ -426,7 +394,8 @@ public class DashboardService {
     }
 
     private List<DashboardStatsDTO.NhanVienTheoTuoiStats> getNhanVienTheoTuoiStats() {
-        List<NhanVien> nhanViens = nhanVienRepository.findByTrangThai(TrangThaiNhanVien.DANG_LAM_VIEC);
+        // GROUP BY ngày sinh: số dòng trả về bị chặn bởi số ngày sinh khác nhau, không phải số nhân viên
+        List<Object[]> theoNgaySinh = nhanVienRepository.getStatsByNgaySinh(TrangThaiNhanVien.DANG_LAM_VIEC);
         LocalDate today = LocalDate.now();
 
         Map<String, Long> tuoiGroups = new HashMap<>();
@@ -437,9 +406,13 @@ public class DashboardService {
         tuoiGroups.put("41-50", 0L);
         tuoiGroups.put("50+", 0L);
 
-        for (NhanVien nv : nhanViens) {
-            if (nv.getNgaySinh() != null) {
-                int tuoi = Period.between(nv.getNgaySinh(), today).getYears();
+        long tongNhanVien = 0;
+        for (Object[] row : theoNgaySinh) {
+            LocalDate ngaySinh = (LocalDate) row[0];
+            long soLuong = (Long) row[1];
+            tongNhanVien += soLuong;
+            if (ngaySinh != null) {
+                int tuoi = Period.between(ngaySinh, today).getYears();
                 String group;
                 if (tuoi <= 25)
                     group = "20-25";
@@ -454,14 +427,14 @@ public class DashboardService {
                 else
                     group = "50+";
 
-                tuoiGroups.put(group, tuoiGroups.get(group) + 1);
+                tuoiGroups.put(group, tuoiGroups.get(group) + soLuong);
             }
         }
 
-        long tongNhanVien = nhanViens.size();
+        long tong = tongNhanVien;
         return tuoiGroups.entrySet().stream()
                 .map(entry -> {
-                    double tiLe = tongNhanVien > 0 ? (double) entry.getValue() / tongNhanVien * 100 : 0.0;
+                    double tiLe = tong > 0 ? (double) entry.getValue() / tong * 100 : 0.0;
                     return new DashboardStatsDTO.NhanVienTheoTuoiStats(
                             entry.getKey(), entry.getValue(),
                             Math.round(tiLe * 100.0) / 100.0);
@@ -470,24 +443,41 @@ public class DashboardService {
     }
 
     private Map<String, Long> getNhanVienTheoGioiTinhStats() {
-        List<NhanVien> nhanViens = nhanVienRepository.findByTrangThai(TrangThaiNhanVien.DANG_LAM_VIEC);
-
         Map<String, Long> gioiTinhStats = new HashMap<>();
         gioiTinhStats.put("Nam", 0L);
         gioiTinhStats.put("Nữ", 0L);
         gioiTinhStats.put("Khác", 0L);
 
-        for (NhanVien nv : nhanViens) {
-            NhanVien.GioiTinh gioiTinh = nv.getGioiTinh();
+        for (Object[] row : nhanVienRepository.getStatsByGioiTinh(TrangThaiNhanVien.DANG_LAM_VIEC)) {
+            NhanVien.GioiTinh gioiTinh = (NhanVien.GioiTinh) row[0];
             if (gioiTinh != null) {
-                switch (gioiTinh) {
-                    case Nam -> gioiTinhStats.put("Nam", gioiTinhStats.get("Nam") + 1);
-                    case Nữ -> gioiTinhStats.put("Nữ", gioiTinhStats.get("Nữ") + 1);
-                    case Khác -> gioiTinhStats.put("Khác", gioiTinhStats.get("Khác") + 1);
-                }
+                gioiTinhStats.merge(gioiTinh.name(), (Long) row[1], Long::sum);
             }
         }
 
         return gioiTinhStats;
     }
+
+    // ===== Đọc bảng tổng hợp tháng =====
+
+    private List<ThongKeThang> getThongKeThang(LoaiThongKe loai, YearMonth thang) {
+        return thongKeThangRepository.findByLoaiAndNamAndThang(loai, thang.getYear(), thang.getMonthValue());
+    }
+
+    private static long tongSoLuong(List<ThongKeThang> rows) {
+        return rows.stream().mapToLong(ThongKeThang::getSoLuong).sum();
+    }
+
+    private static long demTheoTrangThai(List<ThongKeThang> rows, String trangThai) {
+        return rows.stream()
+                .filter(t -> trangThai.equals(t.getTrangThai()))
+                .mapToLong(ThongKeThang::getSoLuong)
+                .sum();
+    }
+
+    private static BigDecimal tongTien(List<ThongKeThang> rows) {
+        return rows.stream()
+                .map(ThongKeThang::getTongTien)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
 }
@@ -1,56 +1,146 @@
 package DoAn.BE.hr.service;
 
-import DoAn.BE.hr.repository.*;
+import DoAn.BE.common.util.TabularStreamWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDate;
+import java.time.YearMonth;
 
+/**
+ * Service export dữ liệu HR ra Excel (XLSX) / CSV theo kiểu streaming
+ * - Đọc bằng cursor forward-only, fetch từng trang FETCH_SIZE dòng (JDBC, không qua persistence context)
+ * - Mỗi dòng đọc được ghi ngay ra OutputStream của response
+ * Bộ nhớ dùng không phụ thuộc số dòng (1 năm chấm công vẫn export được)
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@SuppressWarnings("unused") // Placeholder service - repositories will be used when Apache POI is added
 public class ExportService {
-    
-    private final NhanVienRepository nhanVienRepository;
-    private final ChamCongRepository chamCongRepository;
-    private final BangLuongRepository bangLuongRepository;
-    private final NghiPhepRepository nghiPhepRepository;
-    private final HopDongRepository hopDongRepository;
-    
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Export danh sách nhân viên
+     */
+    public void exportNhanVien(TabularStreamWriter.Format format, OutputStream out) throws IOException {
+        log.info("Export nhân viên ({})", format);
+        export(format, out, "Nhân viên",
+                new String[] { "Mã NV", "Họ tên", "CCCD", "Ngày sinh", "Giới tính", "SĐT", "Địa chỉ",
+                        "Ngày vào làm", "Phòng ban", "Chức vụ", "Trạng thái", "Lương cơ bản", "Phụ cấp" },
+                "SELECT nv.nhanvien_id, nv.ho_ten, nv.cccd, nv.ngay_sinh, nv.gioi_tinh, nv.sdt, nv.dia_chi, " +
+                        "nv.ngay_vao_lam, pb.ten_phong_ban, cv.ten_chuc_vu, nv.trang_thai, nv.luong_co_ban, nv.phu_cap " +
+                        "FROM nhan_vien nv " +
+                        "LEFT JOIN phong_ban pb ON pb.phongban_id = nv.phongban_id " +
+                        "LEFT JOIN chuc_vu cv ON cv.chucvu_id = nv.chucvu_id " +
+                        "ORDER BY nv.nhanvien_id");
+    }
+
     /**
-     * Export danh sách nhân viên ra Excel (placeholder)
-     * TODO: Cần thêm Apache POI dependency để implement
+     * Export bảng chấm công theo tháng
      */
-    public byte[] exportNhanVienToExcel() throws IOException {
-        log.info("Export nhân viên - Cần implement Apache POI");
-        // Placeholder - sẽ implement sau khi thêm dependency
-        return "Export nhân viên - Cần implement Apache POI".getBytes();
+    public void exportChamCong(int thang, int nam, TabularStreamWriter.Format format, OutputStream out)
+            throws IOException {
+        log.info("Export chấm công tháng {}/{} ({})", thang, nam, format);
+        YearMonth yearMonth = YearMonth.of(nam, thang);
+        export(format, out, "Chấm công " + thang + "-" + nam,
+                new String[] { "Ngày", "Mã NV", "Họ tên", "Phòng ban", "Giờ vào", "Giờ ra", "Số giờ làm",
+                        "Trạng thái", "Loại ca", "Phương thức", "Ghi chú" },
+                "SELECT cc.ngay_cham, nv.nhanvien_id, nv.ho_ten, pb.ten_phong_ban, cc.gio_vao, cc.gio_ra, " +
+                        "cc.so_gio_lam, cc.trang_thai, cc.loai_ca, cc.phuong_thuc, cc.ghi_chu " +
+                        "FROM cham_cong cc " +
+                        "JOIN nhan_vien nv ON nv.nhanvien_id = cc.nhanvien_id " +
+                        "LEFT JOIN phong_ban pb ON pb.phongban_id = nv.phongban_id " +
+                        "WHERE cc.ngay_cham BETWEEN ? AND ? " +
+                        "ORDER BY cc.ngay_cham, nv.nhanvien_id",
+                Date.valueOf(yearMonth.atDay(1)), Date.valueOf(yearMonth.atEndOfMonth()));
     }
-    
+
     /**
-     * Export bảng chấm công theo tháng ra Excel (placeholder)
+     * Export bảng lương theo tháng
      */
-    public byte[] exportChamCongToExcel(int thang, int nam) throws IOException {
-        log.info("Export chấm công tháng {}/{} - Cần implement Apache POI", thang, nam);
-        return "Export chấm công - Cần implement Apache POI".getBytes();
+    public void exportBangLuong(int thang, int nam, TabularStreamWriter.Format format, OutputStream out)
+            throws IOException {
+        log.info("Export bảng lương tháng {}/{} ({})", thang, nam, format);
+        export(format, out, "Bảng lương " + thang + "-" + nam,
+                new String[] { "Mã NV", "Họ tên", "Phòng ban", "Lương cơ bản", "Ngày công", "Ngày công chuẩn",
+                        "Lương theo ngày công", "Phụ cấp", "Thưởng", "Giờ làm thêm", "Tiền làm thêm",
+                        "BHXH", "BHYT", "BHTN", "Thuế TNCN", "Khấu trừ khác", "Tổng lương", "Tổng khấu trừ",
+                        "Thực nhận", "Trạng thái" },
+                "SELECT nv.nhanvien_id, nv.ho_ten, pb.ten_phong_ban, bl.luong_co_ban, bl.ngay_cong, " +
+                        "bl.ngay_cong_chuan, bl.luong_theo_ngay_cong, bl.phu_cap, bl.thuong, bl.gio_lam_them, " +
+                        "bl.tien_lam_them, bl.bhxh, bl.bhyt, bl.bhtn, bl.thue_tncn, bl.khau_tru_khac, " +
+                        "bl.tong_luong, bl.tong_khau_tru, bl.luong_thuc_nhan, bl.trang_thai " +
+                        "FROM bang_luong bl " +
+                        "JOIN nhan_vien nv ON nv.nhanvien_id = bl.nhanvien_id " +
+                        "LEFT JOIN phong_ban pb ON pb.phongban_id = nv.phongban_id " +
+                        "WHERE bl.thang = ? AND bl.nam = ? " +
+                        "ORDER BY nv.nhanvien_id",
+                thang, nam);
     }
-    
+
     /**
-     * Export bảng lương theo tháng ra Excel (placeholder)
+     * Export đơn nghỉ phép giao với khoảng [startDate, endDate]
      */
-    public byte[] exportBangLuongToExcel(int thang, int nam) throws IOException {
-        log.info("Export bảng lương tháng {}/{} - Cần implement Apache POI", thang, nam);
-        return "Export bảng lương - Cần implement Apache POI".getBytes();
+    public void exportNghiPhep(LocalDate startDate, LocalDate endDate, TabularStreamWriter.Format format,
+            OutputStream out) throws IOException {
+        log.info("Export nghỉ phép từ {} đến {} ({})", startDate, endDate, format);
+        export(format, out, "Nghỉ phép",
+                new String[] { "Mã đơn", "Mã NV", "Họ tên", "Phòng ban", "Loại phép", "Từ ngày", "Đến ngày",
+                        "Số ngày", "Lý do", "Trạng thái", "Ngày tạo" },
+                "SELECT np.nghiphep_id, nv.nhanvien_id, nv.ho_ten, pb.ten_phong_ban, np.loai_phep, " +
+                        "np.ngay_bat_dau, np.ngay_ket_thuc, np.so_ngay, np.ly_do, np.trang_thai, np.created_at " +
+                        "FROM nghi_phep np " +
+                        "JOIN nhan_vien nv ON nv.nhanvien_id = np.nhanvien_id " +
+                        "LEFT JOIN phong_ban pb ON pb.phongban_id = nv.phongban_id " +
+                        "WHERE np.ngay_bat_dau <= ? AND np.ngay_ket_thuc >= ? " +
+                        "ORDER BY np.ngay_bat_dau, np.nghiphep_id",
+                Date.valueOf(endDate), Date.valueOf(startDate));
     }
-    
+
     /**
-     * Export danh sách nghỉ phép ra Excel (placeholder)
+     * Chạy query với cursor forward-only và ghi từng dòng ra writer
      */
-    public byte[] exportNghiPhepToExcel(LocalDate startDate, LocalDate endDate) throws IOException {
-        log.info("Export nghỉ phép từ {} đến {} - Cần implement Apache POI", startDate, endDate);
-        return "Export nghỉ phép - Cần implement Apache POI".getBytes();
+    private void export(TabularStreamWriter.Format format, OutputStream out, String sheetName,
+            String[] headers, String sql, Object... params) throws IOException {
+        long start = System.currentTimeMillis();
+        long[] rowCount = { 0 };
+        try (TabularStreamWriter writer = TabularStreamWriter.open(format, out, sheetName)) {
+            writer.writeRow((Object[]) headers);
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+                return ps;
+            }, (ResultSet rs) -> {
+                Object[] row = new Object[headers.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                try {
+                    writer.writeRow(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rowCount[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            // Client ngắt kết nối giữa chừng
+            throw e.getCause();
+        }
+        log.info("✅ Export {} xong: {} dòng trong {} ms", sheetName, rowCount[0], System.currentTimeMillis() - start);
     }
 }
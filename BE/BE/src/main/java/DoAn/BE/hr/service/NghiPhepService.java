@@ -31,15 +31,18 @@ public class NghiPhepService {
     private final NhanVienRepository nhanVienRepository;
     private final UserRepository userRepository;
     private final HRNotificationService hrNotificationService;
+    private final ThongKeThangService thongKeThangService;
 
     public NghiPhepService(NghiPhepRepository nghiPhepRepository,
             NhanVienRepository nhanVienRepository,
             UserRepository userRepository,
-            HRNotificationService hrNotificationService) {
+            HRNotificationService hrNotificationService,
+            ThongKeThangService thongKeThangService) {
         this.nghiPhepRepository = nghiPhepRepository;
         this.nhanVienRepository = nhanVienRepository;
         this.userRepository = userRepository;
         this.hrNotificationService = hrNotificationService;
+        this.thongKeThangService = thongKeThangService;
     }
 
     // Tạo đơn nghỉ phép mới - Employee tự tạo
@@ -64,7 +67,17 @@ public class NghiPhepService {
         nghiPhep.setLyDo(request.getLyDo());
         nghiPhep.setTrangThai(TrangThaiNghiPhep.CHO_DUYET);
 
-        return nghiPhepRepository.save(nghiPhep);
+        return luuNghiPhep(nghiPhep, null);
+    }
+
+    /**
+     * Lưu đơn nghỉ phép và cập nhật bảng thống kê tháng
+     * saveAndFlush để @PreUpdate tính lại số ngày trước khi cộng dồn
+     */
+    private NghiPhep luuNghiPhep(NghiPhep nghiPhep, ThongKeThangService.DongGop truoc) {
+        NghiPhep saved = nghiPhepRepository.saveAndFlush(nghiPhep);
+        thongKeThangService.capNhat(truoc, thongKeThangService.dongGop(saved));
+        return saved;
     }
 
     /**
@@ -125,6 +138,7 @@ public class NghiPhepService {
         }
 
         log.info("User {} cập nhật đơn nghỉ phép ID: {}", currentUser.getUsername(), id);
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(nghiPhep);
 
         // Chỉ cho phép cập nhật nếu đang chờ duyệt
         if (nghiPhep.getTrangThai() != TrangThaiNghiPhep.CHO_DUYET) {
@@ -156,7 +170,7 @@ public class NghiPhepService {
             throw new BadRequestException("Ngày kết thúc phải sau ngày bắt đầu");
         }
 
-        return nghiPhepRepository.save(nghiPhep);
+        return luuNghiPhep(nghiPhep, truoc);
     }
 
     /**
@@ -171,6 +185,7 @@ public class NghiPhepService {
         }
 
         nghiPhepRepository.delete(nghiPhep);
+        thongKeThangService.capNhat(thongKeThangService.dongGop(nghiPhep), null);
     }
 
     /**
@@ -202,8 +217,9 @@ public class NghiPhepService {
             throw new BadRequestException("Đơn này đã được xử lý hoặc đang chờ Accounting");
         }
 
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(nghiPhep);
         nghiPhep.approvePM(currentUser, note);
-        NghiPhep saved = nghiPhepRepository.save(nghiPhep);
+        NghiPhep saved = luuNghiPhep(nghiPhep, truoc);
         log.info("✅ PM đã duyệt đơn nghỉ phép, chờ Accounting duyệt phép tồn");
 
         return saved;
@@ -224,8 +240,9 @@ public class NghiPhepService {
             throw new BadRequestException("Đơn này cần PM duyệt trước hoặc đã được xử lý");
         }
 
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(nghiPhep);
         nghiPhep.approveAccounting(currentUser, note);
-        NghiPhep saved = nghiPhepRepository.save(nghiPhep);
+        NghiPhep saved = luuNghiPhep(nghiPhep, truoc);
         log.info("✅ Accounting đã duyệt đơn nghỉ phép - Hoàn tất 2-step approval");
 
         // 🔔 Gửi notification cho nhân viên khi hoàn tất
@@ -259,8 +276,9 @@ public class NghiPhepService {
             throw new BadRequestException("Đơn này đã được xử lý");
         }
 
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(nghiPhep);
         nghiPhep.approve(currentUser, note);
-        NghiPhep saved = nghiPhepRepository.save(nghiPhep);
+        NghiPhep saved = luuNghiPhep(nghiPhep, truoc);
         log.info("✅ Đã phê duyệt đơn nghỉ phép cho nhân viên: {}", nghiPhep.getNhanVien().getHoTen());
 
         // 🔔 Gửi notification cho nhân viên
@@ -293,8 +311,9 @@ public class NghiPhepService {
             throw new BadRequestException("Đơn này đã được xử lý");
         }
 
+        ThongKeThangService.DongGop truoc = thongKeThangService.dongGop(nghiPhep);
         nghiPhep.reject(currentUser, note);
-        NghiPhep saved = nghiPhepRepository.save(nghiPhep);
+        NghiPhep saved = luuNghiPhep(nghiPhep, truoc);
         log.info("❌ Đã từ chối đơn nghỉ phép cho nhân viên: {}", nghiPhep.getNhanVien().getHoTen());
 
         // 🔔 Gửi notification cho nhân viên
@@ -0,0 +1,210 @@
+package DoAn.BE.hr.service;
+
+import DoAn.BE.hr.entity.BangLuong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Bộ tính lương không trạng thái, làm việc hoàn toàn trên số nguyên long
+ * - Tiền vào/ra tính bằng xu (1/100 VND) - đúng scale 2 của các cột tiền trong bang_luong
+ * - Bên trong cộng dồn ở đơn vị 1e-5 VND để thuế TNCN tính trên thu nhập chính xác
+ *   (bảo hiểm 1.5% của số tiền có 2 chữ số lẻ cho ra 5 chữ số lẻ)
+ * - Bảng thuế lũy tiến tính sẵn phần thuế lũy kế của mỗi bậc, chỉ cần tìm bậc rồi cộng phần vượt
+ * Kết quả trùng với công thức BigDecimal cũ sau khi làm tròn HALF_UP về 2 chữ số (giá trị được lưu DB)
+ *
+ * Service ghi bảng lương gọi tinhLuong(BangLuong) trước khi lưu; tỷ lệ bảo hiểm cấu hình trong
+ * application.properties (payroll.bhxh-rate, payroll.bhyt-rate, payroll.bhtn-rate, tối đa 3 chữ số lẻ)
+ */
+@Component
+public class PayrollCalculator {
+
+    // Hệ số đổi đơn vị: xu (1e-2 VND) -> 1e-5 VND, VND -> 1e-5 VND
+    private static final long XU_SANG_E5 = 1_000L;
+    private static final long VND_SANG_E5 = 100_000L;
+
+    // Biểu thuế TNCN lũy tiến từng phần (VND/tháng): ngưỡng dưới của bậc và thuế suất (%)
+    private static final long[] NGUONG_BAC_VND = { 0L, 5_000_000L, 10_000_000L, 18_000_000L,
+            32_000_000L, 52_000_000L, 80_000_000L };
+    private static final long[] THUE_SUAT_PHAN_TRAM = { 5, 10, 15, 20, 25, 30, 35 };
+
+    // Thuế lũy kế tại ngưỡng dưới của mỗi bậc (VND) - luôn là số nguyên
+    private static final long[] THUE_LUY_KE_VND = new long[NGUONG_BAC_VND.length];
+    private static final long[] NGUONG_BAC_E5 = new long[NGUONG_BAC_VND.length];
+
+    static {
+        for (int i = 0; i < NGUONG_BAC_VND.length; i++) {
+            NGUONG_BAC_E5[i] = NGUONG_BAC_VND[i] * VND_SANG_E5;
+            if (i > 0) {
+                THUE_LUY_KE_VND[i] = THUE_LUY_KE_VND[i - 1]
+                        + (NGUONG_BAC_VND[i] - NGUONG_BAC_VND[i - 1]) * THUE_SUAT_PHAN_TRAM[i - 1] / 100;
+            }
+        }
+    }
+
+    // Tỷ lệ bảo hiểm theo phần nghìn (8% = 80)
+    private final long bhxhPhanNghin;
+    private final long bhytPhanNghin;
+    private final long bhtnPhanNghin;
+    private final long giamTruBanThanE5;
+
+    public PayrollCalculator(
+            @Value("${payroll.bhxh-rate:0.08}") BigDecimal bhxhRate,
+            @Value("${payroll.bhyt-rate:0.015}") BigDecimal bhytRate,
+            @Value("${payroll.bhtn-rate:0.01}") BigDecimal bhtnRate,
+            @Value("${payroll.giam-tru-ban-than:11000000}") long giamTruBanThanVnd) {
+        this.bhxhPhanNghin = phanNghin("payroll.bhxh-rate", bhxhRate);
+        this.bhytPhanNghin = phanNghin("payroll.bhyt-rate", bhytRate);
+        this.bhtnPhanNghin = phanNghin("payroll.bhtn-rate", bhtnRate);
+        this.giamTruBanThanE5 = Math.multiplyExact(giamTruBanThanVnd, VND_SANG_E5);
+    }
+
+    private PayrollCalculator(long bhxhPhanNghin, long bhytPhanNghin, long bhtnPhanNghin, long giamTruBanThanE5) {
+        this.bhxhPhanNghin = bhxhPhanNghin;
+        this.bhytPhanNghin = bhytPhanNghin;
+        this.bhtnPhanNghin = bhtnPhanNghin;
+        this.giamTruBanThanE5 = giamTruBanThanE5;
+    }
+
+    /**
+     * Bản sao với tham số thay thế (null = giữ nguyên) - dùng cho mô phỏng lương
+     */
+    public PayrollCalculator voiThamSo(BigDecimal bhxhRate, BigDecimal bhytRate, BigDecimal bhtnRate,
+            Long giamTruBanThanVnd) {
+        return new PayrollCalculator(
+                bhxhRate != null ? phanNghin("bhxhRate", bhxhRate) : bhxhPhanNghin,
+                bhytRate != null ? phanNghin("bhytRate", bhytRate) : bhytPhanNghin,
+                bhtnRate != null ? phanNghin("bhtnRate", bhtnRate) : bhtnPhanNghin,
+                giamTruBanThanVnd != null ? Math.multiplyExact(giamTruBanThanVnd, VND_SANG_E5) : giamTruBanThanE5);
+    }
+
+    /**
+     * Kết quả tính lương (đơn vị xu)
+     */
+    public record KetQua(long luongTheoNgayCong, long tienLamThem, long bhxh, long bhyt, long bhtn,
+            long thueTNCN, long tongLuong, long tongKhauTru, long luongThucNhan) {
+    }
+
+    /**
+     * Tính toàn bộ các khoản lương, tiền tính bằng xu
+     * Cùng quy tắc với công thức cũ của BangLuong:
+     * lương theo ngày công, làm thêm 1.5 lần lương giờ, bảo hiểm trên lương cơ bản,
+     * thuế TNCN sau giảm trừ bản thân, lương thực nhận = tổng thu nhập - tổng khấu trừ
+     */
+    public KetQua tinh(long luongCoBanXu, int ngayCong, int ngayCongChuan, int gioLamThem,
+            long phuCapXu, long thuongXu, long khauTruKhacXu) {
+        // 1. Lương theo ngày công (lương ngày làm tròn 2 chữ số)
+        long luongTheoNgayCongXu = ngayCong > 0 && ngayCongChuan > 0
+                ? Math.multiplyExact(chiaLamTron(luongCoBanXu, ngayCongChuan), ngayCong)
+                : luongCoBanXu;
+
+        // 2. Làm thêm giờ: lương giờ (làm tròn 2 chữ số) * số giờ * 1.5 -> chính xác tới 1e-3 VND
+        long tienLamThemE3 = 0;
+        if (gioLamThem > 0) {
+            long luongGioXu = chiaLamTron(luongCoBanXu, (long) ngayCongChuan * 8);
+            tienLamThemE3 = Math.multiplyExact(Math.multiplyExact(luongGioXu, gioLamThem), 15L);
+        }
+        long tienLamThemE5 = Math.multiplyExact(tienLamThemE3, 100L);
+
+        // 3. Bảo hiểm trên lương cơ bản
+        long bhxhE5 = Math.multiplyExact(luongCoBanXu, bhxhPhanNghin);
+        long bhytE5 = Math.multiplyExact(luongCoBanXu, bhytPhanNghin);
+        long bhtnE5 = Math.multiplyExact(luongCoBanXu, bhtnPhanNghin);
+
+        // 4. Tổng thu nhập
+        long tongLuongE5 = Math.addExact(Math.addExact(e5(luongTheoNgayCongXu), e5(phuCapXu)),
+                Math.addExact(e5(thuongXu), tienLamThemE5));
+
+        // 5. Thuế TNCN
+        long thuNhapChiuThueE5 = tongLuongE5 - bhxhE5 - bhytE5 - bhtnE5 - giamTruBanThanE5;
+        long thueVnd = thuNhapChiuThueE5 > 0 ? thueTNCN(thuNhapChiuThueE5) : 0;
+
+        // 6-7. Tổng khấu trừ và thực nhận
+        long tongKhauTruE5 = Math.addExact(bhxhE5 + bhytE5 + bhtnE5,
+                Math.addExact(Math.multiplyExact(thueVnd, VND_SANG_E5), e5(khauTruKhacXu)));
+        long luongThucNhanE5 = Math.subtractExact(tongLuongE5, tongKhauTruE5);
+
+        return new KetQua(
+                luongTheoNgayCongXu,
+                chiaLamTron(tienLamThemE3, 10),
+                chiaLamTron(bhxhE5, XU_SANG_E5),
+                chiaLamTron(bhytE5, XU_SANG_E5),
+                chiaLamTron(bhtnE5, XU_SANG_E5),
+                Math.multiplyExact(thueVnd, 100L),
+                chiaLamTron(tongLuongE5, XU_SANG_E5),
+                chiaLamTron(tongKhauTruE5, XU_SANG_E5),
+                chiaLamTron(luongThucNhanE5, XU_SANG_E5));
+    }
+
+    /**
+     * Tính các khoản của bảng lương từ dữ liệu đầu vào (lương cơ bản, ngày công, phụ cấp...) và gán vào entity
+     */
+    public void tinhLuong(BangLuong bangLuong) {
+        KetQua ketQua = tinh(
+                toXu(bangLuong.getLuongCoBan()),
+                bangLuong.getNgayCong() != null ? bangLuong.getNgayCong() : 0,
+                bangLuong.getNgayCongChuan() != null ? bangLuong.getNgayCongChuan() : 0,
+                bangLuong.getGioLamThem() != null ? bangLuong.getGioLamThem() : 0,
+                toXu(bangLuong.getPhuCap()),
+                toXu(bangLuong.getThuong()),
+                toXu(bangLuong.getKhauTruKhac()));
+
+        bangLuong.setLuongTheoNgayCong(fromXu(ketQua.luongTheoNgayCong()));
+        bangLuong.setTienLamThem(fromXu(ketQua.tienLamThem()));
+        bangLuong.setBhxh(fromXu(ketQua.bhxh()));
+        bangLuong.setBhyt(fromXu(ketQua.bhyt()));
+        bangLuong.setBhtn(fromXu(ketQua.bhtn()));
+        bangLuong.setThueTNCN(fromXu(ketQua.thueTNCN()));
+        bangLuong.setTongLuong(fromXu(ketQua.tongLuong()));
+        bangLuong.setTongKhauTru(fromXu(ketQua.tongKhauTru()));
+        bangLuong.setLuongThucNhan(fromXu(ketQua.luongThucNhan()));
+    }
+
+    /**
+     * Thuế TNCN (VND, làm tròn HALF_UP) cho thu nhập chịu thuế > 0 tính ở đơn vị 1e-5 VND
+     */
+    long thueTNCN(long thuNhapChiuThueE5) {
+        int bac = NGUONG_BAC_E5.length - 1;
+        while (thuNhapChiuThueE5 <= NGUONG_BAC_E5[bac]) {
+            bac--;
+        }
+        // Phần vượt ngưỡng * thuế suất (%), tách phần nguyên VND và phần lẻ để không tràn long
+        long phanVuotE5 = thuNhapChiuThueE5 - NGUONG_BAC_E5[bac];
+        long thueSuat = THUE_SUAT_PHAN_TRAM[bac];
+        long thuePhanNguyenE2 = (phanVuotE5 / VND_SANG_E5) * thueSuat;
+        long thuePhanLeE7 = (thuePhanNguyenE2 % 100) * VND_SANG_E5 + (phanVuotE5 % VND_SANG_E5) * thueSuat;
+        return THUE_LUY_KE_VND[bac] + thuePhanNguyenE2 / 100 + chiaLamTron(thuePhanLeE7, VND_SANG_E5 * 100);
+    }
+
+    public static long toXu(BigDecimal value) {
+        return value != null ? value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : 0L;
+    }
+
+    public static BigDecimal fromXu(long xu) {
+        return BigDecimal.valueOf(xu, 2);
+    }
+
+    private static long e5(long xu) {
+        return Math.multiplyExact(xu, XU_SANG_E5);
+    }
+
+    // Chia số nguyên làm tròn HALF_UP (0.5 làm tròn ra xa 0) - giống BigDecimal RoundingMode.HALF_UP
+    static long chiaLamTron(long soBiChia, long soChia) {
+        long thuong = soBiChia / soChia;
+        long du = soBiChia % soChia;
+        if (Math.abs(du) * 2 >= soChia) {
+            thuong += Long.signum(soBiChia);
+        }
+        return thuong;
+    }
+
+    private static long phanNghin(String tenCauHinh, BigDecimal rate) {
+        try {
+            return rate.movePointRight(3).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(tenCauHinh + " chỉ hỗ trợ tối đa 3 chữ số thập phân: " + rate);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package DoAn.BE.hr.service;
+
+import DoAn.BE.hr.entity.BangLuong;
+import DoAn.BE.hr.entity.ChamCong;
+import DoAn.BE.hr.entity.NghiPhep;
+import DoAn.BE.hr.entity.NhanVien;
+import DoAn.BE.hr.entity.ThongKeThang;
+import DoAn.BE.hr.entity.ThongKeThang.LoaiThongKe;
+import DoAn.BE.hr.repository.ThongKeThangRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Service duy trì bảng tổng hợp theo tháng (thong_ke_thang)
+ * - ChamCongService / BangLuongService / NghiPhepService gọi capNhat() mỗi khi ghi dữ liệu
+ * - rebuild() dựng lại toàn bộ từ dữ liệu gốc (chạy hằng đêm và khi bảng còn trống lúc khởi động)
+ * Dashboard đọc trực tiếp các dòng đã tổng hợp, không phụ thuộc lượng dữ liệu lịch sử
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class ThongKeThangService {
+
+    private final ThongKeThangRepository thongKeThangRepository;
+
+    /**
+     * Phần đóng góp của một bản ghi gốc vào bảng tổng hợp
+     * Chụp lại trước khi sửa để có thể trừ đúng ô cũ
+     */
+    public record DongGop(LoaiThongKe loai, int nam, int thang, long phongbanId, String trangThai,
+            BigDecimal tongTien, BigDecimal tongGio, long tongNgay) {
+
+        boolean cungKhoa(DongGop other) {
+            return loai == other.loai && nam == other.nam && thang == other.thang
+                    && phongbanId == other.phongbanId && trangThai.equals(other.trangThai);
+        }
+    }
+
+    public DongGop dongGop(ChamCong chamCong) {
+        if (chamCong == null || chamCong.getNgayCham() == null) {
+            return null;
+        }
+        return new DongGop(LoaiThongKe.CHAM_CONG,
+                chamCong.getNgayCham().getYear(),
+                chamCong.getNgayCham().getMonthValue(),
+                phongbanId(chamCong.getNhanVien()),
+                chamCong.getTrangThai() != null ? chamCong.getTrangThai().name() : ThongKeThang.KHONG_XAC_DINH,
+                BigDecimal.ZERO,
+                orZero(chamCong.getSoGioLam()),
+                0);
+    }
+
+    public DongGop dongGop(BangLuong bangLuong) {
+        if (bangLuong == null || bangLuong.getThang() == null || bangLuong.getNam() == null) {
+            return null;
+        }
+        return new DongGop(LoaiThongKe.BANG_LUONG,
+                bangLuong.getNam(),
+                bangLuong.getThang(),
+                phongbanId(bangLuong.getNhanVien()),
+                bangLuong.getTrangThai() != null ? bangLuong.getTrangThai() : ThongKeThang.KHONG_XAC_DINH,
+                orZero(bangLuong.getLuongThucNhan()),
+                BigDecimal.ZERO,
+                bangLuong.getNgayCong() != null ? bangLuong.getNgayCong() : 0);
+    }
+
+    public DongGop dongGop(NghiPhep nghiPhep) {
+        if (nghiPhep == null || nghiPhep.getNgayBatDau() == null) {
+            return null;
+        }
+        return new DongGop(LoaiThongKe.NGHI_PHEP,
+                nghiPhep.getNgayBatDau().getYear(),
+                nghiPhep.getNgayBatDau().getMonthValue(),
+                phongbanId(nghiPhep.getNhanVien()),
+                nghiPhep.getTrangThai() != null ? nghiPhep.getTrangThai().name() : ThongKeThang.KHONG_XAC_DINH,
+                BigDecimal.ZERO,
+                BigDecimal.ZERO,
+                nghiPhep.getSoNgay() != null ? nghiPhep.getSoNgay() : 0);
+    }
+
+    /**
+     * Cập nhật cộng dồn: trừ phần đóng góp cũ, cộng phần đóng góp mới
+     * - Tạo mới: capNhat(null, sau)
+     * - Xóa: capNhat(truoc, null)
+     * Chạy trong transaction của service gọi tới để bảng tổng hợp luôn khớp dữ liệu gốc
+     */
+    public void capNhat(DongGop truoc, DongGop sau) {
+        if (truoc != null && truoc.equals(sau)) {
+            return;
+        }
+        if (truoc != null && sau != null && truoc.cungKhoa(sau)) {
+            congDon(sau, 0,
+                    sau.tongTien().subtract(truoc.tongTien()),
+                    sau.tongGio().subtract(truoc.tongGio()),
+                    sau.tongNgay() - truoc.tongNgay());
+            return;
+        }
+        if (truoc != null) {
+            congDon(truoc, -1, truoc.tongTien().negate(), truoc.tongGio().negate(), -truoc.tongNgay());
+        }
+        if (sau != null) {
+            congDon(sau, 1, sau.tongTien(), sau.tongGio(), sau.tongNgay());
+        }
+    }
+
+    /**
+     * Cộng dồn nhiều bản ghi mới cùng lúc (ví dụ một chunk tính lương hàng loạt)
+     * Gộp theo khóa trước nên chỉ tốn 1 MERGE cho mỗi ô (phòng ban, trạng thái)
+     * Duyệt khóa theo thứ tự cố định để các chunk chạy song song không khóa chéo nhau
+     */
+    public void capNhatHangLoat(Collection<DongGop> danhSach) {
+        Map<String, DongGop> theoKhoa = new TreeMap<>();
+        Map<String, Long> soLuongTheoKhoa = new HashMap<>();
+        for (DongGop d : danhSach) {
+            if (d == null) {
+                continue;
+            }
+            String khoa = d.loai() + "|" + d.nam() + "|" + d.thang() + "|" + d.phongbanId() + "|" + d.trangThai();
+            theoKhoa.merge(khoa, d, (a, b) -> new DongGop(a.loai(), a.nam(), a.thang(), a.phongbanId(),
+                    a.trangThai(), a.tongTien().add(b.tongTien()), a.tongGio().add(b.tongGio()),
+                    a.tongNgay() + b.tongNgay()));
+            soLuongTheoKhoa.merge(khoa, 1L, Long::sum);
+        }
+        theoKhoa.forEach((khoa, tong) -> congDon(tong, soLuongTheoKhoa.get(khoa),
+                tong.tongTien(), tong.tongGio(), tong.tongNgay()));
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng tổng hợp từ dữ liệu gốc (backfill) - 2:00 AM mỗi ngày
+     * Sửa mọi sai lệch tích lũy (ví dụ nhân viên đổi phòng ban, dữ liệu import trực tiếp vào DB)
+     */
+    @Scheduled(cron = "0 0 2 * * *")
+    public void rebuild() {
+        log.info("📊 Bắt đầu dựng lại bảng thống kê tháng...");
+        thongKeThangRepository.xoaTatCa();
+        int chamCong = thongKeThangRepository.dungLaiChamCong();
+        int bangLuong = thongKeThangRepository.dungLaiBangLuong();
+        int nghiPhep = thongKeThangRepository.dungLaiNghiPhep();
+        log.info("✅ Đã dựng lại bảng thống kê tháng: {} dòng chấm công, {} dòng bảng lương, {} dòng nghỉ phép",
+                chamCong, bangLuong, nghiPhep);
+    }
+
+    /**
+     * Lần đầu triển khai (bảng còn trống) thì backfill ngay khi khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void khoiTaoNeuTrong() {
+        if (thongKeThangRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void congDon(DongGop khoa, long soLuong, BigDecimal tongTien, BigDecimal tongGio, long tongNgay) {
+        thongKeThangRepository.congDon(khoa.loai().name(), khoa.nam(), khoa.thang(), khoa.phongbanId(),
+                khoa.trangThai(), soLuong, tongTien, tongGio, tongNgay);
+    }
+
+    private static long phongbanId(NhanVien nhanVien) {
+        if (nhanVien == null || nhanVien.getPhongBan() == null || nhanVien.getPhongBan().getPhongbanId() == null) {
+            return ThongKeThang.KHONG_PHONG_BAN;
+        }
+        return nhanVien.getPhongBan().getPhongbanId();
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
@@ -5,6 +5,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Service quản lý thông báo chấm công/attendance
  */
@@ -14,6 +18,12 @@ import org.springframework.transaction.annotation.Transactional;
 public class AttendanceNotificationService {
     
     private final NotificationService notificationService;
+
+    /**
+     * Số liệu tổng kết chấm công tháng của 1 user
+     */
+    public record TongKetChamCong(Long userId, int totalDays, int lateDays, int absentDays) {
+    }
     
     /**
      * Notification khi check-in thành công
@@ -54,6 +64,17 @@ public class AttendanceNotificationService {
         String link = "/hr/attendance";
         return notificationService.createNotification(userId, "ATTENDANCE_MISSING", title, content, link);
     }
+
+    /**
+     * Notification quên check-in/checkout cho nhiều user (batch insert - dùng cho scheduled job)
+     */
+    public int createMissingAttendanceNotifications(Collection<Long> userIds, String date) {
+        String title = "⚠️ Chưa chấm công";
+        String content = "Bạn chưa chấm công ngày " + date + ". Vui lòng cập nhật!";
+        String link = "/hr/attendance";
+        return notificationService.createNotificationsBatch("ATTENDANCE_MISSING", title, link,
+                cungNoiDung(userIds, content));
+    }
     
     /**
      * Notification tổng kết tháng
@@ -67,6 +88,22 @@ public class AttendanceNotificationService {
         String link = "/hr/attendance/summary";
         return notificationService.createNotification(userId, "ATTENDANCE_MONTHLY_SUMMARY", title, content, link);
     }
+
+    /**
+     * Notification tổng kết tháng cho nhiều user (batch insert - dùng cho scheduled job)
+     */
+    public int createMonthlyAttendanceSummaryNotifications(String month, Collection<TongKetChamCong> tongKets) {
+        String title = "📊 Tổng kết chấm công tháng " + month;
+        String link = "/hr/attendance/summary";
+        Map<Long, String> contentByUserId = new LinkedHashMap<>();
+        for (TongKetChamCong tk : tongKets) {
+            contentByUserId.put(tk.userId(), String.format(
+                "Tổng: %d ngày | Đi trễ: %d ngày | Vắng: %d ngày",
+                tk.totalDays(), tk.lateDays(), tk.absentDays()
+            ));
+        }
+        return notificationService.createNotificationsBatch("ATTENDANCE_MONTHLY_SUMMARY", title, link, contentByUserId);
+    }
     
     /**
      * Notification khi check-in ngoài phạm vi cho phép
@@ -87,4 +124,21 @@ public class AttendanceNotificationService {
         String link = "/hr/attendance";
         return notificationService.createNotification(userId, "ATTENDANCE_CHECKOUT_REMINDER", title, content, link);
     }
+
+    /**
+     * Notification nhắc check-out cho nhiều user (batch insert - dùng cho scheduled job)
+     */
+    public int createCheckoutReminderNotifications(Collection<Long> userIds) {
+        String title = "🔔 Nhắc check-out";
+        String content = "Bạn chưa check-out hôm nay. Vui lòng check-out trước khi về!";
+        String link = "/hr/attendance";
+        return notificationService.createNotificationsBatch("ATTENDANCE_CHECKOUT_REMINDER", title, link,
+                cungNoiDung(userIds, content));
+    }
+
+    private static Map<Long, String> cungNoiDung(Collection<Long> userIds, String content) {
+        Map<Long, String> contentByUserId = new LinkedHashMap<>();
+        userIds.forEach(userId -> contentByUserId.put(userId, content));
+        return contentByUserId;
+    }
 }
@@ -1,10 +1,15 @@
 package DoAn.BE.notification.service;
 
 import DoAn.BE.notification.entity.Notification;
+import DoAn.BE.notification.service.NotificationService.NotificationDraft;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 // Service quản lý thông báo chat
 @Service
 @Transactional
@@ -20,16 +25,31 @@ public class ChatNotificationService {
         return notificationService.createNotification(userId, "CHAT_" + type, title, content, link);
     }
 
-    /**
-     * Tạo notification cho tin nhắn mới
-     */
-    public Notification createNewMessageNotification(Long userId, String senderName, String content, Long roomId) {
+    // ===== Draft cho batch insert (pipeline side effect của chat gộp nhiều tin nhắn vào 1 lô) =====
+
+    public List<NotificationDraft> newMessageDrafts(Collection<Long> userIds, String senderName, String content,
+            Long roomId) {
         String title = "Tin nhắn mới từ " + senderName;
-        String truncatedContent = content != null && content.length() > 50 ? 
-            content.substring(0, 47) + "..." : content;
+        String truncatedContent = truncate(content, 50);
         String link = "/chat/rooms/" + roomId;
-        
-        return createChatNotification(userId, "NEW_MESSAGE", title, truncatedContent, link);
+
+        List<NotificationDraft> drafts = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            drafts.add(new NotificationDraft(userId, "CHAT_NEW_MESSAGE", title, truncatedContent, link));
+        }
+        return drafts;
+    }
+
+    public NotificationDraft messageRepliedDraft(Long userId, String replierName, String replyContent, Long roomId) {
+        String title = replierName + " đã trả lời tin nhắn của bạn";
+        String truncatedContent = truncate(replyContent, 50);
+        return new NotificationDraft(userId, "CHAT_MESSAGE_REPLIED", title, truncatedContent, "/chat/rooms/" + roomId);
+    }
+
+    public NotificationDraft mentionDraft(Long userId, String senderName, String content, Long roomId) {
+        String title = senderName + " đã nhắc đến bạn";
+        String truncatedContent = truncate(content, 100);
+        return new NotificationDraft(userId, "CHAT_MENTION", title, truncatedContent, "/chat/rooms/" + roomId);
     }
 
     /**
@@ -76,18 +96,6 @@ public class ChatNotificationService {
         return createChatNotification(userId, "ADDED_TO_ROOM", title, content, link);
     }
 
-    /**
-     * Tạo notification khi được reply tin nhắn
-     */
-    public Notification createMessageRepliedNotification(Long userId, String replierName, String replyContent, Long roomId) {
-        String title = replierName + " đã trả lời tin nhắn của bạn";
-        String truncatedContent = replyContent != null && replyContent.length() > 50 ? 
-            replyContent.substring(0, 47) + "..." : replyContent;
-        String link = "/chat/rooms/" + roomId;
-        
-        return createChatNotification(userId, "MESSAGE_REPLIED", title, truncatedContent, link);
-    }
-
     /**
      * Tạo notification khi role thay đổi
      */
@@ -98,4 +106,11 @@ public class ChatNotificationService {
         
         return createChatNotification(userId, "ROLE_CHANGED", title, content, link);
     }
+
+    // Cắt nội dung dài cho notification: giữ tối đa maxLength ký tự, kể cả "..."
+    private static String truncate(String content, int maxLength) {
+        return content != null && content.length() > maxLength
+                ? content.substring(0, maxLength - 3) + "..."
+                : content;
+    }
 }
@@ -5,6 +5,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 // Service quản lý thông báo HR (lương, nghỉ phép, hợp đồng)
 @Service
 @Transactional
@@ -23,6 +27,18 @@ public class HRNotificationService {
         return notificationService.createNotification(userId, "HR_SALARY", title, content, link);
     }
 
+    /**
+     * Tạo notification bảng lương mới cho nhiều nhân viên (batch insert - dùng cho tính lương hàng loạt)
+     */
+    public int createSalaryNotifications(Collection<Long> userIds, String month, String year) {
+        String title = "Bảng lương mới";
+        String content = "Bảng lương tháng " + month + "/" + year + " đã được tạo";
+        String link = "/hr/bang-luong";
+        Map<Long, String> contentByUserId = new LinkedHashMap<>();
+        userIds.forEach(userId -> contentByUserId.put(userId, content));
+        return notificationService.createNotificationsBatch("HR_SALARY", title, link, contentByUserId);
+    }
+
     /**
      * Tạo notification khi đơn nghỉ phép được phê duyệt
      */
@@ -6,10 +6,15 @@ import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 // Service core quản lý thông báo (CRUD operations only)
@@ -26,12 +31,14 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final FCMService fcmService;
+    private final JdbcTemplate jdbcTemplate;
 
     public NotificationService(NotificationRepository notificationRepository, UserRepository userRepository,
-            FCMService fcmService) {
+            FCMService fcmService, JdbcTemplate jdbcTemplate) {
         this.notificationRepository = notificationRepository;
         this.userRepository = userRepository;
         this.fcmService = fcmService;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     public Notification createNotification(Long userId, String type, String title, String content, String link) {
@@ -48,6 +55,45 @@ public class NotificationService {
         return notificationRepository.save(notification);
     }
 
+    // 1 notification chờ ghi theo lô (không cần nạp entity User)
+    public record NotificationDraft(Long userId, String type, String title, String content, String link) {
+    }
+
+    /**
+     * Tạo nhiều notification cùng loại bằng JDBC batch insert
+     * Dùng cho job hàng loạt (tính lương, chấm công...) thay vì 1 SELECT user + 1 INSERT cho mỗi người
+     *
+     * @param contentByUserId userId -> nội dung riêng của từng người
+     * @return số notification đã tạo
+     */
+    public int createNotificationsBatch(String type, String title, String link, Map<Long, String> contentByUserId) {
+        List<NotificationDraft> drafts = new ArrayList<>(contentByUserId.size());
+        contentByUserId.forEach((userId, content) -> drafts.add(new NotificationDraft(userId, type, title, content, link)));
+        return createNotificationsBatch(drafts);
+    }
+
+    /**
+     * Tạo các notification khác loại / nội dung trong 1 JDBC batch insert
+     *
+     * @return số notification đã tạo
+     */
+    public int createNotificationsBatch(List<NotificationDraft> drafts) {
+        if (drafts.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(drafts.size());
+        for (NotificationDraft draft : drafts) {
+            rows.add(new Object[] { draft.userId(), draft.type(), draft.title(), draft.content(), draft.link(), now });
+        }
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO notifications (user_id, type, title, content, link, is_read, created_at) " +
+                        "VALUES (?, ?, ?, ?, ?, 0, ?)",
+                rows);
+        return rows.size();
+    }
+
     public Page<Notification> getUserNotifications(Long userId, Pageable pageable) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User không tồn tại"));
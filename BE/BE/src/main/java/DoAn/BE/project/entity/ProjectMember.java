@@ -10,7 +10,9 @@ import DoAn.BE.user.entity.User;
 @Entity
 @Table(
     name = "project_members",
-    uniqueConstraints = @UniqueConstraint(columnNames = {"project_id", "user_id"})
+    uniqueConstraints = @UniqueConstraint(columnNames = {"project_id", "user_id"}),
+    // Tra project theo thành viên (unique (project_id, user_id) không dùng được khi chỉ lọc user_id)
+    indexes = @Index(name = "idx_project_members_user", columnList = "user_id")
 )
 @Data
 @NoArgsConstructor
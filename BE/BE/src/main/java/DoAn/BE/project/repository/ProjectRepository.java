@@ -1,9 +1,12 @@
 package DoAn.BE.project.repository;
 
 import DoAn.BE.project.entity.Project;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -15,4 +18,8 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     List<Project> findByIsActiveTrue();
 
     List<Project> findByStatus(Project.ProjectStatus status);
+
+    // Tổng budget theo trạng thái dự án (cần cho dashboard)
+    @Query("SELECT COALESCE(SUM(p.budget), 0) FROM Project p WHERE p.status = :status")
+    BigDecimal sumBudgetByStatus(@Param("status") Project.ProjectStatus status);
 }
@@ -9,6 +9,7 @@ import DoAn.BE.chat.entity.ChatRoomMember;
 import DoAn.BE.chat.entity.ChatRoomMemberId;
 import DoAn.BE.chat.repository.ChatRoomRepository;
 import DoAn.BE.chat.repository.ChatRoomMemberRepository;
+import DoAn.BE.chat.service.InboxProjectionService;
 import lombok.extern.slf4j.Slf4j;
 import DoAn.BE.project.dto.*;
 import DoAn.BE.project.entity.Project;
@@ -38,6 +39,7 @@ public class ProjectService {
     private final PhongBanRepository phongBanRepository;
     private final ChatRoomRepository chatRoomRepository;
     private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final InboxProjectionService inboxProjectionService;
     private final ProjectChatIntegrationService projectChatIntegrationService;
     private final DoAn.BE.notification.service.ProjectNotificationService projectNotificationService;
     private final DoAn.BE.storage.service.StorageProjectIntegrationService storageProjectIntegrationService;
@@ -104,6 +106,7 @@ public class ProjectService {
         chatMember.setRole(ChatRoomMember.MemberRole.ADMIN);
         chatMember.setJoinedAt(LocalDateTime.now());
         chatRoomMemberRepository.save(chatMember);
+        inboxProjectionService.onMembershipChanged(projectChatRoom);
 
         log.info("Đã tạo project chat room {} cho project {}", projectChatRoom.getRoomId(), project.getProjectId());
 
@@ -324,6 +327,7 @@ public class ProjectService {
                         : ChatRoomMember.MemberRole.MEMBER);
                 chatMember.setJoinedAt(LocalDateTime.now());
                 chatRoomMemberRepository.save(chatMember);
+                inboxProjectionService.onMembershipChanged(projectChatRoom);
 
                 log.info("Đã thêm user {} vào project chat room {}", request.getUserId(), projectChatRoom.getRoomId());
             }
@@ -382,6 +386,7 @@ public class ProjectService {
 
                 if (chatMemberOpt.isPresent()) {
                     chatRoomMemberRepository.delete(chatMemberOpt.get());
+                    inboxProjectionService.onMembershipChanged(projectChatRoom);
                     log.info("Đã xóa user {} khỏi project chat room {}", memberId, projectChatRoom.getRoomId());
                 }
             }
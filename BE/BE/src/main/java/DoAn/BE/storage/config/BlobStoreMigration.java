@@ -0,0 +1,102 @@
+package DoAn.BE.storage.config;
+
+import DoAn.BE.common.exception.BadRequestException;
+import DoAn.BE.common.exception.FileStorageException;
+import DoAn.BE.storage.service.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+// Chuyển file upload trước khi có kho nội dung (files.sha256 NULL) vào file_blobs
+// File trùng nội dung gộp về 1 blob; file gốc bị xóa sau khi dòng files trỏ sang blob đã commit
+// Dòng không còn file vật lý hoặc nội dung không qua được kiểm tra bị bỏ qua, giữ nguyên như cũ
+@Component
+@Order(6) // Sau MessageSearchIndexMigration (@Order(5))
+@Slf4j
+public class BlobStoreMigration implements CommandLineRunner {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+
+    public BlobStoreMigration(JdbcTemplate jdbcTemplate, BlobStore blobStore,
+            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(String... args) {
+        long cursor = 0;
+        int migrated = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT TOP (?) file_id, file_path, original_filename FROM files " +
+                            "WHERE file_id > ? AND sha256 IS NULL ORDER BY file_id",
+                    BATCH_SIZE, cursor);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            for (Map<String, Object> row : rows) {
+                long fileId = ((Number) row.get("file_id")).longValue();
+                cursor = fileId;
+                if (migrate(fileId, (String) row.get("file_path"), (String) row.get("original_filename"))) {
+                    migrated++;
+                }
+            }
+        }
+
+        if (migrated > 0) {
+            log.info("✅ Moved {} files into the blob store", migrated);
+        }
+    }
+
+    private boolean migrate(long fileId, String filePath, String originalFilename) {
+        Path source = Paths.get(filePath).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(source)) {
+            return false;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    BlobStore.Blob blob = blobStore.store(Files.newInputStream(source), originalFilename,
+                            Long.MAX_VALUE);
+                    jdbcTemplate.update("UPDATE files SET sha256 = ?, file_path = ?, file_size = ? WHERE file_id = ?",
+                            blob.sha256(), blob.path().toString(), blob.size(), fileId);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+        } catch (BadRequestException | FileStorageException | IllegalStateException ex) {
+            log.warn("Bỏ qua file {} ({}): {}", fileId, filePath, ex.getMessage());
+            return false;
+        }
+
+        Integer stillReferenced = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM files WHERE file_path = ?", Integer.class, filePath);
+        if (stillReferenced != null && stillReferenced == 0) {
+            try {
+                Files.deleteIfExists(source);
+            } catch (IOException ex) {
+                log.warn("Không xóa được file cũ {}: {}", source, ex.getMessage());
+            }
+        }
+        return true;
+    }
+}
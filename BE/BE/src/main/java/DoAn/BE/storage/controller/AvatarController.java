@@ -0,0 +1,50 @@
+package DoAn.BE.storage.controller;
+
+import DoAn.BE.storage.service.AvatarStorageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phục vụ avatar content-addressed (public, không cần JWT)
+ * Tên file là SHA-256 của nội dung nên response không bao giờ đổi: ETag cố định + Cache-Control immutable
+ */
+@RestController
+@RequestMapping("/api/public/avatars")
+@RequiredArgsConstructor
+public class AvatarController {
+
+    private final AvatarStorageService avatarStorageService;
+
+    /**
+     * GET /api/public/avatars/{sha256}.{ext}?size=64
+     */
+    @GetMapping("/{name:.+}")
+    public ResponseEntity<Resource> getAvatar(
+            @PathVariable String name,
+            @RequestParam(value = "size", required = false) Integer size,
+            WebRequest request) {
+        Path file = size != null
+                ? avatarStorageService.resolveThumbnail(name, size)
+                : avatarStorageService.resolve(name);
+
+        String etag = "\"" + file.getFileName().toString() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null; // 304 Not Modified
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .contentType(MediaType.parseMediaType(AvatarStorageService.mediaType(name)))
+                .body(new FileSystemResource(file));
+    }
+}
@@ -0,0 +1,279 @@
+package DoAn.BE.storage.controller;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Trả nội dung file cho GET/HEAD theo HTTP (RFC 9110)
+ * - ETag mạnh + Last-Modified; If-None-Match / If-Modified-Since khớp -> 304
+ * - Range: 1 đoạn -> 206 + Content-Range, nhiều đoạn -> 206 multipart/byteranges, không thỏa -> 416
+ * - If-Range không khớp ETag/ngày -> bỏ Range, trả cả file
+ * - Dữ liệu gửi bằng sendfile của Tomcat (connector tự gọi FileChannel.transferTo, không qua heap);
+ *   connector không hỗ trợ hoặc multipart thì transferTo từ FileChannel sang output stream của response
+ */
+@Component
+public class FileDownloadResponder {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Quá số đoạn này thì trả cả file (tránh request chia nhỏ file thành hàng nghìn part)
+    private static final int MAX_RANGES = 16;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    public record Download(Path path, long length, String etag, long lastModified, String contentType,
+            String filename) {
+    }
+
+    private record Range(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * @return true nếu đã trả dữ liệu bắt đầu từ byte 0 (lượt tải mới, dùng để ghi audit 1 lần / lượt)
+     */
+    public boolean write(Download download, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setHeader(HttpHeaders.ETAG, download.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, download.lastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(download, request)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        List<Range> ranges = rangeHeader != null && ifRangeMatches(download, request)
+                ? parseRanges(rangeHeader, download.length())
+                : List.of();
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + download.length());
+            return false;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(download.filename(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(download.contentType());
+            response.setContentLengthLong(download.length());
+            if (!head) {
+                send(download.path(), 0, download.length(), request, response);
+            }
+            return true;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            response.setContentType(download.contentType());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, download.length()));
+            response.setContentLengthLong(range.length());
+            if (!head) {
+                send(download.path(), range.start(), range.length(), request, response);
+            }
+            return range.start() == 0;
+        }
+
+        writeMultipart(download, ranges, head, response);
+        return ranges.get(0).start() == 0;
+    }
+
+    // multipart/byteranges: Content-Length tính trước từ header các part + độ dài đoạn
+    private void writeMultipart(Download download, List<Range> ranges, boolean head, HttpServletResponse response)
+            throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (Range range : ranges) {
+            byte[] partHeader = ("--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + download.contentType() + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, download.length()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length() + CRLF.length;
+        }
+        byte[] closing = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(download.path(), StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, ranges.get(i).start(), ranges.get(i).length(), target);
+                out.write(CRLF);
+            }
+        }
+        out.write(closing);
+    }
+
+    private void send(Path path, long start, long count, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0) {
+                // File bị cắt ngắn trong lúc gửi
+                throw new EOFException("File ngắn hơn độ dài đã khai báo");
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    // If-None-Match (so sánh yếu) được ưu tiên; không có thì xét If-Modified-Since (độ chính xác giây)
+    private static boolean notModified(Download download, HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.equals("*") || stripWeak(candidate).equals(download.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && download.lastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // If-Range: ETag phải khớp mạnh; ngày phải trùng đúng Last-Modified
+    private static boolean ifRangeMatches(Download download, HttpServletRequest request) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(download.etag());
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date != -1 && date / 1000 == download.lastModified() / 1000;
+    }
+
+    /**
+     * "bytes=0-499,1000-,-200" -> các đoạn đã sắp xếp và gộp chồng lấn
+     *
+     * @return rỗng: bỏ qua Range (sai cú pháp / quá nhiều đoạn), null: không đoạn nào thỏa (416)
+     */
+    private static List<Range> parseRanges(String header, long length) {
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return List.of();
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return List.of();
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        try {
+            for (String spec : specs) {
+                spec = spec.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return List.of();
+                }
+                if (dash == 0) {
+                    // Hậu tố: n byte cuối
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new Range(Math.max(0, length - suffix), length - 1));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(spec.substring(0, dash));
+                String endPart = spec.substring(dash + 1);
+                long end = endPart.isEmpty() ? length - 1 : Long.parseLong(endPart);
+                if (end < start) {
+                    return List.of();
+                }
+                if (start < length) {
+                    ranges.add(new Range(start, Math.min(end, length - 1)));
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return List.of();
+        }
+        if (ranges.isEmpty()) {
+            return null;
+        }
+
+        ranges.sort(Comparator.comparingLong(Range::start));
+        List<Range> merged = new ArrayList<>();
+        Range current = ranges.get(0);
+        for (Range next : ranges.subList(1, ranges.size())) {
+            if (next.start() <= current.end() + 1) {
+                current = new Range(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    private static String contentRange(Range range, long length) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + length;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package DoAn.BE.storage.controller;
 
 import DoAn.BE.storage.dto.*;
+import DoAn.BE.storage.entity.File;
+import DoAn.BE.storage.service.ChunkedUploadService;
 import DoAn.BE.storage.service.FileStorageService;
 import DoAn.BE.storage.service.FolderService;
 import DoAn.BE.user.entity.User;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +17,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +31,8 @@ public class StorageController {
 
     private final FileStorageService fileStorageService;
     private final FolderService folderService;
+    private final FileDownloadResponder fileDownloadResponder;
+    private final ChunkedUploadService chunkedUploadService;
 
     // ==================== FILE ENDPOINTS ====================
 
@@ -45,6 +51,68 @@ public class StorageController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // ==================== CHUNKED UPLOAD (file lớn, tải tiếp được) ====================
+
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSessionDTO> initiateUpload(
+            @Valid @RequestBody InitiateUploadRequest request,
+            Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        UploadSessionDTO session = chunkedUploadService.initiate(request, user.getUserId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(session);
+    }
+
+    // Body là dữ liệu thô của chunk (application/octet-stream), header X-Chunk-SHA256 là checksum của chunk
+    @PutMapping("/uploads/{uploadId}/chunks/{chunkIndex}")
+    public ResponseEntity<Map<String, String>> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int chunkIndex,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String checksum,
+            Authentication authentication,
+            HttpServletRequest request) throws IOException {
+        User user = (User) authentication.getPrincipal();
+        chunkedUploadService.uploadChunk(uploadId, chunkIndex, request.getInputStream(), checksum,
+                user.getUserId());
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Đã nhận chunk " + chunkIndex);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionDTO> getUploadStatus(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        return ResponseEntity.ok(chunkedUploadService.getStatus(uploadId, user.getUserId()));
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<FileUploadResponse> completeUpload(
+            @PathVariable String uploadId,
+            Authentication authentication,
+            HttpServletRequest request) {
+        User user = (User) authentication.getPrincipal();
+        String ipAddress = getClientIpAddress(request);
+        String userAgent = request.getHeader("User-Agent");
+
+        FileUploadResponse response = chunkedUploadService.complete(uploadId, user.getUserId(), ipAddress,
+                userAgent);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, String>> abortUpload(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        chunkedUploadService.abort(uploadId, user.getUserId());
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Đã hủy phiên upload");
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/files/{fileId}")
     public ResponseEntity<FileDTO> getFile(
             @PathVariable Long fileId,
@@ -55,22 +123,34 @@ public class StorageController {
         return ResponseEntity.ok(file);
     }
 
+    // Hỗ trợ Range (tải tiếp, tua video), ETag theo SHA-256 và conditional GET (304)
     @GetMapping("/files/{fileId}/download")
-    public ResponseEntity<Resource> downloadFile(
+    public void downloadFile(
             @PathVariable Long fileId,
-            Authentication authentication) {
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         User user = (User) authentication.getPrincipal();
         Long userId = user.getUserId();
-        Resource resource = fileStorageService.downloadFile(fileId, userId);
-
-        // Get file info for content disposition
-        FileDTO fileInfo = fileStorageService.getFileById(fileId, userId);
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(fileInfo.getMimeType()))
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + fileInfo.getOriginalFilename() + "\"")
-                .body(resource);
+        File file = fileStorageService.getFileForDownload(fileId, userId);
+
+        // Nội dung của 1 File không đổi sau khi upload (đổi tên không ảnh hưởng) nên ETag/Last-Modified cố định
+        String etag = "\"" + (file.getSha256() != null ? file.getSha256() : "file-" + file.getFileId()) + "\"";
+        long lastModified = file.getCreatedAt() != null
+                ? file.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : 0L;
+        FileDownloadResponder.Download download = new FileDownloadResponder.Download(
+                Paths.get(file.getFilePath()).normalize(),
+                file.getFileSize(),
+                etag,
+                lastModified,
+                file.getMimeType() != null ? file.getMimeType() : MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                file.getOriginalFilename());
+
+        // Chỉ ghi audit khi bắt đầu lượt tải (bỏ qua 304 và các request Range nối tiếp)
+        if (fileDownloadResponder.write(download, request, response)) {
+            fileStorageService.recordDownload(file, user);
+        }
     }
 
     @GetMapping("/files/my-files")
@@ -136,6 +216,18 @@ public class StorageController {
         return ResponseEntity.ok(response);
     }
 
+    // Sao chép file sang thư mục khác (không chép dữ liệu, dùng chung nội dung)
+    @PostMapping("/files/{fileId}/copy")
+    public ResponseEntity<FileDTO> copyFile(
+            @PathVariable Long fileId,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        Long userId = user.getUserId();
+        FileDTO file = fileStorageService.copyFile(fileId, folderId, userId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(file);
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<StorageStatsDTO> getStorageStats(Authentication authentication) {
         User user = (User) authentication.getPrincipal();
@@ -14,6 +14,7 @@ public class FileUploadResponse {
     private Long fileSize;
     private String fileSizeFormatted;
     private String mimeType;
+    private String sha256;
     private String downloadUrl;
     private String message;
 }
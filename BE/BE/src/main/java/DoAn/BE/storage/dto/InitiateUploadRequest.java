@@ -0,0 +1,30 @@
+package DoAn.BE.storage.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InitiateUploadRequest {
+    @NotBlank(message = "Tên file không được để trống")
+    @Size(max = 255, message = "Tên file không được quá 255 ký tự")
+    private String filename;
+
+    @NotNull(message = "Kích thước file không được để trống")
+    @Positive(message = "Kích thước file phải lớn hơn 0")
+    private Long size;
+
+    private String mimeType;
+    private Long folderId;
+
+    // SHA-256 (hex) cả file, tùy chọn: server đối chiếu khi hoàn tất
+    @Pattern(regexp = "^[0-9a-fA-F]{64}$", message = "SHA-256 không hợp lệ")
+    private String sha256;
+}
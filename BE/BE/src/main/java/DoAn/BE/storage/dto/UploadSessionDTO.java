@@ -0,0 +1,25 @@
+package DoAn.BE.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionDTO {
+    private String uploadId;
+    private String filename;
+    private Long totalSize;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    private Integer receivedChunks;
+    private Long receivedBytes;
+    // Các khoảng chỉ số chunk đã nhận [from, to] (gồm 2 đầu), vd [[0, 4], [6, 6]]
+    private List<int[]> receivedRanges;
+    private String status;
+    private LocalDateTime expiresAt;
+}
@@ -12,6 +12,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -24,7 +25,14 @@ import lombok.NoArgsConstructor;
 
 // Entity quản lý file (upload, download, versioning, soft delete, quota)
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+    // Tra file theo nội dung (kiểm tra toàn vẹn, khử trùng lặp)
+    @Index(name = "idx_files_sha256", columnList = "sha256"),
+    // Danh sách file của tôi / quota: lọc owner + is_deleted, sắp xếp created_at
+    @Index(name = "idx_files_owner_deleted_created", columnList = "owner_id, is_deleted, created_at"),
+    // File trong thư mục (project, company, shared)
+    @Index(name = "idx_files_folder_deleted", columnList = "folder_id, is_deleted")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -47,6 +55,10 @@ public class File {
     @Column(name = "file_size", nullable = false)
     private Long fileSize;
 
+    // SHA-256 (hex) của nội dung, tính khi ghi file lên đĩa
+    @Column(name = "sha256", length = 64, columnDefinition = "CHAR(64)")
+    private String sha256;
+
     @Column(name = "mime_type", length = 100, columnDefinition = "NVARCHAR(100)")
     private String mimeType;
 
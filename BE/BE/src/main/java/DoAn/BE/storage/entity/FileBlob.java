@@ -0,0 +1,38 @@
+package DoAn.BE.storage.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Nội dung file lưu 1 lần theo SHA-256; nhiều File (thư mục cá nhân, project, chat) trỏ cùng 1 blob
+// ref_count = số File đang tham chiếu, về 0 thì xóa dòng và file vật lý (BlobStore)
+@Entity
+@Table(name = "file_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileBlob {
+
+    @Id
+    @Column(name = "sha256", length = 64, columnDefinition = "CHAR(64)")
+    private String sha256;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    // Đường dẫn tương đối trong {upload-dir}/blobs, dạng ab/cd/{sha256}-{uuid}
+    @Column(name = "storage_path", nullable = false, length = 200)
+    private String storagePath;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,85 @@
+package DoAn.BE.storage.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Phiên upload chunked (resumable): dữ liệu ghi dần vào file tạm {upload-dir}/chunked/{uploadId}.part
+// Chunk đã nhận lưu ở upload_session_chunks; hết hạn mà chưa hoàn tất thì bị dọn (ChunkedUploadService)
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    // Dọn phiên hết hạn
+    @Index(name = "idx_upload_sessions_expires", columnList = "expires_at"),
+    // Quota / số phiên đang mở của user
+    @Index(name = "idx_upload_sessions_owner", columnList = "owner_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    // UUID ngẫu nhiên, đồng thời là token của phiên trong URL
+    @Id
+    @Column(name = "upload_id", length = 36)
+    private String uploadId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "folder_id")
+    private Long folderId;
+
+    @Column(name = "original_filename", nullable = false, length = 255, columnDefinition = "NVARCHAR(255)")
+    private String originalFilename;
+
+    @Column(name = "mime_type", length = 100, columnDefinition = "NVARCHAR(100)")
+    private String mimeType;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "chunk_count", nullable = false)
+    private Integer chunkCount;
+
+    // SHA-256 cả file do client khai báo (tùy chọn), đối chiếu khi hoàn tất
+    @Column(name = "sha256", length = 64, columnDefinition = "CHAR(64)")
+    private String sha256;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.ACTIVE;
+
+    // Số request đang chép chunk đã kiểm tra vào file tạm; complete chỉ chiếm phiên khi = 0
+    @Column(name = "active_writers", nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private Integer activeWriters = 0;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Gia hạn mỗi lần nhận chunk, không quá created_at + max-session-hours
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public enum Status {
+        ACTIVE,     // đang nhận chunk
+        COMPLETING  // đang ghép thành File, không nhận chunk nữa
+    }
+}
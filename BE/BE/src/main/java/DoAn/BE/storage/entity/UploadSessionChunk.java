@@ -0,0 +1,32 @@
+package DoAn.BE.storage.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Chunk đã nhận và kiểm tra checksum của 1 phiên upload; mỗi chunk 1 dòng nên upload song song không tranh chấp
+@Entity
+@Table(name = "upload_session_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionChunk {
+
+    @EmbeddedId
+    private UploadSessionChunkId id;
+
+    @Column(name = "size", nullable = false)
+    private Integer size;
+
+    @Column(name = "sha256", nullable = false, length = 64, columnDefinition = "CHAR(64)")
+    private String sha256;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+}
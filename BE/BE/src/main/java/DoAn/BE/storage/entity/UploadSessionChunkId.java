@@ -0,0 +1,23 @@
+package DoAn.BE.storage.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionChunkId implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "upload_id", length = 36)
+    private String uploadId;
+
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+}
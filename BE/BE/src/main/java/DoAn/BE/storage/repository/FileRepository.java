@@ -2,8 +2,14 @@ package DoAn.BE.storage.repository;
 
 import DoAn.BE.storage.entity.File;
 import DoAn.BE.storage.entity.Folder;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -17,4 +23,77 @@ public interface FileRepository extends JpaRepository<File, Long> {
     List<File> findByParentFile_FileId(Long parentFileId);
 
     List<File> findByFolder_FolderType(DoAn.BE.storage.entity.Folder.FolderType folderType);
+
+    // ==================== Danh sách file (lọc + sắp xếp trên DB) ====================
+    // "File trong project của tôi" = file trong thư mục có project_id thuộc các project user là thành viên (1 join)
+
+    @Query("SELECT f FROM File f JOIN FETCH f.owner LEFT JOIN FETCH f.folder " +
+           "WHERE f.owner.userId = :userId AND f.isDeleted = false ORDER BY f.createdAt DESC")
+    List<File> findActiveByOwner(@Param("userId") Long userId);
+
+    @Query("SELECT f FROM File f JOIN FETCH f.owner JOIN FETCH f.folder fo " +
+           "WHERE fo.folderType = :folderType AND f.isDeleted = false ORDER BY f.createdAt DESC")
+    List<File> findActiveByFolderType(@Param("folderType") Folder.FolderType folderType);
+
+    @Query("SELECT f FROM File f JOIN FETCH f.owner JOIN FETCH f.folder fo " +
+           "WHERE f.isDeleted = false AND fo.project.projectId IN " +
+           "(SELECT pm.project.projectId FROM ProjectMember pm WHERE pm.user.userId = :userId) " +
+           "ORDER BY f.createdAt DESC")
+    List<File> findActiveInMemberProjects(@Param("userId") Long userId);
+
+    // Của tôi + thư mục COMPANY + thư mục project của tôi; mỗi file 1 dòng nên không cần khử trùng
+    @Query("SELECT f FROM File f JOIN FETCH f.owner LEFT JOIN FETCH f.folder fo LEFT JOIN fo.project p " +
+           "WHERE f.isDeleted = false AND (f.owner.userId = :userId OR fo.folderType = DoAn.BE.storage.entity.Folder.FolderType.COMPANY OR p.projectId IN " +
+           "(SELECT pm.project.projectId FROM ProjectMember pm WHERE pm.user.userId = :userId)) " +
+           "ORDER BY f.createdAt DESC")
+    List<File> findActiveAccessible(@Param("userId") Long userId);
+
+    @Query("SELECT f FROM File f JOIN FETCH f.owner LEFT JOIN FETCH f.folder fo LEFT JOIN fo.project p " +
+           "WHERE f.isDeleted = true AND (f.owner.userId = :userId OR p.projectId IN " +
+           "(SELECT pm.project.projectId FROM ProjectMember pm WHERE pm.user.userId = :userId)) " +
+           "ORDER BY f.updatedAt DESC")
+    List<File> findDeletedAccessible(@Param("userId") Long userId);
+
+    @Query("SELECT f FROM File f JOIN FETCH f.owner JOIN FETCH f.folder fo " +
+           "WHERE fo.folderType = DoAn.BE.storage.entity.Folder.FolderType.SHARED AND f.owner.userId <> :userId AND f.isDeleted = false " +
+           "ORDER BY f.createdAt DESC")
+    List<File> findActiveSharedWith(@Param("userId") Long userId);
+
+    @Query("SELECT f FROM File f WHERE f.owner.userId = :userId AND f.isDeleted = false " +
+           "AND f.createdAt > :since ORDER BY f.createdAt DESC")
+    List<File> findRecentByOwner(@Param("userId") Long userId, @Param("since") LocalDateTime since,
+            Pageable pageable);
+
+    // pattern đã escape % _ \ (ESCAPE '\')
+    @Query("SELECT f FROM File f WHERE f.owner.userId = :userId AND f.isDeleted = false " +
+           "AND LOWER(f.originalFilename) LIKE :pattern ESCAPE '\\' ORDER BY f.createdAt DESC")
+    List<File> searchByOwner(@Param("userId") Long userId, @Param("pattern") String pattern, Pageable pageable);
+
+    // File được đính kèm trong tin nhắn (chưa xóa) của phòng chat mà user là thành viên
+    @Query("SELECT COUNT(m) > 0 FROM Message m, ChatRoomMember cm WHERE m.file.fileId = :fileId " +
+           "AND m.isDeleted = false AND cm.chatRoom = m.chatRoom AND cm.user.userId = :userId")
+    boolean isAttachedInRoomOfMember(@Param("fileId") Long fileId, @Param("userId") Long userId);
+
+    // Gỡ file khỏi các tin nhắn trước khi xóa vĩnh viễn (messages.file_id là FK tới files)
+    @Modifying
+    @Query("UPDATE Message m SET m.file = null WHERE m.file.fileId IN :fileIds")
+    int detachFromMessages(@Param("fileIds") Collection<Long> fileIds);
+
+    // ==================== Thống kê ====================
+
+    @Query("SELECT COALESCE(SUM(f.fileSize), 0) FROM File f WHERE f.owner.userId = :userId AND f.isDeleted = false")
+    long sumActiveSizeByOwner(@Param("userId") Long userId);
+
+    // [mimeType, count, sum(size)] file của user
+    @Query("SELECT f.mimeType, COUNT(f), COALESCE(SUM(f.fileSize), 0) FROM File f " +
+           "WHERE f.owner.userId = :userId AND f.isDeleted = false GROUP BY f.mimeType")
+    List<Object[]> getStatsByMimeTypeForOwner(@Param("userId") Long userId);
+
+    // [mimeType, count, sum(size)] file của user + file trong thư mục project của user
+    @Query("SELECT f.mimeType, COUNT(f), COALESCE(SUM(f.fileSize), 0) FROM File f " +
+           "LEFT JOIN f.folder fo LEFT JOIN fo.project p " +
+           "WHERE f.isDeleted = false AND (f.owner.userId = :userId OR p.projectId IN " +
+           "(SELECT pm.project.projectId FROM ProjectMember pm WHERE pm.user.userId = :userId)) " +
+           "GROUP BY f.mimeType")
+    List<Object[]> getStatsByMimeTypeAccessible(@Param("userId") Long userId);
 }
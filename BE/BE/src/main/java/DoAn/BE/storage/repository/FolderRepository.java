@@ -4,6 +4,8 @@ import DoAn.BE.storage.entity.Folder;
 import DoAn.BE.project.entity.Project;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -19,4 +21,9 @@ public interface FolderRepository extends JpaRepository<Folder, Long> {
     List<Folder> findByProjectAndOwner(Project project, DoAn.BE.user.entity.User owner);
 
     List<Folder> findByFolderType(DoAn.BE.storage.entity.Folder.FolderType folderType);
+
+    // Thư mục của tôi + thư mục project tôi là thành viên
+    @Query("SELECT COUNT(fo) FROM Folder fo LEFT JOIN fo.project p WHERE fo.owner.userId = :userId " +
+           "OR p.projectId IN (SELECT pm.project.projectId FROM ProjectMember pm WHERE pm.user.userId = :userId)")
+    long countAccessible(@Param("userId") Long userId);
 }
@@ -0,0 +1,28 @@
+package DoAn.BE.storage.repository;
+
+import DoAn.BE.storage.entity.UploadSession;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    @Query("SELECT s.uploadId FROM UploadSession s WHERE s.expiresAt < :now")
+    List<String> findExpiredIds(@Param("now") LocalDateTime now);
+
+    // Dung lượng các phiên đang mở (ACTIVE/COMPLETING) của user, trừ phiên excludeUploadId (null = không trừ)
+    @Query("SELECT COALESCE(SUM(s.totalSize), 0) FROM UploadSession s WHERE s.ownerId = :ownerId " +
+           "AND s.status IN (DoAn.BE.storage.entity.UploadSession.Status.ACTIVE, " +
+           "DoAn.BE.storage.entity.UploadSession.Status.COMPLETING) " +
+           "AND (:excludeUploadId IS NULL OR s.uploadId <> :excludeUploadId)")
+    long sumOpenSizeByOwner(@Param("ownerId") Long ownerId, @Param("excludeUploadId") String excludeUploadId);
+
+    @Query("SELECT COUNT(s) FROM UploadSession s WHERE s.ownerId = :ownerId " +
+           "AND s.status IN (DoAn.BE.storage.entity.UploadSession.Status.ACTIVE, " +
+           "DoAn.BE.storage.entity.UploadSession.Status.COMPLETING)")
+    long countOpenByOwner(@Param("ownerId") Long ownerId);
+}
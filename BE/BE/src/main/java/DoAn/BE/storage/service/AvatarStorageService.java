@@ -0,0 +1,337 @@
+package DoAn.BE.storage.service;
+
+import DoAn.BE.common.exception.BadRequestException;
+import DoAn.BE.common.exception.FileStorageException;
+import DoAn.BE.common.exception.StorageFileNotFoundException;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.regex.Pattern;
+
+/**
+ * Lưu avatar theo nội dung (content-addressed): {upload-dir}/avatars/{sha256}.{ext}
+ * - Cùng ảnh -> cùng file, URL không bao giờ đổi nội dung nên cache vĩnh viễn được
+ * - Thumbnail sinh 1 lần theo kích thước chuẩn, lưu tại avatars/thumbs
+ * User chỉ giữ URL ngắn (/api/public/avatars/{sha256}.{ext}) thay vì base64
+ * Kích thước điểm ảnh đọc từ header trước khi giải mã: 5MB nén vẫn có thể là ảnh hàng tỷ điểm ảnh
+ */
+@Service
+@Slf4j
+public class AvatarStorageService {
+
+    public static final String URL_PREFIX = "/api/public/avatars/";
+    public static final int[] THUMBNAIL_SIZES = { 32, 64, 128, 256 };
+
+    private static final long MAX_AVATAR_BYTES = 5L * 1024 * 1024;
+    // 4096 x 4096; giải mã ARGB tối đa ~64MB
+    private static final long MAX_AVATAR_PIXELS = 4096L * 4096;
+    private static final int MAX_URL_LENGTH = 500;
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[0-9a-f]{64}\\.(png|jpg|gif|webp)$");
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    private Path avatarLocation;
+    private Path thumbnailLocation;
+
+    /**
+     * Lưu ảnh upload, trả về URL avatar
+     */
+    public String store(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("File không được để trống");
+        }
+        if (file.getSize() > MAX_AVATAR_BYTES) {
+            throw new BadRequestException("Ảnh đại diện tối đa 5MB");
+        }
+        try {
+            return store(file.getBytes());
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể đọc file ảnh", ex);
+        }
+    }
+
+    /**
+     * Lưu ảnh (nhận dạng định dạng qua magic bytes), trả về URL avatar
+     */
+    public String store(byte[] data) {
+        if (data.length > MAX_AVATAR_BYTES) {
+            throw new BadRequestException("Ảnh đại diện tối đa 5MB");
+        }
+        String extension = detectExtension(data);
+        if (extension == null) {
+            throw new BadRequestException("Ảnh đại diện phải là PNG, JPEG, GIF hoặc WEBP");
+        }
+        // JDK không có ImageReader cho WEBP; WEBP không bao giờ được giải mã (thumbnail trả file gốc)
+        if (!"webp".equals(extension)) {
+            checkPixels(data);
+        }
+
+        String name = sha256Hex(data) + "." + extension;
+        try {
+            Path target = avatarLocation().resolve(name);
+            if (!Files.exists(target)) {
+                writeAtomically(target, data);
+                log.info("Stored avatar {} ({} bytes)", name, data.length);
+            }
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể lưu ảnh đại diện", ex);
+        }
+        return URL_PREFIX + name;
+    }
+
+    /**
+     * Chuẩn hóa giá trị avatar client gửi lên:
+     * data URI (base64) -> lưu file và trả URL; URL thường giữ nguyên
+     */
+    public String normalize(String avatar) {
+        if (avatar == null || avatar.isBlank()) {
+            return avatar;
+        }
+        if (avatar.startsWith("data:")) {
+            int comma = avatar.indexOf(',');
+            if (comma < 0 || !avatar.substring(0, comma).endsWith(";base64")) {
+                throw new BadRequestException("Dữ liệu ảnh đại diện không hợp lệ");
+            }
+            try {
+                return store(Base64.getMimeDecoder().decode(avatar.substring(comma + 1)));
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestException("Dữ liệu ảnh đại diện không hợp lệ");
+            }
+        }
+        if (avatar.length() > MAX_URL_LENGTH) {
+            throw new BadRequestException("URL ảnh đại diện không được quá 500 ký tự");
+        }
+        return avatar;
+    }
+
+    /**
+     * File gốc theo tên {sha256}.{ext}
+     */
+    public Path resolve(String name) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new StorageFileNotFoundException("Không tìm thấy ảnh đại diện");
+        }
+        try {
+            Path file = avatarLocation().resolve(name);
+            if (!Files.exists(file)) {
+                throw new StorageFileNotFoundException("Không tìm thấy ảnh đại diện");
+            }
+            return file;
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể đọc ảnh đại diện", ex);
+        }
+    }
+
+    /**
+     * Thumbnail (cạnh dài = size, làm tròn lên kích thước chuẩn), sinh lần đầu rồi dùng lại
+     * GIF/WEBP hoặc ảnh đã nhỏ hơn size thì trả file gốc
+     */
+    public Path resolveThumbnail(String name, int size) {
+        Path original = resolve(name);
+        if (!(name.endsWith(".png") || name.endsWith(".jpg"))) {
+            return original;
+        }
+        int thumbSize = normalizeSize(size);
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        String hash = name.substring(0, name.lastIndexOf('.'));
+
+        try {
+            Path thumbnail = thumbnailLocation().resolve(hash + "_" + thumbSize + "." + extension);
+            if (Files.exists(thumbnail)) {
+                return thumbnail;
+            }
+
+            BufferedImage image = readForThumbnail(original, name, thumbSize);
+            if (image == null) {
+                return original;
+            }
+
+            double scale = (double) thumbSize / Math.max(image.getWidth(), image.getHeight());
+            int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+            BufferedImage scaled = new BufferedImage(width, height,
+                    "png".equals(extension) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+
+            Path temp = Files.createTempFile(thumbnailLocation(), hash, ".tmp");
+            try {
+                ImageIO.write(scaled, "png".equals(extension) ? "png" : "jpg", temp.toFile());
+                Files.move(temp, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return thumbnail;
+        } catch (IOException ex) {
+            log.warn("Không tạo được thumbnail {} size {}: {}", name, thumbSize, ex.getMessage());
+            return original;
+        }
+    }
+
+    public static String mediaType(String name) {
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".jpg")) {
+            return "image/jpeg";
+        }
+        if (name.endsWith(".gif")) {
+            return "image/gif";
+        }
+        return "image/webp";
+    }
+
+    /**
+     * Giải mã ảnh gốc cho thumbnail, null nếu không cần/không được giải mã:
+     * - Kích thước lấy từ header; ảnh đã nhỏ hơn thumbnail hoặc vượt MAX_AVATAR_PIXELS thì không giải mã
+     * - Subsampling khi đọc (giữ >= 2 lần kích thước thumbnail) để không dựng cả ảnh gốc trong heap
+     */
+    private BufferedImage readForThumbnail(Path original, String name, int thumbSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            ImageReader reader = in != null ? firstReader(in) : null;
+            if (reader == null) {
+                return null;
+            }
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int longSide = Math.max(width, height);
+                if (longSide <= thumbSize) {
+                    return null;
+                }
+                if ((long) width * height > MAX_AVATAR_PIXELS) {
+                    log.warn("Bỏ qua thumbnail {}: {}x{} vượt giới hạn điểm ảnh", name, width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longSide / (thumbSize * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Đọc kích thước từ header (không giải mã điểm ảnh), từ chối ảnh lỗi hoặc vượt MAX_AVATAR_PIXELS
+    private static void checkPixels(byte[] data) {
+        long pixels;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            ImageReader reader = in != null ? firstReader(in) : null;
+            if (reader == null) {
+                throw new BadRequestException("Dữ liệu ảnh đại diện không hợp lệ");
+            }
+            try {
+                pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException ex) {
+            throw new BadRequestException("Dữ liệu ảnh đại diện không hợp lệ");
+        }
+        if (pixels > MAX_AVATAR_PIXELS) {
+            throw new BadRequestException("Ảnh đại diện tối đa 4096 x 4096 điểm ảnh");
+        }
+    }
+
+    // ImageReader đầu tiên nhận định dạng, đã gắn input; caller phải dispose
+    private static ImageReader firstReader(ImageInputStream in) {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    private static int normalizeSize(int size) {
+        for (int s : THUMBNAIL_SIZES) {
+            if (size <= s) {
+                return s;
+            }
+        }
+        return THUMBNAIL_SIZES[THUMBNAIL_SIZES.length - 1];
+    }
+
+    private static String detectExtension(byte[] d) {
+        if (d.length >= 8 && (d[0] & 0xFF) == 0x89 && d[1] == 'P' && d[2] == 'N' && d[3] == 'G') {
+            return "png";
+        }
+        if (d.length >= 3 && (d[0] & 0xFF) == 0xFF && (d[1] & 0xFF) == 0xD8 && (d[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (d.length >= 6 && d[0] == 'G' && d[1] == 'I' && d[2] == 'F' && d[3] == '8') {
+            return "gif";
+        }
+        if (d.length >= 12 && d[0] == 'R' && d[1] == 'I' && d[2] == 'F' && d[3] == 'F'
+                && d[8] == 'W' && d[9] == 'E' && d[10] == 'B' && d[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void writeAtomically(Path target, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), "avatar", ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path avatarLocation() throws IOException {
+        if (avatarLocation == null) {
+            Path location = Paths.get(uploadDir).toAbsolutePath().normalize().resolve("avatars");
+            Files.createDirectories(location);
+            avatarLocation = location;
+        }
+        return avatarLocation;
+    }
+
+    private Path thumbnailLocation() throws IOException {
+        if (thumbnailLocation == null) {
+            Path location = avatarLocation().resolve("thumbs");
+            Files.createDirectories(location);
+            thumbnailLocation = location;
+        }
+        return thumbnailLocation;
+    }
+}
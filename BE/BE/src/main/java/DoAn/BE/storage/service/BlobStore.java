@@ -0,0 +1,207 @@
+package DoAn.BE.storage.service;
+
+import DoAn.BE.common.exception.FileStorageException;
+import DoAn.BE.common.exception.StorageFileNotFoundException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Kho nội dung file theo SHA-256 (bảng file_blobs), mỗi nội dung lưu 1 lần
+ * - Vị trí: {upload-dir}/blobs/ab/cd/{sha256}-{uuid}; uuid để blob tạo lại sau khi bị thu hồi không trùng file cũ
+ * - store/retain tăng ref_count trong transaction của nơi gọi, release giảm và thu hồi blob sau commit
+ * - Đếm tham chiếu bằng UPDATE nguyên tử trên DB nên an toàn khi upload song song cùng nội dung
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlobStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StreamingFileWriter streamingFileWriter;
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    private Path blobLocation;
+    private Path tempLocation;
+
+    public record Blob(String sha256, long size, Path path) {
+    }
+
+    /**
+     * Ghi stream thành blob; nội dung đã có thì bỏ bản vừa ghi và tăng ref_count
+     * Stream được đọc 1 lần qua StreamingFileWriter (magic bytes, giới hạn size, SHA-256)
+     */
+    public Blob store(InputStream in, String filename, long maxBytes) {
+        try {
+            StreamingFileWriter.StoredFile stored = streamingFileWriter.write(in, tempLocation(), filename, maxBytes);
+            try {
+                return acquire(stored);
+            } finally {
+                Files.deleteIfExists(stored.path());
+            }
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể lưu file: " + filename, ex);
+        }
+    }
+
+    /**
+     * Đưa file đã nằm trên đĩa (file ghép từ upload chunked, cùng ổ với upload-dir) vào kho
+     * File được move vào vị trí blob hoặc bị xóa nếu nội dung đã có; lỗi kiểm tra nội dung cũng xóa file
+     */
+    public Blob adopt(Path file, String filename) {
+        try {
+            try {
+                return acquire(streamingFileWriter.inspect(file, filename));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể lưu file: " + filename, ex);
+        }
+    }
+
+    /**
+     * Thêm 1 tham chiếu tới blob đã có (sao chép file không cần chép dữ liệu)
+     */
+    public Blob retain(String sha256) {
+        Blob blob = incrementExisting(sha256);
+        if (blob == null) {
+            throw new StorageFileNotFoundException("Không tìm thấy nội dung file");
+        }
+        return blob;
+    }
+
+    /**
+     * Bỏ 1 tham chiếu; blob hết tham chiếu bị xóa sau khi transaction commit
+     */
+    public void release(String sha256) {
+        jdbcTemplate.update("UPDATE file_blobs SET ref_count = ref_count - 1 WHERE sha256 = ? AND ref_count > 0",
+                sha256);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reclaim(sha256);
+                }
+            });
+        } else {
+            reclaim(sha256);
+        }
+    }
+
+    private Blob acquire(StreamingFileWriter.StoredFile stored) throws IOException {
+        String sha256 = stored.sha256();
+        while (true) {
+            Blob existing = incrementExisting(sha256);
+            if (existing != null) {
+                return existing;
+            }
+
+            String storagePath = sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + "-"
+                    + UUID.randomUUID();
+            Path target = blobLocation().resolve(storagePath);
+            Files.createDirectories(target.getParent());
+            Files.move(stored.path(), target, StandardCopyOption.ATOMIC_MOVE);
+            try {
+                jdbcTemplate.update("INSERT INTO file_blobs (sha256, size, storage_path, ref_count, created_at) " +
+                        "VALUES (?, ?, ?, 1, ?)", sha256, stored.size(), storagePath, Timestamp.valueOf(LocalDateTime.now()));
+            } catch (DuplicateKeyException ex) {
+                // Upload song song cùng nội dung vừa tạo blob -> trả file về chỗ tạm, tăng ref blob đó
+                Files.move(target, stored.path(), StandardCopyOption.ATOMIC_MOVE);
+                continue;
+            }
+            deleteOnRollback(target);
+            log.info("Stored blob {} ({} bytes)", sha256, stored.size());
+            return new Blob(sha256, stored.size(), target);
+        }
+    }
+
+    private Blob incrementExisting(String sha256) {
+        List<Blob> blobs = jdbcTemplate.query(
+                "UPDATE file_blobs SET ref_count = ref_count + 1 OUTPUT inserted.size, inserted.storage_path " +
+                        "WHERE sha256 = ?",
+                (rs, rowNum) -> new Blob(sha256, rs.getLong("size"), resolve(rs.getString("storage_path"))),
+                sha256);
+        return blobs.isEmpty() ? null : blobs.get(0);
+    }
+
+    // Chỉ xóa khi vẫn còn ref_count = 0: upload chen giữa đã tăng ref thì DELETE không khớp.
+    // Blob tạo lại sau đó có storage_path mới nên xóa file cũ không ảnh hưởng
+    private void reclaim(String sha256) {
+        List<String> paths = jdbcTemplate.queryForList(
+                "DELETE FROM file_blobs OUTPUT deleted.storage_path WHERE sha256 = ? AND ref_count = 0",
+                String.class, sha256);
+        for (String storagePath : paths) {
+            try {
+                Files.deleteIfExists(resolve(storagePath));
+                log.info("Reclaimed blob {}", sha256);
+            } catch (IOException ex) {
+                log.warn("Không xóa được blob {}: {}", storagePath, ex.getMessage());
+            }
+        }
+    }
+
+    // Dòng file_blobs vừa INSERT bị rollback -> không ai tham chiếu file (tên có uuid riêng) -> xóa
+    private void deleteOnRollback(Path path) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException ex) {
+                        log.warn("Không xóa được blob sau rollback {}: {}", path, ex.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private Path resolve(String storagePath) {
+        try {
+            return blobLocation().resolve(storagePath);
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể truy cập kho file", ex);
+        }
+    }
+
+    private Path blobLocation() throws IOException {
+        if (blobLocation == null) {
+            Path location = Paths.get(uploadDir).toAbsolutePath().normalize().resolve("blobs");
+            Files.createDirectories(location);
+            blobLocation = location;
+        }
+        return blobLocation;
+    }
+
+    private Path tempLocation() throws IOException {
+        if (tempLocation == null) {
+            Path location = blobLocation().resolve("tmp");
+            Files.createDirectories(location);
+            tempLocation = location;
+        }
+        return tempLocation;
+    }
+}
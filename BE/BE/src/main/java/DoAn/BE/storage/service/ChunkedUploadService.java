@@ -0,0 +1,456 @@
+package DoAn.BE.storage.service;
+
+import DoAn.BE.common.exception.BadRequestException;
+import DoAn.BE.common.exception.FileStorageException;
+import DoAn.BE.common.exception.ForbiddenException;
+import DoAn.BE.common.exception.StorageFileNotFoundException;
+import DoAn.BE.storage.config.FileSecurityConfig;
+import DoAn.BE.storage.dto.FileUploadResponse;
+import DoAn.BE.storage.dto.InitiateUploadRequest;
+import DoAn.BE.storage.dto.UploadSessionDTO;
+import DoAn.BE.storage.entity.UploadSession;
+import DoAn.BE.storage.repository.UploadSessionRepository;
+import DoAn.BE.storage.validator.FileValidator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Upload chunked có thể tiếp tục (file lớn hơn giới hạn multipart): initiate -> PUT chunk N -> status -> complete
+ * - Chunk nhận vào file tạm riêng, đúng độ dài + SHA-256 mới chép vào vị trí (index * chunkSize) của file
+ *   sparse; chunk gửi lại bị lỗi không đè dữ liệu chunk đã ghi nhận trước đó
+ * - Chép chunk giữ active_writers của phiên; complete chỉ chiếm phiên khi không còn request đang chép,
+ *   nên file ghép không bị ghi thêm sau khi đã băm / đưa vào BlobStore
+ * - Complete: kiểm tra đủ chunk, đưa file ghép vào BlobStore (magic bytes + SHA-256 cả file) rồi tạo File
+ * - Phiên quá session-ttl-hours không nhận chunk nào bị dọn định kỳ; gia hạn theo chunk không quá max-session-hours
+ * - Phiên đang mở giữ chỗ total_size trong quota của user, mỗi user tối đa max-sessions-per-user phiên
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Complete chờ các request đang chép chunk (chép file cục bộ, thường vài chục ms)
+    private static final long WRITER_WAIT_MILLIS = 10_000;
+    private static final long WRITER_POLL_MILLIS = 50;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final FileStorageService fileStorageService;
+    private final BlobStore blobStore;
+    private final FileValidator fileValidator;
+    private final FileSecurityConfig fileSecurityConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxFileSize;
+    private final int chunkSize;
+    private final long sessionTtlHours;
+    private final long maxSessionHours;
+    private final int maxSessionsPerUser;
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    private Path sessionLocation;
+
+    public ChunkedUploadService(UploadSessionRepository uploadSessionRepository,
+            FileStorageService fileStorageService,
+            BlobStore blobStore,
+            FileValidator fileValidator,
+            FileSecurityConfig fileSecurityConfig,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.storage.chunked.max-file-size-mb:2048}") long maxFileSizeMb,
+            @Value("${app.storage.chunked.chunk-size-mb:8}") int chunkSizeMb,
+            @Value("${app.storage.chunked.session-ttl-hours:24}") long sessionTtlHours,
+            @Value("${app.storage.chunked.max-session-hours:72}") long maxSessionHours,
+            @Value("${app.storage.chunked.max-sessions-per-user:5}") int maxSessionsPerUser) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.fileStorageService = fileStorageService;
+        this.blobStore = blobStore;
+        this.fileValidator = fileValidator;
+        this.fileSecurityConfig = fileSecurityConfig;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxFileSize = maxFileSizeMb * 1024 * 1024;
+        this.chunkSize = chunkSizeMb * 1024 * 1024;
+        this.sessionTtlHours = sessionTtlHours;
+        this.maxSessionHours = maxSessionHours;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+    }
+
+    public UploadSessionDTO initiate(InitiateUploadRequest request, Long userId) {
+        String filename = StringUtils.cleanPath(request.getFilename());
+        fileValidator.validateFilename(filename);
+        if (request.getMimeType() != null && !fileSecurityConfig.isMimeTypeAllowed(request.getMimeType())) {
+            throw new BadRequestException(
+                    String.format("❌ Loại file (MIME: %s) không được phép upload", request.getMimeType()));
+        }
+        if (request.getSize() > maxFileSize) {
+            throw new BadRequestException(String.format("❌ File quá lớn. Giới hạn: %.2f MB",
+                    maxFileSize / (1024.0 * 1024.0)));
+        }
+        if (uploadSessionRepository.countOpenByOwner(userId) >= maxSessionsPerUser) {
+            throw new BadRequestException("Đã có " + maxSessionsPerUser
+                    + " phiên upload đang mở, hãy hoàn tất hoặc hủy bớt trước khi bắt đầu phiên mới");
+        }
+        // Quota tính cả dung lượng các phiên đang mở khác
+        fileStorageService.checkUploadAllowed(userId, request.getFolderId(), request.getSize());
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setOwnerId(userId);
+        session.setFolderId(request.getFolderId());
+        session.setOriginalFilename(filename);
+        session.setMimeType(request.getMimeType());
+        session.setTotalSize(request.getSize());
+        session.setChunkSize(chunkSize);
+        session.setChunkCount((int) ((request.getSize() + chunkSize - 1) / chunkSize));
+        session.setSha256(request.getSha256() != null ? request.getSha256().toLowerCase(Locale.ROOT) : null);
+        session.setStatus(UploadSession.Status.ACTIVE);
+        session.setExpiresAt(LocalDateTime.now().plusHours(sessionTtlHours));
+
+        try {
+            // File sparse: chưa cấp phát dung lượng, chunk ghi tới đâu chiếm tới đó
+            FileChannel.open(partPath(session.getUploadId()), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE, StandardOpenOption.SPARSE).close();
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể tạo phiên upload", ex);
+        }
+        session = uploadSessionRepository.save(session);
+
+        log.info("User {} started chunked upload {} ({}, {} bytes, {} chunks)", userId, session.getUploadId(),
+                filename, session.getTotalSize(), session.getChunkCount());
+        return toDTO(session, List.of());
+    }
+
+    /**
+     * Nhận chunk chunkIndex từ body request (stream thẳng vào file tạm, không qua multipart)
+     *
+     * @param checksum SHA-256 (hex) của chunk do client tính
+     */
+    public void uploadChunk(String uploadId, int chunkIndex, InputStream body, String checksum, Long userId) {
+        UploadSession session = getOwnedSession(uploadId, userId);
+        if (session.getStatus() != UploadSession.Status.ACTIVE) {
+            throw new BadRequestException("Phiên upload đang được hoàn tất, không nhận thêm chunk");
+        }
+        if (chunkIndex < 0 || chunkIndex >= session.getChunkCount()) {
+            throw new BadRequestException("Chỉ số chunk không hợp lệ: " + chunkIndex);
+        }
+        if (checksum == null || !checksum.matches("^[0-9a-fA-F]{64}$")) {
+            throw new BadRequestException("Thiếu hoặc sai định dạng checksum SHA-256 của chunk");
+        }
+
+        long position = (long) chunkIndex * session.getChunkSize();
+        long expectedLength = Math.min(session.getChunkSize(), session.getTotalSize() - position);
+        Path chunkFile = partPath(uploadId).resolveSibling(uploadId + "." + chunkIndex + "." + UUID.randomUUID()
+                + ".chunk");
+        try {
+            // Nhận từ mạng vào file riêng của request này: sai độ dài / checksum thì file ghép không bị đụng tới
+            String actual = receiveChunk(body, chunkFile, chunkIndex, expectedLength);
+            if (!actual.equalsIgnoreCase(checksum)) {
+                throw new BadRequestException("Checksum chunk " + chunkIndex + " không khớp, hãy gửi lại");
+            }
+
+            int acquired = jdbcTemplate.update(
+                    "UPDATE upload_sessions SET active_writers = active_writers + 1 WHERE upload_id = ? AND status = ?",
+                    uploadId, UploadSession.Status.ACTIVE.name());
+            if (acquired == 0) {
+                throw new BadRequestException("Phiên upload đang được hoàn tất, không nhận thêm chunk");
+            }
+            try {
+                copyIntoPart(chunkFile, partPath(uploadId), position, expectedLength);
+                recordChunk(uploadId, chunkIndex, (int) expectedLength, actual);
+            } finally {
+                jdbcTemplate.update("UPDATE upload_sessions SET active_writers = active_writers - 1, expires_at = ? " +
+                        "WHERE upload_id = ?", Timestamp.valueOf(nextExpiry(session)), uploadId);
+            }
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể ghi chunk " + chunkIndex, ex);
+        } finally {
+            try {
+                Files.deleteIfExists(chunkFile);
+            } catch (IOException ex) {
+                log.warn("Không xóa được chunk tạm {}: {}", chunkFile, ex.getMessage());
+            }
+        }
+    }
+
+    public UploadSessionDTO getStatus(String uploadId, Long userId) {
+        UploadSession session = getOwnedSession(uploadId, userId);
+        return toDTO(session, receivedChunkIndexes(uploadId));
+    }
+
+    public FileUploadResponse complete(String uploadId, Long userId, String ipAddress, String userAgent) {
+        UploadSession session = getOwnedSession(uploadId, userId);
+
+        claimForCompletion(uploadId);
+
+        Path part = partPath(uploadId);
+        try {
+            Integer received = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM upload_session_chunks WHERE upload_id = ?", Integer.class, uploadId);
+            int missing = session.getChunkCount() - (received != null ? received : 0);
+            if (missing > 0) {
+                throw new BadRequestException("Còn thiếu " + missing + " chunk, chưa thể hoàn tất");
+            }
+
+            FileUploadResponse response = transactionTemplate.execute(status -> {
+                // Quota / quyền thư mục có thể đã đổi từ lúc initiate
+                fileStorageService.checkUploadAllowed(userId, session.getFolderId(), session.getTotalSize(),
+                        uploadId);
+                BlobStore.Blob blob = blobStore.adopt(part, session.getOriginalFilename());
+                if (session.getSha256() != null && !session.getSha256().equals(blob.sha256())) {
+                    throw new BadRequestException("SHA-256 của file không khớp giá trị đã khai báo");
+                }
+                deleteSessionRows(uploadId);
+                return fileStorageService.saveUploadedFile(blob, session.getOriginalFilename(),
+                        session.getMimeType(), session.getFolderId(), userId, ipAddress, userAgent);
+            });
+            log.info("Chunked upload {} completed as file {}", uploadId, response.getFileId());
+            return response;
+        } catch (RuntimeException ex) {
+            // Còn file tạm (lỗi trước khi ghép) -> cho phép thử lại; mất file tạm -> phiên hết dùng được
+            if (Files.exists(part)) {
+                jdbcTemplate.update("UPDATE upload_sessions SET status = ? WHERE upload_id = ?",
+                        UploadSession.Status.ACTIVE.name(), uploadId);
+            } else {
+                deleteSessionRows(uploadId);
+            }
+            throw ex;
+        }
+    }
+
+    public void abort(String uploadId, Long userId) {
+        getOwnedSession(uploadId, userId);
+        discard(uploadId);
+        log.info("Chunked upload {} aborted by user {}", uploadId, userId);
+    }
+
+    // Dọn phiên hết hạn (không nhận chunk nào trong session-ttl-hours)
+    @Scheduled(fixedDelayString = "${app.storage.chunked.cleanup-interval-ms:3600000}")
+    public void cleanupExpiredSessions() {
+        List<String> expired = uploadSessionRepository.findExpiredIds(LocalDateTime.now());
+        for (String uploadId : expired) {
+            discard(uploadId);
+        }
+        if (!expired.isEmpty()) {
+            log.info("Cleaned up {} expired chunked uploads", expired.size());
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    // Gia hạn thêm session-ttl-hours từ lúc nhận chunk, nhưng không quá created_at + max-session-hours
+    private LocalDateTime nextExpiry(UploadSession session) {
+        LocalDateTime next = LocalDateTime.now().plusHours(sessionTtlHours);
+        if (session.getCreatedAt() == null) {
+            return next;
+        }
+        LocalDateTime hardLimit = session.getCreatedAt().plusHours(maxSessionHours);
+        return next.isAfter(hardLimit) ? hardLimit : next;
+    }
+
+    private UploadSession getOwnedSession(String uploadId, Long userId) {
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new StorageFileNotFoundException("Không tìm thấy phiên upload"));
+        if (!session.getOwnerId().equals(userId)) {
+            throw new ForbiddenException("Bạn không có quyền với phiên upload này");
+        }
+        return session;
+    }
+
+    /**
+     * Chuyển phiên sang COMPLETING khi không còn request đang chép chunk (chỉ 1 request complete được xử lý)
+     * Sau khi chiếm, uploadChunk không tăng được active_writers nên file ghép không bị ghi thêm
+     */
+    private void claimForCompletion(String uploadId) {
+        long deadline = System.currentTimeMillis() + WRITER_WAIT_MILLIS;
+        while (true) {
+            int claimed = jdbcTemplate.update(
+                    "UPDATE upload_sessions SET status = ? WHERE upload_id = ? AND status = ? AND active_writers = 0",
+                    UploadSession.Status.COMPLETING.name(), uploadId, UploadSession.Status.ACTIVE.name());
+            if (claimed > 0) {
+                return;
+            }
+            String status = jdbcTemplate.queryForList("SELECT status FROM upload_sessions WHERE upload_id = ?",
+                    String.class, uploadId).stream().findFirst().orElse(null);
+            if (!UploadSession.Status.ACTIVE.name().equals(status)) {
+                throw new BadRequestException("Phiên upload đang được hoàn tất");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new BadRequestException("Phiên upload đang nhận chunk, hãy thử hoàn tất lại sau");
+            }
+            try {
+                Thread.sleep(WRITER_POLL_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new BadRequestException("Phiên upload đang nhận chunk, hãy thử hoàn tất lại sau");
+            }
+        }
+    }
+
+    // Đọc body vào file tạm của chunk, kiểm tra độ dài; trả về SHA-256 (hex)
+    private String receiveChunk(InputStream body, Path chunkFile, int chunkIndex, long expectedLength)
+            throws IOException {
+        MessageDigest digest = sha256();
+        long written = 0;
+        try (InputStream input = body;
+                FileChannel channel = FileChannel.open(chunkFile, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new BadRequestException("Chunk " + chunkIndex + " dài hơn " + expectedLength + " byte");
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk);
+                }
+            }
+        }
+        if (written != expectedLength) {
+            throw new BadRequestException("Chunk " + chunkIndex + " thiếu dữ liệu: nhận " + written + "/"
+                    + expectedLength + " byte");
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // transferTo ghi tại position của target (được phép vượt cuối file sparse; transferFrom thì không)
+    private static void copyIntoPart(Path chunkFile, Path part, long position, long length) throws IOException {
+        try (FileChannel source = FileChannel.open(chunkFile, StandardOpenOption.READ);
+                FileChannel target = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            target.position(position);
+            long copied = 0;
+            while (copied < length) {
+                long n = source.transferTo(copied, length - copied, target);
+                if (n <= 0) {
+                    throw new IOException("Chunk tạm ngắn hơn độ dài đã kiểm tra");
+                }
+                copied += n;
+            }
+        }
+    }
+
+    // Gửi lại chunk đã nhận (client retry) chỉ cập nhật checksum
+    private void recordChunk(String uploadId, int chunkIndex, int size, String checksum) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int updated = jdbcTemplate.update(
+                "UPDATE upload_session_chunks SET size = ?, sha256 = ?, received_at = ? " +
+                        "WHERE upload_id = ? AND chunk_index = ?",
+                size, checksum, now, uploadId, chunkIndex);
+        if (updated == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO upload_session_chunks " +
+                        "(upload_id, chunk_index, size, sha256, received_at) VALUES (?, ?, ?, ?, ?)",
+                        uploadId, chunkIndex, size, checksum, now);
+            } catch (DuplicateKeyException ex) {
+                // Cùng chunk gửi song song 2 lần: bản kia đã ghi nhận
+            }
+        }
+    }
+
+    private List<Integer> receivedChunkIndexes(String uploadId) {
+        return jdbcTemplate.queryForList(
+                "SELECT chunk_index FROM upload_session_chunks WHERE upload_id = ? ORDER BY chunk_index",
+                Integer.class, uploadId);
+    }
+
+    private void discard(String uploadId) {
+        deleteSessionRows(uploadId);
+        Path part = partPath(uploadId);
+        // Chunk tạm còn sót (request bị ngắt giữa chừng khi node dừng)
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(part.getParent(), uploadId + ".*.chunk")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+            Files.deleteIfExists(part);
+        } catch (IOException ex) {
+            log.warn("Không xóa được file tạm của upload {}: {}", uploadId, ex.getMessage());
+        }
+    }
+
+    private void deleteSessionRows(String uploadId) {
+        jdbcTemplate.update("DELETE FROM upload_session_chunks WHERE upload_id = ?", uploadId);
+        jdbcTemplate.update("DELETE FROM upload_sessions WHERE upload_id = ?", uploadId);
+    }
+
+    private UploadSessionDTO toDTO(UploadSession session, List<Integer> received) {
+        // Gộp chỉ số liên tiếp thành khoảng [from, to]
+        List<int[]> ranges = new ArrayList<>();
+        for (int index : received) {
+            int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] == index - 1) {
+                last[1] = index;
+            } else {
+                ranges.add(new int[] { index, index });
+            }
+        }
+        long receivedBytes = 0;
+        for (int index : received) {
+            long position = (long) index * session.getChunkSize();
+            receivedBytes += Math.min(session.getChunkSize(), session.getTotalSize() - position);
+        }
+
+        UploadSessionDTO dto = new UploadSessionDTO();
+        dto.setUploadId(session.getUploadId());
+        dto.setFilename(session.getOriginalFilename());
+        dto.setTotalSize(session.getTotalSize());
+        dto.setChunkSize(session.getChunkSize());
+        dto.setChunkCount(session.getChunkCount());
+        dto.setReceivedChunks(received.size());
+        dto.setReceivedBytes(receivedBytes);
+        dto.setReceivedRanges(ranges);
+        dto.setStatus(session.getStatus().name());
+        dto.setExpiresAt(session.getExpiresAt());
+        return dto;
+    }
+
+    private Path partPath(String uploadId) {
+        try {
+            if (sessionLocation == null) {
+                Path location = Paths.get(uploadDir).toAbsolutePath().normalize().resolve("chunked");
+                Files.createDirectories(location);
+                sessionLocation = location;
+            }
+            return sessionLocation.resolve(uploadId + ".part");
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể truy cập thư mục upload", ex);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
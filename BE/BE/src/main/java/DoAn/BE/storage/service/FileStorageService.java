@@ -2,6 +2,7 @@ package DoAn.BE.storage.service;
 
 import DoAn.BE.common.exception.*;
 import DoAn.BE.project.repository.ProjectMemberRepository;
+import DoAn.BE.storage.config.FileSecurityConfig;
 import DoAn.BE.storage.dto.FileDTO;
 import DoAn.BE.storage.dto.FileUploadResponse;
 import DoAn.BE.storage.dto.StorageStatsDTO;
@@ -9,6 +10,7 @@ import DoAn.BE.storage.entity.File;
 import DoAn.BE.storage.entity.Folder;
 import DoAn.BE.storage.repository.FileRepository;
 import DoAn.BE.storage.repository.FolderRepository;
+import DoAn.BE.storage.repository.UploadSessionRepository;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
 import DoAn.BE.notification.service.StorageNotificationService;
@@ -19,21 +21,16 @@ import DoAn.BE.audit.entity.AuditLog;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 // Service quản lý file storage (upload, download, delete, quota, versioning)
@@ -44,15 +41,15 @@ public class FileStorageService {
 
     private final FileRepository fileRepository;
     private final FolderRepository folderRepository;
+    private final UploadSessionRepository uploadSessionRepository;
     private final UserRepository userRepository;
     private final ProjectMemberRepository projectMemberRepository;
     private final StorageNotificationService storageNotificationService;
     private final StorageProjectFileUploadListener projectFileUploadListener;
     private final FileValidator fileValidator;
     private final AuditLogService auditLogService;
-
-    @Value("${file.upload-dir:./uploads}")
-    private String uploadDir;
+    private final FileSecurityConfig fileSecurityConfig;
+    private final BlobStore blobStore;
 
     @Value("${app.storage.user-quota-gb:5}")
     private Long userQuotaGB;
@@ -60,27 +57,56 @@ public class FileStorageService {
     @Value("${app.storage.admin-quota-gb:10}")
     private Long adminQuotaGB;
 
-    private Path fileStorageLocation;
-
     @Transactional
     public FileUploadResponse uploadFile(MultipartFile file, Long folderId, Long userId, String ipAddress,
             String userAgent) {
-        // Validate user
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
-
-        // ✅ SECURITY: Validate file (extension, MIME type, size, malicious content)
+        // ✅ SECURITY: Validate metadata (extension, MIME type, size khai báo); nội dung kiểm tra khi ghi
         fileValidator.validateFile(file);
 
         String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
 
+        // Check quota + folder permission
+        checkUploadAllowed(userId, folderId, file.getSize());
+
+        try {
+            // 1 lần đọc: magic bytes + giới hạn size + SHA-256; nội dung đã có trong kho thì không ghi thêm
+            BlobStore.Blob blob = blobStore.store(file.getInputStream(), originalFilename,
+                    fileSecurityConfig.getMaxFileSize());
+            return saveUploadedFile(blob, originalFilename, file.getContentType(), folderId, userId, ipAddress,
+                    userAgent);
+        } catch (IOException ex) {
+            throw new FileStorageException("Không thể lưu file: " + originalFilename, ex);
+        }
+    }
+
+    // URL tải file qua API (kiểm tra quyền + Range); không trả đường dẫn trên đĩa ra client
+    public static String downloadUrl(Long fileId) {
+        return "/api/storage/files/" + fileId + "/download";
+    }
+
+    /**
+     * Kiểm tra trước khi nhận dữ liệu upload: người dùng, quota và quyền upload vào thư mục
+     * Dùng chung cho upload multipart và upload chunked (ChunkedUploadService)
+     */
+    @Transactional
+    public void checkUploadAllowed(Long userId, Long folderId, long fileSize) {
+        checkUploadAllowed(userId, folderId, fileSize, null);
+    }
+
+    /**
+     * Như trên; phiên chunked ownUploadId đang hoàn tất thành file này nên không tính phần dung lượng nó giữ chỗ
+     */
+    @Transactional
+    public void checkUploadAllowed(Long userId, Long folderId, long fileSize, String ownUploadId) {
+        userRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
+
         // Check quota
-        checkStorageQuota(userId, file.getSize());
+        checkStorageQuota(userId, fileSize, ownUploadId);
 
         // Validate folder if provided
-        Folder folder = null;
         if (folderId != null) {
-            folder = folderRepository.findById(folderId)
+            Folder folder = folderRepository.findById(folderId)
                     .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy thư mục"));
 
             // Check permission: owner OR project member
@@ -88,67 +114,122 @@ public class FileStorageService {
                 throw new ForbiddenException("Bạn không có quyền upload vào thư mục này");
             }
         }
+    }
 
-        try {
-            // Initialize storage location
-            initializeStorage();
-
-            // Generate unique filename
-            String fileExtension = getFileExtension(originalFilename);
-            String storedFilename = UUID.randomUUID().toString() + (fileExtension.isEmpty() ? "" : "." + fileExtension);
-
-            // Determine storage path
-            Path targetLocation = fileStorageLocation.resolve(storedFilename);
-
-            // Copy file to target location
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-            // Save file metadata to database
-            File fileEntity = new File();
-            fileEntity.setFilename(storedFilename);
-            fileEntity.setOriginalFilename(originalFilename);
-            fileEntity.setFilePath(targetLocation.toString());
-            fileEntity.setFileSize(file.getSize());
-            fileEntity.setMimeType(file.getContentType());
-            fileEntity.setFolder(folder);
-            fileEntity.setOwner(user);
-            fileEntity.setUploadIp(ipAddress);
-            fileEntity.setUploadUserAgent(userAgent);
-            fileEntity.setVersion(1);
-            fileEntity.setIsDeleted(false);
-
-            fileEntity = fileRepository.save(fileEntity);
-
-            // Gửi notification cho user về file upload thành công
-            log.info("File uploaded successfully: {} by user {}", originalFilename, userId);
-            storageNotificationService.createFileUploadNotification(
-                    userId,
-                    originalFilename,
-                    fileEntity.getFileSizeFormatted());
-
-            // Notify project members if this is a project file
-            projectFileUploadListener.notifyProjectMembersOnFileUpload(fileEntity);
-
-            // Build response
-            FileUploadResponse response = new FileUploadResponse();
-            response.setFileId(fileEntity.getFileId());
-            response.setFilename(storedFilename);
-            response.setOriginalFilename(originalFilename);
-            response.setFileSize(file.getSize());
-            response.setFileSizeFormatted(fileEntity.getFileSizeFormatted());
-            response.setMimeType(file.getContentType());
-            response.setDownloadUrl("/api/storage/files/" + fileEntity.getFileId() + "/download");
-            response.setMessage("Upload file thành công");
-
-            return response;
+    /**
+     * Tạo File cho blob vừa lưu, gửi notification và trả response upload
+     * Gọi trong transaction đã tăng ref_count của blob (rollback thì blob mới tạo bị xóa)
+     */
+    @Transactional
+    public FileUploadResponse saveUploadedFile(BlobStore.Blob blob, String originalFilename, String mimeType,
+            Long folderId, Long userId, String ipAddress, String userAgent) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
+        Folder folder = folderId != null
+                ? folderRepository.findById(folderId)
+                        .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy thư mục"))
+                : null;
+        String storedFilename = blob.path().getFileName().toString();
+
+        // Save file metadata to database
+        File fileEntity = new File();
+        fileEntity.setFilename(storedFilename);
+        fileEntity.setOriginalFilename(originalFilename);
+        fileEntity.setFilePath(blob.path().toString());
+        fileEntity.setFileSize(blob.size());
+        fileEntity.setSha256(blob.sha256());
+        fileEntity.setMimeType(mimeType);
+        fileEntity.setFolder(folder);
+        fileEntity.setOwner(user);
+        fileEntity.setUploadIp(ipAddress);
+        fileEntity.setUploadUserAgent(userAgent);
+        fileEntity.setVersion(1);
+        fileEntity.setIsDeleted(false);
+
+        fileEntity = fileRepository.save(fileEntity);
+
+        // Gửi notification cho user về file upload thành công
+        log.info("File uploaded successfully: {} by user {}", originalFilename, userId);
+        storageNotificationService.createFileUploadNotification(
+                userId,
+                originalFilename,
+                fileEntity.getFileSizeFormatted());
+
+        // Notify project members if this is a project file
+        projectFileUploadListener.notifyProjectMembersOnFileUpload(fileEntity);
+
+        // Build response
+        FileUploadResponse response = new FileUploadResponse();
+        response.setFileId(fileEntity.getFileId());
+        response.setFilename(storedFilename);
+        response.setOriginalFilename(originalFilename);
+        response.setFileSize(blob.size());
+        response.setFileSizeFormatted(fileEntity.getFileSizeFormatted());
+        response.setMimeType(mimeType);
+        response.setSha256(blob.sha256());
+        response.setDownloadUrl(downloadUrl(fileEntity.getFileId()));
+        response.setMessage("Upload file thành công");
+
+        return response;
+    }
 
-        } catch (IOException ex) {
-            throw new FileStorageException("Không thể lưu file: " + originalFilename, ex);
+    /**
+     * Sao chép file sang thư mục khác (vd. thư mục project): chỉ tạo File mới trỏ cùng blob, không chép dữ liệu
+     */
+    @Transactional
+    public FileDTO copyFile(Long fileId, Long targetFolderId, Long userId) {
+        File source = fileRepository.findById(fileId)
+                .orElseThrow(() -> new StorageFileNotFoundException("Không tìm thấy file"));
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
+
+        if (!canReadFile(source, userId)) {
+            throw new ForbiddenException("Bạn không có quyền sao chép file này");
+        }
+        if (source.getIsDeleted()) {
+            throw new StorageFileNotFoundException("File đã bị xóa");
+        }
+        if (source.getSha256() == null) {
+            throw new BadRequestException("File chưa được chuyển vào kho nội dung, không thể sao chép");
+        }
+
+        Folder folder = null;
+        if (targetFolderId != null) {
+            folder = folderRepository.findById(targetFolderId)
+                    .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy thư mục"));
+            if (!canAccessFolder(folder, userId)) {
+                throw new ForbiddenException("Bạn không có quyền upload vào thư mục này");
+            }
         }
+
+        checkStorageQuota(userId, source.getFileSize(), null);
+        BlobStore.Blob blob = blobStore.retain(source.getSha256());
+
+        File copy = new File();
+        copy.setFilename(blob.path().getFileName().toString());
+        copy.setOriginalFilename(source.getOriginalFilename());
+        copy.setFilePath(blob.path().toString());
+        copy.setFileSize(blob.size());
+        copy.setSha256(blob.sha256());
+        copy.setMimeType(source.getMimeType());
+        copy.setFolder(folder);
+        copy.setOwner(user);
+        copy.setVersion(1);
+        copy.setIsDeleted(false);
+        copy = fileRepository.save(copy);
+
+        log.info("File {} copied to folder {} by user {}", fileId, targetFolderId, userId);
+        projectFileUploadListener.notifyProjectMembersOnFileUpload(copy);
+
+        return convertToDTO(copy);
     }
 
+    /**
+     * Lấy file để tải: kiểm tra quyền, trạng thái xóa và file vật lý
+     * Audit lượt tải thành công do controller gọi recordDownload (bỏ qua 304 và request Range nối tiếp)
+     */
     @Transactional(readOnly = true)
-    public Resource downloadFile(Long fileId, Long userId) {
+    public File getFileForDownload(Long fileId, Long userId) {
         File file = fileRepository.findById(fileId)
                 .orElseThrow(() -> new StorageFileNotFoundException("Không tìm thấy file"));
 
@@ -156,7 +237,7 @@ public class FileStorageService {
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
 
         // Check permission: owner OR project member
-        if (!canAccessFile(file, userId)) {
+        if (!canReadFile(file, userId)) {
             // Audit failed download attempt
             auditLogService.logFailedAction(
                     user,
@@ -174,34 +255,29 @@ public class FileStorageService {
             throw new StorageFileNotFoundException("File đã bị xóa");
         }
 
-        try {
-            Path filePath = Paths.get(file.getFilePath()).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                // Log successful file download
-                auditLogService.logAction(
-                        user,
-                        "DOWNLOAD_FILE",
-                        "FILE",
-                        fileId,
-                        null,
-                        file.getOriginalFilename(),
-                        AuditLog.Severity.INFO,
-                        null,
-                        null);
-
-                log.info("User {} downloaded file: {} ({} bytes)",
-                        user.getUsername(), file.getOriginalFilename(), file.getFileSize());
-
-                return resource;
-            } else {
-                throw new StorageFileNotFoundException(
-                        "File không tồn tại hoặc không thể đọc: " + file.getOriginalFilename());
-            }
-        } catch (MalformedURLException ex) {
-            throw new StorageFileNotFoundException("File không tồn tại: " + file.getOriginalFilename());
+        Path filePath = Paths.get(file.getFilePath()).normalize();
+        if (!Files.isRegularFile(filePath) || !Files.isReadable(filePath)) {
+            throw new StorageFileNotFoundException(
+                    "File không tồn tại hoặc không thể đọc: " + file.getOriginalFilename());
         }
+        return file;
+    }
+
+    // Ghi audit lượt tải (AuditLogService chạy @Async, không chặn response)
+    public void recordDownload(File file, User user) {
+        auditLogService.logAction(
+                user,
+                "DOWNLOAD_FILE",
+                "FILE",
+                file.getFileId(),
+                null,
+                file.getOriginalFilename(),
+                AuditLog.Severity.INFO,
+                null,
+                null);
+
+        log.info("User {} downloaded file: {} ({} bytes)",
+                user.getUsername(), file.getOriginalFilename(), file.getFileSize());
     }
 
     @Transactional(readOnly = true)
@@ -210,7 +286,7 @@ public class FileStorageService {
                 .orElseThrow(() -> new StorageFileNotFoundException("Không tìm thấy file"));
 
         // Check permission: owner OR project member
-        if (!canAccessFile(file, userId)) {
+        if (!canReadFile(file, userId)) {
             throw new ForbiddenException("Bạn không có quyền xem file này");
         }
 
@@ -227,115 +303,17 @@ public class FileStorageService {
         userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
 
-        List<File> files;
-
-        switch (filter.toLowerCase()) {
-            case "company":
-                // Get files in COMPANY folders
-                files = fileRepository.findByFolder_FolderType(Folder.FolderType.COMPANY);
-                break;
-
-            case "project":
-                // Get project folders where user is a member
-                List<Long> userProjectIds = projectMemberRepository.findByUser_UserId(userId)
-                        .stream()
-                        .map(pm -> pm.getProject().getProjectId())
-                        .collect(Collectors.toList());
-
-                if (userProjectIds.isEmpty()) {
-                    files = List.of();
-                } else {
-                    List<Folder> projectFolders = userProjectIds.stream()
-                            .flatMap(projectId -> folderRepository.findByProject_ProjectId(projectId).stream())
-                            .collect(Collectors.toList());
-
-                    files = projectFolders.stream()
-                            .flatMap(folder -> fileRepository.findByFolder_FolderId(folder.getFolderId()).stream())
-                            .filter(f -> !f.getIsDeleted())
-                            .distinct()
-                            .collect(Collectors.toList());
-                }
-                break;
-
-            case "trash":
-                // 1. Personal files (owned by user)
-                List<File> myDeletedFiles = fileRepository.findByOwner_UserId(userId);
-
-                // 2. Project files (user is member of)
-                List<Long> myProjectIds = projectMemberRepository.findByUser_UserId(userId)
-                        .stream()
-                        .map(pm -> pm.getProject().getProjectId())
-                        .collect(Collectors.toList());
-
-                List<File> myProjectFiles = List.of();
-                if (!myProjectIds.isEmpty()) {
-                    List<Folder> projectsFolders = myProjectIds.stream()
-                            .flatMap(pid -> folderRepository.findByProject_ProjectId(pid).stream())
-                            .collect(Collectors.toList());
-
-                    myProjectFiles = projectsFolders.stream()
-                            .flatMap(f -> fileRepository.findByFolder_FolderId(f.getFolderId()).stream())
-                            .collect(Collectors.toList());
-                }
-
-                // Combine and filter
-                java.util.Set<File> allDeleted = new java.util.HashSet<>();
-                allDeleted.addAll(myDeletedFiles);
-                allDeleted.addAll(myProjectFiles);
-
-                return allDeleted.stream()
-                        .filter(File::getIsDeleted)
-                        .map(this::convertToDTO)
-                        .sorted((f1, f2) -> f2.getUpdatedAt().compareTo(f1.getUpdatedAt()))
-                        .collect(Collectors.toList());
-
-            case "all":
-                // 1. Personal files
-                List<File> personalFiles = fileRepository.findByOwner_UserId(userId);
-
-                // 2. Company files
-                List<File> companyFiles = fileRepository.findByFolder_FolderType(Folder.FolderType.COMPANY);
-
-                // 3. Project files
-                List<Long> projectIds = projectMemberRepository.findByUser_UserId(userId)
-                        .stream()
-                        .map(pm -> pm.getProject().getProjectId())
-                        .collect(Collectors.toList());
-
-                List<File> projFiles = List.of();
-                if (!projectIds.isEmpty()) {
-                    List<Folder> projFolders = projectIds.stream()
-                            .flatMap(projectId -> folderRepository.findByProject_ProjectId(projectId).stream())
-                            .collect(Collectors.toList());
-
-                    projFiles = projFolders.stream()
-                            .flatMap(folder -> fileRepository.findByFolder_FolderId(folder.getFolderId()).stream())
-                            .filter(f -> !f.getIsDeleted())
-                            .collect(Collectors.toList());
-                }
-
-                // Combine all
-                java.util.Set<File> allFilesSet = new java.util.HashSet<>();
-                allFilesSet.addAll(personalFiles);
-                allFilesSet.addAll(companyFiles);
-                allFilesSet.addAll(projFiles);
-
-                return allFilesSet.stream()
-                        .filter(f -> !f.getIsDeleted())
-                        .map(this::convertToDTO)
-                        .sorted((f1, f2) -> f2.getCreatedAt().compareTo(f1.getCreatedAt()))
-                        .collect(Collectors.toList());
-
-            case "personal":
-            default:
-                files = fileRepository.findByOwner_UserId(userId);
-                break;
-        }
+        // Lọc, khử trùng và sắp xếp trên DB (mỗi file 1 dòng, có index), không tải hết rồi lọc trong bộ nhớ
+        List<File> files = switch (filter.toLowerCase()) {
+            case "company" -> fileRepository.findActiveByFolderType(Folder.FolderType.COMPANY);
+            case "project" -> fileRepository.findActiveInMemberProjects(userId);
+            case "trash" -> fileRepository.findDeletedAccessible(userId);
+            case "all" -> fileRepository.findActiveAccessible(userId);
+            default -> fileRepository.findActiveByOwner(userId);
+        };
 
         return files.stream()
-                .filter(f -> !f.getIsDeleted())
                 .map(this::convertToDTO)
-                .sorted((f1, f2) -> f2.getCreatedAt().compareTo(f1.getCreatedAt()))
                 .collect(Collectors.toList());
     }
 
@@ -381,8 +359,18 @@ public class FileStorageService {
             throw new ForbiddenException("Bạn không có quyền xóa file này");
         }
 
+        // File đính kèm trong chat: tin nhắn giữ lại, chỉ mất file đính kèm
+        fileRepository.detachFromMessages(List.of(fileId));
+
+        // File trong kho nội dung: bỏ tham chiếu, blob chỉ bị xóa khi không còn File nào dùng
+        if (file.getSha256() != null) {
+            fileRepository.delete(file);
+            blobStore.release(file.getSha256());
+            return;
+        }
+
         try {
-            // Delete physical file
+            // File cũ (trước kho nội dung): xóa file vật lý
             Path filePath = Paths.get(file.getFilePath());
             Files.deleteIfExists(filePath);
 
@@ -429,54 +417,18 @@ public class FileStorageService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
 
-        // Get ALL accessible folders (owned + project)
-        List<Folder> ownedFolders = folderRepository.findByOwner_UserId(userId);
-
-        // Get project folders where user is a member
-        List<Long> userProjectIds = projectMemberRepository.findByUser_UserId(userId)
-                .stream()
-                .map(pm -> pm.getProject().getProjectId())
-                .toList();
-
-        List<Folder> projectFolders = userProjectIds.isEmpty()
-                ? List.of()
-                : userProjectIds.stream()
-                        .flatMap(projectId -> folderRepository.findByProject_ProjectId(projectId).stream())
-                        .filter(f -> !ownedFolders.contains(f)) // Avoid duplicates
-                        .toList();
-
-        // Combine all accessible folders
-        List<Folder> allFolders = new java.util.ArrayList<>(ownedFolders);
-        allFolders.addAll(projectFolders);
-
-        // Get ALL accessible files (owned + in accessible folders)
-        List<File> ownedFiles = fileRepository.findByOwner_UserId(userId);
-
-        // Get files from accessible project folders
-        List<File> projectFiles = projectFolders.stream()
-                .flatMap(folder -> fileRepository.findByFolder_FolderId(folder.getFolderId()).stream())
-                .filter(f -> !ownedFiles.contains(f)) // Avoid duplicates
-                .filter(f -> !f.getIsDeleted())
-                .toList();
-
-        // Combine all accessible files
-        List<File> allFiles = new java.util.ArrayList<>(ownedFiles);
-        allFiles.addAll(projectFiles);
-
-        // Calculate stats
-        long totalFiles = allFiles.stream().filter(f -> !f.getIsDeleted()).count();
-        long totalFolders = allFolders.size();
-        long totalSize = allFiles.stream()
-                .filter(f -> !f.getIsDeleted())
-                .mapToLong(File::getFileSize)
-                .sum();
-
-        // Count file types
-        long fileTypes = allFiles.stream()
-                .filter(f -> !f.getIsDeleted())
-                .map(f -> f.getMimeType() != null ? f.getMimeType().split("/")[0] : "unknown")
-                .distinct()
-                .count();
+        // Tổng hợp trên DB: SUM/COUNT theo mimeType cho file của tôi + file trong thư mục project của tôi
+        long totalFiles = 0;
+        long totalSize = 0;
+        java.util.Set<String> topLevelTypes = new java.util.HashSet<>();
+        for (Object[] row : fileRepository.getStatsByMimeTypeAccessible(userId)) {
+            String mimeType = (String) row[0];
+            totalFiles += ((Number) row[1]).longValue();
+            totalSize += ((Number) row[2]).longValue();
+            topLevelTypes.add(mimeType != null ? mimeType.split("/")[0] : "unknown");
+        }
+        long fileTypes = topLevelTypes.size();
+        long totalFolders = folderRepository.countAccessible(userId);
 
         // Determine quota based on role
         long quotaBytes = (user.getRole().name().equals("ADMIN") ? adminQuotaGB : userQuotaGB) * 1024 * 1024 * 1024;
@@ -499,22 +451,13 @@ public class FileStorageService {
     }
 
     // Helper methods
-    private void initializeStorage() throws IOException {
-        if (fileStorageLocation == null) {
-            fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
-            Files.createDirectories(fileStorageLocation);
-        }
-    }
-
-    private void checkStorageQuota(Long userId, long fileSize) {
+    // Đã dùng = file đang có + dung lượng các phiên upload chunked đang mở (đã giữ chỗ, part file nằm trên đĩa)
+    private void checkStorageQuota(Long userId, long fileSize, String excludeUploadId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy người dùng"));
 
-        List<File> userFiles = fileRepository.findByOwner_UserId(userId);
-        long currentUsage = userFiles.stream()
-                .filter(f -> !f.getIsDeleted())
-                .mapToLong(File::getFileSize)
-                .sum();
+        long currentUsage = fileRepository.sumActiveSizeByOwner(userId)
+                + uploadSessionRepository.sumOpenSizeByOwner(userId, excludeUploadId);
 
         long quotaBytes = (user.getRole().name().equals("ADMIN") ? adminQuotaGB : userQuotaGB) * 1024 * 1024 * 1024;
         long newUsage = currentUsage + fileSize;
@@ -541,13 +484,6 @@ public class FileStorageService {
         }
     }
 
-    private String getFileExtension(String filename) {
-        if (filename != null && filename.contains(".")) {
-            return filename.substring(filename.lastIndexOf(".") + 1);
-        }
-        return "";
-    }
-
     private String formatSize(long bytes) {
         if (bytes == 0)
             return "0 B";
@@ -612,6 +548,11 @@ public class FileStorageService {
         return false;
     }
 
+    // Quyền đọc (xem/tải/sao chép): như canAccessFile + thành viên phòng chat có tin nhắn đính kèm file
+    private boolean canReadFile(File file, Long userId) {
+        return canAccessFile(file, userId) || fileRepository.isAttachedInRoomOfMember(file.getFileId(), userId);
+    }
+
     private FileDTO convertToDTO(File file) {
         FileDTO dto = new FileDTO();
         dto.setFileId(file.getFileId());
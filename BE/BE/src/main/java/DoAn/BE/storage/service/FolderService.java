@@ -6,7 +6,9 @@ import DoAn.BE.project.repository.ProjectRepository;
 import DoAn.BE.project.repository.ProjectMemberRepository;
 import DoAn.BE.storage.dto.CreateFolderRequest;
 import DoAn.BE.storage.dto.FolderDTO;
+import DoAn.BE.storage.entity.File;
 import DoAn.BE.storage.entity.Folder;
+import DoAn.BE.storage.repository.FileRepository;
 import DoAn.BE.storage.repository.FolderRepository;
 import DoAn.BE.user.entity.User;
 import DoAn.BE.user.repository.UserRepository;
@@ -15,7 +17,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 // Service quản lý folder (CRUD, tree structure, project integration)
@@ -25,9 +29,11 @@ import java.util.stream.Collectors;
 public class FolderService {
 
     private final FolderRepository folderRepository;
+    private final FileRepository fileRepository;
     private final UserRepository userRepository;
     private final ProjectRepository projectRepository;
     private final ProjectMemberRepository projectMemberRepository;
+    private final BlobStore blobStore;
 
     @Transactional
     public FolderDTO createFolder(CreateFolderRequest request, Long userId) {
@@ -244,7 +250,30 @@ public class FolderService {
             throw new ForbiddenException("Bạn không có quyền xóa thư mục này");
         }
 
+        // File trong cây thư mục bị xóa theo cascade -> bỏ tham chiếu blob của từng file
+        List<Long> fileIds = new ArrayList<>();
+        List<String> blobHashes = new ArrayList<>();
+        collectFiles(folder, fileIds, blobHashes);
+
+        // File đã gửi trong chat rồi chuyển vào thư mục: gỡ khỏi tin nhắn (FK messages.file_id)
+        if (!fileIds.isEmpty()) {
+            fileRepository.detachFromMessages(fileIds);
+        }
         folderRepository.delete(folder);
+        blobHashes.forEach(blobStore::release);
+    }
+
+    private void collectFiles(Folder folder, List<Long> fileIds, List<String> hashes) {
+        if (folder.getFiles() != null) {
+            folder.getFiles().forEach(file -> fileIds.add(file.getFileId()));
+            folder.getFiles().stream()
+                    .map(File::getSha256)
+                    .filter(Objects::nonNull)
+                    .forEach(hashes::add);
+        }
+        if (folder.getSubFolders() != null) {
+            folder.getSubFolders().forEach(subFolder -> collectFiles(subFolder, fileIds, hashes));
+        }
     }
 
     // Helper methods
@@ -1,19 +1,16 @@
 package DoAn.BE.storage.service;
 
 import DoAn.BE.storage.entity.File;
-import DoAn.BE.storage.entity.Folder;
 import DoAn.BE.storage.repository.FileRepository;
-import DoAn.BE.storage.repository.FolderRepository;
-import DoAn.BE.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service cung cấp tính năng nâng cao cho Storage
@@ -26,8 +23,9 @@ import java.util.stream.Collectors;
 @Slf4j
 public class StorageAdvancedService {
     
+    private static final int MAX_SEARCH_RESULTS = 200;
+    
     private final FileRepository fileRepository;
-    private final FolderRepository folderRepository;
     
     /**
      * Lấy danh sách files được share với user
@@ -37,20 +35,8 @@ public class StorageAdvancedService {
     public List<File> getSharedFiles(Long userId) {
         log.info("Getting shared files for user {}", userId);
         
-        // Get all SHARED folders
-        List<Folder> sharedFolders = folderRepository.findAll().stream()
-            .filter(f -> f.getFolderType() == Folder.FolderType.SHARED)
-            .collect(Collectors.toList());
-        
-        List<File> sharedFiles = new ArrayList<>();
-        for (Folder folder : sharedFolders) {
-            List<File> folderFiles = fileRepository.findByFolder(folder);
-            // Exclude files owned by current user
-            sharedFiles.addAll(folderFiles.stream()
-                .filter(f -> f.getOwner() != null && !f.getOwner().getUserId().equals(userId))
-                .filter(f -> !f.getIsDeleted())
-                .collect(Collectors.toList()));
-        }
+        // 1 query join files-folders, bỏ file của chính user
+        List<File> sharedFiles = fileRepository.findActiveSharedWith(userId);
         
         log.info("Found {} shared files for user {}", sharedFiles.size(), userId);
         return sharedFiles;
@@ -63,17 +49,10 @@ public class StorageAdvancedService {
     public List<File> getRecentFiles(Long userId, int limit) {
         log.info("Getting recent {} files for user {}", limit, userId);
         
-        // Get all files of user
-        List<File> userFiles = fileRepository.findByOwner_UserId(userId);
-        
-        // Filter last 30 days and sort by createdAt desc
+        // Lọc 30 ngày, sắp xếp và giới hạn số dòng trên DB
         LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        List<File> recentFiles = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .filter(f -> f.getCreatedAt() != null && f.getCreatedAt().isAfter(thirtyDaysAgo))
-            .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-            .limit(limit)
-            .collect(Collectors.toList());
+        List<File> recentFiles = fileRepository.findRecentByOwner(userId, thirtyDaysAgo,
+            PageRequest.of(0, Math.max(1, limit)));
         
         log.info("Found {} recent files for user {}", recentFiles.size(), userId);
         return recentFiles;
@@ -90,18 +69,12 @@ public class StorageAdvancedService {
             return new ArrayList<>();
         }
         
-        String searchKeyword = keyword.toLowerCase();
-        
-        // Get all files of user
-        List<File> userFiles = fileRepository.findByOwner_UserId(userId);
-        
-        // Search by original filename
-        List<File> results = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .filter(f -> f.getOriginalFilename() != null && 
-                        f.getOriginalFilename().toLowerCase().contains(searchKeyword))
-            .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-            .collect(Collectors.toList());
+        // Escape ký tự đại diện của LIKE để keyword chỉ khớp theo chuỗi con
+        String pattern = "%" + keyword.trim().toLowerCase()
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_") + "%";
+        List<File> results = fileRepository.searchByOwner(userId, pattern, PageRequest.of(0, MAX_SEARCH_RESULTS));
         
         log.info("Found {} files matching keyword: {}", results.size(), keyword);
         return results;
@@ -114,32 +87,27 @@ public class StorageAdvancedService {
     public FileStatistics getUserFileStatistics(Long userId) {
         log.info("Getting file statistics for user {}", userId);
         
-        List<File> userFiles = fileRepository.findByOwner_UserId(userId);
-        
-        long totalFiles = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .count();
-        
-        long totalSize = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .mapToLong(File::getFileSize)
-            .sum();
-        
-        // Count by type
-        long documentsCount = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .filter(f -> isDocument(f.getMimeType()))
-            .count();
-        
-        long imagesCount = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .filter(f -> isImage(f.getMimeType()))
-            .count();
-        
-        long videosCount = userFiles.stream()
-            .filter(f -> !f.getIsDeleted())
-            .filter(f -> isVideo(f.getMimeType()))
-            .count();
+        // SUM/COUNT GROUP BY mimeType trên DB, phân loại trên vài dòng kết quả
+        long totalFiles = 0;
+        long totalSize = 0;
+        long documentsCount = 0;
+        long imagesCount = 0;
+        long videosCount = 0;
+        for (Object[] row : fileRepository.getStatsByMimeTypeForOwner(userId)) {
+            String mimeType = (String) row[0];
+            long count = ((Number) row[1]).longValue();
+            totalFiles += count;
+            totalSize += ((Number) row[2]).longValue();
+            if (isDocument(mimeType)) {
+                documentsCount += count;
+            }
+            if (isImage(mimeType)) {
+                imagesCount += count;
+            }
+            if (isVideo(mimeType)) {
+                videosCount += count;
+            }
+        }
         
         return new FileStatistics(totalFiles, totalSize, documentsCount, imagesCount, videosCount);
     }
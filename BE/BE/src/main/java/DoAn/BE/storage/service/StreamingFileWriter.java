@@ -0,0 +1,135 @@
+package DoAn.BE.storage.service;
+
+import DoAn.BE.common.exception.BadRequestException;
+import DoAn.BE.storage.validator.FileValidator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Ghi file upload lên đĩa trong 1 lần đọc stream, bộ nhớ cố định (1 buffer / upload)
+ * - Nhận dạng nội dung theo magic bytes của SNIFF_LENGTH byte đầu (FileValidator.validateContent)
+ * - Đếm byte thực tế, vượt maxBytes thì dừng ngay
+ * - Tính SHA-256 trên cùng buffer, ghi qua FileChannel vào file tạm trong thư mục chỉ định
+ * Thành công: trả file tạm cho nơi gọi (BlobStore move vào vị trí theo hash); lỗi: file tạm bị xóa
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamingFileWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileValidator fileValidator;
+
+    public record StoredFile(Path path, long size, String sha256) {
+    }
+
+    /**
+     * @param directory thư mục chứa file tạm (cùng ổ đĩa với đích để move atomic)
+     * @param filename  tên gốc (lấy extension để đối chiếu magic bytes)
+     */
+    public StoredFile write(InputStream in, Path directory, String filename, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] header = new byte[FileValidator.SNIFF_LENGTH];
+        int headerLength = 0;
+        boolean sniffed = false;
+        long size = 0;
+
+        Path temp = Files.createTempFile(directory, "upload", ".tmp");
+        boolean completed = false;
+        try {
+            try (InputStream input = in;
+                    FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new BadRequestException(String.format("❌ File quá lớn. Giới hạn: %.2f MB",
+                                maxBytes / (1024.0 * 1024.0)));
+                    }
+
+                    if (!sniffed) {
+                        int count = Math.min(read, header.length - headerLength);
+                        System.arraycopy(buffer, 0, header, headerLength, count);
+                        headerLength += count;
+                        if (headerLength == header.length) {
+                            fileValidator.validateContent(filename, header, headerLength);
+                            sniffed = true;
+                        }
+                    }
+
+                    digest.update(buffer, 0, read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                }
+            }
+
+            if (size == 0) {
+                throw new BadRequestException("File không được để trống");
+            }
+            // File nhỏ hơn SNIFF_LENGTH
+            if (!sniffed) {
+                fileValidator.validateContent(filename, header, headerLength);
+            }
+
+            completed = true;
+            return new StoredFile(temp, size, HexFormat.of().formatHex(digest.digest()));
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Kiểm tra magic bytes và tính SHA-256 của file đã nằm trên đĩa (file ghép từ upload chunked), 1 lần đọc
+     */
+    public StoredFile inspect(Path file, String filename) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                throw new BadRequestException("File không được để trống");
+            }
+
+            // Đọc đủ phần đầu để nhận dạng nội dung
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.limit((int) Math.min(size, FileValidator.SNIFF_LENGTH));
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // đọc tiếp tới khi đủ
+            }
+            fileValidator.validateContent(filename, buffer.array(), buffer.position());
+            buffer.limit(buffer.capacity());
+
+            do {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            } while (channel.read(buffer) != -1);
+
+            return new StoredFile(file, size, HexFormat.of().formatHex(digest.digest()));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
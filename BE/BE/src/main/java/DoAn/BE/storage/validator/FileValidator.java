@@ -7,6 +7,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Set;
+
 /**
  * Validator cho file upload security
  */
@@ -15,6 +17,15 @@ import org.springframework.web.multipart.MultipartFile;
 @Slf4j
 public class FileValidator {
     
+    // Số byte đầu file dùng để nhận dạng nội dung (tar có chữ ký "ustar" ở offset 257)
+    public static final int SNIFF_LENGTH = 512;
+    
+    // Loại file dạng text: không được chứa null byte ở phần đầu
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+        "txt", "svg", "java", "js", "ts", "jsx", "tsx", "json", "xml", "yaml", "yml",
+        "html", "css", "scss", "sass", "md", "sql", "properties", "conf", "config"
+    );
+    
     private final FileSecurityConfig fileSecurityConfig;
     
     /**
@@ -69,23 +80,41 @@ public class FileValidator {
             );
         }
         
-        // 5. Check for null bytes (possible malicious file)
-        try {
-            byte[] bytes = file.getBytes();
-            for (int i = 0; i < Math.min(bytes.length, 1000); i++) {
-                if (bytes[i] == 0 && i < 100) {
-                    // Null byte found early in file (suspicious)
-                    log.warn("⚠️ Suspicious null byte detected in file: {}", originalFilename);
-                    // Don't throw, just log (some binary files có null bytes hợp lệ)
-                    break;
+        // 5. Nội dung (magic bytes) được kiểm tra khi ghi file: validateContent
+        
+        log.info("✅ File validation passed: {} ({}, {} bytes)", 
+            originalFilename, extension, fileSize);
+    }
+    
+    /**
+     * Kiểm tra nội dung theo magic bytes của phần đầu file (gọi khi đang stream file lên đĩa)
+     * - Chặn file thực thi (PE, ELF, Mach-O) bất kể extension
+     * - Extension có chữ ký đã biết thì nội dung phải khớp chữ ký
+     * - File text không được chứa null byte
+     */
+    public void validateContent(String filename, byte[] header, int length) {
+        if (isExecutable(header, length)) {
+            log.warn("⚠️ Executable content detected in file: {}", filename);
+            throw new BadRequestException("❌ Nội dung file là chương trình thực thi, không được phép upload");
+        }
+        
+        String extension = getFileExtension(filename);
+        if (TEXT_EXTENSIONS.contains(extension)) {
+            for (int i = 0; i < length; i++) {
+                if (header[i] == 0) {
+                    log.warn("⚠️ Null byte in text file: {}", filename);
+                    throw new BadRequestException(
+                        String.format("❌ Nội dung file không phải văn bản như loại .%s", extension));
                 }
             }
-        } catch (Exception e) {
-            log.error("Error reading file bytes: {}", e.getMessage());
+            return;
         }
         
-        log.info("✅ File validation passed: {} ({}, {} bytes)", 
-            originalFilename, extension, fileSize);
+        if (!matchesSignature(extension, header, length)) {
+            log.warn("⚠️ Content does not match extension .{}: {}", extension, filename);
+            throw new BadRequestException(
+                String.format("❌ Nội dung file không khớp với loại .%s", extension));
+        }
     }
     
     /**
@@ -108,6 +137,49 @@ public class FileValidator {
         }
     }
     
+    private static boolean isExecutable(byte[] h, int n) {
+        return startsWith(h, n, 'M', 'Z')
+            || startsWith(h, n, 0x7F, 'E', 'L', 'F')
+            || startsWith(h, n, 0xFE, 0xED, 0xFA, 0xCE) || startsWith(h, n, 0xFE, 0xED, 0xFA, 0xCF)
+            || startsWith(h, n, 0xCE, 0xFA, 0xED, 0xFE) || startsWith(h, n, 0xCF, 0xFA, 0xED, 0xFE);
+    }
+    
+    // Extension không có trong danh sách thì không kiểm tra chữ ký
+    private static boolean matchesSignature(String extension, byte[] h, int n) {
+        return switch (extension) {
+            case "pdf" -> startsWith(h, n, '%', 'P', 'D', 'F');
+            case "png" -> startsWith(h, n, 0x89, 'P', 'N', 'G');
+            case "jpg", "jpeg" -> startsWith(h, n, 0xFF, 0xD8, 0xFF);
+            case "gif" -> startsWith(h, n, 'G', 'I', 'F', '8');
+            case "bmp" -> startsWith(h, n, 'B', 'M');
+            case "webp" -> startsWith(h, n, 'R', 'I', 'F', 'F') && n >= 12
+                && h[8] == 'W' && h[9] == 'E' && h[10] == 'B' && h[11] == 'P';
+            // Office Open XML / OpenDocument là file zip
+            case "zip", "docx", "xlsx", "pptx", "odt", "ods", "odp" ->
+                startsWith(h, n, 'P', 'K', 0x03, 0x04) || startsWith(h, n, 'P', 'K', 0x05, 0x06);
+            // Office 97-2003 (OLE compound file)
+            case "doc", "xls", "ppt" -> startsWith(h, n, 0xD0, 0xCF, 0x11, 0xE0);
+            case "rtf" -> startsWith(h, n, '{', '\\', 'r', 't', 'f');
+            case "rar" -> startsWith(h, n, 'R', 'a', 'r', '!');
+            case "7z" -> startsWith(h, n, '7', 'z', 0xBC, 0xAF, 0x27, 0x1C);
+            case "gz" -> startsWith(h, n, 0x1F, 0x8B);
+            case "tar" -> n >= 262 && h[257] == 'u' && h[258] == 's' && h[259] == 't' && h[260] == 'a' && h[261] == 'r';
+            default -> true;
+        };
+    }
+    
+    private static boolean startsWith(byte[] h, int n, int... signature) {
+        if (n < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((h[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     /**
      * Get file extension
      */
@@ -0,0 +1,57 @@
+package DoAn.BE.user.config;
+
+import DoAn.BE.storage.service.AvatarStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Chuyển avatar base64 cũ (users.avatar_data NVARCHAR(MAX)) sang file content-addressed + users.avatar_url
+// Chạy mỗi lần start nhưng chỉ xử lý các dòng còn avatar_data, chuyển thành công thì NULL cột cũ
+@Component
+@Order(0)
+@Slf4j
+public class AvatarDataMigration implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AvatarStorageService avatarStorageService;
+
+    public AvatarDataMigration(JdbcTemplate jdbcTemplate, AvatarStorageService avatarStorageService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.avatarStorageService = avatarStorageService;
+    }
+
+    @Override
+    public void run(String... args) {
+        Integer hasLegacyColumn = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN COL_LENGTH('users', 'avatar_data') IS NULL THEN 0 ELSE 1 END", Integer.class);
+        if (hasLegacyColumn == null || hasLegacyColumn == 0) {
+            return;
+        }
+
+        // Đọc từng dòng (không giữ base64 trong bộ nhớ), chỉ gom lại userId + URL ngắn
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query("SELECT user_id, avatar_data FROM users WHERE avatar_data IS NOT NULL", rs -> {
+            long userId = rs.getLong(1);
+            String legacy = rs.getString(2);
+            try {
+                updates.add(new Object[] { avatarStorageService.normalize(legacy), userId });
+            } catch (RuntimeException e) {
+                // Giữ nguyên avatar_data, không mất dữ liệu gốc; lần start sau thử lại
+                log.warn("⚠️ Không chuyển được avatar của user {}, giữ nguyên avatar_data: {}", userId, e.getMessage());
+            }
+        });
+
+        if (updates.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE users SET avatar_url = COALESCE(avatar_url, ?), avatar_data = NULL WHERE user_id = ?",
+                updates);
+        log.info("✅ Migrated {} avatars from users.avatar_data to avatar storage", updates.size());
+    }
+}
@@ -10,6 +10,7 @@ import DoAn.BE.common.util.SecurityUtil;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -70,6 +71,17 @@ public class ProfileController {
         return ResponseEntity.ok(userMapper.toDTO(user));
     }
 
+    /**
+     * Upload ảnh đại diện (lưu theo nội dung, user chỉ giữ URL)
+     * POST /api/profile/avatar
+     */
+    @PostMapping("/avatar")
+    public ResponseEntity<UserDTO> uploadAvatar(@RequestParam("file") MultipartFile file) {
+        Long userId = getCurrentUserId();
+        User user = profileService.updateAvatar(userId, file);
+        return ResponseEntity.ok(userMapper.toDTO(user));
+    }
+
     /**
      * Đổi mật khẩu
      * POST /api/profile/change-password
@@ -40,7 +40,9 @@ public class User {
     @Column(name = "phone_number", length = 15, columnDefinition = "NVARCHAR(15)")
     private String phoneNumber;
 
-    @Column(name = "avatar_data", columnDefinition = "NVARCHAR(MAX)")
+    // Chỉ lưu URL ngắn (/api/public/avatars/{sha256}.{ext} hoặc URL ngoài); ảnh nằm trong storage
+    // Cột cũ avatar_data (base64) được AvatarDataMigration chuyển sang khi khởi động
+    @Column(name = "avatar_url", length = 500, columnDefinition = "NVARCHAR(500)")
     private String avatarUrl;
 
     // Enum Role: ADMIN / MANAGER / EMPLOYEE
@@ -1,6 +1,7 @@
 package DoAn.BE.user.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Find by unique fields
     Optional<User> findByUsername(String username);
 
+    List<User> findByUsernameIn(Collection<String> usernames);
+
     Optional<User> findByEmail(String email);
 
     // Check exists
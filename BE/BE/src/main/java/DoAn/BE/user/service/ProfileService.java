@@ -2,10 +2,13 @@ package DoAn.BE.user.service;
 
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
+import DoAn.BE.auth.service.PrincipalCache;
 import DoAn.BE.common.exception.BadRequestException;
 import DoAn.BE.common.exception.EntityNotFoundException;
 import DoAn.BE.hr.repository.NhanVienRepository;
+import DoAn.BE.storage.service.AvatarStorageService;
 import DoAn.BE.notification.service.AuthNotificationService;
 import DoAn.BE.user.dto.ChangePasswordRequest;
 import DoAn.BE.user.dto.UpdateUserRequest;
@@ -24,13 +27,18 @@ public class ProfileService {
     private final PasswordEncoder passwordEncoder;
     private final AuthNotificationService authNotificationService;
     private final NhanVienRepository nhanVienRepository;
+    private final PrincipalCache principalCache;
+    private final AvatarStorageService avatarStorageService;
 
     public ProfileService(UserRepository userRepository, PasswordEncoder passwordEncoder,
-            AuthNotificationService authNotificationService, NhanVienRepository nhanVienRepository) {
+            AuthNotificationService authNotificationService, NhanVienRepository nhanVienRepository,
+            PrincipalCache principalCache, AvatarStorageService avatarStorageService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authNotificationService = authNotificationService;
         this.nhanVienRepository = nhanVienRepository;
+        this.principalCache = principalCache;
+        this.avatarStorageService = avatarStorageService;
     }
 
     public User getCurrentUserProfile(Long userId) {
@@ -48,10 +56,11 @@ public class ProfileService {
             user.setPhoneNumber(request.getPhoneNumber());
         }
         if (request.getAvatarUrl() != null) {
-            user.setAvatarUrl(request.getAvatarUrl());
+            user.setAvatarUrl(avatarStorageService.normalize(request.getAvatarUrl()));
         }
 
         User savedUser = userRepository.save(user);
+        principalCache.invalidateUser(userId);
 
         // Also update NhanVien if exists
         updateNhanVienInfo(userId, request);
@@ -59,6 +68,14 @@ public class ProfileService {
         return savedUser;
     }
 
+    public User updateAvatar(Long userId, MultipartFile file) {
+        User user = getCurrentUserProfile(userId);
+        user.setAvatarUrl(avatarStorageService.store(file));
+        User savedUser = userRepository.save(user);
+        principalCache.invalidateUser(userId);
+        return savedUser;
+    }
+
     private void updateNhanVienInfo(Long userId, UpdateUserRequest request) {
         // Find NhanVien by userId (if exists)
         DoAn.BE.hr.entity.NhanVien nhanVien = nhanVienRepository.findByUser_UserId(userId).orElse(null);
@@ -90,6 +107,7 @@ public class ProfileService {
         // Set new password
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        principalCache.invalidateUser(userId);
 
         // Gửi notification
         authNotificationService.createPasswordChangedNotification(userId);
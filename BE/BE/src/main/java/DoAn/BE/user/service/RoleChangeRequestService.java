@@ -1,5 +1,6 @@
 package DoAn.BE.user.service;
 
+import DoAn.BE.auth.service.PrincipalCache;
 import DoAn.BE.common.exception.BadRequestException;
 import DoAn.BE.common.exception.EntityNotFoundException;
 import DoAn.BE.common.util.PermissionUtil;
@@ -25,13 +26,16 @@ public class RoleChangeRequestService {
     private final RoleChangeRequestRepository requestRepository;
     private final UserRepository userRepository;
     private final HRNotificationService hrNotificationService;
+    private final PrincipalCache principalCache;
     
     public RoleChangeRequestService(RoleChangeRequestRepository requestRepository,
                                    UserRepository userRepository,
-                                   HRNotificationService hrNotificationService) {
+                                   HRNotificationService hrNotificationService,
+                                   PrincipalCache principalCache) {
         this.requestRepository = requestRepository;
         this.userRepository = userRepository;
         this.hrNotificationService = hrNotificationService;
+        this.principalCache = principalCache;
     }
     
     // HR Manager tạo yêu cầu thay đổi role
@@ -98,6 +102,7 @@ public class RoleChangeRequestService {
         User targetUser = request.getTargetUser();
         targetUser.setRole(request.getRequestedRole());
         userRepository.save(targetUser);
+        principalCache.invalidateUser(targetUser.getUserId());
         
         requestRepository.save(request);
         
@@ -8,6 +8,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import DoAn.BE.auth.service.PrincipalCache;
 import DoAn.BE.common.exception.BadRequestException;
 import DoAn.BE.common.exception.DuplicateException;
 import DoAn.BE.common.exception.EntityNotFoundException;
@@ -21,6 +22,7 @@ import DoAn.BE.hr.entity.PhongBan;
 import DoAn.BE.hr.repository.ChucVuRepository;
 import DoAn.BE.hr.repository.NhanVienRepository;
 import DoAn.BE.hr.repository.PhongBanRepository;
+import DoAn.BE.storage.service.AvatarStorageService;
 import DoAn.BE.user.dto.CreateAccountWithEmployeeRequest;
 import DoAn.BE.user.dto.CreateUserRequest;
 import DoAn.BE.user.dto.UpdatePasswordRequest;
@@ -44,11 +46,14 @@ public class UserService {
     private final ChucVuRepository chucVuRepository;
     private final AuthNotificationService authNotificationService;
     private final AuditLogService auditLogService;
+    private final PrincipalCache principalCache;
+    private final AvatarStorageService avatarStorageService;
 
     public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
             NhanVienRepository nhanVienRepository, PhongBanRepository phongBanRepository,
             ChucVuRepository chucVuRepository, AuthNotificationService authNotificationService,
-            AuditLogService auditLogService) {
+            AuditLogService auditLogService, PrincipalCache principalCache,
+            AvatarStorageService avatarStorageService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.nhanVienRepository = nhanVienRepository;
@@ -56,6 +61,8 @@ public class UserService {
         this.chucVuRepository = chucVuRepository;
         this.authNotificationService = authNotificationService;
         this.auditLogService = auditLogService;
+        this.principalCache = principalCache;
+        this.avatarStorageService = avatarStorageService;
     }
 
     public User createUser(CreateUserRequest request) {
@@ -70,7 +77,7 @@ public class UserService {
         user.setRole(request.getRole());
         user.setIsActive(true);
         user.setPhoneNumber(request.getPhoneNumber());
-        user.setAvatarUrl(request.getAvatarUrl());
+        user.setAvatarUrl(avatarStorageService.normalize(request.getAvatarUrl()));
         user = userRepository.save(user);
 
         // AUTO-CREATE EMPLOYEE: Mỗi user đều là một nhân viên
@@ -171,7 +178,7 @@ public class UserService {
             user.setPhoneNumber(request.getPhoneNumber());
         }
         if (request.getAvatarUrl() != null) {
-            user.setAvatarUrl(request.getAvatarUrl());
+            user.setAvatarUrl(avatarStorageService.normalize(request.getAvatarUrl()));
         }
         if (request.getRole() != null && !request.getRole().equals(oldRole)) {
             // CRITICAL: Admin không được thay đổi role của Manager
@@ -187,6 +194,7 @@ public class UserService {
         }
 
         User savedUser = userRepository.save(user);
+        principalCache.invalidateUser(savedUser.getUserId());
 
         // Audit log nếu có thay đổi quan trọng
         if (!oldRole.equals(savedUser.getRole()) || !oldIsActive.equals(savedUser.getIsActive())) {
@@ -203,6 +211,7 @@ public class UserService {
         // Không cần restrict activate vì đây là hành động tích cực
         user.setIsActive(true);
         user = userRepository.save(user);
+        principalCache.invalidateUser(id);
 
         // Gửi notification
         authNotificationService.createAccountActivatedNotification(id);
@@ -223,6 +232,7 @@ public class UserService {
 
         user.setIsActive(false);
         user = userRepository.save(user);
+        principalCache.invalidateUser(id);
 
         // Gửi notification
         authNotificationService.createAccountDeactivatedNotification(id, null);
@@ -357,7 +367,7 @@ public class UserService {
             user.setPhoneNumber(userDTO.getPhoneNumber());
         }
         if (userDTO.getAvatarUrl() != null) {
-            user.setAvatarUrl(userDTO.getAvatarUrl());
+            user.setAvatarUrl(avatarStorageService.normalize(userDTO.getAvatarUrl()));
         }
         if (userDTO.getRole() != null && !userDTO.getRole().equals(oldRole)) {
             // CRITICAL: Chỉ Admin mới được đổi role, và không được đổi role của Manager
@@ -374,7 +384,9 @@ public class UserService {
             }
         }
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        principalCache.invalidateUser(id);
+        return savedUser;
     }
 
     /**
@@ -397,6 +409,7 @@ public class UserService {
 
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        principalCache.invalidateUser(userId);
     }
 
     /**
@@ -407,7 +420,9 @@ public class UserService {
 
         User user = getUserById(userId);
         user.setIsActive(!user.getIsActive());
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        principalCache.invalidateUser(userId);
+        return savedUser;
     }
 
     /**
@@ -428,6 +443,7 @@ public class UserService {
         }
 
         userRepository.delete(user);
+        principalCache.invalidateUser(userId);
         log.warn("⚠️ User {} deleted by Admin {}", user.getUsername(), currentUser.getUsername());
     }
 
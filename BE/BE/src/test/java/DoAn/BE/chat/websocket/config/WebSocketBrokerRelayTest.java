@@ -0,0 +1,198 @@
+package DoAn.BE.chat.websocket.config;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+
+import DoAn.BE.auth.service.JwtService;
+import DoAn.BE.chat.websocket.interceptor.AuthChannelInterceptor;
+import DoAn.BE.chat.websocket.interceptor.PresenceChannelInterceptor;
+import DoAn.BE.user.repository.UserRepository;
+
+/**
+ * websocket.broker.mode=relay với broker STOMP nhúng trong test (ServerSocket tối giản, ghi lại frame nhận được)
+ * - Relay kết nối system session và subscribe 2 kênh dùng chung giữa các node
+ * - Tin nhắn /topic được chuyển tiếp ra broker ngoài
+ * - convertAndSendToUser cho user không có session ở node này được chuyển qua broker (node khác nhận)
+ */
+@SpringJUnitWebConfig(classes = { WebSocketConfig.class, AuthChannelInterceptor.class,
+        PresenceChannelInterceptor.class })
+@DirtiesContext
+class WebSocketBrokerRelayTest {
+
+    private static final EmbeddedStompBroker BROKER = EmbeddedStompBroker.start();
+
+    @DynamicPropertySource
+    static void relayProperties(DynamicPropertyRegistry registry) {
+        registry.add("websocket.broker.mode", () -> "relay");
+        registry.add("websocket.broker.relay.host", () -> "127.0.0.1");
+        registry.add("websocket.broker.relay.port", BROKER::getPort);
+    }
+
+    @MockitoBean
+    private JwtService jwtService;
+
+    @MockitoBean
+    private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("stompBrokerRelayMessageHandler")
+    private AbstractBrokerMessageHandler brokerMessageHandler;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @BeforeEach
+    void choBrokerSanSang() throws InterruptedException {
+        assertInstanceOf(StompBrokerRelayMessageHandler.class, brokerMessageHandler);
+        cho(brokerMessageHandler::isBrokerAvailable, "relay kết nối broker");
+    }
+
+    @Test
+    void relayDangKyKenhDungChungGiuaCacNode() throws InterruptedException {
+        assertTrue(BROKER.coFrame("CONNECT", "login:guest"));
+        cho(() -> BROKER.coFrame("SUBSCRIBE", "destination:/topic/simp-user-registry"),
+                "subscribe user registry");
+        cho(() -> BROKER.coFrame("SUBSCRIBE", "destination:/topic/unresolved-user-destination"),
+                "subscribe user destination broadcast");
+    }
+
+    @Test
+    void tinNhanTopicDuocChuyenRaBroker() throws InterruptedException {
+        messagingTemplate.convertAndSend("/topic/chatroom.1", "xin chào");
+
+        cho(() -> BROKER.coFrame("SEND", "destination:/topic/chatroom.1", "xin chào"), "SEND /topic/chatroom.1");
+    }
+
+    @Test
+    void tinNhanChoUserKhongONodeNayDiQuaBroker() throws InterruptedException {
+        messagingTemplate.convertAndSendToUser("alice", "/queue/messages", "tin riêng");
+
+        cho(() -> BROKER.coFrame("SEND", "destination:/topic/unresolved-user-destination", "tin riêng"),
+                "SEND /topic/unresolved-user-destination");
+    }
+
+    private static void cho(BooleanSupplier dieuKien, String moTa) throws InterruptedException {
+        long hetHan = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!dieuKien.getAsBoolean()) {
+            if (System.nanoTime() > hetHan) {
+                fail("Hết thời gian chờ: " + moTa + ", frame đã nhận: " + BROKER.frames);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Broker STOMP tối giản: trả CONNECTED cho CONNECT/STOMP (không heartbeat), ghi lại mọi frame
+     */
+    static class EmbeddedStompBroker {
+
+        private final ServerSocket serverSocket;
+        private final List<String> frames = new CopyOnWriteArrayList<>();
+
+        private EmbeddedStompBroker(ServerSocket serverSocket) {
+            this.serverSocket = serverSocket;
+        }
+
+        static EmbeddedStompBroker start() {
+            try {
+                EmbeddedStompBroker broker = new EmbeddedStompBroker(
+                        new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+                daemon(broker::acceptLoop, "embedded-stomp-broker");
+                return broker;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        // Có frame với command và chứa đủ các chuỗi (header "name:value" hoặc nội dung body)
+        boolean coFrame(String command, String... chua) {
+            for (String frame : frames) {
+                if (!frame.startsWith(command + "\n")) {
+                    continue;
+                }
+                boolean du = true;
+                for (String s : chua) {
+                    du &= frame.contains(s);
+                }
+                if (du) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    daemon(() -> handle(socket), "embedded-stomp-connection");
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                ByteArrayOutputStream frame = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) != -1) {
+                    if (b != 0) {
+                        frame.write(b);
+                        continue;
+                    }
+                    // Bỏ EOL heartbeat giữa các frame
+                    String text = frame.toString(StandardCharsets.UTF_8).stripLeading();
+                    frame.reset();
+                    frames.add(text);
+                    if (text.startsWith("CONNECT\n") || text.startsWith("STOMP\n")) {
+                        out.write("CONNECTED\nversion:1.2\nheart-beat:0,0\n\n\0".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // Relay đóng kết nối khi context dừng
+            }
+        }
+
+        private static void daemon(Runnable task, String name) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package DoAn.BE.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import org.junit.jupiter.api.Test;
+
+class CsvStreamWriterTest {
+
+    @Test
+    void ghiBomVaDinhDangGiaTri() throws IOException {
+        String csv = ghi(new Object[] { "Mã NV", "Họ tên", "Ngày", "Giờ vào", "Cập nhật", "Lương", "Ghi chú" },
+                new Object[] { 1L, "Nguyễn Văn A", LocalDate.of(2025, 1, 5), LocalTime.of(8, 0),
+                        LocalDateTime.of(2025, 1, 5, 17, 30), new BigDecimal("1E+7"), null });
+
+        assertEquals("\uFEFF"
+                + "Mã NV,Họ tên,Ngày,Giờ vào,Cập nhật,Lương,Ghi chú\r\n"
+                + "1,Nguyễn Văn A,05/01/2025,08:00,05/01/2025 17:30,10000000,\r\n", csv);
+    }
+
+    @Test
+    void quoteTheoRfc4180() throws IOException {
+        String csv = ghi(new Object[] { "a,b", "nói \"không\"", "dòng 1\ndòng 2", "cr\r", "thường" });
+
+        assertEquals("\uFEFF\"a,b\",\"nói \"\"không\"\"\",\"dòng 1\ndòng 2\",\"cr\r\",thường\r\n", csv);
+    }
+
+    @Test
+    void khongDongStreamGoc() throws IOException {
+        boolean[] closed = { false };
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        try (TabularStreamWriter writer = TabularStreamWriter.open(TabularStreamWriter.Format.CSV, out, "x")) {
+            writer.writeRow("a");
+        }
+
+        assertFalse(closed[0]);
+        assertEquals("\uFEFFa\r\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String ghi(Object[]... rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvStreamWriter writer = new CsvStreamWriter(out)) {
+            for (Object[] row : rows) {
+                writer.writeRow(row);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
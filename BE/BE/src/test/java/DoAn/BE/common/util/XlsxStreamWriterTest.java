@@ -0,0 +1,121 @@
+package DoAn.BE.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+class XlsxStreamWriterTest {
+
+    @Test
+    void ghiDuCacPhanCuaGoiXlsx() throws Exception {
+        Map<String, String> entries = ghi("Nhân viên", new Object[] { "Mã NV" }, new Object[] { 1 });
+
+        assertEquals(6, entries.size());
+        for (String name : new String[] { "[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+                "xl/_rels/workbook.xml.rels", "xl/styles.xml", "xl/worksheets/sheet1.xml" }) {
+            assertTrue(entries.containsKey(name), name);
+            parse(entries.get(name)); // XML hợp lệ
+        }
+    }
+
+    @Test
+    void ghiOTheoKieuDuLieu() throws Exception {
+        Map<String, String> entries = ghi("Chấm công",
+                new Object[] { "Mã NV", "Ngày", "Số giờ", "Ghi chú", "Trống", "NaN" },
+                new Object[] { 42L, LocalDate.of(2025, 1, 5), new BigDecimal("8.50"), "<a & \"b\">\u0001",
+                        null, Double.NaN });
+
+        NodeList rows = parse(entries.get("xl/worksheets/sheet1.xml")).getElementsByTagName("row");
+        assertEquals(2, rows.getLength());
+
+        // Header in đậm (style 1)
+        Element header = (Element) rows.item(0);
+        assertEquals("1", header.getAttribute("r"));
+        NodeList headerCells = header.getElementsByTagName("c");
+        for (int i = 0; i < headerCells.getLength(); i++) {
+            assertEquals("1", ((Element) headerCells.item(i)).getAttribute("s"));
+        }
+
+        NodeList cells = ((Element) rows.item(1)).getElementsByTagName("c");
+        assertEquals(6, cells.getLength());
+        assertCell(cells, 0, "", "42");
+        assertCell(cells, 1, "inlineStr", "05/01/2025");
+        assertCell(cells, 2, "", "8.50");
+        assertCell(cells, 3, "inlineStr", "<a & \"b\">"); // ký tự điều khiển bị bỏ
+        assertCell(cells, 4, "", "");
+        assertCell(cells, 5, "inlineStr", "NaN"); // số không hữu hạn ghi dạng chuỗi
+        assertFalse(((Element) cells.item(2)).hasAttribute("s"));
+    }
+
+    @Test
+    void tenSheetHopLe() throws Exception {
+        Map<String, String> entries = ghi("Chấm công [1/2025] - phòng Kế toán & Tài chính", new Object[] { "x" });
+
+        Element sheet = (Element) parse(entries.get("xl/workbook.xml")).getElementsByTagName("sheet").item(0);
+        assertEquals("Chấm công -1-2025- - phòng Kế t", sheet.getAttribute("name"));
+    }
+
+    @Test
+    void khongDongStreamGoc() throws IOException {
+        boolean[] closed = { false };
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        try (TabularStreamWriter writer = TabularStreamWriter.open(TabularStreamWriter.Format.XLSX, out, "x")) {
+            writer.writeRow("a");
+        }
+
+        assertFalse(closed[0]);
+        assertTrue(out.size() > 0);
+    }
+
+    private static void assertCell(NodeList cells, int index, String type, String text) {
+        Element cell = (Element) cells.item(index);
+        assertEquals(type, cell.getAttribute("t"), "cột " + index);
+        assertEquals(text, cell.getTextContent(), "cột " + index);
+    }
+
+    private static Map<String, String> ghi(String sheetName, Object[]... rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XlsxStreamWriter writer = new XlsxStreamWriter(out, sheetName)) {
+            for (Object[] row : rows) {
+                writer.writeRow(row);
+            }
+        }
+
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
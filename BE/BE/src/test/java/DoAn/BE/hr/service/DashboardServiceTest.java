@@ -0,0 +1,291 @@
+package DoAn.BE.hr.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import DoAn.BE.hr.dto.DashboardStatsDTO;
+import DoAn.BE.hr.entity.ChamCong.TrangThaiChamCong;
+import DoAn.BE.hr.entity.NhanVien.GioiTinh;
+import DoAn.BE.hr.entity.NhanVien.TrangThaiNhanVien;
+import DoAn.BE.hr.entity.ThongKeThang;
+import DoAn.BE.hr.entity.ThongKeThang.LoaiThongKe;
+import DoAn.BE.hr.repository.HopDongRepository;
+import DoAn.BE.hr.repository.NghiPhepRepository;
+import DoAn.BE.hr.repository.NhanVienRepository;
+import DoAn.BE.hr.repository.ThongKeThangRepository;
+import DoAn.BE.notification.repository.ThongBaoRepository;
+import DoAn.BE.project.repository.ProjectRepository;
+import DoAn.BE.user.entity.User;
+
+/**
+ * DashboardService.getDashboardStats() dựng từ các truy vấn GROUP BY / bảng tổng hợp:
+ * - số truy vấn không đổi khi số nhân viên tăng (đếm lời gọi repository qua mock)
+ * - kết quả trùng với cách tính cũ duyệt từng phòng ban / từng nhân viên
+ */
+class DashboardServiceTest {
+
+    private static final int SO_PHONG_BAN = 8;
+
+    private final NhanVienRepository nhanVienRepository = mock(NhanVienRepository.class);
+    private final NghiPhepRepository nghiPhepRepository = mock(NghiPhepRepository.class);
+    private final HopDongRepository hopDongRepository = mock(HopDongRepository.class);
+    private final ThongBaoRepository thongBaoRepository = mock(ThongBaoRepository.class);
+    private final ProjectRepository projectRepository = mock(ProjectRepository.class);
+    private final ThongKeThangRepository thongKeThangRepository = mock(ThongKeThangRepository.class);
+
+    private final DashboardService dashboardService = new DashboardService(nhanVienRepository,
+            nghiPhepRepository, hopDongRepository, thongBaoRepository, projectRepository, thongKeThangRepository);
+
+    @Test
+    void soTruyVanKhongDoiTheoSoNhanVien() {
+        int[] soNhanVien = { 10, 1_000, 20_000 };
+        int[] soTruyVan = new int[soNhanVien.length];
+        for (int i = 0; i < soNhanVien.length; i++) {
+            List<NhanVienMau> duLieu = taoDuLieu(soNhanVien[i], 20240601L + i);
+            giaLapRepository(duLieu);
+
+            dashboardService.getDashboardStats(user(User.Role.MANAGER_ACCOUNTING));
+            soTruyVan[i] = demTruyVan();
+        }
+
+        for (int i = 1; i < soTruyVan.length; i++) {
+            assertEquals(soTruyVan[0], soTruyVan[i],
+                    "Số truy vấn thay đổi theo số nhân viên: " + soNhanVien[i] + " nhân viên");
+        }
+    }
+
+    @Test
+    void trungKetQuaCachTinhTungNhanVien() {
+        List<NhanVienMau> duLieu = taoDuLieu(5_000, 7L);
+        giaLapRepository(duLieu);
+
+        DashboardStatsDTO stats = dashboardService.getDashboardStats(user(User.Role.MANAGER_ACCOUNTING));
+
+        // Tổng quan nhân viên
+        long dangLam = duLieu.stream().filter(nv -> nv.trangThai == TrangThaiNhanVien.DANG_LAM_VIEC).count();
+        long nghiViec = duLieu.stream().filter(nv -> nv.trangThai == TrangThaiNhanVien.NGHI_VIEC).count();
+        assertEquals(duLieu.size(), stats.getTongQuan().getTongNhanVien());
+        assertEquals(dangLam, stats.getTongQuan().getNhanVienDangLam());
+        assertEquals(nghiViec, stats.getTongQuan().getNhanVienNghiViec());
+
+        // Chấm công theo phòng ban: duyệt từng phòng ban, từng nhân viên như trước
+        List<DashboardStatsDTO.ChamCongPhongBanStats> chamCong = stats.getChamCongPhongBan();
+        assertEquals(SO_PHONG_BAN, chamCong.size());
+        for (int pb = 1; pb <= SO_PHONG_BAN; pb++) {
+            long tongNhanVien = 0;
+            long diMuon = 0;
+            long veSom = 0;
+            long dungGio = 0;
+            long tongChamCong = 0;
+            for (NhanVienMau nv : duLieu) {
+                if (nv.phongbanId != pb) {
+                    continue;
+                }
+                tongNhanVien++;
+                for (TrangThaiChamCong cc : nv.chamCong) {
+                    tongChamCong++;
+                    if (cc == TrangThaiChamCong.DI_TRE) {
+                        diMuon++;
+                    } else if (cc == TrangThaiChamCong.VE_SOM) {
+                        veSom++;
+                    } else if (cc == TrangThaiChamCong.DU_GIO) {
+                        dungGio++;
+                    }
+                }
+            }
+            double tiLe = tongChamCong > 0 ? (double) dungGio / tongChamCong * 100 : 0.0;
+
+            DashboardStatsDTO.ChamCongPhongBanStats thucTe = chamCong.get(pb - 1);
+            assertEquals("Phòng " + pb, thucTe.getTenPhongBan());
+            assertEquals(tongNhanVien, thucTe.getTongNhanVien());
+            assertEquals(diMuon, thucTe.getNhanVienDiMuon());
+            assertEquals(veSom, thucTe.getNhanVienVeSom());
+            assertEquals(dungGio, thucTe.getNhanVienDungGio());
+            assertEquals(Math.round(tiLe * 100.0) / 100.0, thucTe.getTiLeDungGio());
+        }
+
+        // Giới tính và nhóm tuổi của nhân viên đang làm việc
+        Map<String, Long> gioiTinh = new HashMap<>(Map.of("Nam", 0L, "Nữ", 0L, "Khác", 0L));
+        Map<String, Long> nhomTuoi = new HashMap<>();
+        LocalDate today = LocalDate.now();
+        for (NhanVienMau nv : duLieu) {
+            if (nv.trangThai != TrangThaiNhanVien.DANG_LAM_VIEC) {
+                continue;
+            }
+            gioiTinh.merge(nv.gioiTinh.name(), 1L, Long::sum);
+            nhomTuoi.merge(nhomTuoi(Period.between(nv.ngaySinh, today).getYears()), 1L, Long::sum);
+        }
+        assertEquals(gioiTinh, stats.getNhanVienTheoGioiTinh());
+        for (DashboardStatsDTO.NhanVienTheoTuoiStats nhom : stats.getNhanVienTheoTuoi()) {
+            long mongDoi = nhomTuoi.getOrDefault(nhom.getNhomTuoi(), 0L);
+            assertEquals(mongDoi, nhom.getSoLuong(), nhom.getNhomTuoi());
+        }
+
+        // Lương tháng hiện tại
+        DashboardStatsDTO.LuongTheoThangStats thangNay = stats.getLuongTheoThang()
+                .get(stats.getLuongTheoThang().size() - 1);
+        assertEquals(dangLam, thangNay.getSoNhanVien());
+        assertEquals(BigDecimal.valueOf(10_000_000L).multiply(BigDecimal.valueOf(dangLam)), thangNay.getTongLuong());
+    }
+
+    @Test
+    void hrKhongThayTienLuong() {
+        giaLapRepository(taoDuLieu(100, 3L));
+
+        DashboardStatsDTO stats = dashboardService.getDashboardStats(user(User.Role.MANAGER_HR));
+
+        assertEquals(BigDecimal.ZERO, stats.getTongQuan().getTongChiPhiLuongThang());
+        for (DashboardStatsDTO.LuongTheoThangStats thang : stats.getLuongTheoThang()) {
+            assertEquals(BigDecimal.ZERO, thang.getTongLuong());
+        }
+    }
+
+    // ==================== Dữ liệu giả lập ====================
+
+    private record NhanVienMau(long phongbanId, TrangThaiNhanVien trangThai, LocalDate ngaySinh,
+            GioiTinh gioiTinh, List<TrangThaiChamCong> chamCong) {
+    }
+
+    private static List<NhanVienMau> taoDuLieu(int soNhanVien, long seed) {
+        Random random = new Random(seed);
+        TrangThaiNhanVien[] trangThai = TrangThaiNhanVien.values();
+        GioiTinh[] gioiTinh = GioiTinh.values();
+        TrangThaiChamCong[] trangThaiChamCong = TrangThaiChamCong.values();
+        LocalDate today = LocalDate.now();
+
+        List<NhanVienMau> duLieu = new ArrayList<>(soNhanVien);
+        for (int i = 0; i < soNhanVien; i++) {
+            List<TrangThaiChamCong> chamCong = new ArrayList<>();
+            int soNgay = random.nextInt(23);
+            for (int n = 0; n < soNgay; n++) {
+                chamCong.add(trangThaiChamCong[random.nextInt(trangThaiChamCong.length)]);
+            }
+            duLieu.add(new NhanVienMau(
+                    1 + random.nextInt(SO_PHONG_BAN),
+                    trangThai[random.nextInt(trangThai.length)],
+                    today.minusYears(20 + random.nextInt(45)).minusDays(random.nextInt(365)),
+                    gioiTinh[random.nextInt(gioiTinh.length)],
+                    chamCong));
+        }
+        return duLieu;
+    }
+
+    // Trả về đúng các dòng mà các truy vấn GROUP BY / bảng tổng hợp sẽ trả trên dữ liệu giả lập
+    private void giaLapRepository(List<NhanVienMau> duLieu) {
+        Map<TrangThaiNhanVien, Long> theoTrangThai = new EnumMap<>(TrangThaiNhanVien.class);
+        Map<Long, Long> theoPhongBan = new TreeMap<>();
+        Map<LocalDate, Long> theoNgaySinh = new HashMap<>();
+        Map<GioiTinh, Long> theoGioiTinh = new EnumMap<>(GioiTinh.class);
+        Map<Long, Map<TrangThaiChamCong, Long>> chamCong = new TreeMap<>();
+        for (long pb = 1; pb <= SO_PHONG_BAN; pb++) {
+            theoPhongBan.put(pb, 0L);
+        }
+        for (NhanVienMau nv : duLieu) {
+            theoTrangThai.merge(nv.trangThai, 1L, Long::sum);
+            theoPhongBan.merge(nv.phongbanId, 1L, Long::sum);
+            if (nv.trangThai == TrangThaiNhanVien.DANG_LAM_VIEC) {
+                theoNgaySinh.merge(nv.ngaySinh, 1L, Long::sum);
+                theoGioiTinh.merge(nv.gioiTinh, 1L, Long::sum);
+            }
+            for (TrangThaiChamCong cc : nv.chamCong) {
+                chamCong.computeIfAbsent(nv.phongbanId, id -> new EnumMap<>(TrangThaiChamCong.class))
+                        .merge(cc, 1L, Long::sum);
+            }
+        }
+
+        when(nhanVienRepository.getStatsByTrangThai()).thenReturn(dong(theoTrangThai));
+        when(nhanVienRepository.getStatsByNgaySinh(TrangThaiNhanVien.DANG_LAM_VIEC)).thenReturn(dong(theoNgaySinh));
+        when(nhanVienRepository.getStatsByGioiTinh(TrangThaiNhanVien.DANG_LAM_VIEC)).thenReturn(dong(theoGioiTinh));
+        List<Object[]> phongBan = new ArrayList<>();
+        theoPhongBan.forEach((id, soLuong) -> phongBan.add(new Object[] { id, "Phòng " + id, soLuong }));
+        when(nhanVienRepository.getStatsByPhongBan()).thenReturn(phongBan);
+
+        YearMonth thangNay = YearMonth.now();
+        List<ThongKeThang> tongHopChamCong = new ArrayList<>();
+        chamCong.forEach((pb, theoTrangThaiCC) -> theoTrangThaiCC.forEach((tt, soLuong) -> tongHopChamCong
+                .add(thongKe(LoaiThongKe.CHAM_CONG, thangNay, pb, tt.name(), soLuong, BigDecimal.ZERO))));
+        long dangLam = theoTrangThai.getOrDefault(TrangThaiNhanVien.DANG_LAM_VIEC, 0L);
+        List<ThongKeThang> tongHopLuong = List.of(thongKe(LoaiThongKe.BANG_LUONG, thangNay,
+                ThongKeThang.KHONG_PHONG_BAN, "CHO_DUYET", dangLam,
+                BigDecimal.valueOf(10_000_000L).multiply(BigDecimal.valueOf(dangLam))));
+        when(thongKeThangRepository.findByLoaiAndNamAndThang(eq(LoaiThongKe.CHAM_CONG), anyInt(), anyInt()))
+                .thenReturn(tongHopChamCong);
+        when(thongKeThangRepository.findByLoaiAndNamAndThang(eq(LoaiThongKe.BANG_LUONG), anyInt(), anyInt()))
+                .thenReturn(tongHopLuong);
+        when(thongKeThangRepository.findByLoaiAndKyBetween(eq(LoaiThongKe.BANG_LUONG), anyInt(), anyInt()))
+                .thenReturn(tongHopLuong);
+
+        when(projectRepository.sumBudgetByStatus(any())).thenReturn(BigDecimal.valueOf(5_000_000_000L));
+
+        clearInvocations(nhanVienRepository, nghiPhepRepository, hopDongRepository,
+                thongBaoRepository, projectRepository, thongKeThangRepository);
+    }
+
+    private int demTruyVan() {
+        int tong = 0;
+        for (Object repository : List.of(nhanVienRepository, nghiPhepRepository, hopDongRepository,
+                thongBaoRepository, projectRepository, thongKeThangRepository)) {
+            tong += mockingDetails(repository).getInvocations().size();
+        }
+        return tong;
+    }
+
+    private static List<Object[]> dong(Map<?, Long> nhom) {
+        List<Object[]> rows = new ArrayList<>();
+        nhom.forEach((khoa, soLuong) -> rows.add(new Object[] { khoa, soLuong }));
+        return rows;
+    }
+
+    private static ThongKeThang thongKe(LoaiThongKe loai, YearMonth thang, long phongbanId, String trangThai,
+            long soLuong, BigDecimal tongTien) {
+        ThongKeThang thongKe = new ThongKeThang();
+        thongKe.setLoai(loai);
+        thongKe.setNam(thang.getYear());
+        thongKe.setThang(thang.getMonthValue());
+        thongKe.setPhongbanId(phongbanId);
+        thongKe.setTrangThai(trangThai);
+        thongKe.setSoLuong(soLuong);
+        thongKe.setTongTien(tongTien);
+        return thongKe;
+    }
+
+    private static String nhomTuoi(int tuoi) {
+        if (tuoi <= 25)
+            return "20-25";
+        if (tuoi <= 30)
+            return "26-30";
+        if (tuoi <= 35)
+            return "31-35";
+        if (tuoi <= 40)
+            return "36-40";
+        if (tuoi <= 50)
+            return "41-50";
+        return "50+";
+    }
+
+    private static User user(User.Role role) {
+        User user = new User();
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,140 @@
+package DoAn.BE.hr.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import DoAn.BE.common.util.TabularStreamWriter;
+
+/**
+ * Benchmark export 1 triệu dòng chấm công qua ExportService (H2 file, không phải SQL Server)
+ * - Dữ liệu nằm trên đĩa, cache H2 nhỏ, truy vấn lazy: heap đo được chủ yếu là của pipeline export
+ * - Output ghi vào stream đếm byte, đo heap đã dùng (sau GC) mỗi vài MB output
+ * Workbook dựng trong bộ nhớ cho 1 triệu dòng tốn hàng trăm MB; pipeline streaming phải giữ heap phẳng
+ * Không chạy trong mvn test mặc định (tạo 1 triệu dòng, số đo heap phụ thuộc JVM/GC):
+ * mvn test -Dtest=ExportServiceBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExportServiceBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportServiceBenchmarkTest.class);
+
+    // 32.259 nhân viên x 31 ngày tháng 1/2025 = 1.000.029 dòng chấm công
+    private static final int SO_NHAN_VIEN = 32_259;
+    private static final long SO_DONG = SO_NHAN_VIEN * 31L;
+
+    // Heap tăng thêm tối đa trong lúc export (buffer writer + cache H2 + trang fetch)
+    private static final long HEAP_TANG_TOI_DA = 64L * 1024 * 1024;
+
+    @TempDir
+    static Path tempDir;
+
+    private static ExportService exportService;
+
+    @BeforeAll
+    static void taoDuLieu() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:file:" + tempDir.resolve("export").toAbsolutePath()
+                        + ";CACHE_SIZE=8192;LAZY_QUERY_EXECUTION=TRUE;MAX_MEMORY_ROWS=10000",
+                "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE phong_ban (phongban_id BIGINT PRIMARY KEY, ten_phong_ban VARCHAR(100))");
+        jdbcTemplate.execute("CREATE TABLE nhan_vien (nhanvien_id BIGINT PRIMARY KEY, ho_ten VARCHAR(100), "
+                + "phongban_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE cham_cong (ngay_cham DATE, nhanvien_id BIGINT, gio_vao TIME, "
+                + "gio_ra TIME, so_gio_lam DECIMAL(5, 2), trang_thai VARCHAR(20), loai_ca VARCHAR(20), "
+                + "phuong_thuc VARCHAR(20), ghi_chu VARCHAR(255), PRIMARY KEY (ngay_cham, nhanvien_id))");
+
+        jdbcTemplate.execute("INSERT INTO phong_ban SELECT X, CONCAT('Phòng ', X) FROM SYSTEM_RANGE(1, 10)");
+        jdbcTemplate.execute("INSERT INTO nhan_vien SELECT X, CONCAT('Nguyễn Văn ', X), MOD(X, 10) + 1 "
+                + "FROM SYSTEM_RANGE(1, " + SO_NHAN_VIEN + ")");
+        jdbcTemplate.execute("INSERT INTO cham_cong SELECT DATEADD(DAY, d.X, DATE '2025-01-01'), nv.nhanvien_id, "
+                + "TIME '08:00:00', TIME '17:30:00', 8.50, 'DU_GIO', 'HANH_CHINH', 'GPS', "
+                + "CASE WHEN MOD(nv.nhanvien_id, 7) = 0 THEN 'Ghi chú, có \"ngoặc\"' END "
+                + "FROM nhan_vien nv CROSS JOIN SYSTEM_RANGE(0, 30) d");
+
+        exportService = new ExportService(jdbcTemplate);
+    }
+
+    @Test
+    void exportMotTrieuDongChamCongCsv() throws IOException {
+        DemByteOutputStream out = export(TabularStreamWriter.Format.CSV);
+
+        // Header + 1 dòng cho mỗi bản ghi (ghi chú có dấu phẩy nhưng không xuống dòng)
+        assertEquals(SO_DONG + 1, out.soDong);
+    }
+
+    @Test
+    void exportMotTrieuDongChamCongXlsx() throws IOException {
+        DemByteOutputStream out = export(TabularStreamWriter.Format.XLSX);
+
+        assertTrue(out.soByte > 0);
+    }
+
+    private DemByteOutputStream export(TabularStreamWriter.Format format) throws IOException {
+        long heapTruoc = heapDaDung();
+        DemByteOutputStream out = new DemByteOutputStream();
+
+        long batDau = System.nanoTime();
+        exportService.exportChamCong(1, 2025, format, out);
+        long thoiGianMs = (System.nanoTime() - batDau) / 1_000_000;
+
+        long heapTang = Math.max(0, out.heapCaoNhat - heapTruoc);
+        log.info("Export chấm công {}: {} dòng, {} MB, {} ms, heap tăng tối đa {} MB ({} lần đo)",
+                format, SO_DONG, out.soByte / (1024 * 1024), thoiGianMs, heapTang / (1024 * 1024), out.soLanDo);
+
+        assertTrue(out.soLanDo > 0, "Output quá nhỏ để đo heap");
+        assertTrue(heapTang < HEAP_TANG_TOI_DA, "Heap tăng " + heapTang / (1024 * 1024) + " MB khi export");
+        return out;
+    }
+
+    private static long heapDaDung() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Bỏ dữ liệu, chỉ đếm byte / số dòng và đo heap mỗi DO_HEAP_MOI byte
+    private static class DemByteOutputStream extends OutputStream {
+        private static final long DO_HEAP_MOI = 4L * 1024 * 1024;
+
+        private long soByte;
+        private long soDong;
+        private long heapCaoNhat;
+        private int soLanDo;
+        private long lanDoTiepTheo = DO_HEAP_MOI;
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    soDong++;
+                }
+            }
+            soByte += len;
+            if (soByte >= lanDoTiepTheo) {
+                lanDoTiepTheo += DO_HEAP_MOI;
+                heapCaoNhat = Math.max(heapCaoNhat, heapDaDung());
+                soLanDo++;
+            }
+        }
+    }
+}
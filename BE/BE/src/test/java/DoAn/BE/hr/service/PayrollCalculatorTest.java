@@ -0,0 +1,182 @@
+package DoAn.BE.hr.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import DoAn.BE.hr.entity.BangLuong;
+
+/**
+ * So sánh PayrollCalculator (long) với công thức BigDecimal cũ của BangLuong.calculateTotalSalary()
+ * trên dữ liệu ngẫu nhiên (seed cố định); kết quả phải trùng sau khi làm tròn HALF_UP về scale 2 của DB
+ */
+class PayrollCalculatorTest {
+
+    private static final int SO_MAU = 100_000;
+
+    private final PayrollCalculator calculator = new PayrollCalculator(
+            new BigDecimal("0.08"), new BigDecimal("0.015"), new BigDecimal("0.01"), 11_000_000L);
+
+    @Test
+    void trungCongThucCuVoiDuLieuNgauNhien() {
+        Random random = new Random(20240601L);
+        for (int i = 0; i < SO_MAU; i++) {
+            BigDecimal luongCoBan = tien(random, 500_000_000L, false);
+            int ngayCong = random.nextInt(32);
+            int ngayCongChuan = 1 + random.nextInt(31);
+            int gioLamThem = random.nextInt(4) == 0 ? 0 : random.nextInt(200);
+            BigDecimal phuCap = tien(random, 50_000_000L, true);
+            BigDecimal thuong = tien(random, 100_000_000L, true);
+            BigDecimal khauTruKhac = tien(random, 20_000_000L, true);
+
+            soSanh(luongCoBan, ngayCong, ngayCongChuan, gioLamThem, phuCap, thuong, khauTruKhac);
+        }
+    }
+
+    @Test
+    void trungCongThucCuTaiNguongBacThue() {
+        // Thu nhập chịu thuế rơi đúng / sát các ngưỡng bậc (lương cơ bản đã trừ 10.5% bảo hiểm)
+        long[] nguong = { 0L, 5_000_000L, 10_000_000L, 18_000_000L, 32_000_000L, 52_000_000L, 80_000_000L };
+        for (long n : nguong) {
+            for (long lech = -3; lech <= 3; lech++) {
+                BigDecimal thuong = BigDecimal.valueOf(n + 11_000_000L + lech, 0);
+                soSanh(BigDecimal.ZERO, 0, 26, 0, BigDecimal.ZERO, thuong, BigDecimal.ZERO);
+                soSanh(BigDecimal.valueOf(100), 26, 26, 0, BigDecimal.ZERO, thuong.add(new BigDecimal("0.01")),
+                        BigDecimal.ZERO);
+            }
+        }
+    }
+
+    @Test
+    void giaTriNull() {
+        BangLuong bangLuong = new BangLuong();
+        bangLuong.setLuongCoBan(new BigDecimal("15000000"));
+        bangLuong.setNgayCong(null);
+        bangLuong.setPhuCap(null);
+        bangLuong.setThuong(null);
+        bangLuong.setKhauTruKhac(null);
+        bangLuong.setGioLamThem(null);
+
+        calculator.tinhLuong(bangLuong);
+
+        assertEquals(new BigDecimal("15000000.00"), bangLuong.getTongLuong());
+        assertEquals(new BigDecimal("1575000.00"), bangLuong.getTongKhauTru().subtract(bangLuong.getThueTNCN()));
+    }
+
+    @Test
+    void tyLeQuaBaChuSoLeBiTuChoi() {
+        assertThrows(IllegalArgumentException.class,
+                () -> calculator.voiThamSo(new BigDecimal("0.0805"), null, null, null));
+    }
+
+    private void soSanh(BigDecimal luongCoBan, int ngayCong, int ngayCongChuan, int gioLamThem,
+            BigDecimal phuCap, BigDecimal thuong, BigDecimal khauTruKhac) {
+        BigDecimal[] cu = congThucCu(luongCoBan, ngayCong, ngayCongChuan, gioLamThem, phuCap, thuong, khauTruKhac);
+
+        BangLuong bangLuong = new BangLuong();
+        bangLuong.setLuongCoBan(luongCoBan);
+        bangLuong.setNgayCong(ngayCong);
+        bangLuong.setNgayCongChuan(ngayCongChuan);
+        bangLuong.setGioLamThem(gioLamThem);
+        bangLuong.setPhuCap(phuCap);
+        bangLuong.setThuong(thuong);
+        bangLuong.setKhauTruKhac(khauTruKhac);
+        calculator.tinhLuong(bangLuong);
+
+        BigDecimal[] moi = { bangLuong.getLuongTheoNgayCong(), bangLuong.getTienLamThem(), bangLuong.getBhxh(),
+                bangLuong.getBhyt(), bangLuong.getBhtn(), bangLuong.getThueTNCN(), bangLuong.getTongLuong(),
+                bangLuong.getTongKhauTru(), bangLuong.getLuongThucNhan() };
+        String[] ten = { "luongTheoNgayCong", "tienLamThem", "bhxh", "bhyt", "bhtn", "thueTNCN", "tongLuong",
+                "tongKhauTru", "luongThucNhan" };
+        for (int i = 0; i < cu.length; i++) {
+            String dauVao = String.format("%s: luongCoBan=%s ngayCong=%d/%d gio=%d phuCap=%s thuong=%s khauTru=%s",
+                    ten[i], luongCoBan, ngayCong, ngayCongChuan, gioLamThem, phuCap, thuong, khauTruKhac);
+            assertEquals(cu[i].setScale(2, RoundingMode.HALF_UP), moi[i], dauVao);
+        }
+    }
+
+    // Số tiền ngẫu nhiên có 0-2 chữ số lẻ; coAm: ~5% giá trị âm (điều chỉnh/truy thu)
+    private static BigDecimal tien(Random random, long max, boolean coAm) {
+        int scale = random.nextInt(3);
+        long unscaled = (long) (random.nextDouble() * max * Math.pow(10, scale));
+        if (coAm && random.nextInt(20) == 0) {
+            unscaled = -unscaled;
+        }
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    // ==================== Công thức cũ (BangLuong trước khi dùng PayrollCalculator) ====================
+
+    private static BigDecimal[] congThucCu(BigDecimal luongCoBan, Integer ngayCong, Integer ngayCongChuan,
+            Integer gioLamThem, BigDecimal phuCap, BigDecimal thuong, BigDecimal khauTruKhac) {
+        BigDecimal luongTheoNgayCong;
+        BigDecimal base = luongCoBan != null ? luongCoBan : BigDecimal.ZERO;
+        if (ngayCong != null && ngayCong > 0 && ngayCongChuan != null && ngayCongChuan > 0) {
+            luongTheoNgayCong = base
+                    .divide(new BigDecimal(ngayCongChuan), 2, RoundingMode.HALF_UP)
+                    .multiply(new BigDecimal(ngayCong));
+        } else {
+            luongTheoNgayCong = base;
+        }
+
+        BigDecimal tienLamThem;
+        if (gioLamThem != null && gioLamThem > 0) {
+            BigDecimal luongGio = base.divide(new BigDecimal(ngayCongChuan * 8), 2, RoundingMode.HALF_UP);
+            tienLamThem = luongGio.multiply(new BigDecimal(gioLamThem)).multiply(new BigDecimal("1.5"));
+        } else {
+            tienLamThem = BigDecimal.ZERO;
+        }
+
+        BigDecimal bhxh = base.multiply(new BigDecimal("0.08"));
+        BigDecimal bhyt = base.multiply(new BigDecimal("0.015"));
+        BigDecimal bhtn = base.multiply(new BigDecimal("0.01"));
+
+        BigDecimal allowance = phuCap != null ? phuCap : BigDecimal.ZERO;
+        BigDecimal bonus = thuong != null ? thuong : BigDecimal.ZERO;
+        BigDecimal tongLuong = luongTheoNgayCong.add(allowance).add(bonus).add(tienLamThem);
+
+        BigDecimal thuNhapTinhThue = tongLuong.subtract(bhxh).subtract(bhyt).subtract(bhtn);
+        BigDecimal thuNhapChiuThue = thuNhapTinhThue.subtract(new BigDecimal("11000000"));
+        BigDecimal thueTNCN = thuNhapChiuThue.compareTo(BigDecimal.ZERO) > 0
+                ? thueTNCNCu(thuNhapChiuThue)
+                : BigDecimal.ZERO;
+
+        BigDecimal otherDeduction = khauTruKhac != null ? khauTruKhac : BigDecimal.ZERO;
+        BigDecimal tongKhauTru = bhxh.add(bhyt).add(bhtn).add(thueTNCN).add(otherDeduction);
+        BigDecimal luongThucNhan = tongLuong.subtract(tongKhauTru);
+
+        return new BigDecimal[] { luongTheoNgayCong, tienLamThem, bhxh, bhyt, bhtn, thueTNCN, tongLuong,
+                tongKhauTru, luongThucNhan };
+    }
+
+    private static BigDecimal thueTNCNCu(BigDecimal taxableIncome) {
+        BigDecimal tax;
+        if (taxableIncome.compareTo(new BigDecimal("5000000")) <= 0) {
+            tax = taxableIncome.multiply(new BigDecimal("0.05"));
+        } else if (taxableIncome.compareTo(new BigDecimal("10000000")) <= 0) {
+            tax = new BigDecimal("250000")
+                    .add(taxableIncome.subtract(new BigDecimal("5000000")).multiply(new BigDecimal("0.10")));
+        } else if (taxableIncome.compareTo(new BigDecimal("18000000")) <= 0) {
+            tax = new BigDecimal("750000")
+                    .add(taxableIncome.subtract(new BigDecimal("10000000")).multiply(new BigDecimal("0.15")));
+        } else if (taxableIncome.compareTo(new BigDecimal("32000000")) <= 0) {
+            tax = new BigDecimal("1950000")
+                    .add(taxableIncome.subtract(new BigDecimal("18000000")).multiply(new BigDecimal("0.20")));
+        } else if (taxableIncome.compareTo(new BigDecimal("52000000")) <= 0) {
+            tax = new BigDecimal("4750000")
+                    .add(taxableIncome.subtract(new BigDecimal("32000000")).multiply(new BigDecimal("0.25")));
+        } else if (taxableIncome.compareTo(new BigDecimal("80000000")) <= 0) {
+            tax = new BigDecimal("9750000")
+                    .add(taxableIncome.subtract(new BigDecimal("52000000")).multiply(new BigDecimal("0.30")));
+        } else {
+            tax = new BigDecimal("18150000")
+                    .add(taxableIncome.subtract(new BigDecimal("80000000")).multiply(new BigDecimal("0.35")));
+        }
+        return tax.setScale(0, RoundingMode.HALF_UP);
+    }
+}